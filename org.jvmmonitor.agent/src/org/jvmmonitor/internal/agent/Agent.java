@@ -145,10 +145,14 @@ public class Agent {
         MBeanServer server = ManagementFactory.getPlatformMBeanServer();
         ObjectName profilerObjectName = new ObjectName(
                 CpuBciProfilerMXBean.PROFILER_MXBEAN_NAME);
+        ObjectName samplingProfilerObjectName = new ObjectName(
+                CpuSamplingProfilerMXBean.SAMPLING_PROFILER_MXBEAN_NAME);
         ObjectName dataTransferObjectName = new ObjectName(
                 DataTransferMXBean.DATA_TRANSFER_MXBEAN_NAME);
         ObjectName swtResourceMonitorObjectName = new ObjectName(
                 SWTResourceMonitorMXBean.SWT_RESOURCE_MONITOR_MXBEAN_NAME);
+        ObjectName notificationCoalescerObjectName = new ObjectName(
+                NotificationCoalescerMXBean.NOTIFICATION_COALESCER_MXBEAN_NAME);
 
         if (!server.isRegistered(profilerObjectName)) {
             CpuBciProfilerMXBeanImpl profiler = new CpuBciProfilerMXBeanImpl(
@@ -157,6 +161,12 @@ public class Agent {
             agentLoaded = true;
         }
 
+        if (!server.isRegistered(samplingProfilerObjectName)) {
+            CpuSamplingProfilerMXBeanImpl samplingProfiler = new CpuSamplingProfilerMXBeanImpl();
+            server.registerMBean(samplingProfiler, samplingProfilerObjectName);
+            agentLoaded = true;
+        }
+
         if (!server.isRegistered(dataTransferObjectName)) {
             DataTransferMXBeanImpl dataTransfer = new DataTransferMXBeanImpl();
             server.registerMBean(dataTransfer, dataTransferObjectName);
@@ -173,6 +183,13 @@ public class Agent {
             agentLoaded = true;
         }
 
+        if (!server.isRegistered(notificationCoalescerObjectName)) {
+            NotificationCoalescerMXBeanImpl notificationCoalescer = new NotificationCoalescerMXBeanImpl();
+            server.registerMBean(notificationCoalescer,
+                    notificationCoalescerObjectName);
+            agentLoaded = true;
+        }
+
         return agentLoaded;
     }
 }
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The buffers of binary dumps being read by chunks, keyed by the handle given
+ * when prepared. Each client reads its own buffer with its handle, so that
+ * concurrent clients don't read or discard the buffer prepared for another.
+ * <p>
+ * The buffer is discarded once its last chunk has been read, and the oldest
+ * buffer is discarded when more than {@link #MAX_BUFFERS} buffers are kept
+ * (e.g. the client has gone away while reading).
+ */
+public class BinaryDumpBuffers {
+
+    /** The max number of buffers kept at the same time. */
+    private static final int MAX_BUFFERS = 8;
+
+    /** The buffers keyed by handle. */
+    private Map<Long, byte[]> buffers;
+
+    /** The last handle. */
+    private long lastHandle;
+
+    /**
+     * The constructor.
+     */
+    public BinaryDumpBuffers() {
+        buffers = new LinkedHashMap<Long, byte[]>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<Long, byte[]> eldest) {
+                return size() > MAX_BUFFERS;
+            }
+        };
+    }
+
+    /**
+     * Keeps the binary dump until being read.
+     * 
+     * @param binaryDump
+     *            The binary dump
+     * @return The handle to read the binary dump
+     */
+    synchronized public long put(byte[] binaryDump) {
+        long handle = ++lastHandle;
+        buffers.put(handle, binaryDump);
+        return handle;
+    }
+
+    /**
+     * Reads the chunk of binary dump. The binary dump is discarded once the
+     * last chunk has been read.
+     * 
+     * @param handle
+     *            The handle given by {@link #put(byte[])}
+     * @param pos
+     *            The offset position in bytes to start reading data
+     * @param maxSize
+     *            The max size in bytes to read data
+     * @return The chunk of binary dump, or empty array if the handle is
+     *         unknown or the position is out of range
+     */
+    synchronized public byte[] read(long handle, int pos, int maxSize) {
+        byte[] binaryDump = buffers.get(handle);
+        if (binaryDump == null || pos < 0 || pos >= binaryDump.length) {
+            buffers.remove(handle);
+            return new byte[0];
+        }
+
+        int end = (int) Math.min((long) pos + maxSize, binaryDump.length);
+        byte[] chunk = Arrays.copyOfRange(binaryDump, pos, end);
+        if (end == binaryDump.length) {
+            buffers.remove(handle);
+        }
+        return chunk;
+    }
+}
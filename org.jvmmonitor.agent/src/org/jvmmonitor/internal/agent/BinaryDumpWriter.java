@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The writer to encode the profile data into compact binary format, that
+ * consists of a string table followed by frame records of variable-length
+ * integers.
+ * 
+ * <pre>
+ * dump    := MAGIC VERSION epoch delta stringCount string* thread* 0
+ * string  := length UTF-8-bytes
+ * thread  := (nameIndex + 1) rootCount frame*
+ * frame   := nameIndex count time childCount frame*
+ * </pre>
+ * 
+ * All numbers except <tt>MAGIC</tt> are unsigned variable-length integers
+ * storing 7 bits per byte with the most significant bit as continuation flag.
+ * The time is given in microseconds, so that the sub-millisecond time is not
+ * lost before the client computes self time and sums up hot spots.
+ * <tt>epoch</tt> is given back to the agent to get the next delta, and
+ * <tt>delta</tt> is <tt>1</tt> if only the frames modified since the given
+ * epoch are contained, or <tt>0</tt> if all frames are contained. In delta,
+ * <tt>rootCount</tt> and <tt>childCount</tt> only count the modified frames.
+ */
+@SuppressWarnings("nls")
+public class BinaryDumpWriter {
+
+    /** The magic number identifying the binary dump. */
+    static final int MAGIC = 0x4A4D4350;
+
+    /** The format version. */
+    static final int VERSION = 2;
+
+    /** The end marker of thread records. */
+    private static final int END_OF_THREADS = 0;
+
+    /** The epoch of runtime model. */
+    private long epoch;
+
+    /** The state indicating if only modified frames are written. */
+    private boolean delta;
+
+    /** The strings in string table. */
+    private List<String> strings;
+
+    /** The indexes in string table indexed by method ID. */
+    private int[] methodIndexes;
+
+    /** The indexes in string table keyed by frame name. */
+    private Map<String, Integer> frameIndexes;
+
+    /** The buffer for thread and frame records. */
+    private byte[] records;
+
+    /** The number of bytes in records buffer. */
+    private int recordsSize;
+
+    /**
+     * The constructor.
+     * 
+     * @param epoch
+     *            The epoch of runtime model
+     * @param delta
+     *            <tt>true</tt> if only modified frames are written
+     */
+    protected BinaryDumpWriter(long epoch, boolean delta) {
+        this.epoch = epoch;
+        this.delta = delta;
+        strings = new ArrayList<String>();
+        methodIndexes = new int[MethodRegistry.size()];
+        Arrays.fill(methodIndexes, -1);
+        frameIndexes = new HashMap<String, Integer>();
+        records = new byte[8192];
+        recordsSize = 0;
+    }
+
+    /**
+     * Writes the thread record.
+     * 
+     * @param name
+     *            The thread name
+     * @param rootCount
+     *            The number of root frames that follow
+     */
+    protected void writeThread(String name, int rootCount) {
+        strings.add(name);
+        writeVarLong(strings.size());
+        writeVarLong(rootCount);
+    }
+
+    /**
+     * Writes the frame record.
+     * 
+     * @param methodId
+     *            The method ID
+     * @param count
+     *            The invocation count
+     * @param time
+     *            The total time in microseconds
+     * @param childCount
+     *            The number of child frames that follow
+     */
+    protected void writeFrame(int methodId, int count, long time,
+            int childCount) {
+        writeVarLong(getMethodIndex(methodId));
+        writeVarLong(count);
+        writeVarLong(time);
+        writeVarLong(childCount);
+    }
+
+    /**
+     * Writes the frame record with the frame name that is not registered in
+     * {@link MethodRegistry}.
+     * 
+     * @param frameName
+     *            The frame name
+     * @param count
+     *            The invocation count
+     * @param time
+     *            The total time in microseconds
+     * @param childCount
+     *            The number of child frames that follow
+     */
+    protected void writeFrame(String frameName, int count, long time,
+            int childCount) {
+        Integer index = frameIndexes.get(frameName);
+        if (index == null) {
+            index = strings.size();
+            strings.add(frameName);
+            frameIndexes.put(frameName, index);
+        }
+        writeVarLong(index);
+        writeVarLong(count);
+        writeVarLong(time);
+        writeVarLong(childCount);
+    }
+
+    /**
+     * Gets the encoded profile data.
+     * 
+     * @return The encoded profile data
+     */
+    protected byte[] toByteArray() {
+        byte[] recordBytes = Arrays.copyOf(records, recordsSize);
+        records = new byte[recordBytes.length + strings.size() * 64 + 64];
+        recordsSize = 0;
+
+        writeInt(MAGIC);
+        writeVarLong(VERSION);
+        writeVarLong(epoch);
+        writeVarLong(delta ? 1 : 0);
+        writeVarLong(strings.size());
+        for (String string : strings) {
+            byte[] bytes;
+            try {
+                bytes = string.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            writeVarLong(bytes.length);
+            writeBytes(bytes, bytes.length);
+        }
+        writeBytes(recordBytes, recordBytes.length);
+        writeVarLong(END_OF_THREADS);
+
+        return Arrays.copyOf(records, recordsSize);
+    }
+
+    /**
+     * Gets the index in string table for the given method ID, adding the
+     * frame name into string table if not yet added.
+     * 
+     * @param methodId
+     *            The method ID
+     * @return The index in string table
+     */
+    private int getMethodIndex(int methodId) {
+        if (methodId >= methodIndexes.length) {
+            int length = methodIndexes.length;
+            methodIndexes = Arrays.copyOf(methodIndexes,
+                    Math.max(methodId + 1, length * 2));
+            Arrays.fill(methodIndexes, length, methodIndexes.length, -1);
+        }
+
+        int index = methodIndexes[methodId];
+        if (index == -1) {
+            index = strings.size();
+            strings.add(MethodRegistry.getFrameName(methodId));
+            methodIndexes[methodId] = index;
+        }
+        return index;
+    }
+
+    /**
+     * Writes the unsigned variable-length integer.
+     * 
+     * @param value
+     *            The non-negative value
+     */
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            records[recordsSize++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        records[recordsSize++] = (byte) remaining;
+    }
+
+    /**
+     * Writes the 4 bytes integer in big endian.
+     * 
+     * @param value
+     *            The value
+     */
+    private void writeInt(int value) {
+        ensureCapacity(4);
+        records[recordsSize++] = (byte) (value >>> 24);
+        records[recordsSize++] = (byte) (value >>> 16);
+        records[recordsSize++] = (byte) (value >>> 8);
+        records[recordsSize++] = (byte) value;
+    }
+
+    /**
+     * Writes the bytes.
+     * 
+     * @param bytes
+     *            The bytes
+     * @param length
+     *            The length of bytes to write
+     */
+    private void writeBytes(byte[] bytes, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, 0, records, recordsSize, length);
+        recordsSize += length;
+    }
+
+    /**
+     * Ensures the capacity of records buffer.
+     * 
+     * @param length
+     *            The length of bytes to be written
+     */
+    private void ensureCapacity(int length) {
+        if (recordsSize + length > records.length) {
+            records = Arrays.copyOf(records,
+                    Math.max(recordsSize + length, records.length * 2));
+        }
+    }
+}
@@ -27,6 +27,9 @@ public class ClassFileTransformerImpl implements ClassFileTransformer {
     /** The transformed classes. */
     private Set<Class<?>> transformedClasses;
 
+    /** The cache of instrumented byte-codes. */
+    private TransformedClassCache cache;
+
     /**
      * The constructor.
      * 
@@ -39,6 +42,8 @@ public class ClassFileTransformerImpl implements ClassFileTransformer {
             Set<Class<?>> transformedClasses) {
         this.targetClasses = targetClasses;
         this.transformedClasses = transformedClasses;
+        cache = new TransformedClassCache(
+                Constants.TRANSFORMED_CLASS_CACHE_SIZE);
     }
 
     /*
@@ -50,9 +55,7 @@ public class ClassFileTransformerImpl implements ClassFileTransformer {
             Class<?> classBeingRedefined, ProtectionDomain protectionDomain,
             byte[] classfileBuffer) throws IllegalClassFormatException {
 
-        if (!isProfiledClassLoader(loader)
-                || !matches(className, Config.getInstance().profiledPackages)
-                || matches(className, Config.getInstance().ignoredPackages)) {
+        if (!isTarget(loader, className)) {
             return classfileBuffer;
         }
 
@@ -64,51 +67,50 @@ public class ClassFileTransformerImpl implements ClassFileTransformer {
         transformedClasses.add(classBeingRedefined);
         Agent.logInfo(Messages.INSTRUMENTED_CLASS, className);
 
+        return getTransformedClass(className, classfileBuffer);
+    }
+
+    /**
+     * Gets the instrumented byte-codes from cache, or instruments the given
+     * class file if not cached.
+     * 
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @param classfileBuffer
+     *            The class file given to transformer
+     * @return The instrumented byte-codes
+     */
+    private byte[] getTransformedClass(String className, byte[] classfileBuffer) {
+        byte[] transformedBuffer = cache.get(className, classfileBuffer);
+        if (transformedBuffer != null) {
+            return transformedBuffer;
+        }
+
         ClassReader reader = new ClassReader(classfileBuffer);
         ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
         ClassAdapter visitor = new ClassVisitorImpl(writer, className);
         reader.accept(visitor, ClassReader.SKIP_DEBUG);
 
-        return writer.toByteArray();
+        transformedBuffer = writer.toByteArray();
+        cache.put(className, classfileBuffer, transformedBuffer);
+        return transformedBuffer;
     }
 
     /**
-     * Checks if the given class name matches with one of the packages list.
+     * Gets the state indicating if the given class is the target to
+     * transform.
      * 
+     * @param loader
+     *            The class loader
      * @param className
      *            The class name (e.g. java/lang/String)
-     * @param packages
-     *            The packages
-     * @return <tt>true</tt> if the given class belongs to one of the packages
+     * @return <tt>true</tt> if the given class is the target to transform
      */
-    private static boolean matches(String className, Set<String> packages) {
-        if (packages.isEmpty()) {
-            return false;
-        }
-
-        String packageName;
-        if (className.contains("/")) {
-            packageName = className.substring(0, className.lastIndexOf('/'))
-                    .replace('/', '.');
-        } else if (className.startsWith("$")) {
-            return false; // e.g. $Proxy0
-        } else {
-            packageName = Constants.DEFAULT_PACKAGE;
-        }
-
-        for (String pkg : packages) {
-            if (pkg.endsWith("*")) {
-                if (packageName.concat(".").startsWith(
-                        pkg.substring(0, pkg.length() - 1))) {
-                    return true;
-                }
-            } else {
-                if (packageName.equals(pkg)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    private static boolean isTarget(ClassLoader loader, String className) {
+        Config config = Config.getInstance();
+        return isProfiledClassLoader(loader)
+                && config.getProfiledPackageMatcher().matches(className)
+                && !config.getIgnoredPackageMatcher().matches(className);
     }
 
     /**
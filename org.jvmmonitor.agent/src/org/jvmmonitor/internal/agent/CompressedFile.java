@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The file compressed in gzip format into a temporary file next to the
+ * source file on background. The compressed file is shared by the sessions
+ * transferring the same source file, and is deleted when it is discarded
+ * after having been unused for a while.
+ */
+@SuppressWarnings("nls")
+public class CompressedFile implements Runnable {
+
+    /** The suffix of file compressed in gzip format. */
+    private static final String GZIP_SUFFIX = ".gz";
+
+    /** The source file. */
+    private File source;
+
+    /** The last modified time of source file when starting compression. */
+    private long sourceLastModified;
+
+    /** The compressed file. */
+    private File file;
+
+    /** The progress in percent, that is <tt>100</tt> when completed. */
+    private volatile int progress;
+
+    /** The state indicating if compressing file has failed. */
+    private volatile boolean failed;
+
+    /** The state indicating if the compressed file has been discarded. */
+    private volatile boolean discarded;
+
+    /** The number of sessions using the compressed file. */
+    private int references;
+
+    /** The time in milliseconds when the last session released the file. */
+    private long releasedTime;
+
+    /**
+     * The constructor.
+     * 
+     * @param source
+     *            The source file
+     * @throws IOException
+     *             if creating the temporary file fails
+     */
+    protected CompressedFile(File source) throws IOException {
+        this.source = source;
+        sourceLastModified = source.lastModified();
+        file = File.createTempFile(source.getName() + "-", GZIP_SUFFIX,
+                source.getParentFile());
+        releasedTime = System.currentTimeMillis();
+    }
+
+    /*
+     * @see Runnable#run()
+     */
+    @Override
+    public void run() {
+        try {
+            compress();
+        } catch (IOException e) {
+            Agent.logError(e, Messages.CANNOT_COMPRESS_FILE, source.getPath());
+            failed = true;
+        }
+
+        synchronized (this) {
+            if (failed || discarded) {
+                file.delete();
+            } else {
+                progress = 100;
+            }
+        }
+    }
+
+    /**
+     * Gets the source file.
+     * 
+     * @return The source file
+     */
+    protected File getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the compressed file.
+     * 
+     * @return The compressed file
+     */
+    protected File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the progress of compression.
+     * 
+     * @return The progress in percent, <tt>100</tt> if completed, or
+     *         <tt>-1</tt> if compression has failed
+     */
+    protected int getProgress() {
+        return failed ? -1 : progress;
+    }
+
+    /**
+     * Checks if the compressed file can be reused for the source file that
+     * has not been modified since starting compression.
+     * 
+     * @return <tt>true</tt> if the compressed file can be reused
+     */
+    protected boolean isReusable() {
+        return !failed && !discarded
+                && source.lastModified() == sourceLastModified;
+    }
+
+    /**
+     * Retains the compressed file for a session.
+     */
+    synchronized protected void retain() {
+        references++;
+    }
+
+    /**
+     * Releases the compressed file retained for a session.
+     */
+    synchronized protected void release() {
+        references--;
+        releasedTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Checks if no session has used the compressed file for the given
+     * duration.
+     * 
+     * @param duration
+     *            The duration in milliseconds
+     * @return <tt>true</tt> if the compressed file is unused
+     */
+    synchronized protected boolean isUnusedFor(long duration) {
+        return references == 0
+                && System.currentTimeMillis() - releasedTime >= duration;
+    }
+
+    /**
+     * Discards the compressed file, that is deleted once compression stops.
+     */
+    synchronized protected void discard() {
+        discarded = true;
+        if (progress == 100) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Compresses the source file, updating the progress.
+     * 
+     * @throws IOException
+     *             if compressing file fails
+     */
+    private void compress() throws IOException {
+        long length = Math.max(1, source.length());
+        InputStream inputStream = new FileInputStream(source);
+        try {
+            OutputStream outputStream = new GZIPOutputStream(
+                    new FileOutputStream(file), 65536) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+            try {
+                byte[] buffer = new byte[65536];
+                long readSize = 0;
+                int size;
+                while (!discarded && (size = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, size);
+                    readSize += size;
+                    progress = (int) Math.min(99, readSize * 100 / length);
+                }
+            } finally {
+                outputStream.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -33,6 +33,9 @@ public class Config {
     /** The output directory for dump file. */
     private String dumpDir;
 
+    /** The number of classes retransformed at once. */
+    private int transformBatchSize;
+
     /** The list of ignored java packages. */
     protected Set<String> ignoredPackages;
 
@@ -42,6 +45,12 @@ public class Config {
     /** The list of profiled class loaders. */
     protected Set<String> profiledClassLoaders;
 
+    /** The matcher compiled from ignored packages. */
+    private volatile PackageMatcher ignoredPackageMatcher;
+
+    /** The matcher compiled from profiled packages. */
+    private volatile PackageMatcher profiledPackageMatcher;
+
     /** The shared instance of this class. */
     private static Config config;
 
@@ -88,6 +97,33 @@ public class Config {
         }
     }
 
+    /**
+     * Compiles the ignored packages and profiled packages into matchers. This
+     * method has to be invoked whenever those packages are changed.
+     */
+    protected void updatePackageMatchers() {
+        ignoredPackageMatcher = new PackageMatcher(ignoredPackages);
+        profiledPackageMatcher = new PackageMatcher(profiledPackages);
+    }
+
+    /**
+     * Gets the matcher for ignored packages.
+     * 
+     * @return The matcher for ignored packages
+     */
+    protected PackageMatcher getIgnoredPackageMatcher() {
+        return ignoredPackageMatcher;
+    }
+
+    /**
+     * Gets the matcher for profiled packages.
+     * 
+     * @return The matcher for profiled packages
+     */
+    protected PackageMatcher getProfiledPackageMatcher() {
+        return profiledPackageMatcher;
+    }
+
     /**
      * Gets the profiler enabled state.
      * 
@@ -145,6 +181,26 @@ public class Config {
         dumpDir = dir;
     }
 
+    /**
+     * Gets the number of classes retransformed at once.
+     * 
+     * @return The number of classes retransformed at once
+     */
+    protected int getTransformBatchSize() {
+        return transformBatchSize;
+    }
+
+    /**
+     * Sets the number of classes retransformed at once.
+     * 
+     * @param size
+     *            The number of classes retransformed at once, that is
+     *            regarded as 1 if smaller than 1
+     */
+    protected void setTransformBatchSize(int size) {
+        transformBatchSize = Math.max(size, 1);
+    }
+
     /**
      * Loads the configuration.
      */
@@ -170,6 +226,8 @@ public class Config {
                 .getProperty(Constants.PROFILED_PACKAGES_PROP_KEY);
         String profiledClassLoadersStr = System
                 .getProperty(Constants.PROFILED_CLASSLOADER_PROP_KEY);
+        String transformBatchSizeStr = System
+                .getProperty(Constants.TRANSFORM_BATCH_SIZE_PROP_KEY);
 
         dumpDir = outputDirStr.trim();
         if (!dumpDir.endsWith(File.separator)) {
@@ -188,6 +246,17 @@ public class Config {
             profiledClassLoaders.clear();
             addElements(profiledClassLoaders, profiledClassLoadersStr);
         }
+        updatePackageMatchers();
+
+        setTransformBatchSize(Constants.DEFAULT_TRANSFORM_BATCH_SIZE);
+        if (transformBatchSizeStr != null) {
+            try {
+                setTransformBatchSize(Integer.parseInt(transformBatchSizeStr
+                        .trim()));
+            } catch (NumberFormatException e) {
+                // use the default size
+            }
+        }
     }
 
     /**
@@ -45,6 +45,72 @@ public class Constants {
     /** The key for profiled class loaders. */
     static final String PROFILED_CLASSLOADER_PROP_KEY = "jvmmonitor.profiled.classloaders";
 
+    /** The key for the number of classes retransformed at once. */
+    static final String TRANSFORM_BATCH_SIZE_PROP_KEY = "jvmmonitor.transform.batch.size";
+
+    /** The default number of classes retransformed at once. */
+    static final int DEFAULT_TRANSFORM_BATCH_SIZE = 100;
+
+    /** The max total size in bytes of cached instrumented byte-codes. */
+    static final long TRANSFORMED_CLASS_CACHE_SIZE = 32 * 1024 * 1024;
+
+    /** The name of thread to sample stack traces. */
+    static final String SAMPLER_THREAD_NAME = "JVM Monitor Sampling Profiler";
+
+    /** The name of thread to emit coalesced notifications. */
+    static final String COALESCER_THREAD_NAME = "JVM Monitor Notification Coalescer";
+
+    /**
+     * The time in milliseconds to stop coalescing notifications that no client
+     * has renewed since.
+     */
+    static final long COALESCING_LEASE_TIMEOUT = 60 * 1000;
+
+    /** The name of thread to close idle data transfer sessions. */
+    static final String TRANSFER_THREAD_NAME = "JVM Monitor Data Transfer";
+
+    /** The name of thread to compress file to transfer. */
+    static final String COMPRESSOR_THREAD_NAME = "JVM Monitor File Compressor";
+
+    /** The default sampling period in milliseconds. */
+    static final int DEFAULT_SAMPLING_PERIOD = 10;
+
+    /**
+     * The time in milliseconds to stop the sampling profiler that no client
+     * has queried since.
+     */
+    static final long SAMPLING_LEASE_TIMEOUT = 10 * 60 * 1000;
+
+    /** The number of sampling ticks to refresh the sampled thread IDs. */
+    static final int SAMPLED_THREADS_REFRESH_TICKS = 100;
+
+    /** The name of root frame of the stack traces truncated by max depth. */
+    static final String TRUNCATED_FRAME_NAME = "(truncated)";
+
+    /**
+     * The frames where the runnable threads wait for network I/O or
+     * selectors in native code.
+     * <p>
+     * Mirrors <tt>IDLE_FRAMES</tt> of <tt>MBeanServer</tt> in core, that is
+     * used when sampling over JMX without agent.
+     */
+    static final String[] IDLE_FRAMES = new String[] {
+            "java.net.PlainSocketImpl.socketAccept",
+            "java.net.DualStackPlainSocketImpl.accept0",
+            "java.net.SocketInputStream.socketRead0",
+            "sun.nio.ch.ServerSocketChannelImpl.accept0",
+            "sun.nio.ch.Net.accept", "sun.nio.ch.Net.poll",
+            "sun.nio.ch.EPollArrayWrapper.epollWait",
+            "sun.nio.ch.EPoll.wait", "sun.nio.ch.KQueueArrayWrapper.kevent0",
+            "sun.nio.ch.KQueue.poll", "sun.nio.ch.WEPoll.wait",
+            "sun.nio.ch.WindowsSelectorImpl$SubSelector.poll0" };
+
+    /** The max size in bytes of chunk to transfer data. */
+    static final int MAX_TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /** The time in milliseconds to close the idle data transfer session. */
+    static final long TRANSFER_SESSION_TIMEOUT = 10 * 60 * 1000;
+
     /** The key for user home directory. */
     static final String USER_HOME_PROP_KEY = "user.home";
 
@@ -66,11 +132,8 @@ public class Constants {
     /** The method name representing the class initialization method. */
     static final String METHOD_CLINIT = "<clinit>";
 
-    /** The descriptor for two strings. */
-    static final String DESC_STRING_STRING = "(Ljava/lang/String;Ljava/lang/String;)V";
-
-    /** The descriptor for three strings. */
-    static final String DESC_STRING_STRING_STRING = "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;)V";
+    /** The descriptor for method ID. */
+    static final String DESC_INT = "(I)V";
 
     /** The -javaagent option for JVM. */
     static final String JAVA_AGENT_OPTION = "-javaagent:";
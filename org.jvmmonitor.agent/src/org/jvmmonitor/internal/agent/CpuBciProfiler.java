@@ -11,114 +11,75 @@ package org.jvmmonitor.internal.agent;
  */
 public class CpuBciProfiler {
 
+    /** The number of probe pairs invoked to warm up before calibration. */
+    private static final int CALIBRATION_WARMUP_COUNT = 20000;
+
+    /** The number of probe pairs invoked to measure the overhead. */
+    private static final int CALIBRATION_COUNT = 100000;
+
     /** The runtime model. */
     private static RuntimeModel model;
 
+    /** The overhead time in nanoseconds of a pair of probes. */
+    private static long probeOverhead;
+
     /**
      * The method to be invoked when stepping into frame.
      * 
-     * @param className
-     *            The class name
-     * @param methodName
-     *            The method name
+     * @param methodId
+     *            The method ID given by {@link MethodRegistry}
      */
-    public static void stepInto(String className, String methodName) {
+    public static void stepInto(int methodId) {
         if (!Config.getInstance().isProfilerEnabled()) {
             return;
         }
 
-        long time = System.currentTimeMillis();
-        String thread = Thread.currentThread().getName();
-
-        // get the current thread
-        ThreadNode threadNode = model.getThread(thread);
-
-        // update the current frame
-        FrameNode frame;
-        FrameNode previousFrame = threadNode.getCurrentFrame();
-        if (previousFrame == null) {
-            frame = threadNode.getRootFrame(className, methodName);
-        } else {
-            frame = previousFrame.getChild(className, methodName);
-        }
-        threadNode.setCurrentFrame(frame);
-
-        // set the time
-        frame.setStepIntoTime(time, System.currentTimeMillis() - time);
+        doStepInto(model, methodId);
     }
 
     /**
      * The method to be invoked when stepping out from frame.
      * 
-     * @param className
-     *            The class name
-     * @param methodName
-     *            The method name
+     * @param methodId
+     *            The method ID given by {@link MethodRegistry}
      */
-    public static void stepReturn(String className, String methodName) {
+    public static void stepReturn(int methodId) {
         if (!Config.getInstance().isProfilerEnabled()) {
             return;
         }
 
-        long time = System.currentTimeMillis();
-        String thread = Thread.currentThread().getName();
-
-        // get the current thread
-        ThreadNode threadNode = model.getThread(thread);
-
-        // update the current frame
-        FrameNode previousFrame = threadNode.getCurrentFrame();
-        if (previousFrame == null) {
-            return;
-        }
-        threadNode.setCurrentFrame(previousFrame.getParent());
-
-        // set the time stepping return from this frame
-        long overhead = System.currentTimeMillis() - time;
-        previousFrame.setStepReturnTime(time + overhead, overhead);
+        doStepReturn(model);
     }
 
     /**
      * The method to be executed when dropping to frame due to exception.
      * 
-     * @param className
-     *            The class name
-     * @param methodName
-     *            The method name
-     * @param exception
-     *            The exception
+     * @param methodId
+     *            The method ID given by {@link MethodRegistry}
      */
-    public static void dropToFrame(String className, String methodName,
-            String exception) {
+    public static void dropToFrame(int methodId) {
         if (!Config.getInstance().isProfilerEnabled()) {
             return;
         }
 
-        long time = System.currentTimeMillis();
-        String thread = Thread.currentThread().getName();
+        long time = System.nanoTime();
 
         // get the current thread
-        ThreadNode threadNode = model.getThread(thread);
+        ThreadNode threadNode = model.getThread();
 
         // update the current frame
         FrameNode previousFrame = threadNode.getCurrentFrame();
         if (previousFrame == null) {
             return;
         }
-        FrameNode frame = previousFrame.searchFrame(className, methodName);
+        FrameNode frame = previousFrame.searchFrame(methodId);
         threadNode.setCurrentFrame(frame);
 
         // set the time dropping to this frame
-        long overhead = System.currentTimeMillis() - time;
-        if (frame.equals(previousFrame)) {
-            // stay at frame
-            previousFrame.incrementOverhead(overhead);
-            return;
-        }
-
+        long epoch = model.getEpoch();
         FrameNode iterator = previousFrame;
         while (!frame.equals(iterator)) {
-            iterator.setStepReturnTime(time + overhead, overhead);
+            iterator.setStepReturnTime(time, epoch);
             iterator = iterator.getParent();
         }
     }
@@ -127,7 +88,13 @@ public class CpuBciProfiler {
      * Initialize the profiler.
      */
     protected static void initialize() {
+        probeOverhead = calibrate();
+        Agent.logInfo(Messages.CALIBRATED_PROBE_OVERHEAD, probeOverhead);
+
         model = new RuntimeModel();
+
+        // to dump the model into file when shutting down application
+        Runtime.getRuntime().addShutdownHook(new Thread(model));
     }
 
     /**
@@ -138,4 +105,90 @@ public class CpuBciProfiler {
     protected static RuntimeModel getModel() {
         return model;
     }
+
+    /**
+     * Gets the overhead time of a pair of probes that is subtracted per
+     * method invocation from the total time.
+     * 
+     * @return The overhead time in nanoseconds
+     */
+    protected static long getProbeOverhead() {
+        return probeOverhead;
+    }
+
+    /**
+     * Steps into the frame on the given runtime model.
+     * 
+     * @param runtimeModel
+     *            The runtime model
+     * @param methodId
+     *            The method ID
+     */
+    private static void doStepInto(RuntimeModel runtimeModel, int methodId) {
+
+        // get the current thread
+        ThreadNode threadNode = runtimeModel.getThread();
+        long epoch = runtimeModel.getEpoch();
+
+        // update the current frame
+        FrameNode frame;
+        FrameNode previousFrame = threadNode.getCurrentFrame();
+        if (previousFrame == null) {
+            frame = threadNode.getRootFrame(methodId);
+        } else {
+            frame = previousFrame.getChild(methodId);
+        }
+        threadNode.setCurrentFrame(frame);
+
+        // set the time as late as possible to exclude the overhead
+        frame.setStepIntoTime(System.nanoTime(), epoch);
+    }
+
+    /**
+     * Steps out from the frame on the given runtime model.
+     * 
+     * @param runtimeModel
+     *            The runtime model
+     */
+    private static void doStepReturn(RuntimeModel runtimeModel) {
+        long time = System.nanoTime();
+
+        // get the current thread
+        ThreadNode threadNode = runtimeModel.getThread();
+
+        // update the current frame
+        FrameNode previousFrame = threadNode.getCurrentFrame();
+        if (previousFrame == null) {
+            return;
+        }
+        threadNode.setCurrentFrame(previousFrame.getParent());
+
+        // set the time stepping return from this frame
+        previousFrame.setStepReturnTime(time, runtimeModel.getEpoch());
+    }
+
+    /**
+     * Measures the overhead time of a pair of probes by invoking them for an
+     * empty method on a throwaway runtime model.
+     * 
+     * @return The overhead time in nanoseconds
+     */
+    private static long calibrate() {
+        RuntimeModel calibrationModel = new RuntimeModel();
+        int methodId = 0;
+
+        for (int i = 0; i < CALIBRATION_WARMUP_COUNT; i++) {
+            doStepInto(calibrationModel, methodId);
+            doStepReturn(calibrationModel);
+        }
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < CALIBRATION_COUNT; i++) {
+            doStepInto(calibrationModel, methodId);
+            doStepReturn(calibrationModel);
+        }
+        long elapsedTime = System.nanoTime() - startTime;
+
+        return elapsedTime / CALIBRATION_COUNT;
+    }
 }
@@ -35,6 +35,22 @@ public interface CpuBciProfilerMXBean {
      */
     void interruptTransform();
 
+    /**
+     * Gets the number of classes retransformed at once.
+     * 
+     * @return The number of classes retransformed at once
+     */
+    int getTransformBatchSize();
+
+    /**
+     * Sets the number of classes retransformed at once. The classes are
+     * retransformed one by one if <tt>1</tt> is given.
+     * 
+     * @param size
+     *            The number of classes retransformed at once
+     */
+    void setTransformBatchSize(int size);
+
     /**
      * Sets the state indicating if profiler is running.
      * 
@@ -67,6 +83,36 @@ public interface CpuBciProfilerMXBean {
      */
     String dump();
 
+    /**
+     * Dumps the profile data in compact binary format, and keeps it until
+     * being read with {@link #readBinaryDump(long, int, int)}. The profile
+     * data holds the epoch to be given next time, so that only the frames
+     * modified since then are dumped.
+     * 
+     * @param sinceEpoch
+     *            The epoch held by the profile data read last time, or
+     *            <tt>0</tt> to dump all frames
+     * @return The handle to read the profile data, or <tt>0</tt> if dumping
+     *         failed
+     */
+    long prepareBinaryDump(long sinceEpoch);
+
+    /**
+     * Reads the chunk of profile data prepared with
+     * {@link #prepareBinaryDump(long)}. The profile data is discarded once the
+     * last chunk has been read.
+     * 
+     * @param handle
+     *            The handle returned by {@link #prepareBinaryDump(long)}
+     * @param pos
+     *            The offset position in bytes to start reading data
+     * @param maxSize
+     *            The max size in bytes to read data
+     * @return The chunk of profile data in binary format, that is shorter
+     *         than the given max size if it is the last chunk
+     */
+    byte[] readBinaryDump(long handle, int pos, int maxSize);
+
     /**
      * Gets the directory where dump file is created.
      * 
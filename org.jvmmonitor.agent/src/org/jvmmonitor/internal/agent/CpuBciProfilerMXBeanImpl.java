@@ -9,7 +9,9 @@ package org.jvmmonitor.internal.agent;
 import java.io.IOException;
 import java.lang.instrument.Instrumentation;
 import java.lang.instrument.UnmodifiableClassException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -31,7 +33,13 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
     private Set<Class<?>> transformedClasses;
 
     /** The state indicating if transformation has to be interrupted. */
-    private boolean interrupted;
+    private volatile boolean interrupted;
+
+    /** The number of classes that failed to be transformed. */
+    private volatile int failedClassesCount;
+
+    /** The profile data in binary format being read by chunks. */
+    private BinaryDumpBuffers binaryDumps;
 
     /**
      * The constructor.
@@ -47,6 +55,7 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
         classFileTransformer = new ClassFileTransformerImpl(transformedClasses,
                 targetClasses);
         interrupted = false;
+        binaryDumps = new BinaryDumpBuffers();
 
         CpuBciProfiler.initialize();
         if (Config.getInstance().isProfilerEnabled()) {
@@ -63,9 +72,15 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
             @Override
             public void run() {
                 try {
-                    inst.addTransformer(classFileTransformer, true);
+                    // the transformer has been already added if running
+                    boolean added = !Config.getInstance().isProfilerEnabled();
+                    if (added) {
+                        inst.addTransformer(classFileTransformer, true);
+                    }
                     retransformClasses();
-                    inst.removeTransformer(classFileTransformer);
+                    if (added) {
+                        inst.removeTransformer(classFileTransformer);
+                    }
                 } catch (Throwable t) {
                     Agent.logError(t, Messages.CANNOT_TRANSFORM_CLASSES);
                 }
@@ -79,7 +94,7 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
     @Override
     public TransformStatusCompositeData getTransformStatus() {
         return new TransformStatusCompositeData(targetClasses.size(),
-                transformedClasses.size());
+                transformedClasses.size(), failedClassesCount);
     }
 
     /*
@@ -90,6 +105,22 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
         interrupted = true;
     }
 
+    /*
+     * @see CpuBciProfilerMXBean#getTransformBatchSize()
+     */
+    @Override
+    public int getTransformBatchSize() {
+        return Config.getInstance().getTransformBatchSize();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setTransformBatchSize(int)
+     */
+    @Override
+    public void setTransformBatchSize(int size) {
+        Config.getInstance().setTransformBatchSize(size);
+    }
+
     /*
      * @see CpuBciProfilerMXBean#setRunning(boolean)
      */
@@ -146,6 +177,27 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
         }
     }
 
+    /*
+     * @see CpuBciProfilerMXBean#prepareBinaryDump(long)
+     */
+    @Override
+    public long prepareBinaryDump(long sinceEpoch) {
+        try {
+            return binaryDumps.put(CpuBciProfiler.getModel().dumpBinary(sinceEpoch));
+        } catch (Throwable t) {
+            Agent.logError(t, Messages.CANNOT_GET_DUMP);
+            return 0;
+        }
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#readBinaryDump(long, int, int)
+     */
+    @Override
+    public byte[] readBinaryDump(long handle, int pos, int maxSize) {
+        return binaryDumps.read(handle, pos, maxSize);
+    }
+
     /*
      * @see ProfilerMXBean#dumpToFile()
      */
@@ -191,14 +243,15 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
             Config.getInstance().profiledPackages.clear();
             Config.getInstance().addElements(
                     Config.getInstance().profiledPackages, value);
+            Config.getInstance().updatePackageMatchers();
 
             // store target classes
+            PackageMatcher matcher = Config.getInstance()
+                    .getProfiledPackageMatcher();
             targetClasses.clear();
             for (Class<?> clazz : inst.getAllLoadedClasses()) {
                 String className = clazz.getName();
-                if (!className.startsWith("[")
-                        && matches(className,
-                                Config.getInstance().profiledPackages)) {
+                if (!className.startsWith("[") && matcher.matches(className)) {
                     targetClasses.add(clazz);
                 }
             }
@@ -237,6 +290,7 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
      */
     void retransformClasses() {
         interrupted = false;
+        failedClassesCount = 0;
 
         Set<Class<?>> transformedTargetClasses = new HashSet<Class<?>>(
                 transformedClasses);
@@ -245,29 +299,67 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
         transformedClasses.clear();
         transformedClasses.addAll(transformedTargetClasses);
 
-        // transform classes
-        for (Class<?> clazz : classesToTransform) {
+        // transform classes by batches
+        List<Class<?>> classes = new ArrayList<Class<?>>(classesToTransform);
+        int batchSize = Config.getInstance().getTransformBatchSize();
+        for (int i = 0; i < classes.size(); i += batchSize) {
             if (interrupted) {
                 transformedClasses.retainAll(targetClasses);
                 return;
             }
 
-            try {
-                inst.retransformClasses(clazz);
-                Agent.logInfo(Messages.RETRANSFORMED_CLASS, clazz);
-            } catch (UnmodifiableClassException e) {
-                Agent.logError(e, Messages.CANNOT_RETRANSFORM_CLASS);
-            } catch (InternalError e) {
-                // continue to transform the other classes
-            } catch (VerifyError e) {
-                // continue to transform the other classes
-            }
+            retransformClasses(classes.subList(i,
+                    Math.min(i + batchSize, classes.size())));
         }
 
         transformedClasses.clear();
         transformedClasses.addAll(targetClasses);
     }
 
+    /**
+     * Re-transforms the given classes at once. If failed, the classes are
+     * split into halves and re-transformed again, so that only the classes
+     * that cannot be transformed are skipped.
+     * <p>
+     * No class is re-transformed when
+     * {@link Instrumentation#retransformClasses(Class...)} throws exception.
+     * 
+     * @param classes
+     *            The classes to re-transform
+     */
+    private void retransformClasses(List<Class<?>> classes) {
+        try {
+            inst.retransformClasses(classes.toArray(new Class<?>[classes
+                    .size()]));
+            if (classes.size() == 1) {
+                Agent.logInfo(Messages.RETRANSFORMED_CLASS, classes.get(0));
+            } else {
+                Agent.logInfo(Messages.RETRANSFORMED_CLASSES, classes.size());
+            }
+            return;
+        } catch (UnmodifiableClassException e) {
+            if (classes.size() == 1) {
+                Agent.logError(e, Messages.CANNOT_RETRANSFORM_CLASS,
+                        classes.get(0));
+            }
+        } catch (InternalError e) {
+            // continue to transform the other classes
+        } catch (LinkageError e) {
+            // continue to transform the other classes
+        }
+
+        if (classes.size() == 1) {
+            failedClassesCount++;
+            return;
+        }
+
+        int half = classes.size() / 2;
+        retransformClasses(classes.subList(0, half));
+        if (!interrupted) {
+            retransformClasses(classes.subList(half, classes.size()));
+        }
+    }
+
     /**
      * Gets the classes to transform.
      * 
@@ -283,38 +375,4 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
         classes.removeAll(transformedTargetClasses);
         return classes;
     }
-
-    /**
-     * Checks if the given class belongs to one of the packages list.
-     * 
-     * @param className
-     *            the class name (e.g. java.lang.String)
-     * @param packages
-     *            the list of packages
-     * @return true if the given class belongs to one of the packages list
-     */
-    private static boolean matches(String className, Set<String> packages) {
-        if (packages.isEmpty()) {
-            return false;
-        }
-
-        String packageName;
-        if (className.contains(".")) {
-            packageName = className.substring(0, className.lastIndexOf('.'));
-        } else {
-            packageName = Constants.DEFAULT_PACKAGE;
-        }
-        for (String pkg : packages) {
-            if (pkg.endsWith("*")) {
-                if (packageName.startsWith(pkg.substring(0, pkg.length() - 2))) {
-                    return true;
-                }
-            } else {
-                if (packageName.equals(pkg)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
 }
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import javax.management.MXBean;
+
+/**
+ * The MXBean to control CPU sampling profiler, that samples stack traces in
+ * target JVM on its own thread and aggregates them into call trees, so that
+ * the sampling period is not bounded by the latency of remote invocation.
+ * <p>
+ * The running profiler holds a lease renewed whenever a client starts it,
+ * queries its running state or prepares the binary dump. The profiler stops by
+ * itself once the lease expires, so that it doesn't keep sampling after the
+ * client has gone away without suspending it.
+ */
+@SuppressWarnings("nls")
+@MXBean
+public interface CpuSamplingProfilerMXBean {
+
+    /** The MXBean name. */
+    final static String SAMPLING_PROFILER_MXBEAN_NAME = "org.jvmmonitor:type=CPU Sampling Profiler";
+
+    /**
+     * Sets the state indicating if profiler is running.
+     * 
+     * @param run
+     *            True to run profiler
+     */
+    void setRunning(boolean run);
+
+    /**
+     * Gets the state indicating if profiler is running.
+     * 
+     * @return <tt>true</tt> if profiler is running
+     */
+    boolean isRunning();
+
+    /**
+     * Gets the sampling period.
+     * 
+     * @return The sampling period in milliseconds
+     */
+    int getSamplingPeriod();
+
+    /**
+     * Sets the sampling period.
+     * 
+     * @param period
+     *            The sampling period in milliseconds
+     */
+    void setSamplingPeriod(int period);
+
+    /**
+     * Gets the max depth of sampled stack traces.
+     * 
+     * @return The max depth of sampled stack traces, or <tt>0</tt> for
+     *         unlimited depth
+     */
+    int getMaxSamplingDepth();
+
+    /**
+     * Sets the max depth of sampled stack traces. Only the given number of
+     * frames from the top of stack are sampled, and the truncated stack
+     * traces are rooted at the <tt>(truncated)</tt> frame.
+     * 
+     * @param depth
+     *            The max depth of sampled stack traces, or <tt>0</tt> for
+     *            unlimited depth
+     */
+    void setMaxSamplingDepth(int depth);
+
+    /**
+     * Gets the profiled packages.
+     * 
+     * @return The profiled packages
+     */
+    String[] getProfiledPackages();
+
+    /**
+     * Sets the profiled packages.
+     * 
+     * @param packages
+     *            The profiled packages (e.g. <tt>java.lang</tt> or
+     *            <tt>java.*</tt>)
+     */
+    void setProfiledPackages(String[] packages);
+
+    /**
+     * Clears the profile data.
+     */
+    void clear();
+
+    /**
+     * Dumps the profile data in compact binary format, and keeps it until
+     * being read with {@link #readBinaryDump(long, int, int)}.
+     * 
+     * @param sinceEpoch
+     *            The epoch held by the profile data read last time, or
+     *            <tt>0</tt> to dump all frames
+     * @return The handle to read the profile data, or <tt>0</tt> if dumping
+     *         failed
+     * @see CpuBciProfilerMXBean#prepareBinaryDump(long)
+     */
+    long prepareBinaryDump(long sinceEpoch);
+
+    /**
+     * Reads the chunk of profile data prepared with
+     * {@link #prepareBinaryDump(long)}. The profile data is discarded once the
+     * last chunk has been read.
+     * 
+     * @param handle
+     *            The handle returned by {@link #prepareBinaryDump(long)}
+     * @param pos
+     *            The offset position in bytes to start reading data
+     * @param maxSize
+     *            The max size in bytes to read data
+     * @return The chunk of profile data in binary format, that is shorter
+     *         than the given max size if it is the last chunk
+     */
+    byte[] readBinaryDump(long handle, int pos, int maxSize);
+}
@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The sampling profiler controller, that samples the stack traces on a daemon
+ * thread and aggregates them into {@link SamplingModel}.
+ */
+@SuppressWarnings("nls")
+public class CpuSamplingProfilerMXBeanImpl implements
+        CpuSamplingProfilerMXBean, Runnable {
+
+    /** The sampling model. */
+    private SamplingModel model;
+
+    /** The thread MXBean. */
+    private ThreadMXBean threadMXBean;
+
+    /** The sampler thread, or <tt>null</tt> if not running. */
+    private volatile Thread samplerThread;
+
+    /** The time in milliseconds when a client renewed the lease at last. */
+    private volatile long leaseRenewedTime;
+
+    /** The sampling period in milliseconds. */
+    private volatile int samplingPeriod;
+
+    /** The max depth of sampled stack traces. */
+    private volatile int maxSamplingDepth;
+
+    /** The profiled packages. */
+    private volatile String[] profiledPackages;
+
+    /** The matcher compiled from profiled packages. */
+    private volatile PackageMatcher profiledPackageMatcher;
+
+    /** The IDs of threads to be sampled. */
+    private volatile long[] sampledThreadIds;
+
+    /** The number of sampling ticks since refreshing sampled thread IDs. */
+    private int samplingTicks;
+
+    /** The profile data in binary format being read by chunks. */
+    private BinaryDumpBuffers binaryDumps;
+
+    /**
+     * The constructor.
+     */
+    public CpuSamplingProfilerMXBeanImpl() {
+        model = new SamplingModel();
+        binaryDumps = new BinaryDumpBuffers();
+        threadMXBean = ManagementFactory.getThreadMXBean();
+        samplingPeriod = Constants.DEFAULT_SAMPLING_PERIOD;
+        maxSamplingDepth = Integer.MAX_VALUE;
+        setProfiledPackages(new String[0]);
+    }
+
+    /*
+     * @see CpuSamplingProfilerMXBean#setRunning(boolean)
+     */
+    @Override
+    synchronized public void setRunning(boolean run) {
+        if (run) {
+            leaseRenewedTime = System.currentTimeMillis();
+        }
+        if (run && samplerThread == null) {
+            sampledThreadIds = null;
+            samplerThread = new Thread(this, Constants.SAMPLER_THREAD_NAME);
+            samplerThread.setDaemon(true);
+            samplerThread.start();
+        } else if (!run && samplerThread != null) {
+            samplerThread.interrupt();
+            samplerThread = null;
+        }
+    }
+
+    /*
+     * @see CpuSamplingProfilerMXBean#isRunning()
+     */
+    @Override
+    public boolean isRunning() {
+        leaseRenewedTime = System.currentTimeMillis();
+        return samplerThread != null;
+    }
+
+    /*
+     * @see CpuSamplingProfilerMXBean#getSamplingPeriod()
+     */
+    @Override
+    public int getSamplingPeriod() {
+        return samplingPeriod;
+    }
+
+    /*
+     * @see CpuSamplingProfilerMXBean#setSamplingPeriod(int)
+     */
+    @Override
+    public void setSamplingPeriod(int period) {
+        samplingPeriod = Math.max(1, period);
+    }
+
+    /*
+     * @see CpuSamplingProfilerMXBean#getMaxSamplingDepth()
+     */
+    @Override
+    public int getMaxSamplingDepth() {
+        return maxSamplingDepth == Integer.MAX_VALUE ? 0 : maxSamplingDepth;
+    }
+
+    /*
+     * @see CpuSamplingProfilerMXBean#setMaxSamplingDepth(int)
+     */
+    @Override
+    public void setMaxSamplingDepth(int depth) {
+        maxSamplingDepth = depth <= 0 ? Integer.MAX_VALUE : depth;
+    }
+
+    /*
+     * @see CpuSamplingProfilerMXBean#getProfiledPackages()
+     */
+    @Override
+    public String[] getProfiledPackages() {
+        return profiledPackages.clone();
+    }
+
+    /*
+     * @see CpuSamplingProfilerMXBean#setProfiledPackages(String[])
+     */
+    @Override
+    public void setProfiledPackages(String[] packages) {
+        Set<String> packageSet = new LinkedHashSet<String>();
+        for (String item : packages) {
+            if (item != null && !item.trim().isEmpty()) {
+                packageSet.add(item.trim());
+            }
+        }
+        profiledPackageMatcher = new PackageMatcher(packageSet);
+        profiledPackages = packageSet.toArray(new String[packageSet.size()]);
+    }
+
+    /*
+     * @see CpuSamplingProfilerMXBean#clear()
+     */
+    @Override
+    public void clear() {
+        try {
+            model.clear();
+        } catch (Throwable t) {
+            Agent.logError(t, Messages.CANNOT_CLEAR);
+        }
+    }
+
+    /*
+     * @see CpuSamplingProfilerMXBean#prepareBinaryDump(long)
+     */
+    @Override
+    public long prepareBinaryDump(long sinceEpoch) {
+        leaseRenewedTime = System.currentTimeMillis();
+        try {
+            return binaryDumps.put(model.dumpBinary(sinceEpoch));
+        } catch (Throwable t) {
+            Agent.logError(t, Messages.CANNOT_GET_DUMP);
+            return 0;
+        }
+    }
+
+    /*
+     * @see CpuSamplingProfilerMXBean#readBinaryDump(long, int, int)
+     */
+    @Override
+    public byte[] readBinaryDump(long handle, int pos, int maxSize) {
+        return binaryDumps.read(handle, pos, maxSize);
+    }
+
+    /*
+     * @see Runnable#run()
+     */
+    @Override
+    public void run() {
+        Thread thread = Thread.currentThread();
+        long previousTime = System.nanoTime();
+        while (samplerThread == thread) {
+            try {
+                Thread.sleep(samplingPeriod);
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            long elapsedSinceRenewed = System.currentTimeMillis()
+                    - leaseRenewedTime;
+            if (elapsedSinceRenewed > Constants.SAMPLING_LEASE_TIMEOUT) {
+                Agent.logInfo(Messages.SAMPLING_LEASE_EXPIRED,
+                        Constants.SAMPLING_LEASE_TIMEOUT);
+                synchronized (this) {
+                    if (samplerThread == thread) {
+                        samplerThread = null;
+                    }
+                }
+                break;
+            }
+
+            long time = System.nanoTime();
+            try {
+                sample(time - previousTime);
+            } catch (Throwable t) {
+                Agent.logError(t, Messages.CANNOT_SAMPLE);
+                synchronized (this) {
+                    if (samplerThread == thread) {
+                        samplerThread = null;
+                    }
+                }
+            }
+            previousTime = time;
+        }
+    }
+
+    /**
+     * Samples the stack traces of the sampled threads.
+     * 
+     * @param elapsedTime
+     *            The elapsed time in nanoseconds since the previous sample
+     */
+    private void sample(long elapsedTime) {
+        long[] threadIds = sampledThreadIds;
+        if (threadIds == null
+                || samplingTicks++ >= Constants.SAMPLED_THREADS_REFRESH_TICKS) {
+            threadIds = refreshSampledThreadIds();
+        }
+
+        int maxDepth = maxSamplingDepth;
+        ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(threadIds,
+                maxDepth);
+        for (int i = 0; i < threadInfos.length; i++) {
+            if (threadInfos[i] == null) {
+                // the thread has terminated
+                sampledThreadIds = null;
+            } else if (isIdleThread(threadInfos[i])) {
+                threadInfos[i] = null;
+            }
+        }
+        model.sample(threadInfos, maxDepth, elapsedTime,
+                profiledPackageMatcher);
+    }
+
+    /**
+     * Refreshes the IDs of threads to be sampled. The sampler thread, the
+     * infrastructure threads for JMX and RMI and the threads without java
+     * frames are excluded. The idle threads are skipped on each tick instead,
+     * so that they are sampled as soon as they get busy.
+     * 
+     * @return The IDs of threads to be sampled
+     */
+    private long[] refreshSampledThreadIds() {
+        long samplerThreadId = Thread.currentThread().getId();
+        long[] ids = threadMXBean.getAllThreadIds();
+        ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(ids, 1);
+        int size = 0;
+        for (int i = 0; i < ids.length; i++) {
+            ThreadInfo threadInfo = threadInfos[i];
+            if (ids[i] == samplerThreadId || threadInfo == null
+                    || threadInfo.getStackTrace().length == 0) {
+                continue;
+            }
+            String threadName = threadInfo.getThreadName();
+            if (!threadName.startsWith("JMX ")
+                    && !threadName.startsWith("RMI ")) {
+                ids[size++] = ids[i];
+            }
+        }
+        long[] threadIds = Arrays.copyOf(ids, size);
+        sampledThreadIds = threadIds;
+        samplingTicks = 0;
+        return threadIds;
+    }
+
+    /**
+     * Gets the state indicating if the given thread is idle, that is waiting
+     * or parked in the frame known to wait for I/O while being runnable.
+     * 
+     * @param threadInfo
+     *            The thread info
+     * @return <tt>true</tt> if the given thread is idle
+     */
+    private static boolean isIdleThread(ThreadInfo threadInfo) {
+        Thread.State state = threadInfo.getThreadState();
+        if (state == Thread.State.WAITING
+                || state == Thread.State.TIMED_WAITING) {
+            return true;
+        }
+
+        StackTraceElement[] stackTrace = threadInfo.getStackTrace();
+        if (stackTrace.length == 0) {
+            return false;
+        }
+        StackTraceElement frame = stackTrace[0];
+        String frameName = frame.getClassName() + '.' + frame.getMethodName();
+        for (String idleFrame : Constants.IDLE_FRAMES) {
+            if (idleFrame.equals(frameName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -25,6 +25,79 @@ public interface DataTransferMXBean {
      */
     byte[] read(String fileName, int pos, int maxSize);
 
+    /**
+     * Opens the session to transfer the file on host where target JVM is
+     * running. The file is kept open until the session is closed or has been
+     * idle for a while.
+     * 
+     * @param fileName
+     *            The file name
+     * @return The session ID, or <tt>-1</tt> if the file cannot be read
+     */
+    long openSession(String fileName);
+
+    /**
+     * Opens the session to transfer the file compressed in gzip format. The
+     * file is compressed on background into a temporary file next to it,
+     * whose progress is given by {@link #getSessionProgress(long)}. The
+     * compressed file is reused by the sessions opened for the same file
+     * until the file is modified, and is deleted when no session has used it
+     * for a while.
+     * 
+     * @param fileName
+     *            The file name
+     * @return The session ID, or <tt>-1</tt> if the file cannot be read
+     */
+    long openCompressedSession(String fileName);
+
+    /**
+     * Gets the progress of preparing the file transferred in the given
+     * session, e.g. compressing the file in gzip format.
+     * 
+     * @param sessionId
+     *            The session ID
+     * @return The progress in percent, <tt>100</tt> if the file is ready to
+     *         be read, or <tt>-1</tt> if the session is not found or
+     *         preparing the file fails
+     */
+    int getSessionProgress(long sessionId);
+
+    /**
+     * Gets the size of file transferred in the given session.
+     * 
+     * @param sessionId
+     *            The session ID
+     * @return The file size in bytes, or <tt>-1</tt> if the session is not
+     *         found or the file is not ready
+     */
+    long getSessionFileSize(long sessionId);
+
+    /**
+     * Reads the chunk of file in the given session. The chunks can be
+     * requested concurrently and in any order.
+     * 
+     * @param sessionId
+     *            The session ID
+     * @param position
+     *            The position in bytes to start reading
+     * @param maxSize
+     *            The max size in bytes to read, that is limited to 8MB
+     * @param compressed
+     *            <tt>true</tt> to compress the chunk with deflate
+     * @return The chunk that is empty at the end of file, or <tt>null</tt>
+     *         if the session is not found or reading file fails
+     */
+    byte[] readChunk(long sessionId, long position, int maxSize,
+            boolean compressed);
+
+    /**
+     * Closes the session.
+     * 
+     * @param sessionId
+     *            The session ID
+     */
+    void closeSession(long sessionId);
+
     /**
      * Gets the version.
      * 
@@ -3,14 +3,46 @@ package org.jvmmonitor.internal.agent;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * The MXBean to transfer data.
+ * The MXBean to transfer data. The idle sessions and the compressed files
+ * unused for a while are closed periodically on a daemon timer thread that
+ * runs only while any of them remains.
  */
 @SuppressWarnings("nls")
 public class DataTransferMXBeanImpl implements DataTransferMXBean {
 
+    /** The sessions keyed by session ID. */
+    private Map<Long, DataTransferSession> sessions;
+
+    /** The ID of the next session. */
+    private AtomicLong nextSessionId;
+
+    /** The compressed files that can be reused by sessions. */
+    private List<CompressedFile> compressedFiles;
+
+    /** The timer to close idle sessions, or <tt>null</tt> if no session. */
+    private Timer timer;
+
+    /**
+     * The constructor.
+     */
+    public DataTransferMXBeanImpl() {
+        sessions = new ConcurrentHashMap<Long, DataTransferSession>();
+        nextSessionId = new AtomicLong();
+        compressedFiles = new ArrayList<CompressedFile>();
+    }
+
     /*
      * @see DataTransferMXBean#read(String, int, int)
      */
@@ -50,6 +82,72 @@ public class DataTransferMXBeanImpl implements DataTransferMXBean {
         return results;
     }
 
+    /*
+     * @see DataTransferMXBean#openSession(String)
+     */
+    @Override
+    public long openSession(String fileName) {
+        return openSession(fileName, false);
+    }
+
+    /*
+     * @see DataTransferMXBean#openCompressedSession(String)
+     */
+    @Override
+    public long openCompressedSession(String fileName) {
+        return openSession(fileName, true);
+    }
+
+    /*
+     * @see DataTransferMXBean#getSessionProgress(long)
+     */
+    @Override
+    public int getSessionProgress(long sessionId) {
+        DataTransferSession session = sessions.get(sessionId);
+        return session == null ? -1 : session.getProgress();
+    }
+
+    /*
+     * @see DataTransferMXBean#getSessionFileSize(long)
+     */
+    @Override
+    public long getSessionFileSize(long sessionId) {
+        DataTransferSession session = sessions.get(sessionId);
+        return session == null ? -1 : session.getSize();
+    }
+
+    /*
+     * @see DataTransferMXBean#readChunk(long, long, int, boolean)
+     */
+    @Override
+    public byte[] readChunk(long sessionId, long position, int maxSize,
+            boolean compressed) {
+        DataTransferSession session = sessions.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+
+        try {
+            return session.read(position,
+                    Math.min(maxSize, Constants.MAX_TRANSFER_CHUNK_SIZE),
+                    compressed);
+        } catch (IOException e) {
+            Agent.logError(e, Messages.CANNOT_READ_FILE, sessionId);
+            return null;
+        }
+    }
+
+    /*
+     * @see DataTransferMXBean#closeSession(long)
+     */
+    @Override
+    public void closeSession(long sessionId) {
+        DataTransferSession session = sessions.remove(sessionId);
+        if (session != null) {
+            session.close();
+        }
+    }
+
     /*
      * @see DataTransferMXBean#getVersion()
      */
@@ -57,4 +155,140 @@ public class DataTransferMXBeanImpl implements DataTransferMXBean {
     public String getVersion() {
         return Constants.VERSION;
     }
+
+    /**
+     * Opens the session.
+     * 
+     * @param fileName
+     *            The file name
+     * @param compressed
+     *            <tt>true</tt> to transfer the file compressed in gzip format
+     * @return The session ID, or <tt>-1</tt> if opening session fails
+     */
+    private long openSession(String fileName, boolean compressed) {
+        closeIdleSessions();
+
+        File file = new File(fileName);
+        if (!file.exists() || !file.isFile() || !file.canRead()) {
+            Agent.logError(new Exception(), Messages.CANNOT_READ_FILE, fileName);
+            return -1;
+        }
+
+        try {
+            DataTransferSession session = compressed ? new DataTransferSession(
+                    getCompressedFile(file)) : new DataTransferSession(file);
+            long sessionId = nextSessionId.getAndIncrement();
+            sessions.put(sessionId, session);
+            startTimer();
+            return sessionId;
+        } catch (IOException e) {
+            Agent.logError(e, Messages.CANNOT_READ_FILE, fileName);
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the compressed file for the given file, reusing the one that has
+     * been compressed or is being compressed if the file is not modified
+     * since then. The compressed file is retained for a session.
+     * 
+     * @param file
+     *            The file
+     * @return The compressed file
+     * @throws IOException
+     *             if creating the compressed file fails
+     */
+    private CompressedFile getCompressedFile(File file) throws IOException {
+        File canonicalFile = file.getCanonicalFile();
+        synchronized (compressedFiles) {
+            for (CompressedFile compressedFile : compressedFiles) {
+                if (compressedFile.getSource().equals(canonicalFile)
+                        && compressedFile.isReusable()) {
+                    compressedFile.retain();
+                    return compressedFile;
+                }
+            }
+
+            CompressedFile compressedFile = new CompressedFile(canonicalFile);
+            compressedFile.retain();
+            compressedFiles.add(compressedFile);
+            Thread thread = new Thread(compressedFile,
+                    Constants.COMPRESSOR_THREAD_NAME);
+            thread.setDaemon(true);
+            thread.start();
+            return compressedFile;
+        }
+    }
+
+    /**
+     * Starts the timer to close idle sessions if not yet started.
+     */
+    synchronized private void startTimer() {
+        if (timer != null) {
+            return;
+        }
+
+        timer = new Timer(Constants.TRANSFER_THREAD_NAME, true);
+        long period = Constants.TRANSFER_SESSION_TIMEOUT / 10;
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                closeIdleSessions();
+                discardUnusedCompressedFiles();
+                stopTimerIfNoSession();
+            }
+        }, period, period);
+    }
+
+    /**
+     * Stops the timer if no session is open and no compressed file remains.
+     */
+    synchronized private void stopTimerIfNoSession() {
+        boolean hasCompressedFiles;
+        synchronized (compressedFiles) {
+            hasCompressedFiles = !compressedFiles.isEmpty();
+        }
+        if (timer != null && sessions.isEmpty() && !hasCompressedFiles) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    /**
+     * Closes the sessions that have been idle longer than
+     * {@link Constants#TRANSFER_SESSION_TIMEOUT}, e.g. because the client
+     * has been disconnected.
+     */
+    private void closeIdleSessions() {
+        long time = System.currentTimeMillis();
+        Iterator<Entry<Long, DataTransferSession>> iterator = sessions
+                .entrySet().iterator();
+        while (iterator.hasNext()) {
+            DataTransferSession session = iterator.next().getValue();
+            if (time - session.getLastAccessTime() > Constants.TRANSFER_SESSION_TIMEOUT) {
+                iterator.remove();
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Discards the compressed files that no session has used for
+     * {@link Constants#TRANSFER_SESSION_TIMEOUT}, or that cannot be reused
+     * and no session uses, deleting the temporary files.
+     */
+    private void discardUnusedCompressedFiles() {
+        synchronized (compressedFiles) {
+            Iterator<CompressedFile> iterator = compressedFiles.iterator();
+            while (iterator.hasNext()) {
+                CompressedFile compressedFile = iterator.next();
+                long timeout = compressedFile.isReusable() ? Constants.TRANSFER_SESSION_TIMEOUT
+                        : 0;
+                if (compressedFile.isUnusedFor(timeout)) {
+                    iterator.remove();
+                    compressedFile.discard();
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.Deflater;
+
+/**
+ * The session to transfer a file, that keeps the file channel open across
+ * requests. The chunks are read at the given positions, so that several
+ * requests can be served concurrently and a chunk can be requested again
+ * after the transfer has been interrupted.
+ * <p>
+ * The session transferring the compressed file opens the file once it has
+ * been compressed on background.
+ */
+@SuppressWarnings("nls")
+public class DataTransferSession {
+
+    /** The file. */
+    private File file;
+
+    /** The compressed file, or <tt>null</tt> if not compressed. */
+    private CompressedFile compressedFile;
+
+    /** The file channel, or <tt>null</tt> if not yet opened. */
+    private FileChannel channel;
+
+    /** The file size. */
+    private long size;
+
+    /** The last access time in milliseconds. */
+    private volatile long lastAccessTime;
+
+    /** The deflaters that are not in use. */
+    private ConcurrentLinkedQueue<Deflater> deflaters;
+
+    /** The state indicating if the session has been closed. */
+    private volatile boolean closed;
+
+    /**
+     * The constructor.
+     * 
+     * @param file
+     *            The file
+     * @throws IOException
+     *             if opening file fails
+     */
+    protected DataTransferSession(File file) throws IOException {
+        this.file = file;
+        deflaters = new ConcurrentLinkedQueue<Deflater>();
+        lastAccessTime = System.currentTimeMillis();
+        openChannel();
+    }
+
+    /**
+     * The constructor for the session to transfer the compressed file. The
+     * given compressed file has to be retained for the session, and is
+     * released when the session is closed.
+     * 
+     * @param compressedFile
+     *            The compressed file
+     */
+    protected DataTransferSession(CompressedFile compressedFile) {
+        this.compressedFile = compressedFile;
+        file = compressedFile.getFile();
+        deflaters = new ConcurrentLinkedQueue<Deflater>();
+        lastAccessTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the progress of preparing the file.
+     * 
+     * @return The progress in percent, <tt>100</tt> if the file is ready, or
+     *         <tt>-1</tt> if preparing the file fails
+     */
+    protected int getProgress() {
+        lastAccessTime = System.currentTimeMillis();
+        if (compressedFile == null) {
+            return 100;
+        }
+        return compressedFile.getProgress();
+    }
+
+    /**
+     * Gets the file size.
+     * 
+     * @return The file size in bytes, or <tt>-1</tt> if the file is not ready
+     */
+    protected long getSize() {
+        try {
+            getChannel();
+            return size;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the last access time.
+     * 
+     * @return The last access time in milliseconds
+     */
+    protected long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    /**
+     * Reads the chunk.
+     * 
+     * @param position
+     *            The position in file
+     * @param maxSize
+     *            The max size in bytes of chunk
+     * @param compressed
+     *            <tt>true</tt> to compress the chunk with deflate
+     * @return The chunk, that is empty at the end of file
+     * @throws IOException
+     *             if reading file fails
+     */
+    protected byte[] read(long position, int maxSize, boolean compressed)
+            throws IOException {
+        lastAccessTime = System.currentTimeMillis();
+
+        FileChannel fileChannel = getChannel();
+        int length = (int) Math.max(0, Math.min(maxSize, size - position));
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            int readSize = fileChannel.read(buffer, position + buffer.position());
+            if (readSize == -1) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+
+        if (!compressed || length == 0) {
+            return bytes;
+        }
+        return compress(bytes);
+    }
+
+    /**
+     * Closes the session.
+     */
+    synchronized protected void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // do nothing
+            }
+        }
+
+        /*
+         * The pooled deflaters are not ended, since a deflater being used by
+         * concurrent read may be returned to pool after closing session. They
+         * are released when garbage collected.
+         */
+        deflaters.clear();
+        if (compressedFile != null) {
+            compressedFile.release();
+        }
+    }
+
+    /**
+     * Gets the file channel, opening it once the file is ready.
+     * 
+     * @return The file channel
+     * @throws IOException
+     *             if the session is closed, or the file is not ready or
+     *             cannot be opened
+     */
+    synchronized private FileChannel getChannel() throws IOException {
+        if (closed) {
+            throw new IOException("session is closed: " + file.getPath());
+        }
+        if (channel == null) {
+            if (compressedFile.getProgress() != 100) {
+                throw new IOException("file is not ready: " + file.getPath());
+            }
+            openChannel();
+        }
+        return channel;
+    }
+
+    /**
+     * Opens the file channel.
+     * 
+     * @throws IOException
+     *             if opening file fails
+     */
+    private void openChannel() throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        size = channel.size();
+    }
+
+    /**
+     * Compresses the bytes.
+     * 
+     * @param bytes
+     *            The bytes
+     * @return The compressed bytes
+     */
+    private byte[] compress(byte[] bytes) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+        }
+
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(
+                    bytes.length / 2 + 64);
+            byte[] buffer = new byte[65536];
+            while (!deflater.finished()) {
+                int size = deflater.deflate(buffer);
+                outputStream.write(buffer, 0, size);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            deflater.reset();
+            if (!closed) {
+                deflaters.offer(deflater);
+            }
+        }
+    }
+}
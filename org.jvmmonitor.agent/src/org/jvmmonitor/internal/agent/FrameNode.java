@@ -7,10 +7,9 @@
 package org.jvmmonitor.internal.agent;
 
 import java.io.PrintWriter;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import org.jvmmonitor.internal.agent.asm.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The frame node of runtime model.
@@ -18,65 +17,77 @@ import org.jvmmonitor.internal.agent.asm.Type;
 @SuppressWarnings("nls")
 public class FrameNode {
 
-    /** The class name. */
-    private String className;
-
-    /** The method name. */
-    private String methodName;
+    /** The method ID. */
+    private final int methodId;
 
     /** The child frame nodes. */
-    private Map<String, FrameNode> childFrames;
+    private FrameNodeTable childFrames;
 
     /** The parent frame node. */
     private FrameNode parentFrame;
 
-    /** The time stepped into this frame. */
+    /** The time in nanoseconds stepped into this frame. */
     private long stepIntoTime;
 
-    /** The total invocation time. */
-    private long totalTime;
+    /** The state indicating if this frame is being invoked. */
+    private boolean inFrame;
 
-    /** The overhead time. */
-    private long overheadTime;
+    /** The total invocation time in nanoseconds. */
+    private long totalTime;
 
     /** The invocation count. */
     private int count;
 
+    /** The epoch of runtime model when the count or time was last modified. */
+    private long modifiedEpoch;
+
+    /**
+     * The invocation count of this frame and all descendant frames, that is
+     * computed when dumping.
+     */
+    private long subtreeCount;
+
+    /** The epoch of runtime model when the subtree count was computed. */
+    private long countedEpoch;
+
     /**
      * The constructor.
      * 
      * @param parent
      *            The parent frame node
-     * @param clazz
-     *            The class name
-     * @param method
-     *            The method name
+     * @param methodId
+     *            The method ID
      */
-    protected FrameNode(FrameNode parent, String clazz, String method) {
+    protected FrameNode(FrameNode parent, int methodId) {
         parentFrame = parent;
-        className = clazz;
-        methodName = method;
-        childFrames = new ConcurrentHashMap<String, FrameNode>();
+        this.methodId = methodId;
+        childFrames = new FrameNodeTable();
         stepIntoTime = 0;
+        inFrame = false;
         totalTime = 0;
-        overheadTime = 0;
         count = 0;
     }
 
     /**
-     * Gets the child frame for the given class name and method name.
+     * Gets the method ID.
+     * 
+     * @return The method ID
+     */
+    protected int getMethodId() {
+        return methodId;
+    }
+
+    /**
+     * Gets the child frame for the given method ID.
      * 
-     * @param clazz
-     *            The class name
-     * @param method
-     *            The method name
+     * @param id
+     *            The method ID
      * @return The child frame
      */
-    protected FrameNode getChild(String clazz, String method) {
-        FrameNode frame = childFrames.get(clazz + '.' + method);
+    protected FrameNode getChild(int id) {
+        FrameNode frame = childFrames.get(id);
         if (frame == null) {
-            frame = new FrameNode(this, clazz, method);
-            childFrames.put(clazz + '.' + method, frame);
+            frame = childFrames.add(new FrameNode(this, id));
         }
         return frame;
     }
@@ -85,38 +96,69 @@ public class FrameNode {
      * Sets the step into time.
      * 
      * @param time
-     *            The time stepping into this frame
-     * @param overhead
-     *            The overhead time
+     *            The time in nanoseconds stepping into this frame
+     * @param epoch
+     *            The current epoch of runtime model
      */
-    protected void setStepIntoTime(long time, long overhead) {
+    protected void setStepIntoTime(long time, long epoch) {
         stepIntoTime = time;
-        overheadTime += overhead;
+        inFrame = true;
         count++;
+        modifiedEpoch = epoch;
     }
 
     /**
      * Sets the step return time.
      * 
      * @param time
-     *            The time stepping return from this frame
-     * @param overhead
-     *            The overhead time
+     *            The time in nanoseconds stepping return from this frame
+     * @param epoch
+     *            The current epoch of runtime model
      */
-    protected void setStepReturnTime(long time, long overhead) {
+    protected void setStepReturnTime(long time, long epoch) {
         totalTime += time - stepIntoTime;
-        overheadTime += overhead;
-        stepIntoTime = 0;
+        inFrame = false;
+        modifiedEpoch = epoch;
+    }
+
+    /**
+     * Gets the state indicating if the count or time of this frame has been
+     * modified since the given epoch. The frame being invoked is always
+     * regarded as modified since its total time keeps increasing.
+     * <p>
+     * If a descendant frame has been modified, this frame has been also
+     * modified or is being invoked, so that unmodified subtree can be skipped.
+     * 
+     * @param epoch
+     *            The epoch of runtime model
+     * @return <tt>true</tt> if modified since the given epoch
+     */
+    protected boolean isModifiedSince(long epoch) {
+        return inFrame || modifiedEpoch >= epoch;
     }
 
     /**
-     * Increments the overhead.
+     * Updates the invocation count of this frame and all descendant frames,
+     * which is used to compensate the overhead of probes when dumping. The
+     * count computed previously is reused for the subtree that has not been
+     * modified since then.
      * 
-     * @param overhead
-     *            The overhead time
+     * @param epoch
+     *            The current epoch of runtime model
+     * @return The invocation count of this frame and all descendant frames
      */
-    protected void incrementOverhead(long overhead) {
-        overheadTime += overhead;
+    protected long updateSubtreeCount(long epoch) {
+        if (!inFrame && modifiedEpoch < countedEpoch) {
+            return subtreeCount;
+        }
+
+        long sum = count;
+        for (FrameNode frameNode : childFrames.values()) {
+            sum += frameNode.updateSubtreeCount(epoch);
+        }
+        subtreeCount = sum;
+        countedEpoch = epoch;
+        return sum;
     }
 
     /**
@@ -131,15 +173,13 @@ public class FrameNode {
     /**
      * Searches the frame.
      * 
-     * @param clazz
-     *            The class name
-     * @param method
-     *            The method name
+     * @param id
+     *            The method ID
      * @return The frame
      */
-    protected FrameNode searchFrame(String clazz, String method) {
+    protected FrameNode searchFrame(int id) {
 
-        if (className.equals(clazz) && methodName.equals(method)) {
+        if (methodId == id) {
             return this;
         }
 
@@ -147,7 +187,7 @@ public class FrameNode {
             return this;
         }
 
-        return parentFrame.searchFrame(clazz, method);
+        return parentFrame.searchFrame(id);
     }
 
     /**
@@ -156,22 +196,20 @@ public class FrameNode {
      * @param writer
      *            The writer
      * @param time
-     *            The time
+     *            The current time in nanoseconds
      * @param nest
      *            The nest
      */
     protected void dump(PrintWriter writer, long time, int nest) {
         String name = getFrameName();
-        long actualTotalTime = totalTime - overheadTime;
-        if (stepIntoTime != 0) {
-            actualTotalTime += time - stepIntoTime;
-        }
+        long actualTotalTime = TimeUnit.MICROSECONDS
+                .toMillis(getActualTotalTime(time));
 
         for (int i = 0; i < nest; i++) {
             writer.print("\t");
         }
         writer.printf("<frame name=\"%s\" cnt=\"%d\" time=\"%d\"", name, count,
-                Math.max(actualTotalTime, 0));
+                actualTotalTime);
         if (childFrames.size() > 0) {
             writer.println(">");
             for (FrameNode frameNode : childFrames.values()) {
@@ -192,23 +230,21 @@ public class FrameNode {
      * @param buffer
      *            The string buffer
      * @param time
-     *            The time
+     *            The current time in nanoseconds
      * @param nest
      *            The nest count
      */
     protected void dump(StringBuffer buffer, long time, int nest) {
         String name = getFrameName();
-        long actualTotalTime = totalTime - overheadTime;
-        if (stepIntoTime != 0) {
-            actualTotalTime += time - stepIntoTime;
-        }
+        long actualTotalTime = TimeUnit.MICROSECONDS
+                .toMillis(getActualTotalTime(time));
 
         for (int i = 0; i < nest; i++) {
             buffer.append('\t');
         }
         buffer.append("<frame name=\"").append(name).append("\" cnt=\"")
                 .append(count).append("\" time=\"")
-                .append(Math.max(actualTotalTime, 0)).append("\"");
+                .append(actualTotalTime).append("\"");
         if (childFrames.size() > 0) {
             buffer.append(">\n");
             for (FrameNode frameNode : childFrames.values()) {
@@ -224,33 +260,60 @@ public class FrameNode {
     }
 
     /**
-     * Gets the frame name.
+     * Gets the total time in microseconds excluding the overhead of probes
+     * invoked in descendant frames.
+     * 
+     * @param time
+     *            The current time in nanoseconds
+     * @return The total time in microseconds
+     */
+    private long getActualTotalTime(long time) {
+        long actualTotalTime = totalTime;
+        if (inFrame) {
+            actualTotalTime += time - stepIntoTime;
+        }
+        actualTotalTime -= (subtreeCount - count)
+                * CpuBciProfiler.getProbeOverhead();
+
+        return TimeUnit.NANOSECONDS.toMicros(Math.max(actualTotalTime, 0));
+    }
+
+    /**
+     * Gets the frame name with escaped characters for XML.
      * 
      * @return The frame name
      */
     private String getFrameName() {
+        String name = MethodRegistry.getFrameName(methodId);
 
-        // replace '/' with '.'
-        String clazz = className.replace('/', '.');
-
-        // convert the parameter descriptor into java type
-        StringBuilder builder = new StringBuilder();
-        builder.append(methodName.substring(0, methodName.indexOf('(') + 1));
-        Type[] types = Type.getArgumentTypes(methodName.substring(methodName
-                .indexOf('(')));
-        for (int i = 0; i < types.length; i++) {
-            if (i > 0) {
-                builder.append(", ");
+        // convert into escaped characters
+        return name.replaceAll("<", "&lt;").replaceAll(">", "&gt;");
+    }
+
+    /**
+     * Dumps the profile data in binary format. Only this frame and the
+     * descendant frames modified since the given epoch are dumped.
+     * 
+     * @param writer
+     *            The binary dump writer
+     * @param time
+     *            The current time in nanoseconds
+     * @param sinceEpoch
+     *            The epoch of runtime model since when the modified frames
+     *            are dumped
+     */
+    protected void dump(BinaryDumpWriter writer, long time, long sinceEpoch) {
+        List<FrameNode> frameNodes = new ArrayList<FrameNode>();
+        for (FrameNode frameNode : childFrames.values()) {
+            if (frameNode.isModifiedSince(sinceEpoch)) {
+                frameNodes.add(frameNode);
             }
-            builder.append(Type.getType(types[i].getDescriptor())
-                    .getClassName());
         }
-        builder.append(')');
-        String method = builder.toString();
 
-        // convert into escaped characters
-        method = method.replaceAll("<", "&lt;").replaceAll(">", "&gt;");
-
-        return clazz + '.' + method;
+        writer.writeFrame(methodId, count, getActualTotalTime(time),
+                frameNodes.size());
+        for (FrameNode frameNode : frameNodes) {
+            frameNode.dump(writer, time, sinceEpoch);
+        }
     }
 }
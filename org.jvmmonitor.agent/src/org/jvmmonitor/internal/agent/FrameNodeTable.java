@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The hash table of frame nodes keyed by method ID. Looking up is done without
+ * locking nor boxing the method ID, and only adding a new frame node is
+ * synchronized. The table can be read while being modified.
+ */
+public class FrameNodeTable {
+
+    /** The initial capacity that has to be power of two. */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /** The open addressing table. */
+    private volatile FrameNode[] table;
+
+    /** The number of frame nodes. */
+    private volatile int size;
+
+    /**
+     * The constructor.
+     */
+    protected FrameNodeTable() {
+        table = new FrameNode[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Gets the frame node with the given method ID.
+     * 
+     * @param methodId
+     *            The method ID
+     * @return The frame node, or <tt>null</tt> if not found
+     */
+    protected FrameNode get(int methodId) {
+        FrameNode[] frames = table;
+        int mask = frames.length - 1;
+        for (int i = methodId & mask;; i = (i + 1) & mask) {
+            FrameNode frame = frames[i];
+            if (frame == null || frame.getMethodId() == methodId) {
+                return frame;
+            }
+        }
+    }
+
+    /**
+     * Adds the frame node.
+     * 
+     * @param frame
+     *            The frame node
+     * @return The frame node in table, that may be different from the given
+     *         frame node if the same method ID has been already added
+     */
+    synchronized protected FrameNode add(FrameNode frame) {
+        FrameNode existingFrame = get(frame.getMethodId());
+        if (existingFrame != null) {
+            return existingFrame;
+        }
+
+        FrameNode[] frames = table;
+        if ((size + 1) * 2 > frames.length) {
+            frames = new FrameNode[frames.length * 2];
+            for (FrameNode node : table) {
+                if (node != null) {
+                    insert(frames, node);
+                }
+            }
+        }
+        insert(frames, frame);
+        size++;
+        table = frames;
+        return frame;
+    }
+
+    /**
+     * Gets the frame nodes.
+     * 
+     * @return The frame nodes
+     */
+    protected List<FrameNode> values() {
+        List<FrameNode> values = new ArrayList<FrameNode>();
+        for (FrameNode frame : table) {
+            if (frame != null) {
+                values.add(frame);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Gets the number of frame nodes.
+     * 
+     * @return The number of frame nodes
+     */
+    protected int size() {
+        return size;
+    }
+
+    /**
+     * Inserts the frame node into the given table.
+     * 
+     * @param frames
+     *            The table
+     * @param frame
+     *            The frame node
+     */
+    private static void insert(FrameNode[] frames, FrameNode frame) {
+        int mask = frames.length - 1;
+        int i = frame.getMethodId() & mask;
+        while (frames[i] != null) {
+            i = (i + 1) & mask;
+        }
+        frames[i] = frame;
+    }
+}
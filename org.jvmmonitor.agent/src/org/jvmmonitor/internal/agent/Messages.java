@@ -43,12 +43,21 @@ public class Messages {
     static final String CANNOT_CREATE_DUMP_FILE = "Writing into a dump file failed.\n"
             + "Please check the output directory \"%s\" specified in configuration file.\n";
 
+    /** The error message that sampling stack traces failed. */
+    static final String CANNOT_SAMPLE = "Cannot sample the stack traces.";
+
+    /** The info message that sampling profiler was stopped by lease expiry. */
+    static final String SAMPLING_LEASE_EXPIRED = "Stopped the sampling profiler, since no client has queried it for %d ms.";
+
     /** The error message that re-transforming class failed. */
     static final String CANNOT_RETRANSFORM_CLASS = "Cannot retransform class: %s";
 
     /** The error message that reading file failed. */
     static final String CANNOT_READ_FILE = "Cannot read file: %s";
 
+    /** The error message that compressing file failed. */
+    static final String CANNOT_COMPRESS_FILE = "Cannot compress file: %s";
+
     /** The error message that setting SWT resource tracking state failed. */
     static final String CANNOT_SET_RESOURCE_TRACKING_STATE = "Cannot set SWT resource tracking state.";
 
@@ -61,6 +70,12 @@ public class Messages {
     /** The error message that clearing SWT resource tracking data failed. */
     static final String CANNOT_CLEAR_RESOURCE_TRACKING_DATA = "Cannot clear SWT resource tracking data";
 
+    /** The error message that notifications cannot be coalesced. */
+    static final String CANNOT_COALESCE_NOTIFICATIONS = "Cannot coalesce the notifications of %s";
+
+    /** The message of summary notification. */
+    static final String COALESCED_NOTIFICATIONS = "%d notifications coalesced in %d ms";
+
     /** The info message that agent got loaded. */
     static final String AGENT_LOADED = "Agent has been loaded.";
 
@@ -72,4 +87,10 @@ public class Messages {
 
     /** The info message that class has been re-transformed. */
     static final String RETRANSFORMED_CLASS = "Retransformed class: %s";
+
+    /** The info message that classes have been re-transformed. */
+    static final String RETRANSFORMED_CLASSES = "Retransformed %d classes.";
+
+    /** The info message that overhead of probes has been calibrated. */
+    static final String CALIBRATED_PROBE_OVERHEAD = "Calibrated probe overhead: %d ns";
 }
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jvmmonitor.internal.agent.asm.Type;
+
+/**
+ * The registry of instrumented methods. Each method is given a stable integer
+ * ID when its class is transformed, so that the instrumented probes only pass
+ * the ID, and the class name and method name are resolved when dumping.
+ */
+public class MethodRegistry {
+
+    /** The initial capacity of method table. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** The method IDs keyed by qualified method name. */
+    private static Map<String, Integer> methodIds = new HashMap<String, Integer>();
+
+    /** The class names indexed by method ID. */
+    private static String[] classNames = new String[INITIAL_CAPACITY];
+
+    /** The method names indexed by method ID. */
+    private static String[] methodNames = new String[INITIAL_CAPACITY];
+
+    /** The frame names indexed by method ID, that are lazily created. */
+    private static String[] frameNames = new String[INITIAL_CAPACITY];
+
+    /** The number of registered methods. */
+    private static int size;
+
+    /**
+     * The constructor.
+     */
+    private MethodRegistry() {
+        // do not instantiate
+    }
+
+    /**
+     * Registers the method, and gets the method ID. The same ID is returned
+     * for the method that has been already registered.
+     * 
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @param methodName
+     *            The method name with descriptor (e.g. charAt(I)C)
+     * @return The method ID
+     */
+    synchronized protected static int register(String className,
+            String methodName) {
+        String key = className + '.' + methodName;
+        Integer id = methodIds.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        if (size == classNames.length) {
+            classNames = Arrays.copyOf(classNames, size * 2);
+            methodNames = Arrays.copyOf(methodNames, size * 2);
+            frameNames = Arrays.copyOf(frameNames, size * 2);
+        }
+        classNames[size] = className;
+        methodNames[size] = methodName;
+        methodIds.put(key, size);
+        return size++;
+    }
+
+    /**
+     * Gets the class name.
+     * 
+     * @param id
+     *            The method ID
+     * @return The class name (e.g. java/lang/String)
+     */
+    synchronized protected static String getClassName(int id) {
+        return classNames[id];
+    }
+
+    /**
+     * Gets the method name.
+     * 
+     * @param id
+     *            The method ID
+     * @return The method name with descriptor (e.g. charAt(I)C)
+     */
+    synchronized protected static String getMethodName(int id) {
+        return methodNames[id];
+    }
+
+    /**
+     * Gets the frame name with java types (e.g. java.lang.String.charAt(int)).
+     * 
+     * @param id
+     *            The method ID
+     * @return The frame name
+     */
+    synchronized protected static String getFrameName(int id) {
+        String frameName = frameNames[id];
+        if (frameName == null) {
+            frameName = createFrameName(classNames[id], methodNames[id]);
+            frameNames[id] = frameName;
+        }
+        return frameName;
+    }
+
+    /**
+     * Gets the number of registered methods.
+     * 
+     * @return The number of registered methods
+     */
+    synchronized protected static int size() {
+        return size;
+    }
+
+    /**
+     * Creates the frame name.
+     * 
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @param methodName
+     *            The method name with descriptor (e.g. charAt(I)C)
+     * @return The frame name
+     */
+    @SuppressWarnings("nls")
+    private static String createFrameName(String className, String methodName) {
+
+        // replace '/' with '.'
+        String clazz = className.replace('/', '.');
+
+        // convert the parameter descriptor into java type
+        StringBuilder builder = new StringBuilder();
+        builder.append(methodName.substring(0, methodName.indexOf('(') + 1));
+        Type[] types = Type.getArgumentTypes(methodName.substring(methodName
+                .indexOf('(')));
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(Type.getType(types[i].getDescriptor())
+                    .getClassName());
+        }
+        builder.append(')');
+
+        return clazz + '.' + builder.toString();
+    }
+}
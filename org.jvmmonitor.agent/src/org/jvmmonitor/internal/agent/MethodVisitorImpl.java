@@ -16,11 +16,8 @@ import org.jvmmonitor.internal.agent.asm.Opcodes;
  */
 public class MethodVisitorImpl extends MethodAdapter {
 
-    /** The class name */
-    private String className;
-
-    /** The method name */
-    private String methodName;
+    /** The method ID given by {@link MethodRegistry} */
+    private int methodId;
 
     /** The state indicating if this is the class initialization method. */
     private boolean isClinit;
@@ -38,9 +35,10 @@ public class MethodVisitorImpl extends MethodAdapter {
     public MethodVisitorImpl(MethodVisitor methodVisitor, String className,
             String methodName) {
         super(methodVisitor);
-        this.className = className;
-        this.methodName = methodName;
         isClinit = methodName.startsWith(Constants.METHOD_CLINIT);
+        if (!isClinit) {
+            methodId = MethodRegistry.register(className, methodName);
+        }
     }
 
     /*
@@ -48,8 +46,7 @@ public class MethodVisitorImpl extends MethodAdapter {
      */
     @Override
     public void visitCode() {
-        instrumentMethodInvocation(Constants.METHOD_STEP_INTO, className,
-                methodName);
+        instrumentMethodInvocation(Constants.METHOD_STEP_INTO);
 
         super.visitCode();
     }
@@ -63,8 +60,7 @@ public class MethodVisitorImpl extends MethodAdapter {
         // the JVM opcode to return method
         if ((Opcodes.IRETURN <= opcode && opcode <= Opcodes.RETURN)
                 || Opcodes.ATHROW == opcode) {
-            instrumentMethodInvocation(Constants.METHOD_STEP_RETURN, className,
-                    methodName);
+            instrumentMethodInvocation(Constants.METHOD_STEP_RETURN);
         }
 
         super.visitInsn(opcode);
@@ -90,39 +86,33 @@ public class MethodVisitorImpl extends MethodAdapter {
         super.visitLabel(label);
 
         if (label.info != null) {
-            instrumentMethodInvocation(Constants.METHOD_DROP_TO_FRAME,
-                    className, methodName, (String) label.info);
+            instrumentMethodInvocation(Constants.METHOD_DROP_TO_FRAME);
         }
     }
 
     /**
-     * Instruments the method invocation.
+     * Instruments the method invocation with the method ID as argument.
      * 
      * @param name
      *            The method name
-     * @param args
-     *            The method arguments
      */
-    private void instrumentMethodInvocation(String name, String... args) {
+    private void instrumentMethodInvocation(String name) {
         if (isClinit) {
             return;
         }
 
-        // get descriptor
-        String desc = null;
-        if (args.length == 2) {
-            desc = Constants.DESC_STRING_STRING;
-        } else if (args.length == 3) {
-            desc = Constants.DESC_STRING_STRING_STRING;
+        // push the method ID with the shortest instruction
+        if (methodId <= 5) {
+            super.visitInsn(Opcodes.ICONST_0 + methodId);
+        } else if (methodId <= Byte.MAX_VALUE) {
+            super.visitIntInsn(Opcodes.BIPUSH, methodId);
+        } else if (methodId <= Short.MAX_VALUE) {
+            super.visitIntInsn(Opcodes.SIPUSH, methodId);
         } else {
-            return;
+            super.visitLdcInsn(Integer.valueOf(methodId));
         }
 
-        // instrument
-        for (String arg : args) {
-            visitLdcInsn(arg);
-        }
         super.visitMethodInsn(Opcodes.INVOKESTATIC,
-                Constants.CLASS_CPU_PROFILER, name, desc);
+                Constants.CLASS_CPU_PROFILER, name, Constants.DESC_INT);
     }
 }
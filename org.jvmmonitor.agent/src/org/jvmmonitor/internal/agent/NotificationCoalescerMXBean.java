@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import javax.management.MXBean;
+import javax.management.ObjectName;
+
+/**
+ * The MXBean to coalesce the bursts of notifications emitted by MBeans into
+ * one summary notification per interval, so that the notifications crossing
+ * the connection are reduced.
+ * <p>
+ * The summary notification is emitted by this MXBean with the type returned
+ * as token by {@link #startCoalescing(ObjectName, String[], String[], long)},
+ * and its source is the object name of coalesced MBean. Each client gets its
+ * own token even for the same MBean, so that clients don't replace or stop the
+ * coalescing of each other.
+ * <p>
+ * The coalescing is stopped once it has not been renewed with
+ * {@link #renewCoalescing(String[])} for a while, so that it doesn't keep
+ * running after the client has gone away.
+ */
+@SuppressWarnings("nls")
+@MXBean
+public interface NotificationCoalescerMXBean {
+
+    /** The notification coalescer MXBean name. */
+    final static String NOTIFICATION_COALESCER_MXBEAN_NAME = "org.jvmmonitor:type=Notification Coalescer";
+
+    /** The prefix of summary notification type. */
+    final static String COALESCED_NOTIFICATION_TYPE_PREFIX = "org.jvmmonitor.coalesced:";
+
+    /**
+     * Starts coalescing the notifications of the given MBean.
+     * 
+     * @param objectName
+     *            The object name of MBean emitting notifications
+     * @param types
+     *            The prefixes of notification types to be coalesced, or empty
+     *            array for all types
+     * @param attributes
+     *            The attribute names whose attribute change notifications are
+     *            coalesced, or empty array not to filter by attribute
+     * @param interval
+     *            The interval in milliseconds to emit summary notification
+     * @return The token identifying the coalescing, that is also the type of
+     *         summary notification, or <tt>null</tt> if the MBean is not found
+     *         or does not emit notifications
+     */
+    String startCoalescing(ObjectName objectName, String[] types,
+            String[] attributes, long interval);
+
+    /**
+     * Stops the coalescing identified by the given token.
+     * 
+     * @param token
+     *            The token returned by
+     *            {@link #startCoalescing(ObjectName, String[], String[], long)}
+     */
+    void stopCoalescing(String token);
+
+    /**
+     * Renews the coalescing identified by the given tokens.
+     * 
+     * @param tokens
+     *            The tokens returned by
+     *            {@link #startCoalescing(ObjectName, String[], String[], long)}
+     * @return The tokens that are no longer coalesced, e.g. because of expiry
+     */
+    String[] renewCoalescing(String[] tokens);
+
+    /**
+     * Gets the object names of MBeans whose notifications are coalesced.
+     * 
+     * @return The object names
+     */
+    ObjectName[] getCoalescedObjectNames();
+}
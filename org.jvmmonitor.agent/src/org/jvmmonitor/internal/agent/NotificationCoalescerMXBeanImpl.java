@@ -0,0 +1,380 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.AttributeChangeNotification;
+import javax.management.AttributeChangeNotificationFilter;
+import javax.management.JMException;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationBroadcaster;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.NotificationFilter;
+import javax.management.NotificationFilterSupport;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+/**
+ * The MXBean to coalesce notifications. The notifications are counted by the
+ * listener registered on the platform MBean server, and the summary is emitted
+ * on a daemon timer thread once per interval only if any notification has been
+ * received. The timer task also stops the coalescing whose lease has expired.
+ */
+@SuppressWarnings("nls")
+public class NotificationCoalescerMXBeanImpl extends
+        NotificationBroadcasterSupport implements NotificationCoalescerMXBean {
+
+    /** The minimum interval in milliseconds. */
+    private static final long MIN_INTERVAL = 100;
+
+    /** The item names of summary composite data. */
+    private static final String[] SUMMARY_ITEM_NAMES = { "count",
+            "firstTimeStamp", "lastTimeStamp", "types", "lastMessage" };
+
+    /** The item types of summary composite data. */
+    private static final OpenType<?>[] SUMMARY_ITEM_TYPES = { SimpleType.LONG,
+            SimpleType.LONG, SimpleType.LONG, SimpleType.STRING,
+            SimpleType.STRING };
+
+    /** The composite type of summary. */
+    private static CompositeType summaryType;
+
+    /** The platform MBean server. */
+    private MBeanServer server;
+
+    /** The coalescers keyed by token. */
+    private Map<String, Coalescer> coalescers;
+
+    /** The sequence number of summary notifications. */
+    private AtomicLong sequenceNumber;
+
+    /** The sequence number of tokens. */
+    private AtomicLong tokenSequenceNumber;
+
+    /** The timer to emit summary notifications, created lazily. */
+    private Timer timer;
+
+    /**
+     * The constructor.
+     */
+    public NotificationCoalescerMXBeanImpl() {
+        server = ManagementFactory.getPlatformMBeanServer();
+        coalescers = new ConcurrentHashMap<String, Coalescer>();
+        sequenceNumber = new AtomicLong();
+        tokenSequenceNumber = new AtomicLong();
+    }
+
+    /*
+     * @see NotificationCoalescerMXBean#startCoalescing(ObjectName, String[],
+     * String[], long)
+     */
+    @Override
+    synchronized public String startCoalescing(ObjectName objectName,
+            String[] types, String[] attributes, long interval) {
+        Coalescer coalescer = new Coalescer(objectName,
+                tokenSequenceNumber.incrementAndGet());
+        try {
+            if (!server.isInstanceOf(objectName,
+                    NotificationBroadcaster.class.getName())) {
+                return null;
+            }
+            server.addNotificationListener(objectName, coalescer,
+                    createFilter(types, attributes), null);
+        } catch (JMException e) {
+            Agent.logError(e, Messages.CANNOT_COALESCE_NOTIFICATIONS,
+                    objectName);
+            return null;
+        }
+
+        if (timer == null) {
+            timer = new Timer(Constants.COALESCER_THREAD_NAME, true);
+        }
+        long period = Math.max(interval, MIN_INTERVAL);
+        timer.scheduleAtFixedRate(coalescer, period, period);
+        coalescers.put(coalescer.getType(), coalescer);
+        return coalescer.getType();
+    }
+
+    /*
+     * @see NotificationCoalescerMXBean#stopCoalescing(String)
+     */
+    @Override
+    synchronized public void stopCoalescing(String token) {
+        Coalescer coalescer = coalescers.remove(token);
+        if (coalescer == null) {
+            return;
+        }
+
+        coalescer.cancel();
+        try {
+            server.removeNotificationListener(coalescer.getObjectName(),
+                    coalescer);
+        } catch (JMException e) {
+            // the MBean has been unregistered
+        }
+
+        if (coalescers.isEmpty()) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    /*
+     * @see NotificationCoalescerMXBean#renewCoalescing(String[])
+     */
+    @Override
+    public String[] renewCoalescing(String[] tokens) {
+        List<String> expiredTokens = new ArrayList<String>();
+        for (String token : tokens) {
+            Coalescer coalescer = coalescers.get(token);
+            if (coalescer == null) {
+                expiredTokens.add(token);
+            } else {
+                coalescer.renew();
+            }
+        }
+        return expiredTokens.toArray(new String[expiredTokens.size()]);
+    }
+
+    /*
+     * @see NotificationCoalescerMXBean#getCoalescedObjectNames()
+     */
+    @Override
+    public ObjectName[] getCoalescedObjectNames() {
+        Set<ObjectName> objectNames = new HashSet<ObjectName>();
+        for (Coalescer coalescer : coalescers.values()) {
+            objectNames.add(coalescer.getObjectName());
+        }
+        return objectNames.toArray(new ObjectName[objectNames.size()]);
+    }
+
+    /*
+     * @see NotificationBroadcasterSupport#getNotificationInfo()
+     */
+    @Override
+    public MBeanNotificationInfo[] getNotificationInfo() {
+        return new MBeanNotificationInfo[] { new MBeanNotificationInfo(
+                new String[] { COALESCED_NOTIFICATION_TYPE_PREFIX },
+                Notification.class.getName(),
+                "The summary of notifications coalesced per interval") };
+    }
+
+    /**
+     * Creates the notification filter.
+     * 
+     * @param types
+     *            The prefixes of notification types
+     * @param attributes
+     *            The attribute names
+     * @return The notification filter, or <tt>null</tt> not to filter
+     */
+    private static NotificationFilter createFilter(String[] types,
+            String[] attributes) {
+        if (attributes != null && attributes.length > 0) {
+            AttributeChangeNotificationFilter filter = new AttributeChangeNotificationFilter();
+            for (String attribute : attributes) {
+                filter.enableAttribute(attribute);
+            }
+            return filter;
+        }
+        if (types != null && types.length > 0) {
+            NotificationFilterSupport filter = new NotificationFilterSupport();
+            for (String type : types) {
+                filter.enableType(type);
+            }
+            return filter;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the composite type of summary.
+     * 
+     * @return The composite type
+     * @throws OpenDataException
+     */
+    private static synchronized CompositeType getSummaryType()
+            throws OpenDataException {
+        if (summaryType == null) {
+            summaryType = new CompositeType("CoalescedNotifications",
+                    "The summary of coalesced notifications",
+                    SUMMARY_ITEM_NAMES, SUMMARY_ITEM_NAMES,
+                    SUMMARY_ITEM_TYPES);
+        }
+        return summaryType;
+    }
+
+    /**
+     * The listener counting the notifications of a MBean, that is run by
+     * timer to emit the summary.
+     */
+    private class Coalescer extends TimerTask implements NotificationListener {
+
+        /** The object name of coalesced MBean. */
+        private ObjectName objectName;
+
+        /** The type of summary notification, that is also the token. */
+        private String type;
+
+        /** The time in milliseconds when the client renewed at last. */
+        private volatile long renewedTime;
+
+        /** The number of notifications since the last summary. */
+        private long count;
+
+        /** The time stamp of the first notification since the last summary. */
+        private long firstTimeStamp;
+
+        /** The time stamp of the last notification. */
+        private long lastTimeStamp;
+
+        /** The message of the last notification. */
+        private String lastMessage;
+
+        /** The number of notifications keyed by type. */
+        private Map<String, Long> typeCounts;
+
+        /**
+         * The constructor.
+         * 
+         * @param objectName
+         *            The object name of coalesced MBean
+         * @param id
+         *            The ID unique in this MXBean
+         */
+        Coalescer(ObjectName objectName, long id) {
+            this.objectName = objectName;
+            type = COALESCED_NOTIFICATION_TYPE_PREFIX + id + ':'
+                    + objectName.getCanonicalName();
+            typeCounts = new LinkedHashMap<String, Long>();
+            renewedTime = System.currentTimeMillis();
+        }
+
+        /*
+         * @see NotificationListener#handleNotification(Notification, Object)
+         */
+        @Override
+        synchronized public void handleNotification(Notification notification,
+                Object handback) {
+            if (count == 0) {
+                firstTimeStamp = notification.getTimeStamp();
+            }
+            count++;
+            lastTimeStamp = notification.getTimeStamp();
+            lastMessage = notification.getMessage();
+
+            String notificationType = notification.getType();
+            if (notification instanceof AttributeChangeNotification) {
+                notificationType += ' ' + ((AttributeChangeNotification) notification)
+                        .getAttributeName();
+            }
+            Long typeCount = typeCounts.get(notificationType);
+            typeCounts.put(notificationType, typeCount == null ? 1
+                    : typeCount + 1);
+        }
+
+        /*
+         * @see TimerTask#run()
+         */
+        @Override
+        public void run() {
+            long elapsedSinceRenewed = System.currentTimeMillis()
+                    - renewedTime;
+            if (elapsedSinceRenewed > Constants.COALESCING_LEASE_TIMEOUT) {
+                stopCoalescing(type);
+                return;
+            }
+
+            Notification summary;
+            synchronized (this) {
+                if (count == 0) {
+                    return;
+                }
+                summary = createSummary();
+                count = 0;
+                typeCounts.clear();
+            }
+            sendNotification(summary);
+        }
+
+        /**
+         * Gets the type of summary notification.
+         * 
+         * @return The type
+         */
+        String getType() {
+            return type;
+        }
+
+        /**
+         * Gets the object name of coalesced MBean.
+         * 
+         * @return The object name
+         */
+        ObjectName getObjectName() {
+            return objectName;
+        }
+
+        /**
+         * Renews the lease of this coalescer.
+         */
+        void renew() {
+            renewedTime = System.currentTimeMillis();
+        }
+
+        /**
+         * Creates the summary notification.
+         * 
+         * @return The summary notification
+         */
+        private Notification createSummary() {
+            StringBuilder types = new StringBuilder();
+            for (Entry<String, Long> entry : typeCounts.entrySet()) {
+                if (types.length() > 0) {
+                    types.append(", ");
+                }
+                types.append(entry.getKey()).append('=')
+                        .append(entry.getValue());
+            }
+
+            Notification summary = new Notification(type, objectName,
+                    sequenceNumber.incrementAndGet(), lastTimeStamp,
+                    String.format(Messages.COALESCED_NOTIFICATIONS, count,
+                            lastTimeStamp - firstTimeStamp));
+            try {
+                CompositeData userData = new CompositeDataSupport(
+                        getSummaryType(), SUMMARY_ITEM_NAMES, new Object[] {
+                                count, firstTimeStamp, lastTimeStamp,
+                                types.toString(), lastMessage });
+                summary.setUserData(userData);
+            } catch (OpenDataException e) {
+                // send the summary without user data
+            }
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The matcher to check if a class belongs to the given packages. The packages
+ * are compiled into a prefix trie of characters when the matcher is created,
+ * so that a class name is checked by walking its package name only once.
+ * <p>
+ * The package is given as either a package name (e.g. <tt>java.lang</tt>)
+ * that matches only the package, or a package name followed by <tt>*</tt>
+ * (e.g. <tt>java.*</tt>) that matches the package and its sub-packages.
+ * <p>
+ * The result is not memoized, so that the class names seen by transformer and
+ * sampler are not retained in the target JVM.
+ * <p>
+ * This class is duplicated as <tt>PackageMatcher</tt> in core, since the agent
+ * jar is loaded into the target JVM without the core bundle, and the core
+ * bundle does not have the agent jar on its class path. Keep both in sync.
+ */
+@SuppressWarnings("nls")
+public class PackageMatcher {
+
+    /** The suffix of package to match sub-packages. */
+    private static final String WILDCARD = "*";
+
+    /** The root node of prefix trie. */
+    private final Node root;
+
+    /** The state indicating if no package is given. */
+    private final boolean empty;
+
+    /**
+     * The constructor.
+     * 
+     * @param packages
+     *            The packages
+     */
+    protected PackageMatcher(Set<String> packages) {
+        root = new Node();
+        for (String pkg : packages) {
+            if (pkg.endsWith(WILDCARD)) {
+                root.add(pkg.substring(0, pkg.length() - 1)).wildcard = true;
+            } else {
+                root.add(pkg).exact = true;
+            }
+        }
+        empty = packages.isEmpty();
+    }
+
+    /**
+     * Checks if the given class belongs to one of the packages.
+     * 
+     * @param className
+     *            The class name separated with either '/' or '.' (e.g.
+     *            java/lang/String or java.lang.String)
+     * @return <tt>true</tt> if the given class belongs to one of the packages
+     */
+    protected boolean matches(String className) {
+        if (empty) {
+            return false;
+        }
+        return doMatches(className);
+    }
+
+    /**
+     * Checks if the given class belongs to one of the packages by walking the
+     * prefix trie with the package name followed by '.'.
+     * 
+     * @param className
+     *            The class name
+     * @return <tt>true</tt> if the given class belongs to one of the packages
+     */
+    private boolean doMatches(String className) {
+        String packageName = className;
+        int length = Math.max(className.lastIndexOf('/'),
+                className.lastIndexOf('.'));
+        if (length == -1) {
+            if (className.startsWith("$")) {
+                return false; // e.g. $Proxy0
+            }
+            packageName = Constants.DEFAULT_PACKAGE;
+            length = packageName.length();
+        }
+
+        Node node = root;
+        for (int i = 0; i < length; i++) {
+            if (node.wildcard) {
+                return true;
+            }
+            char c = packageName.charAt(i);
+            node = node.get(c == '/' ? '.' : c);
+            if (node == null) {
+                return false;
+            }
+        }
+        if (node.exact || node.wildcard) {
+            return true;
+        }
+        node = node.get('.');
+        return node != null && node.wildcard;
+    }
+
+    /**
+     * The node of prefix trie.
+     */
+    private static class Node {
+
+        /** The characters of child nodes. */
+        char[] chars = new char[0];
+
+        /** The child nodes. */
+        Node[] children = new Node[0];
+
+        /** The state indicating if the package ends with this node. */
+        boolean exact;
+
+        /** The state indicating if the package followed by * ends here. */
+        boolean wildcard;
+
+        /**
+         * Gets the child node.
+         * 
+         * @param c
+         *            The character
+         * @return The child node, or <tt>null</tt> if not found
+         */
+        Node get(char c) {
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Adds the descendant nodes for the given string.
+         * 
+         * @param string
+         *            The string
+         * @return The last node
+         */
+        Node add(String string) {
+            Node node = this;
+            for (int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                Node child = node.get(c);
+                if (child == null) {
+                    child = new Node();
+                    int size = node.chars.length;
+                    node.chars = Arrays.copyOf(node.chars, size + 1);
+                    node.children = Arrays.copyOf(node.children, size + 1);
+                    node.chars[size] = c;
+                    node.children[size] = child;
+                }
+                node = child;
+            }
+            return node;
+        }
+    }
+}
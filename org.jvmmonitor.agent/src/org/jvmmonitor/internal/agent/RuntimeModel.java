@@ -16,11 +16,15 @@ import java.lang.management.RuntimeMXBean;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * The runtime model.
@@ -28,17 +32,42 @@ import java.util.concurrent.ConcurrentHashMap;
 @SuppressWarnings("nls")
 public class RuntimeModel implements Runnable {
 
-    /** The thread nodes */
-    private Map<String, ThreadNode> threadNodes;
+    /**
+     * The thread node owned by each thread, that is accessed without locking
+     * when stepping into or returning from frame.
+     */
+    private ThreadLocal<ThreadNode> currentThreadNode;
+
+    /**
+     * The thread nodes of all threads, only used to dump or clear. The nodes
+     * of terminated threads are removed once they have been dumped.
+     */
+    private Queue<ThreadNode> threadNodes;
+
+    /**
+     * The generation incremented when clearing model, in order to let each
+     * thread discard its thread node.
+     */
+    private volatile int generation;
+
+    /**
+     * The epoch incremented when dumping profile data in binary format, that
+     * is recorded into each frame when its count or time is modified.
+     */
+    private volatile long epoch;
+
+    /** The epoch when the model was cleared last time. */
+    private long clearedEpoch;
 
     /**
      * The constructor.
      */
     protected RuntimeModel() {
-        threadNodes = new ConcurrentHashMap<String, ThreadNode>();
-
-        // to dump the model into file when shutting down application
-        Runtime.getRuntime().addShutdownHook(new Thread(this));
+        currentThreadNode = new ThreadLocal<ThreadNode>();
+        threadNodes = new ConcurrentLinkedQueue<ThreadNode>();
+        generation = 0;
+        epoch = 1;
+        clearedEpoch = 0;
     }
 
     /*
@@ -53,25 +82,35 @@ public class RuntimeModel implements Runnable {
     }
 
     /**
-     * Gets the thread node with the given thread name.
+     * Gets the thread node of the current thread.
      * 
-     * @param thread
-     *            The thread name
      * @return The thread node
      */
-    protected ThreadNode getThread(String thread) {
-        ThreadNode threadNode = threadNodes.get(thread);
-        if (threadNode == null) {
-            threadNode = new ThreadNode(thread);
-            threadNodes.put(thread, threadNode);
+    protected ThreadNode getThread() {
+        ThreadNode threadNode = currentThreadNode.get();
+        if (threadNode == null || threadNode.getGeneration() != generation) {
+            threadNode = new ThreadNode(Thread.currentThread(), generation);
+            currentThreadNode.set(threadNode);
+            threadNodes.add(threadNode);
         }
         return threadNode;
     }
 
+    /**
+     * Gets the current epoch.
+     * 
+     * @return The current epoch
+     */
+    protected long getEpoch() {
+        return epoch;
+    }
+
     /**
      * Clears the model.
      */
-    protected void clear() {
+    synchronized protected void clear() {
+        generation++;
+        clearedEpoch = epoch++;
         threadNodes.clear();
     }
 
@@ -92,6 +131,26 @@ public class RuntimeModel implements Runnable {
         return callable.call();
     }
 
+    /**
+     * Dumps the profile data in binary format with <tt>Callable</tt>.
+     * 
+     * @param sinceEpoch
+     *            The epoch since when the modified frames are dumped, or
+     *            <tt>0</tt> to dump all frames
+     * @return The profile data in binary format
+     * @throws Exception
+     */
+    protected byte[] dumpBinary(final long sinceEpoch) throws Exception {
+        Callable<byte[]> callable = new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return doDumpBinary(sinceEpoch);
+            }
+        };
+
+        return callable.call();
+    }
+
     /**
      * Dumps the profile data with <tt>Runnable</tt>.
      */
@@ -131,14 +190,50 @@ public class RuntimeModel implements Runnable {
         buffer.append("mainClass=\"").append(getMainClass()).append("\" ");
         buffer.append("arguments=\"").append(getJvmArguments()).append("\">\n");
 
-        long currentTime = System.currentTimeMillis();
-        for (ThreadNode threadNode : threadNodes.values()) {
-            threadNode.dump(buffer, currentTime);
+        long currentTime = System.nanoTime();
+        long currentEpoch = epoch;
+        List<ThreadNode> nodes = getThreadNodes();
+        Set<String> duplicatedNames = getDuplicatedThreadNames(nodes);
+        for (ThreadNode threadNode : nodes) {
+            threadNode.dump(buffer, currentTime, currentEpoch,
+                    duplicatedNames.contains(threadNode.getName()));
         }
         buffer.append("</cpu-profile>");
         return buffer.toString();
     }
 
+    /**
+     * Dumps the profile data in binary format. The frames modified since the
+     * given epoch are dumped as delta, or all frames are dumped if the model
+     * has been cleared since the given epoch.
+     * <p>
+     * The returned profile data holds the epoch to be given next time. The
+     * epoch is incremented here, and the frames modified while dumping are
+     * dumped again next time.
+     * 
+     * @param sinceEpoch
+     *            The epoch since when the modified frames are dumped, or
+     *            <tt>0</tt> to dump all frames
+     * @return The profile data in binary format
+     * @see BinaryDumpWriter
+     */
+    synchronized protected byte[] doDumpBinary(long sinceEpoch) {
+        long currentEpoch = epoch++;
+        boolean delta = sinceEpoch > clearedEpoch
+                && sinceEpoch <= currentEpoch;
+        long since = delta ? sinceEpoch : 0;
+        BinaryDumpWriter writer = new BinaryDumpWriter(currentEpoch, delta);
+
+        long currentTime = System.nanoTime();
+        List<ThreadNode> nodes = getThreadNodes();
+        Set<String> duplicatedNames = getDuplicatedThreadNames(nodes);
+        for (ThreadNode threadNode : nodes) {
+            threadNode.dump(writer, currentTime, currentEpoch, since,
+                    duplicatedNames.contains(threadNode.getName()));
+        }
+        return writer.toByteArray();
+    }
+
     /**
      * Dumps into a dump file.
      */
@@ -167,9 +262,13 @@ public class RuntimeModel implements Runnable {
             writer.printf("mainClass=\"%s\" ", getMainClass());
             writer.printf("arguments=\"%s\">\n", getJvmArguments());
             writer.println("");
-            long currentTime = System.currentTimeMillis();
-            for (ThreadNode threadNode : threadNodes.values()) {
-                threadNode.dump(writer, currentTime);
+            long currentTime = System.nanoTime();
+            long currentEpoch = epoch;
+            List<ThreadNode> nodes = getThreadNodes();
+            Set<String> duplicatedNames = getDuplicatedThreadNames(nodes);
+            for (ThreadNode threadNode : nodes) {
+                threadNode.dump(writer, currentTime, currentEpoch,
+                        duplicatedNames.contains(threadNode.getName()));
             }
             writer.println("</cpu-profile>");
             writer.flush();
@@ -183,6 +282,49 @@ public class RuntimeModel implements Runnable {
         }
     }
 
+    /**
+     * Gets the thread nodes of current generation to be dumped. The nodes of
+     * terminated threads are returned for the last time and removed, so that
+     * the thread nodes don't grow with short-lived threads.
+     * 
+     * @return The thread nodes
+     */
+    private List<ThreadNode> getThreadNodes() {
+        List<ThreadNode> nodes = new ArrayList<ThreadNode>();
+        int currentGeneration = generation;
+        Iterator<ThreadNode> iterator = threadNodes.iterator();
+        while (iterator.hasNext()) {
+            ThreadNode threadNode = iterator.next();
+            if (threadNode.getGeneration() != currentGeneration) {
+                iterator.remove();
+                continue;
+            }
+            nodes.add(threadNode);
+            if (!threadNode.isAlive()) {
+                iterator.remove();
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Gets the thread names shared by multiple thread nodes.
+     * 
+     * @param nodes
+     *            The thread nodes
+     * @return The duplicated thread names
+     */
+    private static Set<String> getDuplicatedThreadNames(List<ThreadNode> nodes) {
+        Set<String> names = new HashSet<String>();
+        Set<String> duplicatedNames = new HashSet<String>();
+        for (ThreadNode threadNode : nodes) {
+            if (!names.add(threadNode.getName())) {
+                duplicatedNames.add(threadNode.getName());
+            }
+        }
+        return duplicatedNames;
+    }
+
     /**
      * Gets the runtime name (e.g. PID@HOSTNAME depending on JVM).
      * 
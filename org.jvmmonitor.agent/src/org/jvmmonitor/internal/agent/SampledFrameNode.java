@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The frame node of sampling model, that aggregates the samples of stack
+ * traces having the same frames from the bottom of stack to this frame.
+ */
+public class SampledFrameNode {
+
+    /** The frame name. */
+    private String name;
+
+    /** The number of samples where this frame has been newly entered. */
+    private int count;
+
+    /** The total time in nanoseconds. */
+    private long time;
+
+    /** The epoch of sampling model when this frame was sampled last time. */
+    private long modifiedEpoch;
+
+    /** The child frame nodes keyed by frame name. */
+    private Map<String, SampledFrameNode> childFrames;
+
+    /**
+     * The constructor.
+     * 
+     * @param name
+     *            The frame name
+     */
+    protected SampledFrameNode(String name) {
+        this.name = name;
+        childFrames = new LinkedHashMap<String, SampledFrameNode>();
+    }
+
+    /**
+     * Gets the child frame node, creating it if not yet exist.
+     * 
+     * @param frameName
+     *            The frame name
+     * @return The child frame node
+     */
+    protected SampledFrameNode getChild(String frameName) {
+        SampledFrameNode frame = childFrames.get(frameName);
+        if (frame == null) {
+            frame = new SampledFrameNode(frameName);
+            childFrames.put(frameName, frame);
+        }
+        return frame;
+    }
+
+    /**
+     * Adds the sample.
+     * 
+     * @param elapsedTime
+     *            The elapsed time in nanoseconds since the previous sample
+     * @param isNewStack
+     *            <tt>true</tt> if this frame has been newly entered since the
+     *            previous sample
+     * @param epoch
+     *            The current epoch of sampling model
+     */
+    protected void sample(long elapsedTime, boolean isNewStack, long epoch) {
+        if (isNewStack) {
+            count++;
+        }
+        time += elapsedTime;
+        modifiedEpoch = epoch;
+    }
+
+    /**
+     * Gets the state indicating if this frame has been sampled since the
+     * given epoch.
+     * 
+     * @param epoch
+     *            The epoch of sampling model
+     * @return <tt>true</tt> if this frame has been sampled since the given
+     *         epoch
+     */
+    protected boolean isModifiedSince(long epoch) {
+        return modifiedEpoch >= epoch;
+    }
+
+    /**
+     * Dumps the profile data in binary format. Only the frames sampled since
+     * the given epoch are dumped.
+     * 
+     * @param writer
+     *            The binary dump writer
+     * @param sinceEpoch
+     *            The epoch of sampling model since when the sampled frames
+     *            are dumped
+     */
+    protected void dump(BinaryDumpWriter writer, long sinceEpoch) {
+        List<SampledFrameNode> frameNodes = new ArrayList<SampledFrameNode>();
+        for (SampledFrameNode frameNode : childFrames.values()) {
+            if (frameNode.isModifiedSince(sinceEpoch)) {
+                frameNodes.add(frameNode);
+            }
+        }
+
+        writer.writeFrame(name, count, time / 1000, frameNodes.size());
+        for (SampledFrameNode frameNode : frameNodes) {
+            frameNode.dump(writer, sinceEpoch);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The thread node of sampling model.
+ */
+@SuppressWarnings("nls")
+public class SampledThreadNode {
+
+    /** The thread name. */
+    private String thread;
+
+    /** The thread ID. */
+    private long threadId;
+
+    /** The stack trace sampled previously, from the top of stack. */
+    private StackTraceElement[] previousStackTrace;
+
+    /** The root frame nodes keyed by frame name. */
+    private Map<String, SampledFrameNode> rootFrames;
+
+    /**
+     * The constructor.
+     * 
+     * @param thread
+     *            The thread name
+     * @param threadId
+     *            The thread ID
+     */
+    protected SampledThreadNode(String thread, long threadId) {
+        this.thread = thread;
+        this.threadId = threadId;
+        rootFrames = new LinkedHashMap<String, SampledFrameNode>();
+    }
+
+    /**
+     * Gets the thread name.
+     * 
+     * @return The thread name
+     */
+    protected String getName() {
+        return thread;
+    }
+
+    /**
+     * Adds the sampled stack trace. The frames are walked from the bottom of
+     * stack, and only the frames in profiled packages are added.
+     * 
+     * @param stackTrace
+     *            The stack trace from the top of stack
+     * @param frameNames
+     *            The frame names corresponding to the stack trace, or
+     *            <tt>null</tt> for the frames not to be profiled
+     * @param truncated
+     *            <tt>true</tt> if the stack trace has been truncated by max
+     *            depth, in which case the frames are added under the
+     *            <tt>(truncated)</tt> root frame, since the bottom of stack
+     *            is unknown
+     * @param elapsedTime
+     *            The elapsed time in nanoseconds since the previous sample
+     * @param epoch
+     *            The current epoch of sampling model
+     */
+    protected void sample(StackTraceElement[] stackTrace, String[] frameNames,
+            boolean truncated, long elapsedTime, long epoch) {
+        SampledFrameNode frame = null;
+        boolean isNewStack = false;
+        int length = stackTrace.length;
+        int previousLength = previousStackTrace == null ? 0
+                : previousStackTrace.length;
+        for (int i = 0; i < length; i++) {
+            int index = length - 1 - i;
+            if (!isNewStack
+                    && (i >= previousLength || !stackTrace[index]
+                            .equals(previousStackTrace[previousLength - 1 - i]))) {
+                isNewStack = true;
+            }
+
+            String frameName = frameNames[index];
+            if (frameName == null) {
+                continue;
+            }
+            if (frame == null && truncated) {
+                frame = getRootFrame(Constants.TRUNCATED_FRAME_NAME);
+                frame.sample(elapsedTime, isNewStack, epoch);
+            }
+            if (frame == null) {
+                frame = getRootFrame(frameName);
+            } else {
+                frame = frame.getChild(frameName);
+            }
+            frame.sample(elapsedTime, isNewStack, epoch);
+        }
+        previousStackTrace = stackTrace;
+    }
+
+    /**
+     * Gets the root frame node with the given frame name, that is created if
+     * not yet sampled.
+     * 
+     * @param frameName
+     *            The frame name
+     * @return The root frame node
+     */
+    private SampledFrameNode getRootFrame(String frameName) {
+        SampledFrameNode frame = rootFrames.get(frameName);
+        if (frame == null) {
+            frame = new SampledFrameNode(frameName);
+            rootFrames.put(frameName, frame);
+        }
+        return frame;
+    }
+
+    /**
+     * Dumps the profile data in binary format. Only the frames sampled since
+     * the given epoch are dumped.
+     * 
+     * @param writer
+     *            The binary dump writer
+     * @param sinceEpoch
+     *            The epoch of sampling model since when the sampled frames
+     *            are dumped
+     * @param withThreadId
+     *            <tt>true</tt> to qualify the thread name with thread ID
+     */
+    protected void dump(BinaryDumpWriter writer, long sinceEpoch,
+            boolean withThreadId) {
+        List<SampledFrameNode> frameNodes = new ArrayList<SampledFrameNode>();
+        for (SampledFrameNode frameNode : rootFrames.values()) {
+            if (frameNode.isModifiedSince(sinceEpoch)) {
+                frameNodes.add(frameNode);
+            }
+        }
+        if (frameNodes.size() == 0) {
+            return;
+        }
+
+        String name = withThreadId ? thread + " [" + threadId + "]" : thread;
+        writer.writeThread(name, frameNodes.size());
+        for (SampledFrameNode frameNode : frameNodes) {
+            frameNode.dump(writer, sinceEpoch);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The model of sampling profiler, where the stack traces sampled in target
+ * JVM are aggregated into call trees, so that only the aggregated result is
+ * transferred to client.
+ * <p>
+ * The model is updated by the sampler thread and dumped by the thread
+ * invoking MXBean, so that all accesses are synchronized.
+ */
+@SuppressWarnings("nls")
+public class SamplingModel {
+
+    /** The thread nodes keyed by thread ID. */
+    private Map<Long, SampledThreadNode> threadNodes;
+
+    /** The frame names keyed by class name and method name. */
+    private Map<String, Map<String, String>> frameNames;
+
+    /** The epoch incremented when dumping profile data. */
+    private long epoch;
+
+    /** The epoch when the model was cleared last time. */
+    private long clearedEpoch;
+
+    /**
+     * The constructor.
+     */
+    protected SamplingModel() {
+        threadNodes = new LinkedHashMap<Long, SampledThreadNode>();
+        frameNames = new HashMap<String, Map<String, String>>();
+        epoch = 1;
+        clearedEpoch = 0;
+    }
+
+    /**
+     * Adds the sampled stack traces.
+     * 
+     * @param threadInfos
+     *            The thread infos, that can contain <tt>null</tt> for the
+     *            terminated threads and the threads not to be sampled
+     * @param maxDepth
+     *            The max depth of sampled stack traces, where the stack trace
+     *            of that depth is regarded as truncated
+     * @param elapsedTime
+     *            The elapsed time in nanoseconds since the previous sample
+     * @param profiledPackageMatcher
+     *            The matcher of profiled packages
+     */
+    synchronized protected void sample(ThreadInfo[] threadInfos, int maxDepth,
+            long elapsedTime, PackageMatcher profiledPackageMatcher) {
+        for (ThreadInfo threadInfo : threadInfos) {
+            if (threadInfo == null) {
+                continue;
+            }
+            StackTraceElement[] stackTrace = threadInfo.getStackTrace();
+            if (stackTrace.length == 0) {
+                continue;
+            }
+
+            String[] names = new String[stackTrace.length];
+            boolean profiled = false;
+            for (int i = 0; i < stackTrace.length; i++) {
+                String className = stackTrace[i].getClassName();
+                if (profiledPackageMatcher.matches(className)) {
+                    names[i] = getFrameName(className,
+                            stackTrace[i].getMethodName());
+                    profiled = true;
+                }
+            }
+            if (!profiled) {
+                continue;
+            }
+
+            long threadId = threadInfo.getThreadId();
+            SampledThreadNode threadNode = threadNodes.get(threadId);
+            if (threadNode == null) {
+                threadNode = new SampledThreadNode(threadInfo.getThreadName(),
+                        threadId);
+                threadNodes.put(threadId, threadNode);
+            }
+            threadNode.sample(stackTrace, names,
+                    stackTrace.length >= maxDepth, elapsedTime, epoch);
+        }
+    }
+
+    /**
+     * Clears the model.
+     */
+    synchronized protected void clear() {
+        clearedEpoch = epoch++;
+        threadNodes.clear();
+        frameNames.clear();
+    }
+
+    /**
+     * Dumps the profile data in binary format. The frames sampled since the
+     * given epoch are dumped as delta, or all frames are dumped if the model
+     * has been cleared since the given epoch.
+     * 
+     * @param sinceEpoch
+     *            The epoch since when the sampled frames are dumped, or
+     *            <tt>0</tt> to dump all frames
+     * @return The profile data in binary format
+     * @see BinaryDumpWriter
+     */
+    synchronized protected byte[] dumpBinary(long sinceEpoch) {
+        long currentEpoch = epoch++;
+        boolean delta = sinceEpoch > clearedEpoch
+                && sinceEpoch <= currentEpoch;
+        long since = delta ? sinceEpoch : 0;
+        BinaryDumpWriter writer = new BinaryDumpWriter(currentEpoch, delta);
+
+        Set<String> names = new HashSet<String>();
+        Set<String> duplicatedNames = new HashSet<String>();
+        for (SampledThreadNode threadNode : threadNodes.values()) {
+            if (!names.add(threadNode.getName())) {
+                duplicatedNames.add(threadNode.getName());
+            }
+        }
+        for (SampledThreadNode threadNode : threadNodes.values()) {
+            threadNode.dump(writer, since,
+                    duplicatedNames.contains(threadNode.getName()));
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Gets the frame name, that is same as the one given by sampling profiler
+     * in client.
+     * 
+     * @param className
+     *            The class name
+     * @param methodName
+     *            The method name
+     * @return The frame name (e.g. java.lang.String.charAt())
+     */
+    private String getFrameName(String className, String methodName) {
+        Map<String, String> methods = frameNames.get(className);
+        if (methods == null) {
+            methods = new HashMap<String, String>();
+            frameNames.put(className, methods);
+        }
+
+        String frameName = methods.get(methodName);
+        if (frameName == null) {
+            frameName = className + "." + methodName + "()";
+            methods.put(methodName, frameName);
+        }
+        return frameName;
+    }
+}
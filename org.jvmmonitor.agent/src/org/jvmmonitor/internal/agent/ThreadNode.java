@@ -7,12 +7,14 @@
 package org.jvmmonitor.internal.agent;
 
 import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 /**
- * The thread node of runtime model.
+ * The thread node of runtime model. The thread node is owned by a single
+ * thread, and only the owner thread updates the current frame.
  */
 @SuppressWarnings("nls")
 public class ThreadNode {
@@ -20,37 +22,76 @@ public class ThreadNode {
     /** The thread name */
     private String thread;
 
+    /** The thread ID */
+    private long threadId;
+
+    /** The thread, that is weakly referenced to know if it is alive */
+    private WeakReference<Thread> threadReference;
+
+    /** The generation of runtime model when this node was created */
+    private int generation;
+
     /** The current frame */
     private FrameNode currentFrame;
 
     /** The root frame nodes */
-    private Map<String, FrameNode> rootFrames;
+    private FrameNodeTable rootFrames;
 
     /**
      * The constructor.
      * 
      * @param thread
-     *            The thread name
+     *            The thread
+     * @param generation
+     *            The generation of runtime model
+     */
+    protected ThreadNode(Thread thread, int generation) {
+        this.thread = thread.getName();
+        threadId = thread.getId();
+        threadReference = new WeakReference<Thread>(thread);
+        this.generation = generation;
+        rootFrames = new FrameNodeTable();
+    }
+
+    /**
+     * Gets the thread name.
+     * 
+     * @return The thread name
      */
-    protected ThreadNode(String thread) {
-        this.thread = thread;
-        rootFrames = new ConcurrentHashMap<String, FrameNode>();
+    protected String getName() {
+        return thread;
+    }
+
+    /**
+     * Gets the generation of runtime model when this node was created.
+     * 
+     * @return The generation
+     */
+    protected int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the state indicating if the thread is still alive.
+     * 
+     * @return <tt>true</tt> if the thread is alive
+     */
+    protected boolean isAlive() {
+        Thread aliveThread = threadReference.get();
+        return aliveThread != null && aliveThread.isAlive();
     }
 
     /**
      * Gets the root frame.
      * 
-     * @param className
-     *            The class name
-     * @param methodName
-     *            The method name
+     * @param methodId
+     *            The method ID
      * @return The root frame
      */
-    protected FrameNode getRootFrame(String className, String methodName) {
-        FrameNode frame = rootFrames.get(className + '.' + methodName);
+    protected FrameNode getRootFrame(int methodId) {
+        FrameNode frame = rootFrames.get(methodId);
         if (frame == null) {
-            frame = new FrameNode(null, className, methodName);
-            rootFrames.put(className + '.' + methodName, frame);
+            frame = rootFrames.add(new FrameNode(null, methodId));
         }
         return frame;
     }
@@ -80,17 +121,23 @@ public class ThreadNode {
      * @param writer
      *            The writer
      * @param time
-     *            The time
+     *            The current time in nanoseconds
+     * @param epoch
+     *            The current epoch of runtime model
+     * @param withThreadId
+     *            <tt>true</tt> to qualify the thread name with thread ID
      */
-    protected void dump(PrintWriter writer, long time) {
+    protected void dump(PrintWriter writer, long time, long epoch,
+            boolean withThreadId) {
         Collection<FrameNode> frameNodes = rootFrames.values();
         if (frameNodes.size() == 0) {
             return;
         }
         
-        writer.printf("\t<thread name=\"%s\">", thread);
+        writer.printf("\t<thread name=\"%s\">", getDumpName(withThreadId));
         writer.println("");
         for (FrameNode frameNode : frameNodes) {
+            frameNode.updateSubtreeCount(epoch);
             frameNode.dump(writer, time, 2);
         }
         writer.println("\t</thread>");
@@ -102,19 +149,74 @@ public class ThreadNode {
      * @param buffer
      *            The string buffer
      * @param time
-     *            The time
+     *            The current time in nanoseconds
+     * @param epoch
+     *            The current epoch of runtime model
+     * @param withThreadId
+     *            <tt>true</tt> to qualify the thread name with thread ID
      */
-    protected void dump(StringBuffer buffer, long time) {
+    protected void dump(StringBuffer buffer, long time, long epoch,
+            boolean withThreadId) {
         Collection<FrameNode> frameNodes = rootFrames.values();
         if (frameNodes.size() == 0) {
             return;
         }
 
-        buffer.append("\t<thread name=\"").append(thread)
+        buffer.append("\t<thread name=\"").append(getDumpName(withThreadId))
                 .append("\">\n");
         for (FrameNode frameNode : frameNodes) {
+            frameNode.updateSubtreeCount(epoch);
             frameNode.dump(buffer, time, 2);
         }
         buffer.append("\t</thread>\n");
     }
+
+    /**
+     * Dumps the profile data in binary format. Only the frames modified since
+     * the given epoch are dumped.
+     * 
+     * @param writer
+     *            The binary dump writer
+     * @param time
+     *            The current time in nanoseconds
+     * @param epoch
+     *            The current epoch of runtime model
+     * @param sinceEpoch
+     *            The epoch of runtime model since when the modified frames
+     *            are dumped
+     * @param withThreadId
+     *            <tt>true</tt> to qualify the thread name with thread ID
+     */
+    protected void dump(BinaryDumpWriter writer, long time, long epoch,
+            long sinceEpoch, boolean withThreadId) {
+        List<FrameNode> frameNodes = new ArrayList<FrameNode>();
+        for (FrameNode frameNode : rootFrames.values()) {
+            if (frameNode.isModifiedSince(sinceEpoch)) {
+                frameNodes.add(frameNode);
+            }
+        }
+        if (frameNodes.size() == 0) {
+            return;
+        }
+
+        writer.writeThread(getDumpName(withThreadId), frameNodes.size());
+        for (FrameNode frameNode : frameNodes) {
+            frameNode.updateSubtreeCount(epoch);
+            frameNode.dump(writer, time, sinceEpoch);
+        }
+    }
+
+    /**
+     * Gets the thread name to be dumped.
+     * 
+     * @param withThreadId
+     *            <tt>true</tt> to qualify the thread name with thread ID
+     * @return The thread name to be dumped
+     */
+    private String getDumpName(boolean withThreadId) {
+        if (withThreadId) {
+            return thread + " [" + threadId + "]";
+        }
+        return thread;
+    }
 }
@@ -20,6 +20,9 @@ public class TransformStatusCompositeData {
     /** The number of transformed classes. */
     private int transformedClassesCount;
 
+    /** The number of classes that failed to be transformed. */
+    private int failedClassesCount;
+
     /**
      * The constructor.
      * 
@@ -27,12 +30,16 @@ public class TransformStatusCompositeData {
      *            The number of target classes to transform
      * @param transformedClassesCount
      *            The number of transformed classes
+     * @param failedClassesCount
+     *            The number of classes that failed to be transformed
      */
-    @ConstructorProperties({ "targetClassesCount", "transformedClassesCount" })
+    @ConstructorProperties({ "targetClassesCount", "transformedClassesCount",
+            "failedClassesCount" })
     public TransformStatusCompositeData(int targetClassesCount,
-            int transformedClassesCount) {
+            int transformedClassesCount, int failedClassesCount) {
         this.targetClassesCount = targetClassesCount;
         this.transformedClassesCount = transformedClassesCount;
+        this.failedClassesCount = failedClassesCount;
     }
 
     /**
@@ -53,4 +60,13 @@ public class TransformStatusCompositeData {
         return transformedClassesCount;
     }
 
+    /**
+     * Gets the number of classes that failed to be transformed.
+     * 
+     * @return The number of classes that failed to be transformed
+     */
+    public int getFailedClassesCount() {
+        return failedClassesCount;
+    }
+
 }
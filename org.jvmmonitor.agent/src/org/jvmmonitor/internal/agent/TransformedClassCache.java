@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The cache of instrumented byte-codes keyed by the class name and the digest
+ * of class file given to transformer, so that the classes transformed once are
+ * not instrumented again when re-transforming them with the same class file. The least recently used
+ * entries are evicted when the total size exceeds the limit.
+ */
+@SuppressWarnings("nls")
+public class TransformedClassCache {
+
+    /** The algorithm to digest class file. */
+    private static final String DIGEST_ALGORITHM = "MD5";
+
+    /** The characters for hex string. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** The instrumented byte-codes keyed by class name and digest. */
+    private Map<String, byte[]> classes;
+
+    /** The max total size in bytes of instrumented byte-codes. */
+    private long maxSize;
+
+    /** The total size in bytes of instrumented byte-codes. */
+    private long size;
+
+    /**
+     * The constructor.
+     * 
+     * @param maxSize
+     *            The max total size in bytes of instrumented byte-codes
+     */
+    protected TransformedClassCache(long maxSize) {
+        this.maxSize = maxSize;
+        classes = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+        size = 0;
+    }
+
+    /**
+     * Gets the instrumented byte-codes.
+     * 
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @param classfileBuffer
+     *            The original class file
+     * @return The instrumented byte-codes, or <tt>null</tt> if not cached
+     */
+    protected byte[] get(String className, byte[] classfileBuffer) {
+        String key = getKey(className, classfileBuffer);
+        if (key == null) {
+            return null;
+        }
+        synchronized (this) {
+            return classes.get(key);
+        }
+    }
+
+    /**
+     * Puts the instrumented byte-codes.
+     * 
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @param classfileBuffer
+     *            The original class file
+     * @param transformedBuffer
+     *            The instrumented byte-codes
+     */
+    protected void put(String className, byte[] classfileBuffer,
+            byte[] transformedBuffer) {
+        String key = getKey(className, classfileBuffer);
+        if (key == null || transformedBuffer.length > maxSize) {
+            return;
+        }
+        synchronized (this) {
+            byte[] previous = classes.put(key, transformedBuffer);
+            if (previous != null) {
+                size -= previous.length;
+            }
+            size += transformedBuffer.length;
+
+            Iterator<Entry<String, byte[]>> iterator = classes.entrySet()
+                    .iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                size -= iterator.next().getValue().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the cache key.
+     * 
+     * @param className
+     *            The class name
+     * @param classfileBuffer
+     *            The original class file
+     * @return The cache key, or <tt>null</tt> if digest is not available
+     */
+    private static String getKey(String className, byte[] classfileBuffer) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM).digest(
+                    classfileBuffer);
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder(className.length() + 1
+                + digest.length * 2);
+        builder.append(className).append('@');
+        for (byte b : digest) {
+            builder.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * The test for {@link BinaryDumpWriter}. The expected profile data are the
+ * same as those that <tt>CpuBinaryDumpDecoderTest</tt> in core decodes, so
+ * that the two tests together cover the round trip from agent to client.
+ */
+@SuppressWarnings("nls")
+public class BinaryDumpWriterTest {
+
+    /**
+     * Tests writing the full profile data.
+     */
+    @Test
+    public void testWriteFullDump() {
+        BinaryDumpWriter writer = new BinaryDumpWriter(1, false);
+        writer.writeThread("main", 1);
+        writer.writeFrame("A.run()", 1, 100000, 2);
+        writer.writeFrame("B.foo()", 3, 60000, 0);
+        writer.writeFrame("C.bar()", 2, 30000, 1);
+        writer.writeFrame("B.foo()", 1, 10000, 0);
+        writer.writeThread("worker", 1);
+        writer.writeFrame("B.foo()", 5, 50000, 0);
+
+        assertEquals("4a4d435002010005046d61696e07412e72756e282907422e666f6f28"
+                + "2907432e626172282906776f726b657201010101a08d06020203e0d4"
+                + "03000302b0ea01010201904e0005010205d086030000",
+                toHex(writer.toByteArray()));
+    }
+
+    /**
+     * Tests writing the delta profile data.
+     */
+    @Test
+    public void testWriteDeltaDump() {
+        BinaryDumpWriter writer = new BinaryDumpWriter(2, true);
+        writer.writeThread("main", 1);
+        writer.writeFrame("A.run()", 2, 150000, 1);
+        writer.writeFrame("C.bar()", 3, 60000, 0);
+
+        assertEquals("4a4d435002020103046d61696e07412e72756e282907432e62617228"
+                + "2901010102f09309010203e0d4030000",
+                toHex(writer.toByteArray()));
+    }
+
+    /**
+     * Tests that the string table and records grow beyond the initial
+     * buffer.
+     */
+    @Test
+    public void testWriteLargeDump() {
+        BinaryDumpWriter writer = new BinaryDumpWriter(Long.MAX_VALUE, false);
+        writer.writeThread("main", 10000);
+        for (int i = 0; i < 10000; i++) {
+            writer.writeFrame("Frame" + i + ".run()", i, i * 1000L, 0);
+        }
+        byte[] bytes = writer.toByteArray();
+
+        // magic, version, epoch in 9 bytes, delta flag, and 10001 strings
+        assertEquals("4a4d435002ffffffffffffffff7f0091", toHex(bytes)
+                .substring(0, 32));
+        assertEquals(0, bytes[bytes.length - 1]);
+    }
+
+    /**
+     * Converts the bytes to hexadecimal.
+     * 
+     * @param bytes
+     *            The bytes
+     * @return The hexadecimal string
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * The test for {@link RuntimeModel}.
+ */
+@SuppressWarnings("nls")
+public class RuntimeModelTest {
+
+    /**
+     * Tests that the thread node of terminated thread is dumped for the last
+     * time and then removed.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testDumpTerminatedThread() throws Exception {
+        final RuntimeModel model = new RuntimeModel();
+        final int methodId = MethodRegistry.register("test/Task", "run()V");
+        Thread thread = new Thread("short-lived") {
+            @Override
+            public void run() {
+                model.getThread().getRootFrame(methodId);
+            }
+        };
+        thread.start();
+        thread.join();
+        model.getThread().getRootFrame(methodId);
+
+        String dump = model.doDump();
+        assertEquals(1, count(dump, "<thread name=\"short-lived\">"));
+        assertEquals(1, count(dump, "<thread name=\""
+                + Thread.currentThread().getName() + "\">"));
+
+        dump = model.doDump();
+        assertEquals(0, count(dump, "<thread name=\"short-lived\">"));
+        assertEquals(1, count(dump, "<thread name=\""
+                + Thread.currentThread().getName() + "\">"));
+    }
+
+    /**
+     * Counts the occurrences of the given string.
+     * 
+     * @param text
+     *            The text
+     * @param string
+     *            The string to count
+     * @return The number of occurrences
+     */
+    private static int count(String text, String string) {
+        int count = 0;
+        int index = text.indexOf(string);
+        while (index != -1) {
+            count++;
+            index = text.indexOf(string, index + string.length());
+        }
+        return count;
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.jvmmonitor.core.IHeapElement;
+
+/**
+ * The test for {@link HeapHistogramParser}.
+ */
+@SuppressWarnings("nls")
+public class HeapHistogramParserTest {
+
+    /** The parser. */
+    private HeapHistogramParser parser;
+
+    /**
+     * Creates the parser.
+     */
+    @Before
+    public void setUp() {
+        parser = new HeapHistogramParser();
+    }
+
+    /**
+     * Tests parsing the class histogram.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testParse() throws IOException {
+        parse("\n num     #instances         #bytes  class name\n"
+                + "----------------------------------------------\n"
+                + "   1:         10000         480000  java.lang.String\n"
+                + "   2:           300           7200\tjava.lang.Integer\r\n"
+                + "   3:            20            640  <methodKlass>\n"
+                + "   4:            10            240  java.lang.String\n"
+                + "   5:             1             16\n"
+                + "Total         10320         487856\n");
+
+        Map<String, HeapElement> elements = parser.getHeapElements();
+        assertEquals(2, elements.size());
+        Iterator<HeapElement> iterator = elements.values().iterator();
+        assertElement(iterator.next(), "java.lang.String", 480000, 10000);
+        assertElement(iterator.next(), "java.lang.Integer", 7200, 300);
+        assertEquals(0, parser.getFastestGrowingElements().length);
+    }
+
+    /**
+     * Tests that the heap elements are updated by the next parsing, and the
+     * classes not found any longer are removed.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testParseAgain() throws Exception {
+        parse("   1:   100   2400  java.lang.Integer\n"
+                + "   2:    10    160  java.lang.Object\n");
+        HeapElement integer = parser.getHeapElements().get("java.lang.Integer");
+        assertNotNull(integer);
+
+        Thread.sleep(50);
+        parse("   1:   200   4800  java.lang.Integer\n"
+                + "   2:    50   1200  java.lang.Long\n");
+
+        Map<String, HeapElement> elements = parser.getHeapElements();
+        assertEquals(2, elements.size());
+        assertFalse(elements.containsKey("java.lang.Object"));
+        assertSame(integer, elements.get("java.lang.Integer"));
+        assertElement(integer, "java.lang.Integer", 4800, 200);
+        assertTrue(integer.getSizeGrowthRate() > 0);
+        assertTrue(integer.getCountGrowthRate() > 0);
+
+        IHeapElement[] fastestGrowingElements = parser
+                .getFastestGrowingElements();
+        assertEquals(1, fastestGrowingElements.length);
+        assertSame(integer, fastestGrowingElements[0]);
+
+        // the removed class is regarded as a new class when found again
+        Thread.sleep(50);
+        parse("   1:   200   4800  java.lang.Integer\n"
+                + "   2:    10    160  java.lang.Object\n");
+        HeapElement object = parser.getHeapElements().get("java.lang.Object");
+        assertElement(object, "java.lang.Object", 160, 10);
+        assertEquals(0, object.getSizeGrowthRate(), 0);
+    }
+
+    /**
+     * Tests that the heap elements are limited to the max number of classes.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testSetMaxClassesNumber() throws IOException {
+        parser.setMaxClassesNumber(1);
+        parse("   1:   100   2400  java.lang.Integer\n"
+                + "   2:    10    160  java.lang.Object\n");
+
+        Map<String, HeapElement> elements = parser.getHeapElements();
+        assertEquals(1, elements.size());
+        assertTrue(elements.containsKey("java.lang.Integer"));
+    }
+
+    /**
+     * Tests that the heap elements are cleared.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testClear() throws IOException {
+        parse("   1:   100   2400  java.lang.Integer\n");
+        parser.clear();
+        assertTrue(parser.getHeapElements().isEmpty());
+        assertEquals(0, parser.getFastestGrowingElements().length);
+    }
+
+    /**
+     * Parses the given class histogram.
+     * 
+     * @param histogram
+     *            The class histogram
+     * @throws IOException
+     */
+    private void parse(String histogram) throws IOException {
+        parser.parse(new ByteArrayInputStream(histogram.getBytes("UTF-8")));
+    }
+
+    /**
+     * Asserts the heap element.
+     * 
+     * @param element
+     *            The heap element
+     * @param className
+     *            The expected class name
+     * @param size
+     *            The expected size
+     * @param count
+     *            The expected count
+     */
+    private static void assertElement(HeapElement element, String className,
+            long size, long count) {
+        assertEquals(className, element.getClassName());
+        assertEquals(size, element.getSize());
+        assertEquals(count, element.getCount());
+    }
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.management.Notification;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.jvmmonitor.core.mbean.NotificationBatch;
+
+/**
+ * The test for {@link NotificationRingBuffer}.
+ */
+@SuppressWarnings("nls")
+public class NotificationRingBufferTest {
+
+    /** The buffer. */
+    private NotificationRingBuffer buffer;
+
+    /**
+     * Creates the buffer.
+     */
+    @Before
+    public void setUp() {
+        buffer = new NotificationRingBuffer(5);
+    }
+
+    /**
+     * Tests getting the notifications before the buffer is full.
+     */
+    @Test
+    public void testGetSince() {
+        addNotifications(3);
+
+        NotificationBatch batch = buffer.getSince(0);
+        assertSequenceNumbers(batch, 1, 3);
+        assertEquals(3, batch.getSequence());
+        assertEquals(0, batch.getDroppedCount());
+        assertEquals(3, batch.getBufferedCount());
+
+        assertSequenceNumbers(buffer.getSince(1), 2, 2);
+        assertSequenceNumbers(buffer.getSince(3), 4, 0);
+    }
+
+    /**
+     * Tests that the notifications dropped since the given sequence are
+     * counted.
+     */
+    @Test
+    public void testGetSinceAfterOverflow() {
+        addNotifications(8);
+        assertEquals(5, buffer.size());
+        assertEquals(3, buffer.getDroppedCount());
+
+        NotificationBatch batch = buffer.getSince(1);
+        assertSequenceNumbers(batch, 4, 5);
+        assertEquals(8, batch.getSequence());
+        assertEquals(2, batch.getDroppedCount());
+        assertEquals(5, batch.getBufferedCount());
+
+        batch = buffer.getSince(6);
+        assertSequenceNumbers(batch, 7, 2);
+        assertEquals(0, batch.getDroppedCount());
+
+        // the sequence newer than the latest one is regarded as unknown
+        batch = buffer.getSince(100);
+        assertSequenceNumbers(batch, 4, 5);
+        assertEquals(3, batch.getDroppedCount());
+    }
+
+    /**
+     * Tests that the notifications cleared are not counted as dropped.
+     */
+    @Test
+    public void testClear() {
+        addNotifications(8);
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.getDroppedCount());
+        assertSequenceNumbers(buffer.getSince(8), 1, 0);
+
+        buffer.add(new Notification("test", this, 9));
+        NotificationBatch batch = buffer.getSince(8);
+        assertSequenceNumbers(batch, 9, 1);
+        assertEquals(9, batch.getSequence());
+        assertEquals(0, batch.getDroppedCount());
+
+        batch = buffer.getSince(0);
+        assertSequenceNumbers(batch, 9, 1);
+        assertEquals(0, batch.getDroppedCount());
+    }
+
+    /**
+     * Tests that the latest notifications are kept when changing capacity.
+     */
+    @Test
+    public void testSetCapacity() {
+        addNotifications(4);
+        buffer.setCapacity(2);
+        assertEquals(2, buffer.size());
+        assertEquals(2, buffer.getDroppedCount());
+        assertSequenceNumbers(buffer.getSince(0), 3, 2);
+
+        buffer.add(new Notification("test", this, 5));
+        assertSequenceNumbers(buffer.getSince(0), 4, 2);
+
+        buffer.setCapacity(4);
+        addNotifications(6, 2);
+        assertSequenceNumbers(buffer.getSince(0), 4, 4);
+    }
+
+    /**
+     * Adds the notifications whose sequence numbers start from 1.
+     * 
+     * @param count
+     *            The number of notifications
+     */
+    private void addNotifications(int count) {
+        addNotifications(1, count);
+    }
+
+    /**
+     * Adds the notifications.
+     * 
+     * @param first
+     *            The sequence number of the first notification
+     * @param count
+     *            The number of notifications
+     */
+    private void addNotifications(int first, int count) {
+        for (int i = first; i < first + count; i++) {
+            buffer.add(new Notification("test", this, i));
+        }
+    }
+
+    /**
+     * Asserts that the batch contains the notifications with consecutive
+     * sequence numbers.
+     * 
+     * @param batch
+     *            The batch
+     * @param first
+     *            The expected sequence number of the first notification
+     * @param count
+     *            The expected number of notifications
+     */
+    private static void assertSequenceNumbers(NotificationBatch batch,
+            long first, int count) {
+        Notification[] notifications = batch.getNotifications();
+        assertEquals(count, notifications.length);
+        for (int i = 0; i < count; i++) {
+            assertEquals(first + i, notifications[i].getSequenceNumber());
+        }
+    }
+}
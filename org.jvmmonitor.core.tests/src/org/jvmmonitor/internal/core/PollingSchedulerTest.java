@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvmmonitor.core.IPollingTask;
+
+/**
+ * The test for {@link PollingScheduler}.
+ */
+@SuppressWarnings("nls")
+public class PollingSchedulerTest {
+
+    /** The number of worker threads in the shared pool. */
+    private static final int WORKER_THREADS = 8;
+
+    /** The scheduler. */
+    private PollingScheduler scheduler;
+
+    /** The latch to release the hung ticks. */
+    private CountDownLatch hung;
+
+    /**
+     * Creates the scheduler whose ticks stall after 100ms.
+     */
+    @Before
+    public void setUp() {
+        scheduler = new PollingScheduler(100);
+        hung = new CountDownLatch(1);
+    }
+
+    /**
+     * Shuts down the scheduler.
+     */
+    @After
+    public void tearDown() {
+        hung.countDown();
+        scheduler.shutdown();
+    }
+
+    /**
+     * Tests that the ticks hung on all worker threads are marked as stalled,
+     * and the other task still runs on the replaced worker threads.
+     * 
+     * @throws InterruptedException
+     */
+    @Test
+    public void testStalledTicks() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(WORKER_THREADS);
+        List<IPollingTask> hungTasks = new ArrayList<IPollingTask>();
+        for (int i = 0; i < WORKER_THREADS; i++) {
+            hungTasks.add(scheduler.schedule("hung " + i, new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        hung.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, 50));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final CountDownLatch ticked = new CountDownLatch(1);
+        scheduler.schedule("healthy", new Runnable() {
+            @Override
+            public void run() {
+                ticked.countDown();
+            }
+        }, 50);
+        assertTrue(ticked.await(5, TimeUnit.SECONDS));
+
+        // the ticks started a bit later are marked at the next check
+        Thread.sleep(300);
+        for (IPollingTask task : hungTasks) {
+            assertTrue(task.isStalled());
+        }
+
+        // the stalled state is cleared when the tick completes
+        hung.countDown();
+        Thread.sleep(200);
+        for (IPollingTask task : hungTasks) {
+            assertFalse(task.isStalled());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.jvmmonitor.core.mbean.TimeSeriesSnapshot;
+
+/**
+ * The test for {@link TimeSeriesRingBuffer}.
+ */
+@SuppressWarnings("nls")
+public class TimeSeriesRingBufferTest {
+
+    /**
+     * Tests that the samples are kept in chronological order.
+     */
+    @Test
+    public void testAdd() {
+        TimeSeriesRingBuffer buffer = new TimeSeriesRingBuffer(8);
+        assertEquals(0, buffer.getSnapshot().size());
+
+        for (int i = 0; i < 5; i++) {
+            buffer.add(i * 10, i);
+        }
+
+        TimeSeriesSnapshot snapshot = buffer.getSnapshot();
+        assertEquals(5, buffer.size());
+        assertEquals(5, snapshot.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i * 10, snapshot.getTimestamp(i));
+            assertEquals(i, snapshot.getValue(i), 0);
+        }
+    }
+
+    /**
+     * Tests that the oldest samples are overwritten when the buffer wraps
+     * around.
+     */
+    @Test
+    public void testWraparound() {
+        TimeSeriesRingBuffer buffer = new TimeSeriesRingBuffer(8);
+        for (int i = 0; i < 20; i++) {
+            buffer.add(i, i * 2);
+        }
+
+        // one slot is kept for the sample being added
+        TimeSeriesSnapshot snapshot = buffer.getSnapshot();
+        assertEquals(7, buffer.size());
+        assertEquals(7, snapshot.size());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(13 + i, snapshot.getTimestamp(i));
+            assertEquals((13 + i) * 2, snapshot.getValue(i), 0);
+        }
+    }
+
+    /**
+     * Tests that the samples added after clearing are kept.
+     */
+    @Test
+    public void testClear() {
+        TimeSeriesRingBuffer buffer = new TimeSeriesRingBuffer(4);
+        buffer.add(1, 1);
+        buffer.add(2, 2);
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.getSnapshot().size());
+
+        buffer.add(3, 3);
+        TimeSeriesSnapshot snapshot = buffer.getSnapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals(3, snapshot.getTimestamp(0));
+    }
+
+    /**
+     * Tests that the capacity has to be power of two.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalCapacity() {
+        new TimeSeriesRingBuffer(6);
+    }
+
+    /**
+     * Tests that the snapshot taken while adding samples on another thread
+     * never contains torn samples.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentRead() throws Exception {
+        final TimeSeriesRingBuffer buffer = new TimeSeriesRingBuffer(64);
+        final int samples = 1000000;
+        Thread writer = new Thread("writer") {
+            @Override
+            public void run() {
+                for (int i = 1; i <= samples; i++) {
+                    buffer.add(i, i);
+                }
+            }
+        };
+        writer.start();
+
+        long lastTimestamp = 0;
+        while (writer.isAlive() || lastTimestamp < samples) {
+            TimeSeriesSnapshot snapshot = buffer.getSnapshot();
+            assertTrue(snapshot.size() < 64);
+            for (int i = 0; i < snapshot.size(); i++) {
+                long timestamp = snapshot.getTimestamp(i);
+                if (timestamp != (long) snapshot.getValue(i)) {
+                    fail("torn sample at " + timestamp);
+                }
+                if (i > 0 && timestamp != snapshot.getTimestamp(i - 1) + 1) {
+                    fail("missing sample before " + timestamp);
+                }
+            }
+            if (snapshot.size() > 0) {
+                long latest = snapshot.getTimestamp(snapshot.size() - 1);
+                assertTrue(latest >= lastTimestamp);
+                lastTimestamp = latest;
+            }
+        }
+        writer.join();
+        assertEquals(samples, lastTimestamp);
+    }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.jvmmonitor.core.mbean.TimeSeriesSnapshot;
+
+/**
+ * The test for {@link TimeSeriesRollup} and {@link MinMaxDownsampler}.
+ */
+public class TimeSeriesRollupTest {
+
+    /**
+     * Tests that the samples are rolled up into the buckets aligned to the
+     * duration.
+     */
+    @Test
+    public void testAdd() {
+        TimeSeriesRollup rollup = new TimeSeriesRollup(1000, 4);
+        assertEquals(Long.MAX_VALUE, rollup.getOldestTime());
+
+        rollup.add(1200, 5);
+        rollup.add(1500, 2);
+        rollup.add(1900, 8);
+        rollup.add(2100, 3);
+
+        assertEquals(1000, rollup.getOldestTime());
+        TimeSeriesSnapshot series = rollup.getSeries(0, 10000, 100);
+        assertArrayEquals(new long[] { 1000, 1000, 2000 },
+                series.getTimestamps());
+        assertArrayEquals(new double[] { 2, 8, 3 }, series.getValues(), 0);
+    }
+
+    /**
+     * Tests that the oldest bucket is overwritten when the rollup is full.
+     */
+    @Test
+    public void testOverwrite() {
+        TimeSeriesRollup rollup = new TimeSeriesRollup(1000, 3);
+        for (int i = 0; i < 5; i++) {
+            rollup.add(i * 1000, i);
+        }
+
+        assertEquals(2000, rollup.getOldestTime());
+        TimeSeriesSnapshot series = rollup.getSeries(0, 10000, 100);
+        assertArrayEquals(new long[] { 2000, 3000, 4000 },
+                series.getTimestamps());
+
+        rollup.clear();
+        assertEquals(Long.MAX_VALUE, rollup.getOldestTime());
+        assertEquals(0, rollup.getSeries(0, 10000, 100).size());
+    }
+
+    /**
+     * Tests that only the buckets overlapping the given range are returned.
+     */
+    @Test
+    public void testGetSeriesInRange() {
+        TimeSeriesRollup rollup = new TimeSeriesRollup(1000, 10);
+        for (int i = 0; i < 10; i++) {
+            rollup.add(i * 1000, i);
+        }
+
+        TimeSeriesSnapshot series = rollup.getSeries(2500, 5000, 100);
+        assertArrayEquals(new long[] { 2500, 3000, 4000, 5000 },
+                series.getTimestamps());
+        assertArrayEquals(new double[] { 2, 3, 4, 5 }, series.getValues(), 0);
+    }
+
+    /**
+     * Tests that each column keeps the min and the max values in
+     * chronological order.
+     */
+    @Test
+    public void testDownsample() {
+        long[] times = new long[100];
+        double[] values = new double[100];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = i;
+            values[i] = i % 10 == 3 ? -i : i;
+        }
+
+        TimeSeriesSnapshot series = MinMaxDownsampler.downsample(times,
+                values, values, 0, times.length, 0, 100, 5);
+        assertArrayEquals(new long[] { 13, 19, 33, 39, 53, 59, 73, 79, 93,
+                99 }, series.getTimestamps());
+        assertArrayEquals(new double[] { -13, 19, -33, 39, -53, 59, -73, 79,
+                -93, 99 }, series.getValues(), 0);
+
+        // the max value comes first if it precedes the min value
+        values[0] = 100;
+        series = MinMaxDownsampler.downsample(times, values, values, 0, 20, 0,
+                100, 5);
+        assertArrayEquals(new long[] { 0, 13 }, series.getTimestamps());
+        assertArrayEquals(new double[] { 100, -13 }, series.getValues(), 0);
+    }
+
+    /**
+     * Tests that a column with the same min and max values has a single
+     * point.
+     */
+    @Test
+    public void testDownsampleFlatColumn() {
+        long[] times = new long[] { 0, 10, 20, 30 };
+        double[] values = new double[] { 1, 1, 1, 1 };
+
+        TimeSeriesSnapshot series = MinMaxDownsampler.downsample(times,
+                values, values, 0, times.length, 0, 40, 2);
+        assertArrayEquals(new long[] { 0, 20 }, series.getTimestamps());
+        assertArrayEquals(new double[] { 1, 1 }, series.getValues(), 0);
+
+        series = MinMaxDownsampler.downsample(times, values, values, 0, 0, 0,
+                40, 2);
+        assertEquals(0, series.size());
+    }
+}
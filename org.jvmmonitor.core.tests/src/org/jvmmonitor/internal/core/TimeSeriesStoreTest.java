@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvmmonitor.core.mbean.TimeSeriesSnapshot;
+
+/**
+ * The test for {@link TimeSeriesStore}.
+ */
+@SuppressWarnings("nls")
+public class TimeSeriesStoreTest {
+
+    /** The number of records in a segment. */
+    private static final int SEGMENT_CAPACITY = 52427;
+
+    /** The time of the first sample, that is aligned to minute. */
+    private static final long START_TIME = 1000000020000L;
+
+    /** The directory of store. */
+    private File directory;
+
+    /** The store. */
+    private TimeSeriesStore store;
+
+    /**
+     * Creates the store in a temporary directory.
+     * 
+     * @throws IOException
+     */
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("jvmmonitor", ".store");
+        directory.delete();
+        store = new TimeSeriesStore(directory);
+    }
+
+    /**
+     * Closes the store, and deletes the temporary directory.
+     */
+    @After
+    public void tearDown() {
+        store.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Tests that the appended samples are restored after reopening the store.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testReopen() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            store.append("a", START_TIME + i * 1000, i);
+            store.append("b", START_TIME + i * 1000, -i);
+        }
+        Map<String, TimeSeriesSnapshot> series = store.query(START_TIME,
+                START_TIME + 1000000);
+        assertEquals(2, series.size());
+        assertEquals(100, series.get("a").size());
+
+        store.close();
+        store = new TimeSeriesStore(directory);
+        assertSeriesEquals(series,
+                store.query(START_TIME, START_TIME + 1000000));
+
+        // the samples are appended to a new segment after reopening
+        store.append("b", START_TIME + 100000, -100);
+        TimeSeriesSnapshot b = store.query(START_TIME, START_TIME + 1000000)
+                .get("b");
+        assertEquals(101, b.size());
+        assertEquals(-100, b.getValue(100), 0);
+    }
+
+    /**
+     * Tests that only the samples in the given range are returned.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testQueryRange() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            store.append("a", START_TIME + i * 1000, i);
+        }
+
+        TimeSeriesSnapshot a = store.query(START_TIME + 2000,
+                START_TIME + 4000).get("a");
+        assertArrayEquals(new long[] { START_TIME + 2000, START_TIME + 3000,
+                START_TIME + 4000 }, a.getTimestamps());
+        assertTrue(store.query(0, START_TIME - 1).isEmpty());
+    }
+
+    /**
+     * Tests that the old segment is compacted into min / max values per
+     * minute when rolling the segment, and the compacted segment is restored
+     * after reopening the store.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testCompaction() throws IOException {
+        // a full segment of samples every 100 milliseconds over 87 minutes
+        for (int i = 0; i < SEGMENT_CAPACITY; i++) {
+            store.append("a", START_TIME + i * 100L, i % 2 == 0 ? i : -i);
+        }
+        long lastTime = START_TIME + 10 * 60 * 60 * 1000L;
+        store.append("a", lastTime, 0);
+
+        TimeSeriesSnapshot a = store.query(0, Long.MAX_VALUE).get("a");
+        int minutes = (int) ((SEGMENT_CAPACITY - 1) * 100L / 60000) + 1;
+        assertEquals(minutes * 2 + 1, a.size());
+        assertEquals(lastTime, a.getTimestamp(a.size() - 1));
+
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (int i = 0; i < a.size(); i++) {
+            if (i > 0) {
+                assertTrue(a.getTimestamp(i - 1) <= a.getTimestamp(i));
+            }
+            min = Math.min(min, a.getValue(i));
+            max = Math.max(max, a.getValue(i));
+        }
+        assertEquals(-(SEGMENT_CAPACITY - 2), min, 0);
+        assertEquals(SEGMENT_CAPACITY - 1, max, 0);
+
+        store.close();
+        store = new TimeSeriesStore(directory);
+        TimeSeriesSnapshot reopened = store.query(0, Long.MAX_VALUE).get("a");
+        assertArrayEquals(a.getTimestamps(), reopened.getTimestamps());
+        assertArrayEquals(a.getValues(), reopened.getValues(), 0);
+    }
+
+    /**
+     * Asserts that the given series are equal.
+     * 
+     * @param expected
+     *            The expected series
+     * @param actual
+     *            The actual series
+     */
+    private static void assertSeriesEquals(
+            Map<String, TimeSeriesSnapshot> expected,
+            Map<String, TimeSeriesSnapshot> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String key : expected.keySet()) {
+            assertArrayEquals(expected.get(key).getTimestamps(), actual
+                    .get(key).getTimestamps());
+            assertArrayEquals(expected.get(key).getValues(), actual.get(key)
+                    .getValues(), 0);
+        }
+    }
+}
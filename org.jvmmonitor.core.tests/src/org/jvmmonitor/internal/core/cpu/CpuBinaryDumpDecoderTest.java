@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core.cpu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The test for {@link CpuBinaryDumpDecoder}. The profile data are the same as
+ * those that <tt>BinaryDumpWriterTest</tt> in agent expects
+ * <tt>BinaryDumpWriter</tt> to encode.
+ */
+@SuppressWarnings("nls")
+public class CpuBinaryDumpDecoderTest {
+
+    /**
+     * The full profile data of epoch 1 with the following threads, whose
+     * times are given in microseconds.
+     * 
+     * <pre>
+     * main   A.run()  count 1, time 100000
+     *          B.foo()  count 3, time 60000
+     *          C.bar()  count 2, time 30000
+     *            B.foo()  count 1, time 10000
+     * worker B.foo()  count 5, time 50000
+     * </pre>
+     */
+    static final String FULL_DUMP =
+            "4a4d435002010005046d61696e07412e72756e282907422e666f6f282907"
+            + "432e626172282906776f726b657201010101a08d06020203e0d403000302"
+            + "b0ea01010201904e0005010205d086030000";
+
+    /**
+     * The delta profile data of epoch 2 with the following modified frames.
+     * 
+     * <pre>
+     * main   A.run()  count 2, time 150000
+     *          C.bar()  count 3, time 60000
+     * </pre>
+     */
+    static final String DELTA_DUMP =
+            "4a4d435002020103046d61696e07412e72756e282907432e626172282901"
+            + "010102f09309010203e0d4030000";
+
+    /**
+     * The full profile data of epoch 1 with the following sub-millisecond
+     * frames.
+     * 
+     * <pre>
+     * timer  T.run()  count 1, time 2000
+     *          A.a()  count 3, time 600
+     *            T.tick()  count 3, time 400
+     *          B.b()  count 2, time 900
+     *            T.tick()  count 2, time 400
+     * </pre>
+     */
+    static final String SUB_MILLISECOND_DUMP =
+            "4a4d4350020100050574696d657207542e72756e282905412e6128290854"
+            + "2e7469636b282905422e62282901010101d00f020203d804010303900300"
+            + "0402840701030290030000";
+
+    /** The CPU model. */
+    private CpuModel cpuModel;
+
+    /** The decoder. */
+    private CpuBinaryDumpDecoder decoder;
+
+    /**
+     * Creates the CPU model and the decoder.
+     */
+    @Before
+    public void setUp() {
+        cpuModel = new CpuModel();
+        decoder = new CpuBinaryDumpDecoder(cpuModel, null);
+    }
+
+    /**
+     * Tests decoding the full profile data.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testDecode() throws IOException {
+        decode(FULL_DUMP);
+        assertEquals(1, decoder.getEpoch());
+
+        ThreadNode<CallTreeNode> main = cpuModel.getCallTreeThread("main");
+        assertNotNull(main);
+        assertEquals(100, main.getTotalTime());
+        assertEquals(1, main.getChildren().size());
+
+        CallTreeNode run = main.getChildren().get(0);
+        assertFrame(run, "A.run()", 1, 100, 10);
+        assertEquals(2, run.getChildren().size());
+        assertFrame(run.getChild("B.foo()"), "B.foo()", 3, 60, 60);
+        CallTreeNode bar = run.getChild("C.bar()");
+        assertFrame(bar, "C.bar()", 2, 30, 20);
+        assertFrame(bar.getChild("B.foo()"), "B.foo()", 1, 10, 10);
+
+        ThreadNode<MethodNode> hotSpots = cpuModel.getHotSpotThread("main");
+        assertEquals(100, hotSpots.getTotalTime());
+        assertEquals(3, hotSpots.getChildren().size());
+        assertMethod(hotSpots, "B.foo()", 4, 70);
+        assertMethod(hotSpots, "C.bar()", 2, 20);
+
+        ThreadNode<CallTreeNode> worker = cpuModel
+                .getCallTreeThread("worker");
+        assertEquals(50, worker.getTotalTime());
+        assertFrame(worker.getChildren().get(0), "B.foo()", 5, 50, 50);
+    }
+
+    /**
+     * Tests that the delta profile data is merged into the CPU model.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testDecodeDelta() throws IOException {
+        decode(FULL_DUMP);
+        decode(DELTA_DUMP);
+        assertEquals(2, decoder.getEpoch());
+
+        ThreadNode<CallTreeNode> main = cpuModel.getCallTreeThread("main");
+        assertEquals(150, main.getTotalTime());
+        CallTreeNode run = main.getChildren().get(0);
+        assertFrame(run, "A.run()", 2, 150, 30);
+        assertFrame(run.getChild("B.foo()"), "B.foo()", 3, 60, 60);
+        CallTreeNode bar = run.getChild("C.bar()");
+        assertFrame(bar, "C.bar()", 3, 60, 50);
+        assertFrame(bar.getChild("B.foo()"), "B.foo()", 1, 10, 10);
+
+        ThreadNode<MethodNode> hotSpots = cpuModel.getHotSpotThread("main");
+        assertMethod(hotSpots, "A.run()", 2, 30);
+        assertMethod(hotSpots, "B.foo()", 4, 70);
+        assertMethod(hotSpots, "C.bar()", 3, 50);
+
+        // the thread not contained in delta is kept
+        assertEquals(50, cpuModel.getCallTreeThread("worker").getTotalTime());
+
+        // the full profile data resets the nodes
+        decode(FULL_DUMP);
+        run = cpuModel.getCallTreeThread("main").getChildren().get(0);
+        assertFrame(run, "A.run()", 1, 100, 10);
+        assertFrame(run.getChild("C.bar()"), "C.bar()", 2, 30, 20);
+        assertMethod(cpuModel.getHotSpotThread("main"), "A.run()", 1, 10);
+    }
+
+    /**
+     * Tests that the self time and hot spots are computed in microseconds,
+     * and rounded to milliseconds only for display.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testDecodeSubMillisecondFrames() throws IOException {
+        decode(SUB_MILLISECOND_DUMP);
+
+        ThreadNode<CallTreeNode> timer = cpuModel.getCallTreeThread("timer");
+        assertEquals(2, timer.getTotalTime());
+        CallTreeNode run = timer.getChildren().get(0);
+        assertFrame(run, "T.run()", 1, 2, 1);
+        assertEquals(500, run.getSelfTimeInMicroseconds());
+        assertFrame(run.getChild("A.a()"), "A.a()", 3, 1, 0);
+        assertFrame(run.getChild("B.b()"), "B.b()", 2, 1, 1);
+        assertFrame(run.getChild("A.a()").getChild("T.tick()"), "T.tick()",
+                3, 0, 0);
+
+        // the sum of self times less than 1 millisecond each
+        ThreadNode<MethodNode> hotSpots = cpuModel.getHotSpotThread("timer");
+        assertMethod(hotSpots, "T.tick()", 5, 1);
+        assertMethod(hotSpots, "A.a()", 3, 0);
+    }
+
+    /**
+     * Tests that the data not encoded by <tt>BinaryDumpWriter</tt> is
+     * rejected.
+     * 
+     * @throws IOException
+     */
+    @Test(expected = IOException.class)
+    public void testDecodeUnknownFormat() throws IOException {
+        decoder.decode(new ByteArrayInputStream("<?xml".getBytes("UTF-8")));
+    }
+
+    /**
+     * Tests that the truncated data is rejected.
+     * 
+     * @throws IOException
+     */
+    @Test(expected = IOException.class)
+    public void testDecodeTruncatedData() throws IOException {
+        decode(FULL_DUMP.substring(0, FULL_DUMP.length() - 10));
+    }
+
+    /**
+     * Decodes the profile data.
+     * 
+     * @param hex
+     *            The encoded profile data in hexadecimal
+     * @throws IOException
+     */
+    private void decode(String hex) throws IOException {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(
+                    hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        decoder.decode(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Asserts the frame.
+     * 
+     * @param frame
+     *            The frame
+     * @param name
+     *            The expected frame name
+     * @param count
+     *            The expected invocation count
+     * @param totalTime
+     *            The expected total time
+     * @param selfTime
+     *            The expected self time
+     */
+    private static void assertFrame(CallTreeNode frame, String name,
+            int count, long totalTime, long selfTime) {
+        assertNotNull(frame);
+        assertEquals(name, frame.getName());
+        assertEquals(count, frame.getInvocationCount());
+        assertEquals(totalTime, frame.getTotalTime());
+        assertEquals(selfTime, frame.getSelfTime());
+    }
+
+    /**
+     * Asserts the method in hot spots.
+     * 
+     * @param hotSpots
+     *            The hot spot thread node
+     * @param name
+     *            The method name
+     * @param count
+     *            The expected invocation count
+     * @param selfTime
+     *            The expected self time
+     */
+    private static void assertMethod(ThreadNode<MethodNode> hotSpots,
+            String name, int count, long selfTime) {
+        MethodNode method = (MethodNode) hotSpots.getChild(name);
+        assertNotNull(method);
+        assertEquals(count, method.getInvocationCount());
+        assertEquals(selfTime, method.getSelfTime());
+    }
+}
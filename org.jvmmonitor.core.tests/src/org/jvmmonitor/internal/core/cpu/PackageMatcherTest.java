@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core.cpu;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * The test for {@link PackageMatcher}.
+ */
+@SuppressWarnings("nls")
+public class PackageMatcherTest {
+
+    /**
+     * Tests matching the exact package.
+     */
+    @Test
+    public void testExactPackage() {
+        PackageMatcher matcher = createMatcher("java.lang");
+
+        assertTrue(matcher.matches("java.lang.String"));
+        assertTrue(matcher.matches("java/lang/String"));
+        assertTrue(matcher.matches("java.lang.Thread$State"));
+        assertFalse(matcher.matches("java.lang.reflect.Method"));
+        assertFalse(matcher.matches("java.langx.Foo"));
+        assertFalse(matcher.matches("java.Foo"));
+        assertFalse(matcher.matches("String"));
+    }
+
+    /**
+     * Tests matching the package with wildcard, that also matches the
+     * sub-packages.
+     */
+    @Test
+    public void testWildcard() {
+        PackageMatcher matcher = createMatcher("java.*", "org.eclipse.core");
+
+        assertTrue(matcher.matches("java.Foo"));
+        assertTrue(matcher.matches("java.lang.String"));
+        assertTrue(matcher.matches("java/util/concurrent/locks/LockSupport"));
+        assertFalse(matcher.matches("javax.swing.JFrame"));
+        assertTrue(matcher.matches("org.eclipse.core.Foo"));
+        assertFalse(matcher.matches("org.eclipse.core.runtime.Platform"));
+        assertFalse(matcher.matches("org.eclipse.Foo"));
+    }
+
+    /**
+     * Tests matching the default package.
+     */
+    @Test
+    public void testDefaultPackage() {
+        PackageMatcher matcher = createMatcher("<default>");
+
+        assertTrue(matcher.matches("Foo"));
+        assertFalse(matcher.matches("$Proxy0"));
+        assertFalse(matcher.matches("java.lang.String"));
+        assertFalse(createMatcher("java.*").matches("Foo"));
+    }
+
+    /**
+     * Tests that nothing matches the empty packages.
+     */
+    @Test
+    public void testEmptyPackages() {
+        PackageMatcher matcher = createMatcher();
+
+        assertFalse(matcher.matches("java.lang.String"));
+        assertFalse(matcher.matches("Foo"));
+        assertFalse(matcher.matches("$Proxy0"));
+    }
+
+    /**
+     * Creates the package matcher.
+     * 
+     * @param packages
+     *            The packages
+     * @return The package matcher
+     */
+    private static PackageMatcher createMatcher(String... packages) {
+        Set<String> set = new HashSet<String>(Arrays.asList(packages));
+        return new PackageMatcher(set);
+    }
+}
@@ -9,6 +9,7 @@ package org.jvmmonitor.core;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Plugin;
 import org.eclipse.core.runtime.Status;
+import org.jvmmonitor.internal.core.PollingScheduler;
 import org.osgi.framework.BundleContext;
 
 /**
@@ -22,6 +23,9 @@ public class Activator extends Plugin {
     /** The shared instance. */
     private static Activator plugin;
 
+    /** The polling scheduler. */
+    private PollingScheduler pollingScheduler;
+
     /*
      * @see Plugin#start(BundleContext)
      */
@@ -29,6 +33,7 @@ public class Activator extends Plugin {
     public void start(BundleContext context) throws Exception {
         super.start(context);
         plugin = this;
+        pollingScheduler = new PollingScheduler();
     }
 
     /*
@@ -36,6 +41,7 @@ public class Activator extends Plugin {
      */
     @Override
     public void stop(BundleContext context) throws Exception {
+        pollingScheduler.shutdown();
         super.stop(context);
         plugin = null;
     }
@@ -49,6 +55,15 @@ public class Activator extends Plugin {
         return plugin;
     }
 
+    /**
+     * Gets the polling scheduler shared by all JVMs.
+     * 
+     * @return The polling scheduler
+     */
+    public IPollingScheduler getPollingScheduler() {
+        return pollingScheduler;
+    }
+
     /**
      * Logs the exception with status and message.
      * 
@@ -39,4 +39,20 @@ public interface IHeapElement {
      * @return The base memory size
      */
     long getBaseSize();
+
+    /**
+     * Gets the growth rate of memory size estimated from the recent heap
+     * histograms.
+     * 
+     * @return The growth rate in bytes per second
+     */
+    double getSizeGrowthRate();
+
+    /**
+     * Gets the growth rate of count estimated from the recent heap
+     * histograms.
+     * 
+     * @return The growth rate in instances per second
+     */
+    double getCountGrowthRate();
 }
\ No newline at end of file
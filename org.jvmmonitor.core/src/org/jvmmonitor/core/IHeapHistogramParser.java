@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The parser of heap histogram, that reads the heap histogram directly from
+ * the input stream given by {@link IStreamingHeapDumpHandler} without
+ * buffering the whole heap histogram into a string.
+ */
+public interface IHeapHistogramParser {
+
+    /**
+     * Parses the heap histogram. The format of heap histogram is described in
+     * {@link IHeapDumpHandler#dumpHeap(int, boolean)}.
+     * 
+     * @param input
+     *            The input stream of heap histogram
+     * @throws IOException
+     *             if reading input stream fails
+     */
+    void parse(InputStream input) throws IOException;
+}
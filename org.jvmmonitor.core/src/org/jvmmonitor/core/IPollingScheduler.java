@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.core;
+
+import java.util.List;
+
+/**
+ * The scheduler shared by all JVMs to periodically refresh attributes, sample
+ * profiling data and discover JVMs. The ticks are executed by a bounded
+ * number of threads, and the tick of a task is skipped if the previous tick of
+ * the same task is still running, so that a slow JVM doesn't delay the others.
+ */
+public interface IPollingScheduler {
+
+    /**
+     * Schedules the task to be executed periodically, starting immediately.
+     * If the given runnable throws an exception, the task is canceled.
+     * 
+     * @param name
+     *            The task name
+     * @param runnable
+     *            The runnable to be executed on each tick
+     * @param period
+     *            The period in milliseconds
+     * @return The scheduled task
+     */
+    IPollingTask schedule(String name, Runnable runnable, long period);
+
+    /**
+     * Schedules the task to be executed periodically on its own worker
+     * thread, starting immediately. The task is not delayed even if all the
+     * shared worker threads are blocked by unresponsive JVMs.
+     * 
+     * @param name
+     *            The task name
+     * @param runnable
+     *            The runnable to be executed on each tick
+     * @param period
+     *            The period in milliseconds
+     * @return The scheduled task
+     * @see #schedule(String, Runnable, long)
+     */
+    IPollingTask scheduleIsolated(String name, Runnable runnable, long period);
+
+    /**
+     * Gets the task whose tick is being executed on the current thread. The
+     * runnable can cancel its own task with this, even before the task
+     * returned by {@link #schedule(String, Runnable, long)} is available to
+     * the caller.
+     * 
+     * @return The task, or <tt>null</tt> if not invoked from a tick
+     */
+    IPollingTask getCurrentTask();
+
+    /**
+     * Gets the scheduled tasks that have not been canceled.
+     * 
+     * @return The scheduled tasks
+     */
+    List<IPollingTask> getTasks();
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.core;
+
+/**
+ * The task periodically executed by {@link IPollingScheduler}.
+ */
+public interface IPollingTask {
+
+    /**
+     * Gets the task name.
+     * 
+     * @return The task name
+     */
+    String getName();
+
+    /**
+     * Cancels the task. The tick being executed is not interrupted.
+     */
+    void cancel();
+
+    /**
+     * Gets the state indicating if the task has been canceled.
+     * 
+     * @return <tt>true</tt> if the task has been canceled
+     */
+    boolean isCanceled();
+
+    /**
+     * Gets the latency of the last completed tick.
+     * 
+     * @return The latency in milliseconds
+     */
+    long getLastLatency();
+
+    /**
+     * Gets the max latency of the completed ticks.
+     * 
+     * @return The max latency in milliseconds
+     */
+    long getMaxLatency();
+
+    /**
+     * Gets the number of ticks skipped since the previous tick was still
+     * running.
+     * 
+     * @return The number of skipped ticks
+     */
+    long getSkippedTickCount();
+
+    /**
+     * Gets the state indicating if the tick being executed has not completed
+     * in time, e.g. because the target JVM doesn't respond. The worker thread
+     * occupied by the stalled tick is replaced, so that the other tasks keep
+     * running.
+     * 
+     * @return <tt>true</tt> if the tick being executed has stalled
+     */
+    boolean isStalled();
+}
@@ -42,6 +42,25 @@ public interface ISnapshot {
      */
     SnapshotType getType();
 
+    /**
+     * Gets the compression format of snapshot file.
+     * 
+     * @return The compression format
+     */
+    Compression getCompression();
+
+    /**
+     * Gets the file store of uncompressed snapshot. The snapshot file is
+     * decompressed on the first invocation if compressed, which may take a
+     * while for a large heap dump.
+     * 
+     * @return The file store of uncompressed snapshot, that is the same as
+     *         {@link #getFileStore()} if the snapshot is not compressed
+     * @throws JvmCoreException
+     *             if decompressing snapshot fails
+     */
+    IFileStore getUncompressedFileStore() throws JvmCoreException;
+
     /**
      * Renames the snapshot.
      * 
@@ -78,4 +97,38 @@ public interface ISnapshot {
             return name().toLowerCase();
         }
     }
+
+    /**
+     * The compression format of snapshot file.
+     */
+    public enum Compression {
+
+        /** The uncompressed snapshot. */
+        None(""), //$NON-NLS-1$
+
+        /** The snapshot compressed in gzip format. */
+        Gzip("gz"); //$NON-NLS-1$
+
+        /** The extension. */
+        private String extension;
+
+        /**
+         * The constructor.
+         * 
+         * @param extension
+         *            The extension
+         */
+        private Compression(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Gets the extension that follows the extension of snapshot type.
+         * 
+         * @return The extension, or empty string if not compressed
+         */
+        public String getExtension() {
+            return extension;
+        }
+    }
 }
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.core;
+
+/**
+ * The heap dump handler that gives the heap histogram as input stream instead
+ * of string. A client plug-in that contributes to the extension point
+ * <tt>org.jvmmonitor.core.heapDumpHandler</tt> may optionally implement this
+ * interface to avoid reading the whole heap histogram into a string.
+ */
+public interface IStreamingHeapDumpHandler extends IHeapDumpHandler {
+
+    /**
+     * Dumps the heap histogram, and gives the input stream of heap histogram
+     * to the given parser. The format of heap histogram is the same as
+     * {@link #dumpHeap(int, boolean)}.
+     * 
+     * @param pid
+     *            The process ID
+     * @param isLive
+     *            True to dump only live objects
+     * @param parser
+     *            The heap histogram parser
+     * @throws JvmCoreException
+     */
+    void dumpHeap(int pid, boolean isLive, IHeapHistogramParser parser)
+            throws JvmCoreException;
+}
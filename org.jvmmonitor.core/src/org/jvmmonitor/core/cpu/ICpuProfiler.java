@@ -81,7 +81,8 @@ public interface ICpuProfiler {
 
     /**
      * Refreshes the BCI profiling data cache in JVM model accessing to target
-     * JVM.
+     * JVM. The profiling data aggregated by sampling profiler in target JVM
+     * is also refreshed if the agent is loaded.
      * 
      * @param monitor
      *            The progress monitor
@@ -138,6 +139,25 @@ public interface ICpuProfiler {
      */
     void setSamplingPeriod(Integer samplingPeriod);
 
+    /**
+     * Gets the max depth of stack traces taken by sampling profiler.
+     * 
+     * @return The max depth of stack traces
+     */
+    Integer getMaxSamplingDepth();
+
+    /**
+     * Sets the max depth of stack traces taken by sampling profiler. Only the
+     * given number of frames from the top of stack are sampled, and the
+     * truncated stack traces are rooted at the <tt>(truncated)</tt> node in
+     * call tree.
+     * 
+     * @param maxSamplingDepth
+     *            The max depth of stack traces, or <tt>null</tt> for
+     *            unlimited depth
+     */
+    void setMaxSamplingDepth(Integer maxSamplingDepth);
+
     /**
      * The profiler state.
      */
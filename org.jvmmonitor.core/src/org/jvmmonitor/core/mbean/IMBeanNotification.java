@@ -25,6 +25,30 @@ public interface IMBeanNotification {
      */
     void subscribe(ObjectName objectName) throws JvmCoreException;
 
+    /**
+     * Subscribes the notification of given object name with the given
+     * subscription. The filter is evaluated on target JVM, and the
+     * notifications are coalesced by agent if coalescing interval is given.
+     * The subscription is replaced if already subscribed.
+     * 
+     * @param objectName
+     *            The object name
+     * @param subscription
+     *            The subscription
+     * @throws JvmCoreException
+     */
+    void subscribe(ObjectName objectName, NotificationSubscription subscription)
+            throws JvmCoreException;
+
+    /**
+     * Gets the subscription of given object name.
+     * 
+     * @param objectName
+     *            The object name
+     * @return The subscription, or <tt>null</tt> if not subscribed
+     */
+    NotificationSubscription getSubscription(ObjectName objectName);
+
     /**
      * Unsubscribes the notification of given object name.
      * 
@@ -43,6 +67,55 @@ public interface IMBeanNotification {
      */
     Notification[] getNotifications(ObjectName objectName);
 
+    /**
+     * Gets the notifications received after the given sequence. The
+     * notifications are kept in bounded buffer, and the oldest notification is
+     * dropped when the buffer is full.
+     * 
+     * @param objectName
+     *            The object name
+     * @param sequence
+     *            The sequence given by the previous batch, or <tt>0</tt> to get
+     *            all notifications in buffer
+     * @return The batch of notifications
+     */
+    NotificationBatch getNotificationsSince(ObjectName objectName,
+            long sequence);
+
+    /**
+     * Gets the number of notifications held in buffer.
+     * 
+     * @param objectName
+     *            The object name
+     * @return The number of notifications
+     */
+    int getNotificationCount(ObjectName objectName);
+
+    /**
+     * Gets the number of notifications dropped from buffer since subscribed
+     * or cleared.
+     * 
+     * @param objectName
+     *            The object name
+     * @return The number of dropped notifications
+     */
+    long getDroppedCount(ObjectName objectName);
+
+    /**
+     * Sets the maximum number of notifications held in buffer per object name.
+     * 
+     * @param capacity
+     *            The capacity
+     */
+    void setCapacity(int capacity);
+
+    /**
+     * Gets the maximum number of notifications held in buffer per object name.
+     * 
+     * @return The capacity
+     */
+    int getCapacity();
+
     /**
      * Clears the notifications.
      * 
@@ -167,6 +167,15 @@ public interface IMBeanServer {
      */
     void refreshHeapCache() throws JvmCoreException;
 
+    /**
+     * Gets the heap elements growing fastest in size, that are estimated from
+     * the recent heap histograms when refreshing the heap cache. The classes
+     * beyond the heap cache are also taken into account.
+     * 
+     * @return The heap elements in descending order of size growth rate
+     */
+    IHeapElement[] getFastestGrowingHeapElements();
+
     /**
      * Clears the heap delta.
      */
@@ -212,6 +221,37 @@ public interface IMBeanServer {
      */
     void setUpdatePeriod(Integer updatePeriod);
 
+    /**
+     * Gets the latency of the last tick to refresh the monitored attributes.
+     * 
+     * @return The latency in milliseconds
+     */
+    long getUpdateLatency();
+
+    /**
+     * Gets the state indicating if the tick to refresh the monitored
+     * attributes has stalled, e.g. because the target JVM doesn't respond.
+     * 
+     * @return <tt>true</tt> if the tick has stalled
+     */
+    boolean isUpdateStalled();
+
+    /**
+     * Gets the number of round trips to target JVM in the last tick to refresh
+     * the monitored attributes. The attributes of the same MBean are
+     * retrieved with a single round trip.
+     * 
+     * @return The number of round trips
+     */
+    int getUpdateRoundTrips();
+
+    /**
+     * Requests to load the history of monitored attributes that has been
+     * recorded while previously connected to the same JVM. The history is
+     * loaded on the next update together with the attribute values.
+     */
+    void loadMonitoredAttributeHistory();
+
     /**
      * Adds the MBean server change listener.
      * 
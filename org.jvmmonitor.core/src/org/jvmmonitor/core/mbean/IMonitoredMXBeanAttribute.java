@@ -38,14 +38,44 @@ public interface IMonitoredMXBeanAttribute {
     int[] getRGB();
 
     /**
-     * Gets the dates.
+     * Gets the snapshot of the timestamps and the values. The snapshot is
+     * consistent even while the attribute is being updated.
+     * 
+     * @return The snapshot
+     */
+    TimeSeriesSnapshot getSnapshot();
+
+    /**
+     * Gets the series in the given time range downsampled for the given
+     * width. The samples are rolled up into the tiers of 10 seconds, 1 minute
+     * and 10 minutes in addition to the raw samples, and the coarsest tier
+     * that is still finer than a column of the given width is used, so that
+     * the history older than the raw samples can also be retrieved. The
+     * series contains at most the min and the max value in each column.
+     * 
+     * @param from
+     *            The start time in milliseconds, that is clamped to the
+     *            oldest sample
+     * @param to
+     *            The end time in milliseconds, that is clamped to the latest
+     *            sample
+     * @param width
+     *            The width in pixels
+     * @return The series
+     */
+    TimeSeriesSnapshot getSeries(long from, long to, int width);
+
+    /**
+     * Gets the dates. {@link #getSnapshot()} is preferable since this method
+     * creates the list from a snapshot on every invocation.
      * 
      * @return The dates
      */
     List<Date> getDates();
 
     /**
-     * Gets the values.
+     * Gets the values. {@link #getSnapshot()} is preferable since this method
+     * creates the list from a snapshot on every invocation.
      * 
      * @return The values
      */
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.core.mbean;
+
+import javax.management.Notification;
+
+/**
+ * The immutable batch of notifications received since a given sequence, that
+ * is returned by {@link IMBeanNotification}.
+ */
+public class NotificationBatch {
+
+    /** The notifications in the order received. */
+    private final Notification[] notifications;
+
+    /** The sequence of the latest notification received. */
+    private final long sequence;
+
+    /** The number of notifications dropped before being fetched. */
+    private final long droppedCount;
+
+    /** The number of notifications held in buffer. */
+    private final int bufferedCount;
+
+    /**
+     * The constructor.
+     * 
+     * @param notifications
+     *            The notifications in the order received
+     * @param sequence
+     *            The sequence of the latest notification received
+     * @param droppedCount
+     *            The number of notifications dropped before being fetched
+     * @param bufferedCount
+     *            The number of notifications held in buffer
+     */
+    public NotificationBatch(Notification[] notifications, long sequence,
+            long droppedCount, int bufferedCount) {
+        this.notifications = notifications;
+        this.sequence = sequence;
+        this.droppedCount = droppedCount;
+        this.bufferedCount = bufferedCount;
+    }
+
+    /**
+     * Gets the notifications received since the given sequence. The returned
+     * array is shared, and must not be modified.
+     * 
+     * @return The notifications in the order received
+     */
+    public Notification[] getNotifications() {
+        return notifications;
+    }
+
+    /**
+     * Gets the sequence of the latest notification received, that is given
+     * back to get the next batch. The sequence smaller than the given one
+     * indicates that the notifications have been subscribed again.
+     * 
+     * @return The sequence
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the number of notifications that have been received since the
+     * given sequence but dropped from buffer before being fetched.
+     * 
+     * @return The number of dropped notifications
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Gets the number of notifications held in buffer, including the ones
+     * fetched before. The notifications older than those have been dropped or
+     * cleared.
+     * 
+     * @return The number of notifications held in buffer
+     */
+    public int getBufferedCount() {
+        return bufferedCount;
+    }
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.core.mbean;
+
+/**
+ * The immutable settings to subscribe notifications, that specifies the filter
+ * evaluated on target JVM and the interval to coalesce notifications on agent.
+ */
+public class NotificationSubscription {
+
+    /** The subscription without filter nor coalescing. */
+    public static final NotificationSubscription ALL = new NotificationSubscription(
+            new String[0], new String[0], 0);
+
+    /** The prefixes of notification types. */
+    private final String[] types;
+
+    /** The attribute names. */
+    private final String[] attributes;
+
+    /** The interval in milliseconds to coalesce notifications. */
+    private final long coalescingInterval;
+
+    /**
+     * The constructor.
+     * 
+     * @param types
+     *            The prefixes of notification types to be received, or empty
+     *            array for all types
+     * @param attributes
+     *            The attribute names whose attribute change notifications are
+     *            received, or empty array not to filter by attribute. The
+     *            types are ignored if attributes are given.
+     * @param coalescingInterval
+     *            The interval in milliseconds to coalesce notifications into
+     *            one summary on agent, or <tt>0</tt> not to coalesce
+     */
+    public NotificationSubscription(String[] types, String[] attributes,
+            long coalescingInterval) {
+        this.types = types;
+        this.attributes = attributes;
+        this.coalescingInterval = coalescingInterval;
+    }
+
+    /**
+     * Gets the prefixes of notification types. The returned array is shared,
+     * and must not be modified.
+     * 
+     * @return The prefixes of notification types
+     */
+    public String[] getTypes() {
+        return types;
+    }
+
+    /**
+     * Gets the attribute names. The returned array is shared, and must not be
+     * modified.
+     * 
+     * @return The attribute names
+     */
+    public String[] getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Gets the interval to coalesce notifications.
+     * 
+     * @return The interval in milliseconds, or <tt>0</tt> not to coalesce
+     */
+    public long getCoalescingInterval() {
+        return coalescingInterval;
+    }
+
+    /**
+     * Gets the state indicating if the notifications are filtered.
+     * 
+     * @return <tt>true</tt> if the notifications are filtered
+     */
+    public boolean isFiltered() {
+        return types.length > 0 || attributes.length > 0;
+    }
+
+    /**
+     * Gets the state indicating if the notifications are coalesced.
+     * 
+     * @return <tt>true</tt> if the notifications are coalesced
+     */
+    public boolean isCoalesced() {
+        return coalescingInterval > 0;
+    }
+}
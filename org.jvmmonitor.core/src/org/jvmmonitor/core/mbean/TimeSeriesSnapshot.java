@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.core.mbean;
+
+/**
+ * The immutable snapshot of time series, that holds the timestamps and the
+ * values of the same length in chronological order.
+ */
+public class TimeSeriesSnapshot {
+
+    /** The timestamps in milliseconds. */
+    private final long[] timestamps;
+
+    /** The values. */
+    private final double[] values;
+
+    /**
+     * The constructor.
+     * 
+     * @param timestamps
+     *            The timestamps in milliseconds
+     * @param values
+     *            The values that have the same length as timestamps
+     */
+    public TimeSeriesSnapshot(long[] timestamps, double[] values) {
+        if (timestamps.length != values.length) {
+            throw new IllegalArgumentException();
+        }
+        this.timestamps = timestamps;
+        this.values = values;
+    }
+
+    /**
+     * Gets the number of samples.
+     * 
+     * @return The number of samples
+     */
+    public int size() {
+        return timestamps.length;
+    }
+
+    /**
+     * Gets the timestamp.
+     * 
+     * @param index
+     *            The index
+     * @return The timestamp in milliseconds
+     */
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * Gets the value.
+     * 
+     * @param index
+     *            The index
+     * @return The value
+     */
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Gets the timestamps. The returned array is shared, and must not be
+     * modified.
+     * 
+     * @return The timestamps in milliseconds
+     */
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    /**
+     * Gets the values. The returned array is shared, and must not be
+     * modified.
+     * 
+     * @return The values
+     */
+    public double[] getValues() {
+        return values;
+    }
+}
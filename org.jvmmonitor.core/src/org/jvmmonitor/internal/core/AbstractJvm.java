@@ -166,6 +166,9 @@ abstract public class AbstractJvm implements IJvm {
     @Override
     public void deleteSnapshot(ISnapshot snapshot) {
         snapshots.remove(snapshot);
+        if (snapshot instanceof Snapshot) {
+            ((Snapshot) snapshot).deleteUncompressedFile();
+        }
         try {
             snapshot.getFileStore().delete(EFS.NONE, null);
         } catch (CoreException e) {
@@ -190,6 +190,7 @@ public class ActiveJvm extends AbstractJvm implements IActiveJvm {
             throw new IllegalStateException(Messages.attachNotSupportedMsg);
         }
 
+        ((CpuProfiler) cpuProfiler).resetAgentState();
         mBeanServer.connect(updatePeriod);
         isConnected = true;
 
@@ -25,6 +25,12 @@ public class HeapElement implements IHeapElement {
     /** The base memory size to calculate the delta. */
     private long baseSize;
 
+    /** The growth rate of memory size in bytes per second. */
+    private double sizeGrowthRate;
+
+    /** The growth rate of count in instances per second. */
+    private double countGrowthRate;
+
     /***
      * The constructor.
      * 
@@ -91,6 +97,22 @@ public class HeapElement implements IHeapElement {
         return baseSize;
     }
 
+    /*
+     * @see IHeapElement#getSizeGrowthRate()
+     */
+    @Override
+    public double getSizeGrowthRate() {
+        return sizeGrowthRate;
+    }
+
+    /*
+     * @see IHeapElement#getCountGrowthRate()
+     */
+    @Override
+    public double getCountGrowthRate() {
+        return countGrowthRate;
+    }
+
 
     /**
      * Resets the base memory size.
@@ -124,6 +146,19 @@ public class HeapElement implements IHeapElement {
         this.count = count;
     }
 
+    /**
+     * Sets the growth rates.
+     * 
+     * @param sizeGrowthRate
+     *            The growth rate of memory size in bytes per second
+     * @param countGrowthRate
+     *            The growth rate of count in instances per second
+     */
+    public void setGrowthRates(double sizeGrowthRate, double countGrowthRate) {
+        this.sizeGrowthRate = sizeGrowthRate;
+        this.countGrowthRate = countGrowthRate;
+    }
+
     /**
      * Dumps the heap data to given string buffer.
      * 
@@ -0,0 +1,465 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.eclipse.jdt.core.Signature;
+import org.jvmmonitor.core.IHeapElement;
+import org.jvmmonitor.core.IHeapHistogramParser;
+
+/**
+ * The streaming parser of heap histogram. The fields of each line are parsed
+ * byte by byte from the input stream, and the classes parsed at the previous
+ * time are looked up with the raw class name bytes, so that the existing heap
+ * elements are updated in place without creating strings.
+ * <p>
+ * The size and count of the recent {@link #HISTORY_SIZE} heap histograms are
+ * kept for every class, including the classes beyond the max number of
+ * classes, to estimate the growth rate of each class. The classes growing
+ * fastest in size are collected with a bounded heap while parsing.
+ */
+public class HeapHistogramParser implements IHeapHistogramParser {
+
+    /** The buffer size to read input stream. */
+    private static final int BUFFER_SIZE = 65536;
+
+    /** The initial capacity of entry table that has to be power of two. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** The number of heap histograms kept to estimate growth rate. */
+    private static final int HISTORY_SIZE = 6;
+
+    /** The number of classes growing fastest to be collected. */
+    private static final int FASTEST_GROWING_CLASSES = 20;
+
+    /** The buffer to read input stream. */
+    private byte[] buffer;
+
+    /** The buffer of class name being parsed. */
+    private byte[] nameBuffer;
+
+    /** The open addressing table of entries keyed by raw class name. */
+    private Entry[] table;
+
+    /** The number of entries in table. */
+    private int size;
+
+    /** The number of entries found at the last parsing. */
+    private int foundSize;
+
+    /** The generation incremented every time parsing heap histogram. */
+    private int generation;
+
+    /** The times in milliseconds of recent heap histograms. */
+    private long[] times;
+
+    /** The max number of classes. */
+    private int maxClassesNumber;
+
+    /** The heap elements parsed at last time keyed by class name. */
+    private Map<String, HeapElement> heapElements;
+
+    /** The min heap of entries growing fastest in size. */
+    private PriorityQueue<Entry> fastestGrowingEntries;
+
+    /** The heap elements growing fastest in size in descending order. */
+    private volatile IHeapElement[] fastestGrowingElements;
+
+    /**
+     * The constructor.
+     */
+    public HeapHistogramParser() {
+        buffer = new byte[BUFFER_SIZE];
+        nameBuffer = new byte[256];
+        times = new long[HISTORY_SIZE];
+        maxClassesNumber = Integer.MAX_VALUE;
+        fastestGrowingEntries = new PriorityQueue<Entry>(
+                FASTEST_GROWING_CLASSES, new GrowthRateComparator());
+        clear();
+    }
+
+    /*
+     * @see IHeapHistogramParser#parse(InputStream)
+     */
+    @Override
+    public void parse(InputStream input) throws IOException {
+        generation++;
+        times[generation % HISTORY_SIZE] = System.currentTimeMillis();
+        heapElements = new LinkedHashMap<String, HeapElement>();
+        fastestGrowingEntries.clear();
+        foundSize = 0;
+
+        int tokens = 0;
+        boolean inToken = false;
+        boolean valid = true;
+        long count = 0;
+        long bytes = 0;
+        int nameLength = 0;
+
+        int length;
+        while ((length = input.read(buffer)) != -1) {
+            for (int i = 0; i < length; i++) {
+                byte b = buffer[i];
+                if (b == '\n') {
+                    if (valid && tokens >= 4 && nameBuffer[0] != '<') {
+                        update(count, bytes, nameLength);
+                    }
+                    tokens = 0;
+                    inToken = false;
+                    valid = true;
+                    count = 0;
+                    bytes = 0;
+                    nameLength = 0;
+                } else if (b == ' ' || b == '\t' || b == '\r') {
+                    inToken = false;
+                } else if (valid) {
+                    if (!inToken) {
+                        inToken = true;
+                        tokens++;
+                    }
+                    if (tokens == 2 || tokens == 3) {
+                        if (b < '0' || b > '9') {
+                            valid = false;
+                        } else if (tokens == 2) {
+                            count = count * 10 + (b - '0');
+                        } else {
+                            bytes = bytes * 10 + (b - '0');
+                        }
+                    } else if (tokens == 4) {
+                        if (nameLength == nameBuffer.length) {
+                            nameBuffer = Arrays.copyOf(nameBuffer,
+                                    nameLength * 2);
+                        }
+                        nameBuffer[nameLength++] = b;
+                    }
+                }
+            }
+        }
+        removeStaleEntries();
+        collectFastestGrowingElements();
+    }
+
+    /**
+     * Sets the max number of classes. The classes beyond the given number of
+     * classes are not contained in the heap elements, while their growth
+     * rates are still estimated.
+     * 
+     * @param maxClassesNumber
+     *            The max number of classes
+     */
+    public void setMaxClassesNumber(int maxClassesNumber) {
+        this.maxClassesNumber = maxClassesNumber;
+    }
+
+    /**
+     * Gets the heap elements parsed at last time.
+     * 
+     * @return The heap elements keyed by class name
+     */
+    public Map<String, HeapElement> getHeapElements() {
+        return heapElements;
+    }
+
+    /**
+     * Gets the heap elements growing fastest in size, that have been
+     * collected at the last parsing.
+     * 
+     * @return The heap elements in descending order of size growth rate
+     */
+    public IHeapElement[] getFastestGrowingElements() {
+        return fastestGrowingElements;
+    }
+
+    /**
+     * Clears the heap elements.
+     */
+    public void clear() {
+        table = new Entry[INITIAL_CAPACITY];
+        size = 0;
+        heapElements = new LinkedHashMap<String, HeapElement>();
+        fastestGrowingElements = new IHeapElement[0];
+    }
+
+    /**
+     * Updates the entry with the parsed line.
+     * 
+     * @param count
+     *            The total count of instances
+     * @param bytes
+     *            The total memory size of instances
+     * @param nameLength
+     *            The length of class name in name buffer
+     * @throws IOException
+     */
+    private void update(long count, long bytes, int nameLength)
+            throws IOException {
+        int hash = 0;
+        for (int i = 0; i < nameLength; i++) {
+            hash = 31 * hash + nameBuffer[i];
+        }
+
+        int mask = table.length - 1;
+        int index = hash & mask;
+        Entry entry;
+        while ((entry = table[index]) != null) {
+            if (entry.matches(hash, nameBuffer, nameLength)) {
+                break;
+            }
+            index = (index + 1) & mask;
+        }
+
+        if (entry == null) {
+            entry = new Entry(hash, Arrays.copyOf(nameBuffer, nameLength));
+            table[index] = entry;
+            size++;
+            if (size * 2 > table.length) {
+                rehash(table.length * 2, false);
+            }
+        } else if (entry.generation == generation) {
+            // WORKAROUND heap from target JVM has a duplicated entry...
+            return;
+        }
+
+        entry.addSample(generation, times, bytes, count);
+        foundSize++;
+
+        if (heapElements.size() < maxClassesNumber) {
+            HeapElement element = entry.getElement();
+            heapElements.put(element.getClassName(), element);
+        }
+
+        double growthRate = entry.sizeGrowthRate;
+        if (growthRate > 0) {
+            if (fastestGrowingEntries.size() < FASTEST_GROWING_CLASSES) {
+                fastestGrowingEntries.add(entry);
+            } else if (fastestGrowingEntries.peek().sizeGrowthRate < growthRate) {
+                fastestGrowingEntries.poll();
+                fastestGrowingEntries.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Collects the heap elements growing fastest from the min heap.
+     * 
+     * @throws IOException
+     */
+    private void collectFastestGrowingElements() throws IOException {
+        IHeapElement[] elements = new IHeapElement[fastestGrowingEntries
+                .size()];
+        for (int i = elements.length - 1; i >= 0; i--) {
+            elements[i] = fastestGrowingEntries.poll().getElement();
+        }
+        fastestGrowingElements = elements;
+    }
+
+    /**
+     * Removes the entries that have not been found at the last parsing, so
+     * that unloaded classes are forgotten.
+     */
+    private void removeStaleEntries() {
+        if (size > foundSize) {
+            rehash(table.length, true);
+        }
+    }
+
+    /**
+     * Rebuilds the entry table.
+     * 
+     * @param capacity
+     *            The capacity that has to be power of two
+     * @param removeStaleEntries
+     *            <tt>true</tt> to keep only the entries found at the last
+     *            parsing
+     */
+    private void rehash(int capacity, boolean removeStaleEntries) {
+        Entry[] oldTable = table;
+        table = new Entry[capacity];
+        size = 0;
+        int mask = capacity - 1;
+        for (Entry entry : oldTable) {
+            if (entry == null
+                    || (removeStaleEntries && entry.generation != generation)) {
+                continue;
+            }
+            int index = entry.hash & mask;
+            while (table[index] != null) {
+                index = (index + 1) & mask;
+            }
+            table[index] = entry;
+            size++;
+        }
+    }
+
+    /**
+     * Converts the class name. e.g "[I" to "int[]"
+     * 
+     * @param className
+     *            The class name
+     * @return The class name
+     */
+    private static String convertClassName(String className) {
+        if (className.startsWith("[")) { //$NON-NLS-1$
+            return Signature.toString(className);
+        }
+        return className;
+    }
+
+    /**
+     * The entry of class keyed by raw class name, that keeps the recent size
+     * and count of instances.
+     */
+    private static class Entry {
+
+        /** The hash code of raw class name. */
+        int hash;
+
+        /** The raw class name. */
+        byte[] name;
+
+        /** The heap element, that is lazily created. */
+        private HeapElement element;
+
+        /** The generation when the entry was updated at last. */
+        int generation;
+
+        /** The generation of the oldest sample in history. */
+        private int firstGeneration;
+
+        /** The recent sizes indexed by generation modulo history size. */
+        private long[] sizes;
+
+        /** The recent counts indexed by generation modulo history size. */
+        private long[] counts;
+
+        /** The size growth rate in bytes per second. */
+        double sizeGrowthRate;
+
+        /** The count growth rate in instances per second. */
+        private double countGrowthRate;
+
+        /**
+         * The constructor.
+         * 
+         * @param hash
+         *            The hash code of raw class name
+         * @param name
+         *            The raw class name
+         */
+        Entry(int hash, byte[] name) {
+            this.hash = hash;
+            this.name = name;
+            generation = -1;
+            sizes = new long[HISTORY_SIZE];
+            counts = new long[HISTORY_SIZE];
+        }
+
+        /**
+         * Adds the sample, and estimates the growth rates from the oldest
+         * sample in history.
+         * 
+         * @param newGeneration
+         *            The generation of heap histogram
+         * @param times
+         *            The times of recent heap histograms
+         * @param size
+         *            The total memory size of instances
+         * @param count
+         *            The total count of instances
+         */
+        void addSample(int newGeneration, long[] times, long size, long count) {
+            if (generation != newGeneration - 1) {
+                firstGeneration = newGeneration;
+            }
+            generation = newGeneration;
+
+            int index = newGeneration % HISTORY_SIZE;
+            sizes[index] = size;
+            counts[index] = count;
+
+            int oldestIndex = Math.max(firstGeneration, newGeneration
+                    - HISTORY_SIZE + 1)
+                    % HISTORY_SIZE;
+            long elapsedTime = times[index] - times[oldestIndex];
+            if (elapsedTime > 0) {
+                sizeGrowthRate = (size - sizes[oldestIndex]) * 1000d
+                        / elapsedTime;
+                countGrowthRate = (count - counts[oldestIndex]) * 1000d
+                        / elapsedTime;
+            } else {
+                sizeGrowthRate = 0;
+                countGrowthRate = 0;
+            }
+
+            if (element != null) {
+                element.setSizeAndCount(size, count);
+                element.setGrowthRates(sizeGrowthRate, countGrowthRate);
+            }
+        }
+
+        /**
+         * Gets the heap element, creating it if not yet created.
+         * 
+         * @return The heap element
+         * @throws IOException
+         */
+        HeapElement getElement() throws IOException {
+            if (element == null) {
+                int index = generation % HISTORY_SIZE;
+                element = new HeapElement(convertClassName(new String(name,
+                        "UTF-8")), sizes[index], counts[index]); //$NON-NLS-1$
+                element.setGrowthRates(sizeGrowthRate, countGrowthRate);
+            }
+            return element;
+        }
+
+        /**
+         * Gets the state indicating if this entry matches the given raw class
+         * name.
+         * 
+         * @param nameHash
+         *            The hash code of raw class name
+         * @param bytes
+         *            The buffer of raw class name
+         * @param length
+         *            The length of raw class name
+         * @return <tt>true</tt> if this entry matches the given name
+         */
+        boolean matches(int nameHash, byte[] bytes, int length) {
+            if (hash != nameHash || name.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (name[i] != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The comparator to order the entries by size growth rate.
+     */
+    private static class GrowthRateComparator implements Comparator<Entry> {
+
+        /*
+         * @see Comparator#compare(Object, Object)
+         */
+        @Override
+        public int compare(Entry entry1, Entry entry2) {
+            return Double.compare(entry1.sizeGrowthRate, entry2.sizeGrowthRate);
+        }
+    }
+}
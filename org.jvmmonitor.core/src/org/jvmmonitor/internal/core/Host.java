@@ -168,14 +168,14 @@ public class Host implements IHost {
                 if (jvm.isConnected()) {
                     jvm.disconnect();
                 }
+                int id = (jvm.getPid() != -1) ? jvm.getPid() : jvm.getPort();
+                File jvmDir = hostDir.append(File.separator + id
+                        + IJvm.DIR_SUFFIX).toFile();
+                deleteExpiredTimeline(jvmDir);
                 if (jvm.getShapshots().size() > 0) {
                     addTerminatedJvm(jvm.getPid(), -1, jvm.getMainClass());
-                } else {
-                    int id = (jvm.getPid() != -1) ? jvm.getPid() : jvm
-                            .getPort();
-                    IPath dirPath = hostDir.append(File.separator + id
-                            + IJvm.DIR_SUFFIX);
-                    Util.deleteDir(dirPath.toFile());
+                } else if (!hasTimeline(jvmDir)) {
+                    Util.deleteDir(jvmDir);
                 }
                 activeJvms.remove(jvm);
                 JvmModel.getInstance().fireJvmModelChangeEvent(
@@ -291,11 +291,20 @@ public class Host implements IHost {
 
             IPath filePath = hostDir.append(File.separator + jvmDir
                     + File.separator + IJvm.PROPERTIES_FILE);
-            if (!filePath.toFile().exists() || file.list().length == 1) {
+            if (!filePath.toFile().exists()) {
                 Util.deleteDir(file);
                 continue;
             }
 
+            // keep the recent timeline without listing the terminated JVM
+            deleteExpiredTimeline(file);
+            if (!hasSnapshots(file)) {
+                if (!hasTimeline(file)) {
+                    Util.deleteDir(file);
+                }
+                continue;
+            }
+
             Properties props = Util.loadProperties(filePath);
             if (props == null) {
                 Util.deleteDir(file);
@@ -320,6 +329,88 @@ public class Host implements IHost {
         }
     }
 
+    /**
+     * Checks if the given JVM directory has snapshots. The properties file and
+     * the timeline store are not counted as snapshots.
+     * 
+     * @param jvmDir
+     *            The JVM directory
+     * @return <tt>true</tt> if the given directory has snapshots
+     */
+    private static boolean hasSnapshots(File jvmDir) {
+        String[] fileNames = jvmDir.list();
+        if (fileNames == null) {
+            return false;
+        }
+        for (String fileName : fileNames) {
+            if (!IJvm.PROPERTIES_FILE.equals(fileName)
+                    && !MBeanServer.TIMELINE_DIRECTORY.equals(fileName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the given JVM directory has timeline stores.
+     * 
+     * @param jvmDir
+     *            The JVM directory
+     * @return <tt>true</tt> if the given directory has timeline stores
+     */
+    private static boolean hasTimeline(File jvmDir) {
+        String[] storeNames = new File(jvmDir, MBeanServer.TIMELINE_DIRECTORY)
+                .list();
+        return storeNames != null && storeNames.length > 0;
+    }
+
+    /**
+     * Deletes the timeline stores in the given JVM directory that haven't been
+     * updated for {@link TimeSeriesStore#MAX_AGE}, and the timeline directory
+     * if no store is left.
+     * 
+     * @param jvmDir
+     *            The JVM directory
+     */
+    private static void deleteExpiredTimeline(File jvmDir) {
+        File timelineDir = new File(jvmDir, MBeanServer.TIMELINE_DIRECTORY);
+        File[] storeDirs = timelineDir.listFiles();
+        if (storeDirs == null) {
+            return;
+        }
+
+        long expiryTime = System.currentTimeMillis() - TimeSeriesStore.MAX_AGE;
+        for (File storeDir : storeDirs) {
+            if (getLastModified(storeDir) < expiryTime) {
+                Util.deleteDir(storeDir);
+            }
+        }
+
+        if (!hasTimeline(jvmDir)) {
+            Util.deleteDir(timelineDir);
+        }
+    }
+
+    /**
+     * Gets the time when the given file, or any file in the given directory,
+     * was modified at last. Appending to a segment file doesn't update the
+     * modification time of the directory.
+     * 
+     * @param file
+     *            The file or directory
+     * @return The time in milliseconds
+     */
+    private static long getLastModified(File file) {
+        long lastModified = file.lastModified();
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                lastModified = Math.max(lastModified, child.lastModified());
+            }
+        }
+        return lastModified;
+    }
+
     /**
      * Saves the properties.
      */
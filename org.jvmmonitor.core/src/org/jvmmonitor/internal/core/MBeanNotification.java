@@ -10,37 +10,76 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.management.AttributeChangeNotificationFilter;
 import javax.management.MBeanInfo;
 import javax.management.MBeanNotificationInfo;
 import javax.management.Notification;
+import javax.management.NotificationFilter;
+import javax.management.NotificationFilterSupport;
 import javax.management.NotificationListener;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeData;
 
+import org.eclipse.core.runtime.IStatus;
+import org.jvmmonitor.core.Activator;
 import org.jvmmonitor.core.JvmCoreException;
 import org.jvmmonitor.core.JvmModel;
 import org.jvmmonitor.core.JvmModelEvent;
 import org.jvmmonitor.core.JvmModelEvent.State;
 import org.jvmmonitor.core.mbean.IMBeanNotification;
+import org.jvmmonitor.core.mbean.NotificationBatch;
+import org.jvmmonitor.core.mbean.NotificationSubscription;
 
 /**
  * The MBean notification.
  */
 public class MBeanNotification implements IMBeanNotification {
 
+    /** The default maximum number of notifications held per object name. */
+    private static final int DEFAULT_CAPACITY = 1000;
+
+    /** The notification coalescer MXBean name. */
+    private static final String NOTIFICATION_COALESCER_MXBEAN_NAME = "org.jvmmonitor:type=Notification Coalescer"; //$NON-NLS-1$
+
+    /** The startCoalescing operation in NotificationCoalescerMXBean. */
+    private static final String START_COALESCING = "startCoalescing"; //$NON-NLS-1$
+
+    /** The stopCoalescing operation in NotificationCoalescerMXBean. */
+    private static final String STOP_COALESCING = "stopCoalescing"; //$NON-NLS-1$
+
+    /** The renewCoalescing operation in NotificationCoalescerMXBean. */
+    private static final String RENEW_COALESCING = "renewCoalescing"; //$NON-NLS-1$
+
+    /**
+     * The interval in milliseconds to renew coalescing on agent, that is
+     * shorter enough than the lease timeout on agent.
+     */
+    private static final long RENEW_COALESCING_INTERVAL = 20000;
+
     /** The active JVM. */
     private ActiveJvm activeJvm;
 
     /** The notification listeners. */
     private Map<ObjectName, NotificationListener> listeners;
 
+    /** The subscriptions. */
+    private Map<ObjectName, NotificationSubscription> subscriptions;
+
+    /** The tokens of coalescing on agent keyed by coalesced object name. */
+    private Map<ObjectName, String> coalescingTokens;
+
+    /** The time in milliseconds when coalescing was renewed at last. */
+    private long coalescingRenewedTime;
+
     /** The notifications. */
-    protected Map<ObjectName, List<Notification>> notifications;
+    protected Map<ObjectName, NotificationRingBuffer> notifications;
+
+    /** The maximum number of notifications held per object name. */
+    private volatile int capacity;
 
     /**
      * The constructor.
@@ -51,29 +90,61 @@ public class MBeanNotification implements IMBeanNotification {
     public MBeanNotification(ActiveJvm activeJvm) {
         this.activeJvm = activeJvm;
         listeners = new HashMap<ObjectName, NotificationListener>();
-        notifications = new LinkedHashMap<ObjectName, List<Notification>>();
+        subscriptions = new ConcurrentHashMap<ObjectName, NotificationSubscription>();
+        coalescingTokens = new HashMap<ObjectName, String>();
+        notifications = new ConcurrentHashMap<ObjectName, NotificationRingBuffer>();
+        capacity = DEFAULT_CAPACITY;
     }
 
     /*
      * @see IMBeanNotification#subscribe(ObjectName)
      */
     @Override
-    public void subscribe(final ObjectName objectName) throws JvmCoreException {
-        NotificationListener listener = new NotificationListener() {
-            @Override
-            public void handleNotification(Notification notification,
-                    Object handback) {
-                List<Notification> list = notifications.get(objectName);
-                if (list == null) {
-                    list = new ArrayList<Notification>();
-                }
-                list.add(new DecoratedNotification(notification));
-                notifications.put(objectName, list);
+    public void subscribe(ObjectName objectName) throws JvmCoreException {
+        subscribe(objectName, NotificationSubscription.ALL);
+    }
+
+    /*
+     * @see IMBeanNotification#subscribe(ObjectName, NotificationSubscription)
+     */
+    @Override
+    synchronized public void subscribe(ObjectName objectName,
+            NotificationSubscription subscription) throws JvmCoreException {
+        if (listeners.containsKey(objectName)) {
+            removeListener(objectName);
+        }
+
+        boolean coalesced = subscription.isCoalesced();
+        NotificationRingBuffer buffer = new NotificationRingBuffer(capacity);
+        NotificationListener listener = createListener(objectName, coalesced,
+                buffer);
+
+        ObjectName listenedObjectName = objectName;
+        NotificationFilter filter = createFilter(subscription);
+        String token = null;
+        if (coalesced) {
+            listenedObjectName = getCoalescerObjectName();
+            token = startCoalescing(listenedObjectName, objectName,
+                    subscription);
+            filter = createCoalescedFilter(token);
+        }
+
+        notifications.put(objectName, buffer);
+        try {
+            activeJvm.getMBeanServer().addNotificationListener(
+                    listenedObjectName, listener, filter);
+        } catch (JvmCoreException e) {
+            notifications.remove(objectName);
+            if (coalesced) {
+                stopCoalescing(listenedObjectName, token);
             }
-        };
-        activeJvm.getMBeanServer()
-                .addNotificationListener(objectName, listener);
+            throw e;
+        }
+        if (coalesced) {
+            coalescingTokens.put(objectName, token);
+        }
         listeners.put(objectName, listener);
+        subscriptions.put(objectName, subscription);
         JvmModel.getInstance().fireJvmModelChangeEvent(
                 new JvmModelEvent(State.JvmModified, activeJvm));
     }
@@ -82,26 +153,86 @@ public class MBeanNotification implements IMBeanNotification {
      * @see IMBeanNotification#unsubscribe(ObjectName)
      */
     @Override
-    public void unsubscribe(ObjectName objectName) throws JvmCoreException {
-        NotificationListener listener = listeners.get(objectName);
-        activeJvm.getMBeanServer().removeNotificationListener(objectName,
-                listener);
-        listeners.remove(objectName);
-        notifications.remove(objectName);
+    synchronized public void unsubscribe(ObjectName objectName)
+            throws JvmCoreException {
+        removeListener(objectName);
         JvmModel.getInstance().fireJvmModelChangeEvent(
                 new JvmModelEvent(State.JvmModified, activeJvm));
     }
 
+    /*
+     * @see IMBeanNotification#getSubscription(ObjectName)
+     */
+    @Override
+    public NotificationSubscription getSubscription(ObjectName objectName) {
+        return subscriptions.get(objectName);
+    }
+
     /*
      * @see IMBeanNotification#getNotifications(ObjectName)
      */
     @Override
     public Notification[] getNotifications(ObjectName objectName) {
-        List<Notification> list = notifications.get(objectName);
-        if (list == null) {
-            return new Notification[0];
+        return getNotificationsSince(objectName, 0).getNotifications();
+    }
+
+    /*
+     * @see IMBeanNotification#getNotificationsSince(ObjectName, long)
+     */
+    @Override
+    public NotificationBatch getNotificationsSince(ObjectName objectName,
+            long sequence) {
+        NotificationRingBuffer buffer = notifications.get(objectName);
+        if (buffer == null) {
+            return new NotificationBatch(new Notification[0], 0, 0, 0);
+        }
+        return buffer.getSince(sequence);
+    }
+
+    /*
+     * @see IMBeanNotification#getNotificationCount(ObjectName)
+     */
+    @Override
+    public int getNotificationCount(ObjectName objectName) {
+        NotificationRingBuffer buffer = notifications.get(objectName);
+        if (buffer == null) {
+            return 0;
+        }
+        return buffer.size();
+    }
+
+    /*
+     * @see IMBeanNotification#getDroppedCount(ObjectName)
+     */
+    @Override
+    public long getDroppedCount(ObjectName objectName) {
+        NotificationRingBuffer buffer = notifications.get(objectName);
+        if (buffer == null) {
+            return 0;
+        }
+        return buffer.getDroppedCount();
+    }
+
+    /*
+     * @see IMBeanNotification#setCapacity(int)
+     */
+    @Override
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        for (NotificationRingBuffer buffer : notifications.values()) {
+            buffer.setCapacity(capacity);
         }
-        return list.toArray(new Notification[list.size()]);
+    }
+
+    /*
+     * @see IMBeanNotification#getCapacity()
+     */
+    @Override
+    public int getCapacity() {
+        return capacity;
     }
 
     /*
@@ -109,11 +240,11 @@ public class MBeanNotification implements IMBeanNotification {
      */
     @Override
     public void clear(ObjectName objectName) {
-        List<Notification> notification = notifications.get(objectName);
-        if (notification == null) {
+        NotificationRingBuffer buffer = notifications.get(objectName);
+        if (buffer == null) {
             return;
         }
-        notification.clear();
+        buffer.clear();
         JvmModel.getInstance().fireJvmModelChangeEvent(
                 new JvmModelEvent(State.JvmModified, activeJvm));
     }
@@ -150,22 +281,273 @@ public class MBeanNotification implements IMBeanNotification {
         return true;
     }
 
+    /**
+     * Renews the coalescing on agent if the renewal interval has elapsed, and
+     * starts again the coalescing that has expired on agent. The notifications
+     * received so far are kept.
+     * 
+     * @return <tt>true</tt> if the coalescing has been renewed on agent
+     * @throws JvmCoreException
+     */
+    synchronized public boolean renewCoalescing() throws JvmCoreException {
+        long now = System.currentTimeMillis();
+        if (coalescingTokens.isEmpty()
+                || now - coalescingRenewedTime < RENEW_COALESCING_INTERVAL) {
+            return false;
+        }
+        coalescingRenewedTime = now;
+
+        Object expiredTokens = activeJvm.getMBeanServer().invoke(
+                getCoalescerObjectName(),
+                RENEW_COALESCING,
+                new Object[] { coalescingTokens.values().toArray(
+                        new String[coalescingTokens.size()]) },
+                new String[] { String[].class.getName() });
+        if (!(expiredTokens instanceof String[])) {
+            return true;
+        }
+
+        for (String expiredToken : (String[]) expiredTokens) {
+            for (Entry<ObjectName, String> entry : new ArrayList<Entry<ObjectName, String>>(
+                    coalescingTokens.entrySet())) {
+                if (!expiredToken.equals(entry.getValue())) {
+                    continue;
+                }
+                try {
+                    restartCoalescing(entry.getKey());
+                } catch (JvmCoreException e) {
+                    Activator.log(IStatus.WARNING,
+                            Messages.subscribeMBeanNotificationFailedMsg, e);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts again the coalescing on agent that has expired, and replaces the
+     * listener listening to the expired token with the one listening to the
+     * new token. The notification buffer and its sequence are kept, so that
+     * the notifications received so far are neither lost nor delivered again.
+     * 
+     * @param objectName
+     *            The object name of MBean emitting notifications
+     * @throws JvmCoreException
+     */
+    private void restartCoalescing(ObjectName objectName)
+            throws JvmCoreException {
+        NotificationRingBuffer buffer = notifications.get(objectName);
+        NotificationSubscription subscription = subscriptions.get(objectName);
+        NotificationListener oldListener = listeners.get(objectName);
+        if (buffer == null || subscription == null || oldListener == null) {
+            return;
+        }
+
+        ObjectName coalescerObjectName = getCoalescerObjectName();
+        String token = startCoalescing(coalescerObjectName, objectName,
+                subscription);
+        NotificationListener listener = createListener(objectName, true,
+                buffer);
+        try {
+            activeJvm.getMBeanServer().addNotificationListener(
+                    coalescerObjectName, listener,
+                    createCoalescedFilter(token));
+        } catch (JvmCoreException e) {
+            stopCoalescing(coalescerObjectName, token);
+            throw e;
+        }
+        coalescingTokens.put(objectName, token);
+        listeners.put(objectName, listener);
+
+        try {
+            activeJvm.getMBeanServer().removeNotificationListener(
+                    coalescerObjectName, oldListener);
+        } catch (JvmCoreException e) {
+            // the expired token is never emitted again
+        }
+    }
+
     /**
      * Disposes the resources.
      */
-    public void dispose() {
-        for (Entry<ObjectName, NotificationListener> entry : listeners
-                .entrySet()) {
+    synchronized public void dispose() {
+        for (ObjectName objectName : new ArrayList<ObjectName>(
+                listeners.keySet())) {
             try {
-                unsubscribe(entry.getKey());
+                unsubscribe(objectName);
             } catch (JvmCoreException e) {
                 // do nothing
             }
         }
         listeners.clear();
+        subscriptions.clear();
+        coalescingTokens.clear();
         notifications.clear();
     }
 
+    /**
+     * Removes the notification listener, and stops coalescing the
+     * notifications on agent if coalesced.
+     * 
+     * @param objectName
+     *            The object name
+     * @throws JvmCoreException
+     */
+    private void removeListener(ObjectName objectName)
+            throws JvmCoreException {
+        NotificationListener listener = listeners.get(objectName);
+        String token = coalescingTokens.remove(objectName);
+        if (token != null) {
+            ObjectName coalescerObjectName = getCoalescerObjectName();
+            activeJvm.getMBeanServer().removeNotificationListener(
+                    coalescerObjectName, listener);
+            stopCoalescing(coalescerObjectName, token);
+        } else {
+            activeJvm.getMBeanServer().removeNotificationListener(objectName,
+                    listener);
+        }
+        listeners.remove(objectName);
+        subscriptions.remove(objectName);
+        notifications.remove(objectName);
+    }
+
+    /**
+     * Creates the notification listener that stores the received
+     * notifications into the given buffer.
+     * 
+     * @param objectName
+     *            The object name of MBean emitting notifications
+     * @param coalesced
+     *            <tt>true</tt> if the notifications are coalesced on agent
+     * @param buffer
+     *            The notification buffer
+     * @return The notification listener
+     */
+    private static NotificationListener createListener(
+            final ObjectName objectName, final boolean coalesced,
+            final NotificationRingBuffer buffer) {
+        return new NotificationListener() {
+            @Override
+            public void handleNotification(Notification notification,
+                    Object handback) {
+                if (coalesced && !objectName.equals(notification.getSource())) {
+                    return;
+                }
+                buffer.add(new DecoratedNotification(notification));
+            }
+        };
+    }
+
+    /**
+     * Creates the notification filter that accepts only the summary
+     * notifications of the given coalescing on agent.
+     * 
+     * @param token
+     *            The token of coalescing
+     * @return The notification filter
+     */
+    private static NotificationFilter createCoalescedFilter(String token) {
+        NotificationFilterSupport filter = new NotificationFilterSupport();
+        filter.enableType(token);
+        return filter;
+    }
+
+    /**
+     * Creates the notification filter that is serialized to target JVM.
+     * Attribute change notifications are filtered by attribute names if
+     * given, and otherwise notifications are filtered by type prefixes.
+     * 
+     * @param subscription
+     *            The subscription
+     * @return The notification filter, or <tt>null</tt> not to filter
+     */
+    private static NotificationFilter createFilter(
+            NotificationSubscription subscription) {
+        if (subscription.getAttributes().length > 0) {
+            AttributeChangeNotificationFilter filter = new AttributeChangeNotificationFilter();
+            for (String attribute : subscription.getAttributes()) {
+                filter.enableAttribute(attribute);
+            }
+            return filter;
+        }
+        if (subscription.getTypes().length > 0) {
+            NotificationFilterSupport filter = new NotificationFilterSupport();
+            for (String type : subscription.getTypes()) {
+                filter.enableType(type);
+            }
+            return filter;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the object name of notification coalescer MXBean on agent.
+     * 
+     * @return The object name
+     * @throws JvmCoreException
+     *             if agent is not loaded
+     */
+    private ObjectName getCoalescerObjectName() throws JvmCoreException {
+        if (!activeJvm.isRemote()
+                && !JvmModel.getInstance().getAgentLoadHandler()
+                        .isAgentLoaded()) {
+            throw new JvmCoreException(IStatus.ERROR,
+                    Messages.agentNotLoadedMsg, new Exception());
+        }
+
+        return activeJvm.getMBeanServer().getObjectName(
+                NOTIFICATION_COALESCER_MXBEAN_NAME);
+    }
+
+    /**
+     * Starts coalescing the notifications on agent.
+     * 
+     * @param coalescerObjectName
+     *            The object name of notification coalescer MXBean
+     * @param objectName
+     *            The object name of MBean emitting notifications
+     * @param subscription
+     *            The subscription
+     * @return The token of coalescing, that is also the type of summary
+     *         notification
+     * @throws JvmCoreException
+     */
+    private String startCoalescing(ObjectName coalescerObjectName,
+            ObjectName objectName, NotificationSubscription subscription)
+            throws JvmCoreException {
+        Object type = activeJvm.getMBeanServer().invoke(
+                coalescerObjectName,
+                START_COALESCING,
+                new Object[] { objectName, subscription.getTypes(),
+                        subscription.getAttributes(),
+                        subscription.getCoalescingInterval() },
+                new String[] { ObjectName.class.getName(),
+                        String[].class.getName(), String[].class.getName(),
+                        long.class.getName() });
+        if (!(type instanceof String)) {
+            throw new JvmCoreException(IStatus.ERROR,
+                    Messages.coalesceMBeanNotificationFailedMsg,
+                    new Exception());
+        }
+        return (String) type;
+    }
+
+    /**
+     * Stops coalescing the notifications on agent.
+     * 
+     * @param coalescerObjectName
+     *            The object name of notification coalescer MXBean
+     * @param token
+     *            The token of coalescing
+     * @throws JvmCoreException
+     */
+    private void stopCoalescing(ObjectName coalescerObjectName, String token)
+            throws JvmCoreException {
+        activeJvm.getMBeanServer().invoke(coalescerObjectName,
+                STOP_COALESCING, new Object[] { token },
+                new String[] { String.class.getName() });
+    }
+
     /**
      * The decorated notification having detailed text for toString();
      */
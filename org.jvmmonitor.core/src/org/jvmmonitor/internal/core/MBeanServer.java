@@ -8,6 +8,7 @@ package org.jvmmonitor.internal.core;
 
 import static java.lang.management.ManagementFactory.newPlatformMXBeanProxy;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -26,20 +27,21 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.Map.Entry;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.management.Attribute;
+import javax.management.AttributeList;
 import javax.management.InstanceNotFoundException;
 import javax.management.JMException;
 import javax.management.MBeanInfo;
 import javax.management.MBeanServerConnection;
 import javax.management.MalformedObjectNameException;
+import javax.management.NotificationFilter;
 import javax.management.NotificationListener;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeData;
@@ -54,12 +56,14 @@ import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
-import org.eclipse.jdt.core.Signature;
 import org.eclipse.osgi.util.NLS;
 import org.jvmmonitor.core.Activator;
 import org.jvmmonitor.core.IHeapDumpHandler;
+import org.jvmmonitor.core.IStreamingHeapDumpHandler;
 import org.jvmmonitor.core.IHeapElement;
 import org.jvmmonitor.core.IHost;
+import org.jvmmonitor.core.IPollingTask;
+import org.jvmmonitor.core.ISnapshot.Compression;
 import org.jvmmonitor.core.ISnapshot.SnapshotType;
 import org.jvmmonitor.core.IThreadElement;
 import org.jvmmonitor.core.JvmCoreException;
@@ -76,9 +80,12 @@ import org.jvmmonitor.core.mbean.IMonitoredMXBeanGroup;
 import org.jvmmonitor.core.mbean.IMonitoredMXBeanGroup.AxisUnit;
 import org.jvmmonitor.core.mbean.MBeanServerEvent;
 import org.jvmmonitor.core.mbean.MBeanServerEvent.MBeanServerState;
+import org.jvmmonitor.core.mbean.TimeSeriesSnapshot;
 import org.jvmmonitor.internal.core.cpu.CallTreeNode;
 import org.jvmmonitor.internal.core.cpu.CpuModel;
 import org.jvmmonitor.internal.core.cpu.MethodNode;
+import org.jvmmonitor.internal.core.cpu.MethodSymbol;
+import org.jvmmonitor.internal.core.cpu.MethodSymbolTable;
 import org.jvmmonitor.internal.core.cpu.ThreadNode;
 
 /**
@@ -91,6 +98,44 @@ public class MBeanServer implements IMBeanServer {
     /** The data transfer MXBean name. */
     private final static String DATA_TRANSFER_MXBEAN_NAME = "org.jvmmonitor:type=Data Transfer"; //$NON-NLS-1$
 
+    /**
+     * The directory name under the JVM base directory, that has a timeline
+     * store per JVM ever monitored with the same process ID.
+     */
+    static final String TIMELINE_DIRECTORY = "timeline"; //$NON-NLS-1$
+
+    /** The duration in milliseconds of history loaded from timeline store. */
+    private static final long HISTORY_DURATION = 24 * 60 * 60 * 1000L;
+
+    /** The number of sampling ticks to refresh the sampled thread IDs. */
+    private static final int SAMPLED_THREADS_REFRESH_TICKS = 20;
+
+    /** The name of root frame of the stack traces truncated by max depth. */
+    private static final String TRUNCATED_FRAME_NAME = "(truncated)"; //$NON-NLS-1$
+
+    /**
+     * The frames where the runnable threads wait for network I/O or
+     * selectors in native code.
+     * <p>
+     * The same list and {@link #isIdleThread(ThreadInfo)} are in
+     * <tt>Constants</tt> and <tt>CpuSamplingProfilerMXBeanImpl</tt> of agent
+     * for the sampler running in target JVM, which cannot use this bundle.
+     * Update both together.
+     */
+    private static final String[] IDLE_FRAMES = new String[] {
+            "java.net.PlainSocketImpl.socketAccept", //$NON-NLS-1$
+            "java.net.DualStackPlainSocketImpl.accept0", //$NON-NLS-1$
+            "java.net.SocketInputStream.socketRead0", //$NON-NLS-1$
+            "sun.nio.ch.ServerSocketChannelImpl.accept0", //$NON-NLS-1$
+            "sun.nio.ch.Net.accept", //$NON-NLS-1$
+            "sun.nio.ch.Net.poll", //$NON-NLS-1$
+            "sun.nio.ch.EPollArrayWrapper.epollWait", //$NON-NLS-1$
+            "sun.nio.ch.EPoll.wait", //$NON-NLS-1$
+            "sun.nio.ch.KQueueArrayWrapper.kevent0", //$NON-NLS-1$
+            "sun.nio.ch.KQueue.poll", //$NON-NLS-1$
+            "sun.nio.ch.WEPoll.wait", //$NON-NLS-1$
+            "sun.nio.ch.WindowsSelectorImpl$SubSelector.poll0" }; //$NON-NLS-1$
+
     /** The MBean server connection. */
     private MBeanServerConnection connection;
 
@@ -113,18 +158,39 @@ public class MBeanServer implements IMBeanServer {
     /** The heap list elements. */
     private Map<String, HeapElement> heapListElements;
 
+    /** The heap histogram parser. */
+    private HeapHistogramParser heapHistogramParser;
+
     /** The thread list elements. */
     private Map<String, ThreadElement> threadListElements;
 
-    /** The timer to update. */
-    Timer timer;
+    /** The polling task to update. */
+    IPollingTask updateTask;
+
+    /** The polling task to sample profile data. */
+    IPollingTask samplingTask;
+
+    /** The number of round trips in the last tick to update. */
+    private volatile int updateRoundTrips;
+
+    /** The store recording the monitored attributes on disk. */
+    private volatile TimeSeriesStore timelineStore;
 
-    /** The timer to sample profile data. */
-    Timer samplingTimer;
+    /** The state indicating if the history of attributes is requested. */
+    private volatile boolean historyRequested;
 
     /** The sampling period. */
     private Integer samplingPeriod;
 
+    /** The max depth of sampled stack traces. */
+    private volatile int maxSamplingDepth;
+
+    /** The IDs of threads to be sampled. */
+    private volatile long[] sampledThreadIds;
+
+    /** The number of sampling ticks since refreshing sampled thread IDs. */
+    private int samplingTicks;
+
     /** The previous sampling time. */
     private long previousSamplingTime;
 
@@ -143,6 +209,9 @@ public class MBeanServer implements IMBeanServer {
     /** The previous stack trace. */
     private Map<String, StackTraceElement[]> previousStackTraces;
 
+    /** The method symbols of sampled stack traces. */
+    private MethodSymbolTable methodSymbols;
+
     /** The JMX server URL. */
     private JMXServiceURL jmxUrl;
 
@@ -162,13 +231,16 @@ public class MBeanServer implements IMBeanServer {
         mBeanNotification = new MBeanNotification(jvm);
         previousThreadProcessCpuTime = new HashMap<Long, Long>();
         heapListElements = new LinkedHashMap<String, HeapElement>();
+        heapHistogramParser = new HeapHistogramParser();
         threadListElements = new LinkedHashMap<String, ThreadElement>();
         isLive = true;
         isJvmReachable = false;
         listeners = new CopyOnWriteArrayList<IMBeanServerChangeListener>();
         previousSamplingTime = 0;
         samplingPeriod = 50;
+        maxSamplingDepth = Integer.MAX_VALUE;
         previousStackTraces = new HashMap<String, StackTraceElement[]>();
+        methodSymbols = new MethodSymbolTable();
         monitoredAttributeGroups = new CopyOnWriteArrayList<IMonitoredMXBeanGroup>();
     }
 
@@ -497,13 +569,46 @@ public class MBeanServer implements IMBeanServer {
         IHeapDumpHandler heapDumpHandler = JvmModel.getInstance()
                 .getHeapDumpHandler();
         if (heapDumpHandler != null) {
-            String heap = heapDumpHandler.dumpHeap(jvm.getPid(), isLive);
-            int maxNumberOfClasses = JvmModel.getInstance()
-                    .getHeapDumpHandler().getMaxClassesNumber();
-            parseHeap(heap, maxNumberOfClasses);
+            heapHistogramParser.setMaxClassesNumber(heapDumpHandler
+                    .getMaxClassesNumber());
+            if (heapDumpHandler instanceof IStreamingHeapDumpHandler) {
+                ((IStreamingHeapDumpHandler) heapDumpHandler).dumpHeap(
+                        jvm.getPid(), isLive, heapHistogramParser);
+            } else {
+                parseHeapHistogram(heapDumpHandler.dumpHeap(jvm.getPid(),
+                        isLive));
+            }
+            heapListElements = heapHistogramParser.getHeapElements();
         }
     }
 
+    /**
+     * Parses the heap histogram given as string by the heap dump handler that
+     * doesn't support streaming.
+     * 
+     * @param heapHistogram
+     *            The heap histogram
+     * @throws JvmCoreException
+     */
+    private void parseHeapHistogram(String heapHistogram)
+            throws JvmCoreException {
+        try {
+            heapHistogramParser.parse(new ByteArrayInputStream(heapHistogram
+                    .getBytes("UTF-8"))); //$NON-NLS-1$
+        } catch (IOException e) {
+            throw new JvmCoreException(IStatus.ERROR,
+                    Messages.parseHeapHistogramFailedMsg, e);
+        }
+    }
+
+    /*
+     * @see IMBeanServer#getFastestGrowingHeapElements()
+     */
+    @Override
+    public IHeapElement[] getFastestGrowingHeapElements() {
+        return heapHistogramParser.getFastestGrowingElements();
+    }
+
     /*
      * @see IMBeanServer#clearHeapDelta()
      */
@@ -572,7 +677,41 @@ public class MBeanServer implements IMBeanServer {
      */
     @Override
     public void setUpdatePeriod(Integer updatePeriod) {
-        startUpdateTimer(updatePeriod);
+        startUpdateTask(updatePeriod);
+    }
+
+    /*
+     * @see IMBeanServer#getUpdateLatency()
+     */
+    @Override
+    public long getUpdateLatency() {
+        IPollingTask task = updateTask;
+        return task == null ? 0 : task.getLastLatency();
+    }
+
+    /*
+     * @see IMBeanServer#isUpdateStalled()
+     */
+    @Override
+    public boolean isUpdateStalled() {
+        IPollingTask task = updateTask;
+        return task != null && task.isStalled();
+    }
+
+    /*
+     * @see IMBeanServer#getUpdateRoundTrips()
+     */
+    @Override
+    public int getUpdateRoundTrips() {
+        return updateRoundTrips;
+    }
+
+    /*
+     * @see IMBeanServer#loadMonitoredAttributeHistory()
+     */
+    @Override
+    public void loadMonitoredAttributeHistory() {
+        historyRequested = true;
     }
 
     /*
@@ -613,6 +752,15 @@ public class MBeanServer implements IMBeanServer {
         }
     }
 
+    /**
+     * Gets the state indicating if the JVM is reachable.
+     * 
+     * @return True if the JVM is reachable
+     */
+    protected boolean isReachable() {
+        return isJvmReachable;
+    }
+
     /**
      * Unregisters the MBean.
      * 
@@ -635,34 +783,34 @@ public class MBeanServer implements IMBeanServer {
      * Resumes the sampling.
      */
     public void resumeSampling() {
-        if (samplingTimer != null) {
-            samplingTimer.cancel();
+        if (samplingTask != null) {
+            samplingTask.cancel();
         }
-        samplingTimer = new Timer(true);
 
-        TimerTask timerTask = new TimerTask() {
+        Runnable runnable = new Runnable() {
             @Override
             public void run() {
                 try {
                     sampleProfilingData();
                 } catch (JvmCoreException e) {
                     Activator.log(IStatus.ERROR, e.getMessage(), e);
-                    suspendSampling();
+                    cancelCurrentTask();
                 } catch (Throwable t) {
-                    suspendSampling();
+                    cancelCurrentTask();
                 }
             }
         };
-        samplingTimer.schedule(timerTask, 0, samplingPeriod);
+        samplingTask = Activator.getDefault().getPollingScheduler()
+                .schedule("sampling " + jvm.getPid(), runnable, samplingPeriod); //$NON-NLS-1$
     }
 
     /**
      * Suspends the sampling.
      */
     public void suspendSampling() {
-        if (samplingTimer != null) {
-            samplingTimer.cancel();
-            samplingTimer = null;
+        if (samplingTask != null) {
+            samplingTask.cancel();
+            samplingTask = null;
         }
     }
 
@@ -672,7 +820,8 @@ public class MBeanServer implements IMBeanServer {
      * @return The profiler state
      */
     public ProfilerState getProfilerState() {
-        return samplingTimer == null ? ProfilerState.READY
+        IPollingTask task = samplingTask;
+        return task == null || task.isCanceled() ? ProfilerState.READY
                 : ProfilerState.RUNNING;
     }
 
@@ -699,6 +848,31 @@ public class MBeanServer implements IMBeanServer {
         }
     }
 
+    /**
+     * Gets the max depth of sampled stack traces.
+     * 
+     * @return The max depth of sampled stack traces
+     */
+    public Integer getMaxSamplingDepth() {
+        return maxSamplingDepth;
+    }
+
+    /**
+     * Sets the max depth of sampled stack traces. Only the given number of
+     * frames from the top of stack are sampled.
+     * 
+     * @param maxSamplingDepth
+     *            The max depth of sampled stack traces, or <tt>null</tt> for
+     *            unlimited depth
+     */
+    public void setMaxSamplingDepth(Integer maxSamplingDepth) {
+        if (maxSamplingDepth == null || maxSamplingDepth <= 0) {
+            this.maxSamplingDepth = Integer.MAX_VALUE;
+        } else {
+            this.maxSamplingDepth = maxSamplingDepth;
+        }
+    }
+
     /**
      * Gets the JVM arguments.
      * 
@@ -739,14 +913,18 @@ public class MBeanServer implements IMBeanServer {
      *            The object name
      * @param listener
      *            The notification listener
+     * @param filter
+     *            The notification filter evaluated on target JVM, or
+     *            <tt>null</tt> to receive all notifications
      * @throws JvmCoreException
      */
     protected void addNotificationListener(ObjectName objectName,
-            NotificationListener listener) throws JvmCoreException {
+            NotificationListener listener, NotificationFilter filter)
+            throws JvmCoreException {
         if (isJvmReachable) {
             try {
-                connection.addNotificationListener(objectName, listener, null,
-                        null);
+                connection.addNotificationListener(objectName, listener,
+                        filter, null);
             } catch (InstanceNotFoundException e) {
                 throw new JvmCoreException(IStatus.ERROR,
                         Messages.subscribeMBeanNotificationFailedMsg, e);
@@ -835,14 +1013,19 @@ public class MBeanServer implements IMBeanServer {
         mxBeans.clear();
         previousThreadProcessCpuTime.clear();
         heapListElements.clear();
+        heapHistogramParser.clear();
         threadListElements.clear();
         isJvmReachable = true;
         listeners.clear();
         previousSamplingTime = 0;
+        sampledThreadIds = null;
         previousStackTraces.clear();
+        methodSymbols.clear();
         monitoredAttributeGroups.clear();
+        historyRequested = false;
+        openTimelineStore();
 
-        startUpdateTimer(updatePeriod);
+        startUpdateTask(updatePeriod);
     }
 
     /**
@@ -854,11 +1037,48 @@ public class MBeanServer implements IMBeanServer {
         if (!checkReachability()) {
             return;
         }
+        int roundTrips = 1;
+
+        if (historyRequested) {
+            historyRequested = false;
+            loadHistory();
+        }
+
+        if (((MBeanNotification) mBeanNotification).renewCoalescing()) {
+            roundTrips++;
+        }
+
+        // group the attributes by object name to get them at once
+        Map<ObjectName, Set<String>> attributeNames = new LinkedHashMap<ObjectName, Set<String>>();
+        for (IMonitoredMXBeanGroup group : monitoredAttributeGroups) {
+            for (IMonitoredMXBeanAttribute attribute : group.getAttributes()) {
+                ObjectName objectName = attribute.getObjectName();
+                Set<String> names = attributeNames.get(objectName);
+                if (names == null) {
+                    names = new LinkedHashSet<String>();
+                    attributeNames.put(objectName, names);
+                }
+                names.add(attribute.getAttributeName().split("\\.")[0]); //$NON-NLS-1$
+            }
+        }
+        Map<ObjectName, Map<String, Object>> attributes = new HashMap<ObjectName, Map<String, Object>>();
+        for (Entry<ObjectName, Set<String>> entry : attributeNames.entrySet()) {
+            attributes.put(entry.getKey(),
+                    getAttributes(entry.getKey(), entry.getValue()));
+            roundTrips++;
+        }
+
+        long time = System.currentTimeMillis();
         for (IMonitoredMXBeanGroup group : monitoredAttributeGroups) {
             for (IMonitoredMXBeanAttribute attribute : group.getAttributes()) {
                 String attributeName = attribute.getAttributeName();
-                Object attributeObject = getAttribute(
-                        attribute.getObjectName(), attributeName);
+                Map<String, Object> values = attributes.get(attribute
+                        .getObjectName());
+                if (values == null) {
+                    continue;
+                }
+                Object attributeObject = values.get(attributeName
+                        .split("\\.")[0]); //$NON-NLS-1$
 
                 Number value = getAttributeValue(attributeObject, attributeName);
                 if (value == null) {
@@ -876,9 +1096,12 @@ public class MBeanServer implements IMBeanServer {
                     previousProcessCpuTime = (Long) value;
                     value = percent > 1 ? 1 : percent;
                 }
-                ((MonitoredMXBeanAttribute) attribute).add(value, new Date());
+                ((MonitoredMXBeanAttribute) attribute).add(
+                        value.doubleValue(), time);
+                storeAttribute(attribute, value.doubleValue(), time);
             }
         }
+        updateRoundTrips = roundTrips;
 
         JvmModel.getInstance().fireJvmModelChangeEvent(
                 new JvmModelEvent(State.JvmModified, jvm));
@@ -888,15 +1111,178 @@ public class MBeanServer implements IMBeanServer {
      * Disposes the resources.
      */
     protected void dispose() {
-        if (timer != null) {
-            timer.cancel();
+        if (updateTask != null) {
+            updateTask.cancel();
         }
-        if (samplingTimer != null) {
-            samplingTimer.cancel();
+        if (samplingTask != null) {
+            samplingTask.cancel();
         }
+        closeTimelineStore();
         ((MBeanNotification) mBeanNotification).dispose();
     }
 
+    /**
+     * Opens the timeline store. The attributes are not recorded on disk if
+     * opening the store fails.
+     */
+    private void openTimelineStore() {
+        closeTimelineStore();
+        try {
+            timelineStore = new TimeSeriesStore(jvm.getBaseDirectory()
+                    .append(TIMELINE_DIRECTORY)
+                    .append(getTimelineStoreName()).toFile());
+        } catch (JvmCoreException e) {
+            Activator.log(IStatus.WARNING, NLS.bind(
+                    Messages.openTimelineStoreFailedMsg, jvm.getPid()), e);
+        } catch (IOException e) {
+            Activator.log(IStatus.WARNING, NLS.bind(
+                    Messages.openTimelineStoreFailedMsg, jvm.getPid()), e);
+        }
+    }
+
+    /**
+     * Gets the name of the timeline store. Since the process ID is reused by
+     * other JVM later, the store is identified with the start time and the
+     * main class of JVM in addition to the process ID of JVM base directory.
+     * 
+     * @return The name of the timeline store
+     * @throws JvmCoreException
+     */
+    private String getTimelineStoreName() throws JvmCoreException {
+        long startTime;
+        try {
+            RuntimeMXBean runtimeMXBean = (RuntimeMXBean) getMXBean(
+                    RuntimeMXBean.class, ManagementFactory.RUNTIME_MXBEAN_NAME);
+            if (runtimeMXBean == null) {
+                throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                        Messages.getMBeanFailedMsg,
+                        ManagementFactory.RUNTIME_MXBEAN_NAME), new Exception());
+            }
+            startTime = runtimeMXBean.getStartTime();
+        } catch (IOException e) {
+            throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                    Messages.getMBeanFailedMsg,
+                    ManagementFactory.RUNTIME_MXBEAN_NAME), e);
+        }
+
+        String mainClass = jvm.getMainClass();
+        int mainClassHash = (mainClass == null) ? 0 : mainClass.hashCode();
+        return startTime + "-" + Integer.toHexString(mainClassHash); //$NON-NLS-1$
+    }
+
+    /**
+     * Closes the timeline store.
+     */
+    private void closeTimelineStore() {
+        TimeSeriesStore store = timelineStore;
+        timelineStore = null;
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    /**
+     * Records the attribute value into the timeline store.
+     * 
+     * @param attribute
+     *            The attribute
+     * @param value
+     *            The attribute value
+     * @param time
+     *            The time in milliseconds
+     */
+    private void storeAttribute(IMonitoredMXBeanAttribute attribute,
+            double value, long time) {
+        TimeSeriesStore store = timelineStore;
+        if (store == null) {
+            return;
+        }
+
+        try {
+            store.append(getSeriesKey(attribute), time, value);
+        } catch (IOException e) {
+            Activator.log(IStatus.WARNING, NLS.bind(
+                    Messages.accessTimelineStoreFailedMsg, jvm.getPid()), e);
+            closeTimelineStore();
+        }
+    }
+
+    /**
+     * Loads the history of monitored attributes from the timeline store.
+     */
+    private void loadHistory() {
+        TimeSeriesStore store = timelineStore;
+        if (store == null) {
+            return;
+        }
+
+        Map<String, TimeSeriesSnapshot> history;
+        try {
+            long now = System.currentTimeMillis();
+            history = store.query(now - HISTORY_DURATION, now);
+        } catch (IOException e) {
+            Activator.log(IStatus.WARNING, NLS.bind(
+                    Messages.accessTimelineStoreFailedMsg, jvm.getPid()), e);
+            closeTimelineStore();
+            return;
+        }
+
+        for (IMonitoredMXBeanGroup group : monitoredAttributeGroups) {
+            for (IMonitoredMXBeanAttribute attribute : group.getAttributes()) {
+                TimeSeriesSnapshot series = history
+                        .get(getSeriesKey(attribute));
+                if (series != null) {
+                    ((MonitoredMXBeanAttribute) attribute).addHistory(series);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the key identifying the attribute in the timeline store.
+     * 
+     * @param attribute
+     *            The attribute
+     * @return The series key
+     */
+    private static String getSeriesKey(IMonitoredMXBeanAttribute attribute) {
+        return attribute.getObjectName().getCanonicalName() + '#'
+                + attribute.getAttributeName();
+    }
+
+    /**
+     * Gets the attributes of the given MBean with a single request.
+     * 
+     * @param objectName
+     *            The object name
+     * @param attributeNames
+     *            The attribute names without sub-keys
+     * @return The attribute values keyed by attribute name, where the
+     *         attributes that could not be retrieved are missing
+     * @throws JvmCoreException
+     */
+    private Map<String, Object> getAttributes(ObjectName objectName,
+            Set<String> attributeNames) throws JvmCoreException {
+        AttributeList attributeList;
+        try {
+            attributeList = connection.getAttributes(objectName,
+                    attributeNames.toArray(new String[attributeNames.size()]));
+        } catch (JMException e) {
+            throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                    Messages.getAttributeFailedMsg, attributeNames), e);
+        } catch (IOException e) {
+            throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                    Messages.getAttributeFailedMsg, attributeNames), e);
+        }
+
+        Map<String, Object> values = new HashMap<String, Object>();
+        for (Object element : attributeList) {
+            Attribute attribute = (Attribute) element;
+            values.put(attribute.getName(), attribute.getValue());
+        }
+        return values;
+    }
+
     /**
      * Gets the attribute numerical value.
      * 
@@ -1006,73 +1392,6 @@ public class MBeanServer implements IMBeanServer {
         return mxBean;
     }
 
-    /**
-     * Parses the given heap.
-     * 
-     * @param heap
-     *            The heap
-     * @param maxNumberOfClasses
-     *            The max number of classes
-     */
-    private void parseHeap(String heap, int maxNumberOfClasses) {
-        Map<String, HeapElement> newHeapElements = new LinkedHashMap<String, HeapElement>();
-
-        String[] lines = heap.split("\n"); //$NON-NLS-1$
-        for (String line : lines) {
-            Scanner scanner = new Scanner(line);
-            if (!scanner.hasNext()) {
-                continue;
-            }
-            scanner.next();
-            if (!scanner.hasNextLong()) {
-                continue;
-            }
-            long count = scanner.nextLong();
-            if (!scanner.hasNextLong()) {
-                continue;
-            }
-            long size = scanner.nextLong();
-            if (scanner.hasNext()) {
-                String className = scanner.next();
-                if (className.startsWith("<")) { //$NON-NLS-1$
-                    continue;
-                }
-                className = convertClassName(className);
-
-                HeapElement oldElement = heapListElements.get(className);
-                if (oldElement == null) {
-                    newHeapElements.put(className, new HeapElement(className,
-                            size, count));
-                } else {
-                    // WORKAROUND heap from target JVM has a
-                    // duplicated entry...
-                    if (!newHeapElements.containsKey(className)) {
-                        oldElement.setSizeAndCount(size, count);
-                        newHeapElements.put(className, oldElement);
-                    }
-                }
-                if (newHeapElements.size() >= maxNumberOfClasses) {
-                    break;
-                }
-            }
-        }
-        heapListElements = newHeapElements;
-    }
-
-    /**
-     * Converts the class name. e.g "[I" to "int[]"
-     * 
-     * @param className
-     *            The class name
-     * @return The class name
-     */
-    private static String convertClassName(String className) {
-        if (className.startsWith("[")) { //$NON-NLS-1$
-            return Signature.toString(className);
-        }
-        return className;
-    }
-
     /**
      * Dumps the profile data into file.
      * 
@@ -1098,6 +1417,18 @@ public class MBeanServer implements IMBeanServer {
             simpleFileName = new File(dumpFileName).getName();
         }
 
+        // transfer hprof file in gzip format if supported by agent
+        ObjectName dataTransferObjectName = null;
+        boolean gzip = false;
+        if (type == SnapshotType.Hprof && jvm.isRemote()) {
+            dataTransferObjectName = getObjectName(DATA_TRANSFER_MXBEAN_NAME);
+            gzip = RemoteFileTransfer.isSupported(this,
+                    dataTransferObjectName, true);
+            if (gzip) {
+                simpleFileName += '.' + Compression.Gzip.getExtension();
+            }
+        }
+
         IFileStore fileStore = Util.getFileStore(simpleFileName,
                 jvm.getBaseDirectory());
 
@@ -1111,33 +1442,29 @@ public class MBeanServer implements IMBeanServer {
         }
 
         OutputStream os = null;
+        boolean completed = false;
         try {
             if (type == SnapshotType.Heap || type == SnapshotType.Thread) {
                 String dump = getDumpString(type);
                 os = fileStore.openOutputStream(EFS.NONE, null);
                 os.write(dump.getBytes());
             } else if (type == SnapshotType.Hprof && jvm.isRemote()) {
-                ObjectName objectName = getObjectName(DATA_TRANSFER_MXBEAN_NAME);
                 os = fileStore.openOutputStream(EFS.NONE, null);
-                byte[] bytes;
-                int offset = 0;
-                final int SIZE = 4096;
-                final String[] SIGNATURES = new String[] {
-                        String.class.getCanonicalName(), "int", "int" };//$NON-NLS-1$ //$NON-NLS-2$
-                do {
-                    bytes = (byte[]) invoke(objectName, "read", new Object[] { //$NON-NLS-1$
-                            dumpFileName, offset, SIZE }, SIGNATURES);
-                    os.write(bytes);
-                    offset += SIZE;
-                    if (monitor != null && monitor.isCanceled()) {
-                        break;
-                    }
-                } while (bytes.length > 0);
+                if (gzip
+                        || RemoteFileTransfer.isSupported(this,
+                                dataTransferObjectName, false)) {
+                    new RemoteFileTransfer(this, dataTransferObjectName,
+                            dumpFileName, gzip).transfer(os, monitor);
+                } else {
+                    readRemoteFile(dataTransferObjectName, dumpFileName, os,
+                            monitor);
+                }
             }
 
             if (monitor != null && monitor.isCanceled()) {
                 return null;
             }
+            completed = true;
 
             Snapshot snapshot = new Snapshot(fileStore, abstractJvm);
             abstractJvm.addSnapshot(snapshot);
@@ -1150,12 +1477,6 @@ public class MBeanServer implements IMBeanServer {
                     Messages.openOutputStreamFailedMsg, fileStore.toURI()
                             .getPath()), e);
         } catch (IOException e) {
-            try {
-                fileStore.delete(EFS.NONE, null);
-            } catch (CoreException e1) {
-                // do nothing
-            }
-
             throw new JvmCoreException(IStatus.ERROR, NLS.bind(
                     Messages.dumpFailedMsg, fileStore.toURI().getPath()), e);
         } finally {
@@ -1166,10 +1487,56 @@ public class MBeanServer implements IMBeanServer {
                     // do nothing
                 }
             }
+
+            // don't leave a partial file behind on failure or cancellation
+            if (!completed) {
+                try {
+                    fileStore.delete(EFS.NONE, null);
+                } catch (CoreException e) {
+                    // do nothing
+                }
+            }
         }
         return fileStore;
     }
 
+    /**
+     * Reads the remote file with the agent that doesn't support the transfer
+     * session.
+     * 
+     * @param objectName
+     *            The object name of data transfer MXBean
+     * @param fileName
+     *            The file name on the host where target JVM is running
+     * @param os
+     *            The output stream
+     * @param monitor
+     *            The progress monitor
+     * @throws JvmCoreException
+     * @throws IOException
+     */
+    private void readRemoteFile(ObjectName objectName, String fileName,
+            OutputStream os, IProgressMonitor monitor)
+            throws JvmCoreException, IOException {
+        byte[] bytes;
+        int offset = 0;
+        final int SIZE = 4096;
+        final String[] SIGNATURES = new String[] {
+                String.class.getCanonicalName(), "int", "int" };//$NON-NLS-1$ //$NON-NLS-2$
+        do {
+            bytes = (byte[]) invoke(objectName, "read", new Object[] { //$NON-NLS-1$
+                    fileName, offset, SIZE }, SIGNATURES);
+            if (bytes == null) {
+                break;
+            }
+            os.write(bytes);
+            offset += bytes.length;
+            if (monitor != null && monitor.isCanceled()) {
+                break;
+            }
+        } while (bytes.length > 0);
+    }
+
     /**
      * Gets the dump string.
      * 
@@ -1229,10 +1596,11 @@ public class MBeanServer implements IMBeanServer {
         } catch (IOException ex) {
             isJvmReachable = false;
 
-            timer.cancel();
-            if (samplingTimer != null) {
-                samplingTimer.cancel();
-                samplingTimer = null;
+            updateTask.cancel();
+            closeTimelineStore();
+            if (samplingTask != null) {
+                samplingTask.cancel();
+                samplingTask = null;
             }
             if (jvm.getHost().getActiveJvms().contains(jvm)) {
                 jvm.getHost().removeJvm(jvm.getPid());
@@ -1279,13 +1647,24 @@ public class MBeanServer implements IMBeanServer {
                     - previousSamplingTime;
         }
 
-        Set<String> profiledPackages = jvm.getCpuProfiler()
-                .getProfiledPackages();
-        for (ThreadInfo threadInfo : threadMXBean.dumpAllThreads(true, false)) {
+        methodSymbols.setProfiledPackages(jvm.getCpuProfiler()
+                .getProfiledPackages());
+        long[] threadIds = sampledThreadIds;
+        if (threadIds == null
+                || samplingTicks++ >= SAMPLED_THREADS_REFRESH_TICKS) {
+            threadIds = refreshSampledThreadIds(threadMXBean);
+        }
+        int maxDepth = maxSamplingDepth;
+        for (ThreadInfo threadInfo : threadMXBean.getThreadInfo(threadIds,
+                maxDepth)) {
+            if (threadInfo == null) {
+                // the thread has terminated
+                sampledThreadIds = null;
+                continue;
+            }
             StackTraceElement[] stackTrace = threadInfo.getStackTrace();
             String threadName = threadInfo.getThreadName();
-            if (stackTrace.length > 0 && !threadName.startsWith("JMX ") //$NON-NLS-1$
-                    && !threadName.startsWith("RMI ")) { //$NON-NLS-1$
+            if (stackTrace.length > 0 && !isIdleThread(threadInfo)) {
                 ThreadNode<CallTreeNode> callTreeThreadNode = cpuModel
                         .getCallTreeThread(threadName);
                 ThreadNode<MethodNode> hotSpotThreadNode = cpuModel
@@ -1299,7 +1678,8 @@ public class MBeanServer implements IMBeanServer {
                 }
 
                 updateCpuModel(callTreeThreadNode, hotSpotThreadNode,
-                        profiledPackages, invertStackTrace(stackTrace),
+                        invertStackTrace(stackTrace),
+                        stackTrace.length >= maxDepth,
                         actualSamplingPeriodInMilliSeconds);
 
                 if (callTreeThreadNode.hasChildren()) {
@@ -1313,6 +1693,63 @@ public class MBeanServer implements IMBeanServer {
         previousSamplingTime = samplingTime;
     }
 
+    /**
+     * Refreshes the IDs of threads to be sampled. The infrastructure threads
+     * for JMX and RMI and the threads without java frames are excluded, so
+     * that only the stack traces of the remaining threads are transferred on
+     * each sampling tick. The idle threads are kept, since they may get busy
+     * before the next refresh, and are skipped on each tick instead.
+     * 
+     * @param threadMXBean
+     *            The thread MXBean
+     * @return The IDs of threads to be sampled
+     */
+    private long[] refreshSampledThreadIds(ThreadMXBean threadMXBean) {
+        long[] ids = threadMXBean.getAllThreadIds();
+        ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(ids, 1);
+        int size = 0;
+        for (int i = 0; i < ids.length; i++) {
+            ThreadInfo threadInfo = threadInfos[i];
+            if (threadInfo == null || threadInfo.getStackTrace().length == 0) {
+                continue;
+            }
+            String threadName = threadInfo.getThreadName();
+            if (!threadName.startsWith("JMX ") //$NON-NLS-1$
+                    && !threadName.startsWith("RMI ")) { //$NON-NLS-1$
+                ids[size++] = ids[i];
+            }
+        }
+        long[] threadIds = Arrays.copyOf(ids, size);
+        sampledThreadIds = threadIds;
+        samplingTicks = 0;
+        return threadIds;
+    }
+
+    /**
+     * Gets the state indicating if the given thread is idle, that is waiting
+     * or parked in the frame known to wait for I/O while being runnable.
+     * 
+     * @param threadInfo
+     *            The thread info with at least the top frame
+     * @return <tt>true</tt> if the given thread is idle
+     */
+    private static boolean isIdleThread(ThreadInfo threadInfo) {
+        Thread.State state = threadInfo.getThreadState();
+        if (state == Thread.State.WAITING
+                || state == Thread.State.TIMED_WAITING) {
+            return true;
+        }
+
+        StackTraceElement frame = threadInfo.getStackTrace()[0];
+        String frameName = frame.getClassName() + '.' + frame.getMethodName();
+        for (String idleFrame : IDLE_FRAMES) {
+            if (idleFrame.equals(frameName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Gets the inverted stack trace.
      * 
@@ -1338,15 +1775,16 @@ public class MBeanServer implements IMBeanServer {
      *            The call tree thread node
      * @param hotSpotThreadNode
      *            The hot spot thread node
-     * @param profiledPackages
-     *            The profiled packages
+     * @param truncated
+     *            True if the stack trace has been truncated by max depth, in
+     *            which case the frames are added under the
+     *            <tt>(truncated)</tt> root frame in call tree
      * @param period
      *            The actual sampling period
      */
     private void updateCpuModel(ThreadNode<CallTreeNode> callTreeThreadNode,
             ThreadNode<MethodNode> hotSpotThreadNode,
-            Set<String> profiledPackages, StackTraceElement[] stackTrace,
-            long period) {
+            StackTraceElement[] stackTrace, boolean truncated, long period) {
 
         String threadName = callTreeThreadNode.getName();
 
@@ -1357,13 +1795,12 @@ public class MBeanServer implements IMBeanServer {
         CallTreeNode currentFrameNode = null;
         boolean isRootStack = true;
         for (int i = 0; i < stackTrace.length; i++) {
-            if (!isProfiledPackage(stackTrace[i].getClassName(),
-                    profiledPackages)) {
+            MethodSymbol symbol = methodSymbols.getSymbol(stackTrace[i]);
+            if (!methodSymbols.isProfiled(symbol)) {
                 continue;
             }
 
-            String methodName = stackTrace[i].getClassName() + "." //$NON-NLS-1$
-                    + stackTrace[i].getMethodName() + "()"; //$NON-NLS-1$
+            String methodName = symbol.getName();
 
             if (previousStackTrace == null || i >= previousStackTrace.length
                     || !stackTrace[i].equals(previousStackTrace[i])) {
@@ -1372,6 +1809,10 @@ public class MBeanServer implements IMBeanServer {
 
             updateMethodNode(hotSpotThreadNode, methodName, isNewStack, period);
 
+            if (isRootStack && truncated) {
+                currentFrameNode = updateFrameNode(callTreeThreadNode, null,
+                        TRUNCATED_FRAME_NAME, isNewStack, period, false);
+            }
             currentFrameNode = updateFrameNode(callTreeThreadNode,
                     currentFrameNode, methodName, isNewStack, period,
                     i == stackTrace.length - 1);
@@ -1474,69 +1915,43 @@ public class MBeanServer implements IMBeanServer {
     }
 
     /**
-     * Checks if the given class belongs to one of the packages list.
-     * 
-     * @param className
-     *            the class name (e.g. java.lang.String)
-     * @param packages
-     *            The profiled packages
-     * @return true if the given class belongs to one of the packages list
-     */
-    private static boolean isProfiledPackage(String className,
-            Set<String> packages) {
-        if (packages.isEmpty()) {
-            return false;
-        }
-
-        String packageName;
-        if (className.contains(".")) { //$NON-NLS-1$
-            packageName = className.substring(0, className.lastIndexOf('.'));
-        } else if (className.startsWith("$")) { //$NON-NLS-1$
-            return false; // e.g. $Proxy0
-        } else {
-            packageName = "<default>"; //$NON-NLS-1$
-        }
-
-        for (String pkg : packages) {
-            if (pkg.endsWith("*")) { //$NON-NLS-1$
-                if (packageName.concat(".").startsWith( //$NON-NLS-1$
-                        pkg.substring(0, pkg.length() - 1))) {
-                    return true;
-                }
-            } else {
-                if (packageName.equals(pkg)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Starts the update timer.
+     * Starts the polling task to update.
      * 
      * @param updatePeriod
      *            The update period
      */
-    private void startUpdateTimer(int updatePeriod) {
-        if (timer != null) {
-            timer.cancel();
+    private void startUpdateTask(int updatePeriod) {
+        if (updateTask != null) {
+            updateTask.cancel();
         }
-        timer = new Timer(true);
 
-        TimerTask timerTask = new TimerTask() {
+        Runnable runnable = new Runnable() {
             @Override
             public void run() {
                 try {
                     refresh();
                 } catch (JvmCoreException e) {
                     Activator.log(IStatus.ERROR, e.getMessage(), e);
-                    timer.cancel();
+                    cancelCurrentTask();
                 } catch (Throwable t) {
-                    timer.cancel();
+                    cancelCurrentTask();
                 }
             }
         };
-        timer.schedule(timerTask, 0, updatePeriod);
+        updateTask = Activator.getDefault().getPollingScheduler()
+                .schedule("update " + jvm.getPid(), runnable, updatePeriod); //$NON-NLS-1$
+    }
+
+    /**
+     * Cancels the task whose tick is being executed on the current thread.
+     * The task is canceled through the scheduler, since the field holding the
+     * task may not be assigned yet when the first tick fails.
+     */
+    private static void cancelCurrentTask() {
+        IPollingTask task = Activator.getDefault().getPollingScheduler()
+                .getCurrentTask();
+        if (task != null) {
+            task.cancel();
+        }
     }
 }
@@ -68,6 +68,9 @@ public final class Messages extends NLS {
     /** */
     public static String parseCpuDumpFailedMsg;
 
+    /** */
+    public static String parseHeapHistogramFailedMsg;
+
     /** */
     public static String agentNotLoadedMsg;
 
@@ -101,6 +104,9 @@ public final class Messages extends NLS {
     /** */
     public static String unsubscribeMBeanNotificationFailedMsg;
 
+    /** */
+    public static String coalesceMBeanNotificationFailedMsg;
+
     /** */
     public static String getObjectNameFailedMsg;
 
@@ -116,6 +122,21 @@ public final class Messages extends NLS {
     /** */
     public static String jvmNotReachableMsg;
 
+    /** */
+    public static String pollingTaskFailedMsg;
+
+    /** */
+    public static String pollingTaskStalledMsg;
+
+    /** */
+    public static String openTimelineStoreFailedMsg;
+
+    /** */
+    public static String accessTimelineStoreFailedMsg;
+
+    /** */
+    public static String transformClassesFailedMsg;
+
     // job names
     
     /** */
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import java.util.Arrays;
+
+import org.jvmmonitor.core.mbean.TimeSeriesSnapshot;
+
+/**
+ * The downsampler that divides the time range into columns and keeps only the
+ * min / max values in each column, so that the spikes are still visible after
+ * downsampling.
+ */
+public class MinMaxDownsampler {
+
+    /**
+     * The constructor.
+     */
+    private MinMaxDownsampler() {
+        // do not instantiate
+    }
+
+    /**
+     * Downsamples the series. Each point has the min and the max value that
+     * are the same for a raw sample, and different for a rolled up bucket.
+     * 
+     * @param times
+     *            The times in milliseconds in ascending order
+     * @param mins
+     *            The min values
+     * @param maxs
+     *            The max values
+     * @param start
+     *            The index of the first point
+     * @param end
+     *            The index next to the last point
+     * @param from
+     *            The start time of range in milliseconds
+     * @param to
+     *            The end time of range in milliseconds
+     * @param width
+     *            The number of columns
+     * @return The downsampled series with at most two points per column
+     */
+    public static TimeSeriesSnapshot downsample(long[] times, double[] mins,
+            double[] maxs, int start, int end, long from, long to, int width) {
+        long[] resultTimes = new long[Math.min(end - start, width) * 2];
+        double[] resultValues = new double[resultTimes.length];
+        int length = 0;
+
+        long range = Math.max(to - from, 1);
+        long column = -1;
+        long minTime = 0;
+        long maxTime = 0;
+        double min = 0;
+        double max = 0;
+        for (int i = start; i < end; i++) {
+            long time = times[i];
+            long currentColumn = Math.min((time - from) * width / range,
+                    width - 1);
+            if (currentColumn != column) {
+                if (column != -1) {
+                    length = flush(resultTimes, resultValues, length, minTime,
+                            min, maxTime, max);
+                }
+                column = currentColumn;
+                minTime = time;
+                maxTime = time;
+                min = mins[i];
+                max = maxs[i];
+                continue;
+            }
+            if (mins[i] < min) {
+                min = mins[i];
+                minTime = time;
+            }
+            if (maxs[i] > max) {
+                max = maxs[i];
+                maxTime = time;
+            }
+        }
+        if (column != -1) {
+            length = flush(resultTimes, resultValues, length, minTime, min,
+                    maxTime, max);
+        }
+
+        return new TimeSeriesSnapshot(Arrays.copyOf(resultTimes, length),
+                Arrays.copyOf(resultValues, length));
+    }
+
+    /**
+     * Flushes the min / max values of column in chronological order.
+     * 
+     * @param times
+     *            The times to store into
+     * @param values
+     *            The values to store into
+     * @param length
+     *            The number of stored points
+     * @param minTime
+     *            The time of min value
+     * @param min
+     *            The min value
+     * @param maxTime
+     *            The time of max value
+     * @param max
+     *            The max value
+     * @return The number of stored points
+     */
+    private static int flush(long[] times, double[] values, int length,
+            long minTime, double min, long maxTime, double max) {
+        int index = length;
+        if (min == max) {
+            times[index] = minTime;
+            values[index++] = min;
+        } else if (minTime <= maxTime) {
+            times[index] = minTime;
+            values[index++] = min;
+            times[index] = maxTime;
+            values[index++] = max;
+        } else {
+            times[index] = maxTime;
+            values[index++] = max;
+            times[index] = minTime;
+            values[index++] = min;
+        }
+        return index;
+    }
+}
@@ -9,19 +9,25 @@ package org.jvmmonitor.internal.core;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.management.ObjectName;
 
 import org.jvmmonitor.core.mbean.IMonitoredMXBeanAttribute;
+import org.jvmmonitor.core.mbean.TimeSeriesSnapshot;
 
 /**
  * The monitored MXBean attributes.
  */
 public class MonitoredMXBeanAttribute implements IMonitoredMXBeanAttribute {
 
-    /** The number of durations. */
-    private static final long NUM_OF_DURATIONS = 500;
+    /** The number of samples kept in memory, that has to be power of two. */
+    private static final int CAPACITY = 4096;
+
+    /** The bucket durations in milliseconds of rollup tiers. */
+    private static final long[] ROLLUP_DURATIONS = { 10000, 60000, 600000 };
+
+    /** The number of buckets kept in each rollup tier. */
+    private static final int ROLLUP_CAPACITY = 1024;
 
     /** The object name. */
     private ObjectName objectName;
@@ -29,14 +35,14 @@ public class MonitoredMXBeanAttribute implements IMonitoredMXBeanAttribute {
     /** The attribute name. */
     private String atributeName;
 
-    /** The attribute values. */
-    private List<Number> values;
+    /** The samples. */
+    private TimeSeriesRingBuffer samples;
 
-    /** The time values. */
-    private List<Date> dates;
+    /** The rollup tiers in ascending order of bucket duration. */
+    private TimeSeriesRollup[] rollups;
 
-    /** The previous duration index. */
-    private int previousDurationIndex;
+    /** The time of the first sample since cleared. */
+    private volatile long firstTime;
 
     /** The RGB. */
     private int[] rgb;
@@ -55,11 +61,15 @@ public class MonitoredMXBeanAttribute implements IMonitoredMXBeanAttribute {
             String attributeName, int[] rgb) {
         this.objectName = objectName;
         this.atributeName = attributeName;
-        previousDurationIndex = 0;
         this.rgb = rgb;
 
-        values = new CopyOnWriteArrayList<Number>();
-        dates = new CopyOnWriteArrayList<Date>();
+        samples = new TimeSeriesRingBuffer(CAPACITY);
+        firstTime = Long.MAX_VALUE;
+        rollups = new TimeSeriesRollup[ROLLUP_DURATIONS.length];
+        for (int i = 0; i < rollups.length; i++) {
+            rollups[i] = new TimeSeriesRollup(ROLLUP_DURATIONS[i],
+                    ROLLUP_CAPACITY);
+        }
     }
 
     /*
@@ -86,11 +96,73 @@ public class MonitoredMXBeanAttribute implements IMonitoredMXBeanAttribute {
         return rgb;
     }
 
+    /*
+     * @see IMonitoredMXBeanAttribute#getSnapshot()
+     */
+    @Override
+    public TimeSeriesSnapshot getSnapshot() {
+        return samples.getSnapshot();
+    }
+
+    /*
+     * @see IMonitoredMXBeanAttribute#getSeries(long, long, int)
+     */
+    @Override
+    public TimeSeriesSnapshot getSeries(long from, long to, int width) {
+        TimeSeriesSnapshot snapshot = samples.getSnapshot();
+        if (snapshot.size() == 0 || width <= 0) {
+            return new TimeSeriesSnapshot(new long[0], new double[0]);
+        }
+
+        long oldestTime = snapshot.getTimestamp(0);
+        for (TimeSeriesRollup rollup : rollups) {
+            oldestTime = Math.min(oldestTime, rollup.getOldestTime());
+        }
+        long start = Math.max(from, Math.max(oldestTime, firstTime));
+        long end = Math.min(to, snapshot.getTimestamp(snapshot.size() - 1));
+        if (start > end) {
+            return new TimeSeriesSnapshot(new long[0], new double[0]);
+        }
+
+        // pick the coarsest tier that is still finer than a column
+        long columnDuration = (end - start) / width;
+        int tier = -1;
+        for (int i = 0; i < rollups.length; i++) {
+            if (rollups[i].getDuration() <= columnDuration) {
+                tier = i;
+            }
+        }
+
+        // fall back to coarser tier if the range is not covered
+        long tierOldestTime = tier == -1 ? snapshot.getTimestamp(0)
+                : rollups[tier].getOldestTime();
+        while (tierOldestTime > start && tier + 1 < rollups.length
+                && rollups[tier + 1].getOldestTime() < tierOldestTime) {
+            tier++;
+            tierOldestTime = rollups[tier].getOldestTime();
+        }
+
+        if (tier != -1) {
+            return rollups[tier].getSeries(start, end, width);
+        }
+        long[] timestamps = snapshot.getTimestamps();
+        double[] values = snapshot.getValues();
+        int startIndex = getIndex(timestamps, start);
+        int endIndex = getIndex(timestamps, end + 1);
+        return MinMaxDownsampler.downsample(timestamps, values, values,
+                startIndex, endIndex, start, end, width);
+    }
+
     /*
      * @see IMonitoredMXBeanAttribute#getDates()
      */
     @Override
     public List<Date> getDates() {
+        long[] timestamps = samples.getSnapshot().getTimestamps();
+        List<Date> dates = new ArrayList<Date>(timestamps.length);
+        for (long timestamp : timestamps) {
+            dates.add(new Date(timestamp));
+        }
         return dates;
     }
 
@@ -99,6 +171,11 @@ public class MonitoredMXBeanAttribute implements IMonitoredMXBeanAttribute {
      */
     @Override
     public List<Number> getValues() {
+        double[] doubleValues = samples.getSnapshot().getValues();
+        List<Number> values = new ArrayList<Number>(doubleValues.length);
+        for (double value : doubleValues) {
+            values.add(value);
+        }
         return values;
     }
 
@@ -115,124 +192,87 @@ public class MonitoredMXBeanAttribute implements IMonitoredMXBeanAttribute {
      */
     @Override
     public void clear() {
-        dates.clear();
-        values.clear();
-        previousDurationIndex = 0;
+        samples.clear();
+        firstTime = Long.MAX_VALUE;
+        for (TimeSeriesRollup rollup : rollups) {
+            rollup.clear();
+        }
     }
 
     /**
-     * Adds the attribute value.
+     * Adds the attribute value. This method has to be invoked by a single
+     * thread that polls the attribute.
      * 
      * @param value
      *            The attribute value
-     * @param date
-     *            The date
+     * @param time
+     *            The time in milliseconds
      */
-    public void add(Number value, Date date) {
-        values.add(value);
-        dates.add(date);
-
-        // compress data if exceeding the certain size
-        if (dates.size() > NUM_OF_DURATIONS * 2) {
-            compress();
+    public void add(double value, long time) {
+        if (firstTime == Long.MAX_VALUE) {
+            firstTime = time;
+        }
+        samples.add(time, value);
+        for (TimeSeriesRollup rollup : rollups) {
+            rollup.add(time, value);
         }
     }
 
     /**
-     * Gets the data size.
+     * Adds the history older than the current samples. This method has to be
+     * invoked by the thread that adds the attribute values.
      * 
-     * @return The data size.
+     * @param history
+     *            The history in chronological order
      */
-    public int getSize() {
-        return dates.size();
-    }
-
-    /**
-     * Compresses the data diving into several durations and keeping only the
-     * min / max value in each duration.
-     */
-    private void compress() {
-        ArrayList<Date> compressedDates = new ArrayList<Date>();
-        ArrayList<Number> compressedValues = new ArrayList<Number>();
-
-        int minIndex = 0;
-        int maxIndex = 0;
-        previousDurationIndex = 0;
-        for (int i = 0; i < dates.size(); i++) {
-            if (isInSameDurationAsPrevious(dates.get(i).getTime())) {
-
-                // get the min / max values in the same duration
-                double value = values.get(i).doubleValue();
-                if (value > values.get(maxIndex).doubleValue()) {
-                    maxIndex = i;
-                }
-                if (value < values.get(minIndex).doubleValue()) {
-                    minIndex = i;
-                }
-            } else {
-                addValues(compressedDates, compressedValues, minIndex, maxIndex);
-                maxIndex = i;
-                minIndex = i;
+    public void addHistory(TimeSeriesSnapshot history) {
+        TimeSeriesSnapshot snapshot = samples.getSnapshot();
+        long firstSampleTime = snapshot.size() == 0 ? Long.MAX_VALUE
+                : snapshot.getTimestamp(0);
+
+        clear();
+        for (int i = 0; i < history.size(); i++) {
+            long time = history.getTimestamp(i);
+            if (time >= firstSampleTime) {
+                break;
             }
+            add(history.getValue(i), time);
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            add(snapshot.getValue(i), snapshot.getTimestamp(i));
         }
-
-        addValues(compressedDates, compressedValues, minIndex, maxIndex);
-
-        dates = compressedDates;
-        values = compressedValues;
     }
 
     /**
-     * Adds the values to the given array.
+     * Gets the data size.
      * 
-     * @param datesArray
-     *            The array of dates
-     * @param valuesArray
-     *            The array of values
-     * @param indexA
-     *            The index of {@link #dates} and {@link #values} to add
-     * @param indexB
-     *            The index of {@link #values} and {@link #values} to add
+     * @return The data size.
      */
-    private void addValues(ArrayList<Date> datesArray,
-            ArrayList<Number> valuesArray, int indexA, int indexB) {
-        if (indexA < indexB) {
-            datesArray.add(dates.get(indexA));
-            valuesArray.add(values.get(indexA));
-            datesArray.add(dates.get(indexB));
-            valuesArray.add(values.get(indexB));
-        } else if (indexA > indexB) {
-            datesArray.add(dates.get(indexB));
-            valuesArray.add(values.get(indexB));
-            datesArray.add(dates.get(indexA));
-            valuesArray.add(values.get(indexA));
-        } else {
-            datesArray.add(dates.get(indexB));
-            valuesArray.add(values.get(indexB));
-        }
+    public int getSize() {
+        return samples.size();
     }
 
     /**
-     * Checks if the given date is in the same duration as previous.
+     * Gets the index of the first timestamp that is equal to or later than
+     * the given time.
      * 
-     * @param date
-     *            the date
-     * @return true if the given date is in the same duration as previous
+     * @param timestamps
+     *            The timestamps in ascending order
+     * @param time
+     *            The time in milliseconds
+     * @return The index
      */
-    private boolean isInSameDurationAsPrevious(long date) {
-
-        double minDate = dates.get(0).getTime();
-        double maxDate = dates.get(dates.size() - 1).getTime();
-
-        // calculate the duration index
-        int durationIndex = (int) ((date - minDate) / (maxDate - minDate) * NUM_OF_DURATIONS);
-
-        // check if the duration index is the same as previous
-        boolean isInSameGridAsPrevious = (durationIndex == previousDurationIndex);
-
-        // store the previous duration index
-        previousDurationIndex = durationIndex;
-
-        return isInSameGridAsPrevious;
+    private static int getIndex(long[] timestamps, long time) {
+        int low = 0;
+        int high = timestamps.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
     }
 }
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import javax.management.Notification;
+
+import org.jvmmonitor.core.mbean.NotificationBatch;
+
+/**
+ * The bounded ring buffer of notifications for a MBean. Each notification is
+ * given a sequence starting from 1 when added, and the oldest notification is
+ * dropped when the buffer is full.
+ */
+public class NotificationRingBuffer {
+
+    /** The buffer. */
+    private Notification[] buffer;
+
+    /** The index in buffer where the next notification is stored. */
+    private int head;
+
+    /** The number of notifications held in buffer. */
+    private int size;
+
+    /** The sequence of the latest notification added. */
+    private long sequence;
+
+    /** The sequence of the latest notification when cleared. */
+    private long clearedSequence;
+
+    /** The number of notifications dropped since subscribed. */
+    private long droppedCount;
+
+    /**
+     * The constructor.
+     * 
+     * @param capacity
+     *            The capacity
+     */
+    protected NotificationRingBuffer(int capacity) {
+        buffer = new Notification[capacity];
+    }
+
+    /**
+     * Adds the notification, dropping the oldest one if the buffer is full.
+     * 
+     * @param notification
+     *            The notification
+     */
+    synchronized protected void add(Notification notification) {
+        if (size == buffer.length) {
+            droppedCount++;
+        } else {
+            size++;
+        }
+        buffer[head] = notification;
+        head = (head + 1) % buffer.length;
+        sequence++;
+    }
+
+    /**
+     * Gets the notifications added after the given sequence.
+     * 
+     * @param fromSequence
+     *            The sequence of the latest notification already fetched, or
+     *            <tt>0</tt> to get all notifications
+     * @return The notifications
+     */
+    synchronized protected NotificationBatch getSince(long fromSequence) {
+        long since = fromSequence;
+        if (since > sequence || since < 0) {
+            since = 0;
+        }
+
+        long firstSequence = sequence - size + 1;
+        long missedCount = firstSequence - Math.max(since, clearedSequence)
+                - 1;
+        int count = (int) Math.min(sequence - since, size);
+        Notification[] notifications = new Notification[count];
+        int start = head - count;
+        if (start < 0) {
+            start += buffer.length;
+        }
+        for (int i = 0; i < count; i++) {
+            notifications[i] = buffer[(start + i) % buffer.length];
+        }
+        return new NotificationBatch(notifications, sequence, Math.max(
+                missedCount, 0), size);
+    }
+
+    /**
+     * Gets the number of notifications held in buffer.
+     * 
+     * @return The number of notifications
+     */
+    synchronized protected int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of notifications dropped since subscribed.
+     * 
+     * @return The number of dropped notifications
+     */
+    synchronized protected long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Sets the capacity, keeping the latest notifications.
+     * 
+     * @param capacity
+     *            The capacity
+     */
+    synchronized protected void setCapacity(int capacity) {
+        if (capacity == buffer.length) {
+            return;
+        }
+        Notification[] notifications = getSince(sequence - size)
+                .getNotifications();
+        int count = Math.min(notifications.length, capacity);
+        droppedCount += notifications.length - count;
+        buffer = new Notification[capacity];
+        System.arraycopy(notifications, notifications.length - count, buffer,
+                0, count);
+        size = count;
+        head = count % capacity;
+    }
+
+    /**
+     * Clears the notifications. The sequence is kept so that the
+     * notifications added later are still given the larger sequence.
+     */
+    synchronized protected void clear() {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = null;
+        }
+        head = 0;
+        size = 0;
+        clearedSequence = sequence;
+        droppedCount = 0;
+    }
+}
@@ -0,0 +1,475 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.osgi.util.NLS;
+import org.jvmmonitor.core.Activator;
+import org.jvmmonitor.core.IPollingScheduler;
+import org.jvmmonitor.core.IPollingTask;
+
+/**
+ * The polling scheduler. A single dispatcher thread triggers the ticks of all
+ * tasks, and the ticks are executed on a bounded pool of worker threads, or
+ * on the own worker thread of isolated task. At most one tick of each task is
+ * queued or running at a time.
+ * <p>
+ * The tick that doesn't complete in time, e.g. blocked by JMX call to a hung
+ * JVM, is marked as stalled, and a worker thread is added to the pool until
+ * the tick completes, so that a few hung JVMs don't stall the others.
+ */
+public class PollingScheduler implements IPollingScheduler {
+
+    /** The number of worker threads. */
+    private static final int WORKER_THREADS = 8;
+
+    /** The keep alive time in seconds of idle worker threads. */
+    private static final long KEEP_ALIVE_TIME = 60;
+
+    /** The time in milliseconds after which a running tick has stalled. */
+    private static final long STALL_TIMEOUT = 10000;
+
+    /** The period in milliseconds to check the stalled ticks. */
+    private static final long STALL_CHECK_PERIOD = 1000;
+
+    /** The dispatcher thread name. */
+    private static final String DISPATCHER_THREAD_NAME = "JVM Monitor Polling Dispatcher"; //$NON-NLS-1$
+
+    /** The worker thread name. */
+    private static final String WORKER_THREAD_NAME = "JVM Monitor Polling Worker"; //$NON-NLS-1$
+
+    /** The dispatcher to trigger ticks. */
+    private ScheduledExecutorService dispatcher;
+
+    /** The workers to execute ticks. */
+    private ThreadPoolExecutor workers;
+
+    /** The scheduled tasks. */
+    private List<PollingTask> tasks;
+
+    /** The task whose tick is being executed on the current thread. */
+    private ThreadLocal<PollingTask> currentTask;
+
+    /** The time in nanoseconds after which a running tick has stalled. */
+    private long stallTimeout;
+
+    /** The number of stalled ticks occupying the worker threads. */
+    private int stalledTickCount;
+
+    /**
+     * The constructor.
+     */
+    public PollingScheduler() {
+        this(STALL_TIMEOUT);
+    }
+
+    /**
+     * The constructor.
+     * 
+     * @param stallTimeout
+     *            The time in milliseconds after which a running tick has
+     *            stalled
+     */
+    PollingScheduler(long stallTimeout) {
+        this.stallTimeout = TimeUnit.MILLISECONDS.toNanos(stallTimeout);
+        dispatcher = Executors.newSingleThreadScheduledExecutor(new Factory(
+                DISPATCHER_THREAD_NAME));
+        workers = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS,
+                KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new Factory(
+                        WORKER_THREAD_NAME));
+        workers.allowCoreThreadTimeOut(true);
+        tasks = new CopyOnWriteArrayList<PollingTask>();
+        currentTask = new ThreadLocal<PollingTask>();
+
+        long checkPeriod = Math.min(STALL_CHECK_PERIOD, stallTimeout);
+        dispatcher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                checkStalledTicks();
+            }
+        }, checkPeriod, checkPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * @see IPollingScheduler#schedule(String, Runnable, long)
+     */
+    @Override
+    public IPollingTask schedule(String name, Runnable runnable, long period) {
+        return schedule(new PollingTask(name, runnable, workers), period);
+    }
+
+    /*
+     * @see IPollingScheduler#scheduleIsolated(String, Runnable, long)
+     */
+    @Override
+    public IPollingTask scheduleIsolated(String name, Runnable runnable,
+            long period) {
+        ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1,
+                KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new Factory(
+                        WORKER_THREAD_NAME + " (" + name + ")")); //$NON-NLS-1$ //$NON-NLS-2$
+        worker.allowCoreThreadTimeOut(true);
+        return schedule(new PollingTask(name, runnable, worker), period);
+    }
+
+    /*
+     * @see IPollingScheduler#getCurrentTask()
+     */
+    @Override
+    public IPollingTask getCurrentTask() {
+        return currentTask.get();
+    }
+
+    /*
+     * @see IPollingScheduler#getTasks()
+     */
+    @Override
+    public List<IPollingTask> getTasks() {
+        return new ArrayList<IPollingTask>(tasks);
+    }
+
+    /**
+     * Schedules the task.
+     * 
+     * @param task
+     *            The task
+     * @param period
+     *            The period in milliseconds
+     * @return The task
+     */
+    private IPollingTask schedule(PollingTask task, long period) {
+        tasks.add(task);
+        task.setFuture(dispatcher.scheduleAtFixedRate(task, 0, period,
+                TimeUnit.MILLISECONDS));
+        return task;
+    }
+
+    /**
+     * Checks the running ticks, and adds a worker thread to replace the
+     * thread occupied by each tick that has newly stalled.
+     */
+    void checkStalledTicks() {
+        long now = System.nanoTime();
+        for (PollingTask task : tasks) {
+            if (task.markStalled(now)) {
+                Activator.log(IStatus.WARNING, NLS.bind(
+                        Messages.pollingTaskStalledMsg, task.getName(),
+                        TimeUnit.NANOSECONDS.toMillis(stallTimeout)),
+                        new Exception());
+                if (task.executor == workers) {
+                    addStalledTick();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a worker thread to replace the thread occupied by stalled tick.
+     */
+    synchronized void addStalledTick() {
+        stalledTickCount++;
+        workers.setMaximumPoolSize(WORKER_THREADS + stalledTickCount);
+        workers.setCorePoolSize(WORKER_THREADS + stalledTickCount);
+    }
+
+    /**
+     * Removes the worker thread added for the stalled tick that has completed.
+     */
+    synchronized void releaseStalledTick() {
+        stalledTickCount--;
+        workers.setCorePoolSize(WORKER_THREADS + stalledTickCount);
+        workers.setMaximumPoolSize(WORKER_THREADS + stalledTickCount);
+    }
+
+    /**
+     * Shuts down the scheduler, and cancels all tasks.
+     */
+    public void shutdown() {
+        for (PollingTask task : tasks) {
+            task.cancel();
+        }
+        dispatcher.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * The polling task. The dispatcher runs this task on each tick, and the
+     * given runnable is executed on worker thread.
+     */
+    private class PollingTask implements IPollingTask, Runnable {
+
+        /** The task name. */
+        private String name;
+
+        /** The runnable executed on each tick. */
+        private Runnable runnable;
+
+        /** The executor to execute ticks. */
+        private ExecutorService executor;
+
+        /** The future of periodic dispatching. */
+        private ScheduledFuture<?> future;
+
+        /** The state indicating if the task has been canceled. */
+        private volatile boolean canceled;
+
+        /** The state indicating if a tick is queued or running. */
+        private AtomicBoolean busy;
+
+        /** The latency in nanoseconds of the last completed tick. */
+        private volatile long lastLatency;
+
+        /** The max latency in nanoseconds of the completed ticks. */
+        private volatile long maxLatency;
+
+        /** The number of skipped ticks. */
+        private volatile long skippedTickCount;
+
+        /** The state indicating if a tick is running. */
+        private boolean running;
+
+        /** The time in nanoseconds when the running tick started. */
+        private long tickStartTime;
+
+        /** The state indicating if the running tick has stalled. */
+        private volatile boolean stalled;
+
+        /**
+         * The constructor.
+         * 
+         * @param name
+         *            The task name
+         * @param runnable
+         *            The runnable executed on each tick
+         * @param executor
+         *            The executor to execute ticks
+         */
+        PollingTask(String name, Runnable runnable, ExecutorService executor) {
+            this.name = name;
+            this.runnable = runnable;
+            this.executor = executor;
+            busy = new AtomicBoolean(false);
+        }
+
+        /*
+         * @see Runnable#run()
+         */
+        @Override
+        public void run() {
+            if (canceled) {
+                return;
+            }
+            if (!busy.compareAndSet(false, true)) {
+                skippedTickCount++;
+                return;
+            }
+
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        execute();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                busy.set(false);
+            }
+        }
+
+        /*
+         * @see IPollingTask#getName()
+         */
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        /*
+         * @see IPollingTask#cancel()
+         */
+        @Override
+        synchronized public void cancel() {
+            canceled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            if (executor != workers) {
+                executor.shutdown();
+            }
+            tasks.remove(this);
+        }
+
+        /*
+         * @see IPollingTask#isCanceled()
+         */
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        /*
+         * @see IPollingTask#getLastLatency()
+         */
+        @Override
+        public long getLastLatency() {
+            return TimeUnit.NANOSECONDS.toMillis(lastLatency);
+        }
+
+        /*
+         * @see IPollingTask#getMaxLatency()
+         */
+        @Override
+        public long getMaxLatency() {
+            return TimeUnit.NANOSECONDS.toMillis(maxLatency);
+        }
+
+        /*
+         * @see IPollingTask#getSkippedTickCount()
+         */
+        @Override
+        public long getSkippedTickCount() {
+            return skippedTickCount;
+        }
+
+        /*
+         * @see IPollingTask#isStalled()
+         */
+        @Override
+        public boolean isStalled() {
+            return stalled;
+        }
+
+        /**
+         * Sets the future of periodic dispatching.
+         * 
+         * @param future
+         *            The future
+         */
+        synchronized void setFuture(ScheduledFuture<?> future) {
+            this.future = future;
+            if (canceled) {
+                future.cancel(false);
+            }
+        }
+
+        /**
+         * Marks the running tick as stalled if it has not completed in time.
+         * 
+         * @param now
+         *            The current time in nanoseconds
+         * @return <tt>true</tt> if the tick has newly stalled
+         */
+        synchronized boolean markStalled(long now) {
+            if (!running || stalled || now - tickStartTime < stallTimeout) {
+                return false;
+            }
+            stalled = true;
+            return true;
+        }
+
+        /**
+         * Marks the tick as started.
+         * 
+         * @param startTime
+         *            The time in nanoseconds when the tick started
+         */
+        synchronized void startTick(long startTime) {
+            running = true;
+            tickStartTime = startTime;
+        }
+
+        /**
+         * Marks the tick as completed.
+         * 
+         * @return <tt>true</tt> if the tick had stalled
+         */
+        synchronized boolean endTick() {
+            boolean wasStalled = stalled;
+            running = false;
+            stalled = false;
+            return wasStalled;
+        }
+
+        /**
+         * Executes the runnable, and measures the latency.
+         */
+        void execute() {
+            long startTime = System.nanoTime();
+            startTick(startTime);
+            currentTask.set(this);
+            try {
+                if (!canceled) {
+                    runnable.run();
+                }
+            } catch (Throwable t) {
+                Activator.log(IStatus.ERROR,
+                        NLS.bind(Messages.pollingTaskFailedMsg, name), t);
+                cancel();
+            } finally {
+                currentTask.remove();
+                long latency = System.nanoTime() - startTime;
+                lastLatency = latency;
+                if (latency > maxLatency) {
+                    maxLatency = latency;
+                }
+                if (endTick() && executor == workers) {
+                    releaseStalledTick();
+                }
+                busy.set(false);
+            }
+        }
+    }
+
+    /**
+     * The factory to create daemon threads.
+     */
+    private static class Factory implements ThreadFactory {
+
+        /** The thread name. */
+        private String name;
+
+        /** The number of created threads. */
+        private AtomicInteger count;
+
+        /**
+         * The constructor.
+         * 
+         * @param name
+         *            The thread name
+         */
+        Factory(String name) {
+            this.name = name;
+            count = new AtomicInteger(0);
+        }
+
+        /*
+         * @see ThreadFactory#newThread(Runnable)
+         */
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + " " + count.incrementAndGet()); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,477 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.osgi.util.NLS;
+import org.jvmmonitor.core.JvmCoreException;
+
+/**
+ * The transfer of file from the host where target JVM is running, using the
+ * transfer session of data transfer MXBean in agent.
+ * <p>
+ * Several chunks are requested in flight, and the chunk size is adapted to
+ * the time taken to transfer a chunk. A chunk that fails due to network
+ * error is requested again from its position, after re-opening the session
+ * if needed, so that the transfer resumes from the last confirmed offset.
+ * <p>
+ * The file can be transferred as it is with each chunk compressed, or
+ * compressed in gzip format as a whole by agent and stored as it is. In the
+ * latter case, the transfer waits for agent to compress the file on
+ * background.
+ */
+public class RemoteFileTransfer {
+
+    /** The number of chunks requested in flight. */
+    private static final int PIPELINE_DEPTH = 4;
+
+    /** The initial chunk size. */
+    private static final int INITIAL_CHUNK_SIZE = 256 * 1024;
+
+    /** The min chunk size. */
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    /** The max chunk size, that is the max size agent accepts. */
+    private static final int MAX_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /** The time in milliseconds below which the chunk size is doubled. */
+    private static final long FAST_CHUNK_TIME = 500;
+
+    /** The time in milliseconds above which the chunk size is halved. */
+    private static final long SLOW_CHUNK_TIME = 2000;
+
+    /** The max number of retries for a chunk. */
+    private static final int MAX_RETRIES = 5;
+
+    /** The delay in milliseconds before retrying, multiplied by retries. */
+    private static final long RETRY_DELAY = 1000;
+
+    /** The interval in milliseconds to poll the progress of compression. */
+    private static final long PROGRESS_POLLING_INTERVAL = 500;
+
+    /** The operation to open session. */
+    private static final String OPEN_SESSION = "openSession"; //$NON-NLS-1$
+
+    /** The operation to open session transferring file in gzip format. */
+    private static final String OPEN_COMPRESSED_SESSION = "openCompressedSession"; //$NON-NLS-1$
+
+    /** The operation to get the progress of preparing file in session. */
+    private static final String GET_SESSION_PROGRESS = "getSessionProgress"; //$NON-NLS-1$
+
+    /** The signatures of openSession operation. */
+    private static final String[] OPEN_SESSION_SIGNATURES = new String[] { String.class
+            .getName() };
+
+    /** The signatures of operations taking session ID. */
+    private static final String[] SESSION_SIGNATURES = new String[] { "long" }; //$NON-NLS-1$
+
+    /** The signatures of readChunk operation. */
+    private static final String[] READ_CHUNK_SIGNATURES = new String[] {
+            "long", "long", "int", "boolean" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+    /** The MBean server. */
+    private MBeanServer server;
+
+    /** The object name of data transfer MXBean. */
+    private ObjectName objectName;
+
+    /** The file name on the host where target JVM is running. */
+    private String fileName;
+
+    /** The state indicating if the file is transferred in gzip format. */
+    private boolean gzip;
+
+    /** The session ID. */
+    private long sessionId;
+
+    /**
+     * The constructor.
+     * 
+     * @param server
+     *            The MBean server
+     * @param objectName
+     *            The object name of data transfer MXBean
+     * @param fileName
+     *            The file name on the host where target JVM is running
+     * @param gzip
+     *            <tt>true</tt> to transfer the file compressed in gzip format
+     */
+    public RemoteFileTransfer(MBeanServer server, ObjectName objectName,
+            String fileName, boolean gzip) {
+        this.server = server;
+        this.objectName = objectName;
+        this.fileName = fileName;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Transfers the file into the given output stream.
+     * 
+     * @param outputStream
+     *            The output stream
+     * @param monitor
+     *            The progress monitor, or <tt>null</tt>
+     * @throws JvmCoreException
+     *             if the file cannot be read from target JVM
+     * @throws IOException
+     *             if writing the output stream fails
+     */
+    public void transfer(OutputStream outputStream, IProgressMonitor monitor)
+            throws JvmCoreException, IOException {
+        long size = openSession(monitor);
+        if (size == -1) {
+            closeSession();
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                PIPELINE_DEPTH, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "JVM Monitor File Transfer"); //$NON-NLS-1$
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        LinkedList<Future<Chunk>> chunks = new LinkedList<Future<Chunk>>();
+        try {
+            int chunkSize = INITIAL_CHUNK_SIZE;
+            long nextPosition = 0;
+            while (nextPosition < size || !chunks.isEmpty()) {
+                while (chunks.size() < PIPELINE_DEPTH && nextPosition < size) {
+                    int length = (int) Math.min(chunkSize, size - nextPosition);
+                    chunks.add(executor.submit(new ChunkRequest(nextPosition,
+                            length)));
+                    nextPosition += length;
+                }
+
+                Chunk chunk = getChunk(chunks.removeFirst());
+                outputStream.write(chunk.bytes);
+                chunkSize = adaptChunkSize(chunkSize, chunk);
+
+                if (monitor != null && monitor.isCanceled()) {
+                    return;
+                }
+            }
+        } finally {
+            for (Future<Chunk> chunk : chunks) {
+                chunk.cancel(true);
+            }
+            executor.shutdownNow();
+            closeSession();
+        }
+    }
+
+    /**
+     * Checks if the transfer session is supported by agent.
+     * 
+     * @param server
+     *            The MBean server
+     * @param objectName
+     *            The object name of data transfer MXBean
+     * @param gzip
+     *            <tt>true</tt> to check if transferring the file in gzip
+     *            format is supported
+     * @return <tt>true</tt> if supported
+     * @throws JvmCoreException
+     */
+    public static boolean isSupported(MBeanServer server,
+            ObjectName objectName, boolean gzip) throws JvmCoreException {
+        String operationName = gzip ? GET_SESSION_PROGRESS : OPEN_SESSION;
+        for (MBeanOperationInfo operation : server.getMBeanInfo(objectName)
+                .getOperations()) {
+            if (operationName.equals(operation.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Opens the session, waiting for agent to compress the file if
+     * transferring in gzip format.
+     * 
+     * @param monitor
+     *            The progress monitor, or <tt>null</tt>
+     * @return The file size, or <tt>-1</tt> if canceled
+     * @throws JvmCoreException
+     */
+    synchronized private long openSession(IProgressMonitor monitor)
+            throws JvmCoreException {
+        Object id = server.invoke(objectName, gzip ? OPEN_COMPRESSED_SESSION
+                : OPEN_SESSION, new Object[] { fileName },
+                OPEN_SESSION_SIGNATURES);
+        if (id == null || (Long) id == -1) {
+            throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                    Messages.readFileFailedMsg, fileName), null);
+        }
+        sessionId = (Long) id;
+
+        if (gzip && !waitForCompression(monitor)) {
+            return -1;
+        }
+
+        Object size = server.invoke(objectName, "getSessionFileSize", //$NON-NLS-1$
+                new Object[] { sessionId }, SESSION_SIGNATURES);
+        if (size == null || (Long) size == -1) {
+            throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                    Messages.readFileFailedMsg, fileName), null);
+        }
+        return (Long) size;
+    }
+
+    /**
+     * Re-opens the session if the given session has been lost, e.g. closed
+     * by agent while being idle.
+     * 
+     * @param lostSessionId
+     *            The lost session ID
+     * @throws JvmCoreException
+     */
+    synchronized private void reopenSession(long lostSessionId)
+            throws JvmCoreException {
+        if (sessionId == lostSessionId) {
+            openSession(null);
+        }
+    }
+
+    /**
+     * Waits for agent to compress the file in the session.
+     * 
+     * @param monitor
+     *            The progress monitor, or <tt>null</tt>
+     * @return <tt>false</tt> if canceled
+     * @throws JvmCoreException
+     */
+    private boolean waitForCompression(IProgressMonitor monitor)
+            throws JvmCoreException {
+        while (true) {
+            Object progress = server.invoke(objectName, GET_SESSION_PROGRESS,
+                    new Object[] { sessionId }, SESSION_SIGNATURES);
+            if (progress == null || (Integer) progress == -1) {
+                throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                        Messages.readFileFailedMsg, fileName), null);
+            }
+            if ((Integer) progress == 100) {
+                return true;
+            }
+
+            if (monitor != null && monitor.isCanceled()) {
+                return false;
+            }
+            try {
+                Thread.sleep(PROGRESS_POLLING_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JvmCoreException(IStatus.CANCEL, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Gets the session ID.
+     * 
+     * @return The session ID
+     */
+    synchronized private long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Closes the session.
+     */
+    private void closeSession() {
+        try {
+            server.invoke(objectName, "closeSession", //$NON-NLS-1$
+                    new Object[] { getSessionId() }, SESSION_SIGNATURES);
+        } catch (JvmCoreException e) {
+            // the session will be closed by agent while being idle
+        }
+    }
+
+    /**
+     * Gets the chunk from future.
+     * 
+     * @param future
+     *            The future
+     * @return The chunk
+     * @throws JvmCoreException
+     */
+    private static Chunk getChunk(Future<Chunk> future)
+            throws JvmCoreException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JvmCoreException(IStatus.CANCEL, e.getMessage(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JvmCoreException) {
+                throw (JvmCoreException) cause;
+            }
+            throw new JvmCoreException(IStatus.ERROR, cause.getMessage(),
+                    cause);
+        }
+    }
+
+    /**
+     * Adapts the chunk size to the time taken to transfer the chunk.
+     * 
+     * @param chunkSize
+     *            The current chunk size
+     * @param chunk
+     *            The transferred chunk
+     * @return The new chunk size
+     */
+    private static int adaptChunkSize(int chunkSize, Chunk chunk) {
+        if (chunk.retries > 0 || chunk.time > SLOW_CHUNK_TIME) {
+            return Math.max(MIN_CHUNK_SIZE, chunkSize / 2);
+        }
+        if (chunk.time < FAST_CHUNK_TIME && chunk.bytes.length >= chunkSize) {
+            return Math.min(MAX_CHUNK_SIZE, chunkSize * 2);
+        }
+        return chunkSize;
+    }
+
+    /**
+     * The transferred chunk.
+     */
+    private static class Chunk {
+
+        /** The uncompressed bytes. */
+        byte[] bytes;
+
+        /** The time in milliseconds taken to transfer. */
+        long time;
+
+        /** The number of retries. */
+        int retries;
+    }
+
+    /**
+     * The request to read a chunk, that is retried on failure.
+     */
+    private class ChunkRequest implements Callable<Chunk> {
+
+        /** The position in file. */
+        private long position;
+
+        /** The chunk length. */
+        private int length;
+
+        /**
+         * The constructor.
+         * 
+         * @param position
+         *            The position in file
+         * @param length
+         *            The chunk length
+         */
+        ChunkRequest(long position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+
+        /*
+         * @see Callable#call()
+         */
+        @Override
+        public Chunk call() throws Exception {
+            Chunk chunk = new Chunk();
+            while (true) {
+                long id = getSessionId();
+                long startTime = System.currentTimeMillis();
+                byte[] bytes;
+                try {
+                    bytes = (byte[]) server.invoke(objectName, "readChunk", //$NON-NLS-1$
+                            new Object[] { id, position, length, !gzip },
+                            READ_CHUNK_SIGNATURES);
+                } catch (JvmCoreException e) {
+                    if (!(e.getCause() instanceof IOException)
+                            || chunk.retries == MAX_RETRIES) {
+                        throw e;
+                    }
+
+                    // resume from this position after network recovers
+                    chunk.retries++;
+                    Thread.sleep(RETRY_DELAY * chunk.retries);
+                    continue;
+                }
+
+                if (bytes != null) {
+                    chunk.bytes = gzip ? bytes : inflate(bytes);
+                    chunk.time = System.currentTimeMillis() - startTime;
+                    return chunk;
+                }
+                if (!server.isReachable()) {
+                    throw new JvmCoreException(IStatus.ERROR,
+                            Messages.jvmNotReachableMsg, null);
+                }
+                if (chunk.retries == MAX_RETRIES) {
+                    throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                            Messages.readFileFailedMsg, fileName), null);
+                }
+
+                // the session may have been closed by agent
+                chunk.retries++;
+                reopenSession(id);
+            }
+        }
+
+        /**
+         * Inflates the compressed chunk.
+         * 
+         * @param bytes
+         *            The compressed bytes
+         * @return The uncompressed bytes
+         * @throws JvmCoreException
+         */
+        private byte[] inflate(byte[] bytes) throws JvmCoreException {
+            byte[] result = new byte[length];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(bytes);
+                int size = 0;
+                while (size < length && !inflater.finished()) {
+                    int inflated = inflater.inflate(result, size, length
+                            - size);
+                    if (inflated == 0 && inflater.needsInput()) {
+                        break;
+                    }
+                    size += inflated;
+                }
+                if (size != length) {
+                    throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                            Messages.readFileFailedMsg, fileName), null);
+                }
+                return result;
+            } catch (DataFormatException e) {
+                throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                        Messages.readFileFailedMsg, fileName), e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
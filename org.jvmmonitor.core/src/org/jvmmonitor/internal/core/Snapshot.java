@@ -8,10 +8,13 @@ package org.jvmmonitor.internal.core;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.zip.GZIPInputStream;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -33,9 +36,15 @@ import org.xml.sax.SAXException;
  */
 public class Snapshot implements ISnapshot {
 
+    /** The directory name to keep the decompressed snapshots. */
+    private static final String UNCOMPRESSED_DIRECTORY = ".uncompressed"; //$NON-NLS-1$
+
     /** The snapshot type. */
     private SnapshotType snapshotType;
 
+    /** The compression format. */
+    private Compression compression;
+
     /** The JVM. */
     private IJvm jvm;
 
@@ -137,6 +146,74 @@ public class Snapshot implements ISnapshot {
         return snapshotType;
     }
 
+    /*
+     * @see ISnapshot#getCompression()
+     */
+    @Override
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /*
+     * @see ISnapshot#getUncompressedFileStore()
+     */
+    @Override
+    synchronized public IFileStore getUncompressedFileStore()
+            throws JvmCoreException {
+        if (compression == Compression.None) {
+            return fileStore;
+        }
+
+        IFileStore uncompressedFileStore = getUncompressedFileStoreLocation();
+        File file = new File(uncompressedFileStore.toURI());
+        if (file.exists()) {
+            return uncompressedFileStore;
+        }
+
+        File directory = file.getParentFile();
+        File temporaryFile = new File(directory, file.getName() + ".tmp"); //$NON-NLS-1$
+        try {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException();
+            }
+            InputStream inputStream = new GZIPInputStream(
+                    new FileInputStream(new File(fileStore.toURI())), 65536);
+            try {
+                OutputStream outputStream = new FileOutputStream(
+                        temporaryFile);
+                try {
+                    byte[] buffer = new byte[65536];
+                    int size;
+                    while ((size = inputStream.read(buffer)) != -1) {
+                        outputStream.write(buffer, 0, size);
+                    }
+                } finally {
+                    outputStream.close();
+                }
+            } finally {
+                inputStream.close();
+            }
+            if (!temporaryFile.renameTo(file)) {
+                throw new IOException();
+            }
+        } catch (IOException e) {
+            temporaryFile.delete();
+            throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                    Messages.readFileFailedMsg, fileStore.toURI().getPath()),
+                    e);
+        }
+        return uncompressedFileStore;
+    }
+
+    /**
+     * Deletes the decompressed snapshot if exists.
+     */
+    synchronized protected void deleteUncompressedFile() {
+        if (compression != Compression.None) {
+            new File(getUncompressedFileStoreLocation().toURI()).delete();
+        }
+    }
+
     /*
      * @see ISnapshot#rename(String)
      */
@@ -147,6 +224,7 @@ public class Snapshot implements ISnapshot {
                 + File.separator + newName;
         File destFile = new File(newFilePath);
 
+        deleteUncompressedFile();
         if (file.renameTo(destFile)) {
             if (jvm instanceof AbstractJvm) {
                 ((AbstractJvm) jvm).refreshSnapshots();
@@ -175,6 +253,10 @@ public class Snapshot implements ISnapshot {
      */
     public static boolean isValidFile(String fileName) {
         String[] elements = fileName.split("\\."); //$NON-NLS-1$
+        if (elements != null && elements.length == 3
+                && elements[2].equals(Compression.Gzip.getExtension())) {
+            return elements[1].equals(SnapshotType.Hprof.getExtension());
+        }
         if (elements == null || elements.length != 2) {
             return false;
         }
@@ -195,10 +277,30 @@ public class Snapshot implements ISnapshot {
      *            The file name
      */
     private void parseFileName(String fileName) {
+        compression = Compression.None;
+        String name = fileName;
+        String gzipSuffix = '.' + Compression.Gzip.getExtension();
+        if (name.endsWith(gzipSuffix)) {
+            compression = Compression.Gzip;
+            name = name.substring(0, name.length() - gzipSuffix.length());
+        }
+
         for (SnapshotType type : SnapshotType.values()) {
-            if (fileName.endsWith(type.getExtension())) {
+            if (name.endsWith(type.getExtension())) {
                 snapshotType = type;
             }
         }
     }
+
+    /**
+     * Gets the file store to keep the decompressed snapshot, that is in the
+     * directory not listed as snapshots.
+     * 
+     * @return The file store
+     */
+    private IFileStore getUncompressedFileStoreLocation() {
+        String name = fileStore.getName();
+        return fileStore.getParent().getChild(UNCOMPRESSED_DIRECTORY)
+                .getChild(name.substring(0, name.lastIndexOf('.')));
+    }
 }
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import org.jvmmonitor.core.mbean.TimeSeriesSnapshot;
+
+/**
+ * The fixed-capacity ring buffer of time series, that stores the timestamps
+ * and the values in primitive arrays so that adding a sample allocates
+ * nothing. The oldest sample is overwritten once the capacity is exceeded,
+ * and one slot is reserved for the sample being added.
+ * <p>
+ * Samples have to be added by a single thread, while any number of threads
+ * can take a snapshot without locking. The writer publishes the sequence
+ * number of the next sample after storing a sample, and the reader discards
+ * the samples that may have been overwritten while being copied.
+ */
+public class TimeSeriesRingBuffer {
+
+    /** The timestamps in milliseconds. */
+    private final long[] timestamps;
+
+    /** The values. */
+    private final double[] values;
+
+    /** The mask to get the index in arrays from sequence number. */
+    private final int mask;
+
+    /** The sequence number of the next sample to be added. */
+    private volatile long sequence;
+
+    /** The sequence number of the oldest sample that is not cleared. */
+    private volatile long clearedSequence;
+
+    /**
+     * The constructor.
+     * 
+     * @param capacity
+     *            The capacity that has to be power of two
+     */
+    public TimeSeriesRingBuffer(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException();
+        }
+        timestamps = new long[capacity];
+        values = new double[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds the sample. This method has to be invoked by a single thread.
+     * 
+     * @param timestamp
+     *            The timestamp in milliseconds
+     * @param value
+     *            The value
+     */
+    public void add(long timestamp, double value) {
+        long next = sequence;
+        int index = (int) (next & mask);
+        timestamps[index] = timestamp;
+        values[index] = value;
+        sequence = next + 1;
+    }
+
+    /**
+     * Clears the samples.
+     */
+    public void clear() {
+        clearedSequence = sequence;
+    }
+
+    /**
+     * Gets the number of samples.
+     * 
+     * @return The number of samples
+     */
+    public int size() {
+        long end = sequence;
+        return (int) (end - getStart(end));
+    }
+
+    /**
+     * Gets the snapshot of samples in chronological order.
+     * 
+     * @return The snapshot
+     */
+    public TimeSeriesSnapshot getSnapshot() {
+        while (true) {
+            long end = sequence;
+            long start = getStart(end);
+            int size = (int) (end - start);
+            long[] timestampsCopy = new long[size];
+            double[] valuesCopy = new double[size];
+            copy(start, timestampsCopy, valuesCopy);
+
+            // the sample being added may have overwritten the oldest one
+            long overwritten = sequence + 1 - timestamps.length;
+            if (overwritten <= start) {
+                return new TimeSeriesSnapshot(timestampsCopy, valuesCopy);
+            }
+            if (overwritten < end) {
+                int offset = (int) (overwritten - start);
+                long[] trimmedTimestamps = new long[size - offset];
+                double[] trimmedValues = new double[size - offset];
+                System.arraycopy(timestampsCopy, offset, trimmedTimestamps, 0,
+                        trimmedTimestamps.length);
+                System.arraycopy(valuesCopy, offset, trimmedValues, 0,
+                        trimmedValues.length);
+                return new TimeSeriesSnapshot(trimmedTimestamps, trimmedValues);
+            }
+
+            // all copied samples have been overwritten, so retry
+        }
+    }
+
+    /**
+     * Gets the sequence number of the oldest available sample.
+     * 
+     * @param end
+     *            The sequence number of the next sample
+     * @return The sequence number
+     */
+    private long getStart(long end) {
+        return Math.max(Math.max(0, end + 1 - timestamps.length), Math.min(
+                clearedSequence, end));
+    }
+
+    /**
+     * Copies the samples from the given sequence number into the arrays.
+     * 
+     * @param start
+     *            The sequence number of the first sample to copy
+     * @param timestampsCopy
+     *            The array to copy timestamps into
+     * @param valuesCopy
+     *            The array to copy values into
+     */
+    private void copy(long start, long[] timestampsCopy, double[] valuesCopy) {
+        int size = timestampsCopy.length;
+        int index = (int) (start & mask);
+        int firstLength = Math.min(size, timestamps.length - index);
+        System.arraycopy(timestamps, index, timestampsCopy, 0, firstLength);
+        System.arraycopy(values, index, valuesCopy, 0, firstLength);
+        System.arraycopy(timestamps, 0, timestampsCopy, firstLength, size
+                - firstLength);
+        System.arraycopy(values, 0, valuesCopy, firstLength, size - firstLength);
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import org.jvmmonitor.core.mbean.TimeSeriesSnapshot;
+
+/**
+ * The tier of time series that rolls the samples up into buckets of fixed
+ * duration, keeping only the min / max value of each bucket. Neither the
+ * number of samples nor the average is kept, since the min / max envelope is
+ * what is drawn on chart. The oldest bucket is overwritten once the capacity
+ * is exceeded.
+ */
+public class TimeSeriesRollup {
+
+    /** The bucket duration in milliseconds. */
+    private final long duration;
+
+    /** The start times of buckets in milliseconds. */
+    private final long[] startTimes;
+
+    /** The min values of buckets. */
+    private final double[] mins;
+
+    /** The max values of buckets. */
+    private final double[] maxs;
+
+    /** The index of the oldest bucket. */
+    private int head;
+
+    /** The number of buckets. */
+    private int size;
+
+    /**
+     * The constructor.
+     * 
+     * @param duration
+     *            The bucket duration in milliseconds
+     * @param capacity
+     *            The number of buckets to keep
+     */
+    public TimeSeriesRollup(long duration, int capacity) {
+        this.duration = duration;
+        startTimes = new long[capacity];
+        mins = new double[capacity];
+        maxs = new double[capacity];
+    }
+
+    /**
+     * Gets the bucket duration.
+     * 
+     * @return The bucket duration in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Adds the sample.
+     * 
+     * @param timestamp
+     *            The timestamp in milliseconds
+     * @param value
+     *            The value
+     */
+    synchronized public void add(long timestamp, double value) {
+        long startTime = timestamp - timestamp % duration;
+        int last = (head + size - 1) % startTimes.length;
+        if (size > 0 && startTimes[last] == startTime) {
+            mins[last] = Math.min(mins[last], value);
+            maxs[last] = Math.max(maxs[last], value);
+            return;
+        }
+
+        int index;
+        if (size == startTimes.length) {
+            index = head;
+            head = (head + 1) % startTimes.length;
+        } else {
+            index = (head + size) % startTimes.length;
+            size++;
+        }
+        startTimes[index] = startTime;
+        mins[index] = value;
+        maxs[index] = value;
+    }
+
+    /**
+     * Clears the buckets.
+     */
+    synchronized public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Gets the start time of the oldest bucket.
+     * 
+     * @return The start time in milliseconds, or {@link Long#MAX_VALUE} if
+     *         there is no bucket
+     */
+    synchronized public long getOldestTime() {
+        return size == 0 ? Long.MAX_VALUE : startTimes[head];
+    }
+
+    /**
+     * Gets the series in the given time range downsampled into the given
+     * number of columns.
+     * 
+     * @param from
+     *            The start time in milliseconds
+     * @param to
+     *            The end time in milliseconds
+     * @param width
+     *            The number of columns
+     * @return The series
+     */
+    synchronized public TimeSeriesSnapshot getSeries(long from, long to,
+            int width) {
+        long[] times = new long[size];
+        double[] minValues = new double[size];
+        double[] maxValues = new double[size];
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % startTimes.length;
+            long startTime = startTimes[index];
+            if (startTime + duration <= from || startTime > to) {
+                continue;
+            }
+            times[length] = Math.max(startTime, from);
+            minValues[length] = mins[index];
+            maxValues[length] = maxs[index];
+            length++;
+        }
+        return MinMaxDownsampler.downsample(times, minValues, maxValues, 0,
+                length, from, to, width);
+    }
+}
@@ -0,0 +1,832 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.jvmmonitor.core.mbean.TimeSeriesSnapshot;
+
+/**
+ * The append-only store of time series on disk, that records the samples of
+ * monitored attributes into segment files.
+ * <p>
+ * The samples are written into the active segment through its file channel
+ * while the records are also kept on heap for query, and a new segment is
+ * started once it gets full. The segments older than {@link #COMPACTION_AGE}
+ * are compacted by keeping only the min / max values per
+ * {@link #COMPACTION_DURATION}, and the oldest segments are deleted once the
+ * total size exceeds {@link #MAX_STORE_SIZE} or they get older than
+ * {@link #MAX_AGE}. The segment files that cannot be deleted (e.g. still
+ * opened by another process on Windows) are recorded in the tombstone file,
+ * so that they are never loaded again.
+ * 
+ * <pre>
+ * segment := MAGIC VERSION flags count minTime maxTime record*
+ * record  := seriesId time value
+ * </pre>
+ * 
+ * The series IDs are the line numbers of series keys in the series file.
+ */
+public class TimeSeriesStore {
+
+    /** The magic number identifying the segment file. */
+    private static final int MAGIC = 0x4A4D5453;
+
+    /** The format version. */
+    private static final int VERSION = 1;
+
+    /** The flag indicating that the segment is compacted. */
+    private static final int COMPACTED_FLAG = 1;
+
+    /** The offset of flags in header. */
+    private static final int FLAGS_OFFSET = 8;
+
+    /** The offset of count in header. */
+    private static final int COUNT_OFFSET = 12;
+
+    /** The offset of min time in header. */
+    private static final int MIN_TIME_OFFSET = 16;
+
+    /** The offset of max time in header. */
+    private static final int MAX_TIME_OFFSET = 24;
+
+    /** The header size. */
+    private static final int HEADER_SIZE = 32;
+
+    /** The record size. */
+    private static final int RECORD_SIZE = 20;
+
+    /** The size of segment file. */
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+
+    /** The number of records in a segment. */
+    private static final int SEGMENT_CAPACITY = (SEGMENT_SIZE - HEADER_SIZE)
+            / RECORD_SIZE;
+
+    /** The age in milliseconds of samples to be compacted. */
+    private static final long COMPACTION_AGE = 60 * 60 * 1000;
+
+    /** The duration in milliseconds to keep min / max values on compaction. */
+    private static final long COMPACTION_DURATION = 60 * 1000;
+
+    /** The max total size of segment files. */
+    private static final long MAX_STORE_SIZE = 64 * 1024 * 1024;
+
+    /** The max age in milliseconds of samples kept in store. */
+    static final long MAX_AGE = 7 * 24 * 60 * 60 * 1000L;
+
+    /** The file extension of segment file. */
+    private static final String SEGMENT_FILE_EXTENSION = ".seg"; //$NON-NLS-1$
+
+    /** The series file name. */
+    private static final String SERIES_FILE_NAME = "series.txt"; //$NON-NLS-1$
+
+    /** The tombstone file name listing the segment files to be deleted. */
+    private static final String TOMBSTONE_FILE_NAME = "deleted.txt"; //$NON-NLS-1$
+
+    /** The charset of series file. */
+    private static final String CHARSET = "UTF-8"; //$NON-NLS-1$
+
+    /** The directory. */
+    private File directory;
+
+    /** The series IDs keyed by series key. */
+    private Map<String, Integer> seriesIds;
+
+    /** The series keys indexed by series ID. */
+    private List<String> seriesKeys;
+
+    /** The names of segment files that could not be deleted. */
+    private Set<String> tombstones;
+
+    /** The closed segments in chronological order. */
+    private List<Segment> segments;
+
+    /** The active segment. */
+    private Segment activeSegment;
+
+    /** The sequence number of the next segment file. */
+    private long nextSequence;
+
+    /** The state indicating if the store is closed. */
+    private boolean closed;
+
+    /**
+     * The constructor.
+     * 
+     * @param directory
+     *            The directory to store segment files
+     * @throws IOException
+     *             if opening the store fails
+     */
+    public TimeSeriesStore(File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory); //$NON-NLS-1$
+        }
+
+        seriesIds = new HashMap<String, Integer>();
+        seriesKeys = new ArrayList<String>();
+        segments = new ArrayList<Segment>();
+        tombstones = new HashSet<String>();
+        loadSeriesKeys();
+        loadTombstones();
+        loadSegments();
+    }
+
+    /**
+     * Appends the sample.
+     * 
+     * @param key
+     *            The series key
+     * @param time
+     *            The time in milliseconds
+     * @param value
+     *            The value
+     * @throws IOException
+     *             if writing the sample fails
+     */
+    synchronized public void append(String key, long time, double value)
+            throws IOException {
+        if (closed) {
+            return;
+        }
+
+        int seriesId = getSeriesId(key);
+        if (activeSegment == null || activeSegment.count == SEGMENT_CAPACITY) {
+            rollSegment(time);
+        }
+
+        Segment segment = activeSegment;
+        ByteBuffer buffer = segment.buffer;
+        int position = HEADER_SIZE + segment.count * RECORD_SIZE;
+        buffer.putInt(position, seriesId);
+        buffer.putLong(position + 4, time);
+        buffer.putDouble(position + 12, value);
+        segment.add(time);
+        buffer.putInt(COUNT_OFFSET, segment.count);
+        buffer.putLong(MIN_TIME_OFFSET, segment.minTime);
+        buffer.putLong(MAX_TIME_OFFSET, segment.maxTime);
+
+        write(segment, position, RECORD_SIZE);
+        write(segment, COUNT_OFFSET, HEADER_SIZE - COUNT_OFFSET);
+    }
+
+    /**
+     * Gets the series in the given time range.
+     * 
+     * @param from
+     *            The start time in milliseconds
+     * @param to
+     *            The end time in milliseconds
+     * @return The series keyed by series key
+     * @throws IOException
+     *             if reading segment files fails
+     */
+    synchronized public Map<String, TimeSeriesSnapshot> query(long from,
+            long to) throws IOException {
+        Map<Integer, SeriesBuilder> builders = new HashMap<Integer, SeriesBuilder>();
+        List<Segment> allSegments = new ArrayList<Segment>(segments);
+        if (activeSegment != null) {
+            allSegments.add(activeSegment);
+        }
+
+        for (Segment segment : allSegments) {
+            if (segment.count == 0 || segment.maxTime < from
+                    || segment.minTime > to) {
+                continue;
+            }
+            ByteBuffer records = readRecords(segment);
+            for (int i = 0; i < segment.count; i++) {
+                int position = HEADER_SIZE + i * RECORD_SIZE;
+                long time = records.getLong(position + 4);
+                if (time < from || time > to) {
+                    continue;
+                }
+                Integer seriesId = records.getInt(position);
+                SeriesBuilder builder = builders.get(seriesId);
+                if (builder == null) {
+                    builder = new SeriesBuilder();
+                    builders.put(seriesId, builder);
+                }
+                builder.add(time, records.getDouble(position + 12));
+            }
+        }
+
+        Map<String, TimeSeriesSnapshot> series = new HashMap<String, TimeSeriesSnapshot>();
+        for (Entry<Integer, SeriesBuilder> entry : builders.entrySet()) {
+            int seriesId = entry.getKey();
+            if (seriesId < seriesKeys.size()) {
+                series.put(seriesKeys.get(seriesId), entry.getValue()
+                        .toSnapshot());
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Closes the store.
+     */
+    synchronized public void close() {
+        closed = true;
+        closeActiveSegment();
+    }
+
+    /**
+     * Gets the series ID, adding the series key into the series file if not
+     * yet added.
+     * 
+     * @param key
+     *            The series key
+     * @return The series ID
+     * @throws IOException
+     */
+    private int getSeriesId(String key) throws IOException {
+        Integer seriesId = seriesIds.get(key);
+        if (seriesId != null) {
+            return seriesId;
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(
+                directory, SERIES_FILE_NAME), true), CHARSET);
+        try {
+            writer.write(key);
+            writer.write('\n');
+        } finally {
+            writer.close();
+        }
+        seriesId = seriesKeys.size();
+        seriesKeys.add(key);
+        seriesIds.put(key, seriesId);
+        return seriesId;
+    }
+
+    /**
+     * Loads the series keys from the series file.
+     * 
+     * @throws IOException
+     */
+    private void loadSeriesKeys() throws IOException {
+        File file = new File(directory, SERIES_FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), CHARSET));
+        try {
+            String key;
+            while ((key = reader.readLine()) != null) {
+                seriesIds.put(key, seriesKeys.size());
+                seriesKeys.add(key);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Loads the tombstone file, and deletes the segment files listed in it.
+     * 
+     * @throws IOException
+     */
+    private void loadTombstones() throws IOException {
+        File file = new File(directory, TOMBSTONE_FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), CHARSET));
+        try {
+            String fileName;
+            while ((fileName = reader.readLine()) != null) {
+                File segmentFile = new File(directory, fileName);
+                if (!segmentFile.delete() && segmentFile.exists()) {
+                    tombstones.add(fileName);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        if (tombstones.isEmpty()) {
+            file.delete();
+            return;
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                CHARSET);
+        try {
+            for (String fileName : tombstones) {
+                writer.write(fileName);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Deletes the segment file, or records it in the tombstone file if it
+     * cannot be deleted.
+     * 
+     * @param segment
+     *            The segment
+     * @throws IOException
+     */
+    private void deleteSegmentFile(Segment segment) throws IOException {
+        File file = segment.file;
+        if (file.delete() || !file.exists()) {
+            return;
+        }
+
+        tombstones.add(file.getName());
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(
+                directory, TOMBSTONE_FILE_NAME), true), CHARSET);
+        try {
+            writer.write(file.getName());
+            writer.write('\n');
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Loads the headers of segment files.
+     * 
+     * @throws IOException
+     */
+    private void loadSegments() throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            String fileName = file.getName();
+            if (!fileName.endsWith(SEGMENT_FILE_EXTENSION)
+                    || tombstones.contains(fileName)) {
+                continue;
+            }
+            long sequence;
+            try {
+                sequence = Long.parseLong(fileName.substring(0,
+                        fileName.length() - SEGMENT_FILE_EXTENSION.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+
+            Segment segment = readHeader(file);
+            if (segment != null) {
+                segments.add(segment);
+            }
+        }
+        sortSegments();
+    }
+
+    /**
+     * Reads the header of segment file, and truncates the unused space of the
+     * segment that was active when the store was closed.
+     * 
+     * @param file
+     *            The segment file
+     * @return The segment, or <tt>null</tt> if the file is not a segment
+     * @throws IOException
+     */
+    private static Segment readHeader(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+        try {
+            if (randomAccessFile.length() < HEADER_SIZE
+                    || randomAccessFile.readInt() != MAGIC
+                    || randomAccessFile.readInt() != VERSION) {
+                return null;
+            }
+            Segment segment = new Segment(file,
+                    (randomAccessFile.readInt() & COMPACTED_FLAG) != 0);
+            segment.count = randomAccessFile.readInt();
+            segment.minTime = randomAccessFile.readLong();
+            segment.maxTime = randomAccessFile.readLong();
+
+            long length = HEADER_SIZE + (long) segment.count * RECORD_SIZE;
+            if (randomAccessFile.length() > length) {
+                try {
+                    randomAccessFile.setLength(length);
+                } catch (IOException e) {
+                    // the file may be still opened on some platforms
+                }
+            }
+            return segment;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Reads the records of segment.
+     * 
+     * @param segment
+     *            The segment
+     * @return The buffer containing header and records
+     * @throws IOException
+     */
+    private static ByteBuffer readRecords(Segment segment) throws IOException {
+        if (segment.buffer != null) {
+            return segment.buffer.duplicate();
+        }
+
+        byte[] bytes = new byte[HEADER_SIZE + segment.count * RECORD_SIZE];
+        RandomAccessFile randomAccessFile = new RandomAccessFile(segment.file,
+                "r"); //$NON-NLS-1$
+        try {
+            randomAccessFile.readFully(bytes);
+        } finally {
+            randomAccessFile.close();
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Writes the bytes of active segment on heap into the segment file.
+     * 
+     * @param segment
+     *            The active segment
+     * @param position
+     *            The position in segment
+     * @param length
+     *            The length of bytes
+     * @throws IOException
+     */
+    private static void write(Segment segment, int position, int length)
+            throws IOException {
+        ByteBuffer bytes = segment.buffer.duplicate();
+        bytes.limit(position + length);
+        bytes.position(position);
+        while (bytes.hasRemaining()) {
+            segment.channel.write(bytes, bytes.position());
+        }
+    }
+
+    /**
+     * Closes the active segment, and adds it to the closed segments.
+     */
+    private void closeActiveSegment() {
+        if (activeSegment == null) {
+            return;
+        }
+
+        try {
+            activeSegment.channel.close();
+        } catch (IOException e) {
+            // do nothing
+        }
+        activeSegment.channel = null;
+        activeSegment.buffer = null;
+        segments.add(activeSegment);
+        activeSegment = null;
+    }
+
+    /**
+     * Closes the active segment, compacts and deletes the old segments, and
+     * starts a new active segment.
+     * 
+     * @param time
+     *            The time of sample to be appended
+     * @throws IOException
+     */
+    private void rollSegment(long time) throws IOException {
+        closeActiveSegment();
+        compact(time - COMPACTION_AGE);
+        deleteOldSegments(time - MAX_AGE);
+
+        File file = new File(directory, String.format(
+                "%010d" + SEGMENT_FILE_EXTENSION, nextSequence++)); //$NON-NLS-1$
+        Segment segment = new Segment(file, false);
+        segment.buffer = ByteBuffer.allocate(SEGMENT_SIZE);
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        segment.buffer.putInt(FLAGS_OFFSET, 0);
+        segment.buffer.putInt(COUNT_OFFSET, 0);
+        segment.channel = new RandomAccessFile(file, "rw").getChannel(); //$NON-NLS-1$
+        try {
+            write(segment, 0, HEADER_SIZE);
+        } catch (IOException e) {
+            segment.channel.close();
+            throw e;
+        }
+        activeSegment = segment;
+    }
+
+    /**
+     * Compacts the segments older than the given time into a single segment
+     * keeping only the min / max values per {@link #COMPACTION_DURATION}.
+     * 
+     * @param time
+     *            The time in milliseconds
+     * @throws IOException
+     */
+    private void compact(long time) throws IOException {
+        List<Segment> oldSegments = new ArrayList<Segment>();
+        for (Segment segment : segments) {
+            if (!segment.compacted && segment.maxTime < time) {
+                oldSegments.add(segment);
+            }
+        }
+        if (oldSegments.isEmpty()) {
+            return;
+        }
+
+        // roll up the records ordered by series ID and time
+        TreeMap<Long, Bucket> buckets = new TreeMap<Long, Bucket>();
+        for (Segment segment : oldSegments) {
+            ByteBuffer records = readRecords(segment);
+            for (int i = 0; i < segment.count; i++) {
+                int position = HEADER_SIZE + i * RECORD_SIZE;
+                int seriesId = records.getInt(position);
+                long recordTime = records.getLong(position + 4);
+                double value = records.getDouble(position + 12);
+                long key = ((long) seriesId << 40)
+                        | (recordTime / COMPACTION_DURATION);
+                Bucket bucket = buckets.get(key);
+                if (bucket == null) {
+                    buckets.put(key, new Bucket(recordTime, value));
+                } else {
+                    bucket.add(recordTime, value);
+                }
+            }
+        }
+
+        Segment segment = new Segment(new File(directory, String.format(
+                "%010d" + SEGMENT_FILE_EXTENSION, nextSequence++)), true); //$NON-NLS-1$
+        ByteBuffer records = ByteBuffer.allocate(HEADER_SIZE + buckets.size()
+                * 2 * RECORD_SIZE);
+        records.position(HEADER_SIZE);
+        for (Entry<Long, Bucket> entry : buckets.entrySet()) {
+            int seriesId = (int) (entry.getKey() >>> 40);
+            Bucket bucket = entry.getValue();
+            if (bucket.minTime == bucket.maxTime) {
+                putRecord(records, segment, seriesId, bucket.minTime,
+                        bucket.min);
+            } else if (bucket.minTime < bucket.maxTime) {
+                putRecord(records, segment, seriesId, bucket.minTime,
+                        bucket.min);
+                putRecord(records, segment, seriesId, bucket.maxTime,
+                        bucket.max);
+            } else {
+                putRecord(records, segment, seriesId, bucket.maxTime,
+                        bucket.max);
+                putRecord(records, segment, seriesId, bucket.minTime,
+                        bucket.min);
+            }
+        }
+        records.putInt(0, MAGIC);
+        records.putInt(4, VERSION);
+        records.putInt(FLAGS_OFFSET, COMPACTED_FLAG);
+        records.putInt(COUNT_OFFSET, segment.count);
+        records.putLong(MIN_TIME_OFFSET, segment.minTime);
+        records.putLong(MAX_TIME_OFFSET, segment.maxTime);
+
+        FileOutputStream outputStream = new FileOutputStream(segment.file);
+        try {
+            outputStream.write(records.array(), 0, records.position());
+        } finally {
+            outputStream.close();
+        }
+
+        segments.removeAll(oldSegments);
+        segments.add(segment);
+        sortSegments();
+        for (Segment oldSegment : oldSegments) {
+            deleteSegmentFile(oldSegment);
+        }
+    }
+
+    /**
+     * Puts the record into the buffer.
+     * 
+     * @param records
+     *            The buffer
+     * @param segment
+     *            The segment
+     * @param seriesId
+     *            The series ID
+     * @param time
+     *            The time in milliseconds
+     * @param value
+     *            The value
+     */
+    private static void putRecord(ByteBuffer records, Segment segment,
+            int seriesId, long time, double value) {
+        records.putInt(seriesId);
+        records.putLong(time);
+        records.putDouble(value);
+        segment.add(time);
+    }
+
+    /**
+     * Deletes the oldest segments while the total size exceeds
+     * {@link #MAX_STORE_SIZE} or the segments are older than the given time.
+     * 
+     * @param time
+     *            The time in milliseconds
+     * @throws IOException
+     */
+    private void deleteOldSegments(long time) throws IOException {
+        long size = SEGMENT_SIZE;
+        for (Segment segment : segments) {
+            size += segment.file.length();
+        }
+        while (!segments.isEmpty()
+                && (size > MAX_STORE_SIZE || segments.get(0).maxTime < time)) {
+            Segment segment = segments.remove(0);
+            size -= segment.file.length();
+            deleteSegmentFile(segment);
+        }
+    }
+
+    /**
+     * Sorts the closed segments in chronological order.
+     */
+    private void sortSegments() {
+        Collections.sort(segments, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment segment1, Segment segment2) {
+                if (segment1.minTime == segment2.minTime) {
+                    return 0;
+                }
+                return segment1.minTime < segment2.minTime ? -1 : 1;
+            }
+        });
+    }
+
+    /**
+     * The segment file.
+     */
+    private static class Segment {
+
+        /** The file. */
+        File file;
+
+        /** The state indicating if the segment is compacted. */
+        boolean compacted;
+
+        /** The records on heap, or <tt>null</tt> if the segment is closed. */
+        ByteBuffer buffer;
+
+        /** The file channel, or <tt>null</tt> if the segment is closed. */
+        FileChannel channel;
+
+        /** The number of records. */
+        int count;
+
+        /** The min time of records. */
+        long minTime = Long.MAX_VALUE;
+
+        /** The max time of records. */
+        long maxTime = Long.MIN_VALUE;
+
+        /**
+         * The constructor.
+         * 
+         * @param file
+         *            The file
+         * @param compacted
+         *            <tt>true</tt> if the segment is compacted
+         */
+        Segment(File file, boolean compacted) {
+            this.file = file;
+            this.compacted = compacted;
+        }
+
+        /**
+         * Adds the record time.
+         * 
+         * @param time
+         *            The time in milliseconds
+         */
+        void add(long time) {
+            count++;
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+    }
+
+    /**
+     * The bucket keeping the min / max values on compaction.
+     */
+    private static class Bucket {
+
+        /** The time of min value. */
+        long minTime;
+
+        /** The min value. */
+        double min;
+
+        /** The time of max value. */
+        long maxTime;
+
+        /** The max value. */
+        double max;
+
+        /**
+         * The constructor.
+         * 
+         * @param time
+         *            The time in milliseconds
+         * @param value
+         *            The value
+         */
+        Bucket(long time, double value) {
+            minTime = time;
+            min = value;
+            maxTime = time;
+            max = value;
+        }
+
+        /**
+         * Adds the value.
+         * 
+         * @param time
+         *            The time in milliseconds
+         * @param value
+         *            The value
+         */
+        void add(long time, double value) {
+            if (value < min) {
+                minTime = time;
+                min = value;
+            }
+            if (value > max) {
+                maxTime = time;
+                max = value;
+            }
+        }
+    }
+
+    /**
+     * The builder of series.
+     */
+    private static class SeriesBuilder {
+
+        /** The times. */
+        private long[] times = new long[256];
+
+        /** The values. */
+        private double[] values = new double[256];
+
+        /** The number of samples. */
+        private int size;
+
+        /**
+         * Adds the sample.
+         * 
+         * @param time
+         *            The time in milliseconds
+         * @param value
+         *            The value
+         */
+        void add(long time, double value) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            times[size] = time;
+            values[size++] = value;
+        }
+
+        /**
+         * Creates the snapshot.
+         * 
+         * @return The snapshot
+         */
+        TimeSeriesSnapshot toSnapshot() {
+            return new TimeSeriesSnapshot(Arrays.copyOf(times, size),
+                    Arrays.copyOf(values, size));
+        }
+    }
+}
@@ -61,6 +61,18 @@ abstract public class AbstractMethodNode implements IMethodNode {
         methodName = methodNameWithoutArguments.substring(index + 1);
     }
 
+    /**
+     * Converts the time in microseconds into milliseconds rounded to the
+     * nearest.
+     * 
+     * @param time
+     *            The time in microseconds
+     * @return The time in milliseconds
+     */
+    protected static long toMillis(long time) {
+        return (time + 500) / 1000;
+    }
+
     /*
      * @see ITreeNode#getName()
      */
@@ -7,7 +7,9 @@
 package org.jvmmonitor.internal.core.cpu;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jvmmonitor.core.cpu.ICallTreeNode;
 import org.jvmmonitor.core.cpu.ICpuModel;
@@ -21,9 +23,18 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
     /** The child nodes. */
     private List<CallTreeNode> frames;
 
+    /** The child nodes keyed by method name to look up child node. */
+    private Map<String, CallTreeNode> frameMap;
+
     /** The total invocation time. */
     private long totalTime;
 
+    /** The total invocation time in microseconds given by binary dump. */
+    private long totalTimeInMicroseconds;
+
+    /** The self invocation time in microseconds given by binary dump. */
+    private long selfTimeInMicroseconds;
+
     /** The parent frame node. */
     private CallTreeNode parentFrameNode;
 
@@ -71,6 +82,7 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
         invocationCount = count;
 
         frames = new ArrayList<CallTreeNode>();
+        frameMap = new HashMap<String, CallTreeNode>();
     }
 
     /*
@@ -86,12 +98,7 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
      */
     @Override
     public CallTreeNode getChild(String name) {
-        for (CallTreeNode frameNode : frames) {
-            if (frameNode.getName().equals(name)) {
-                return frameNode;
-            }
-        }
-        return null;
+        return frameMap.get(name);
     }
 
     /*
@@ -115,10 +122,12 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
      */
     @Override
     public void clear() {
+        selfTime = 0;
+        totalTime = 0;
+        invocationCount = 0;
+        totalTimeInMicroseconds = 0;
+        selfTimeInMicroseconds = 0;
         for (CallTreeNode frameNode : frames) {
-            selfTime = 0;
-            totalTime = 0;
-            invocationCount = 0;
             frameNode.clear();
         }
     }
@@ -196,6 +205,9 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
      */
     public void addChild(CallTreeNode node) {
         frames.add(node);
+        if (!frameMap.containsKey(node.getName())) {
+            frameMap.put(node.getName(), node);
+        }
     }
 
     /**
@@ -218,6 +230,41 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
         selfTime = time;
     }
 
+    /**
+     * Sets the total and self invocation time in microseconds, that are
+     * rounded to milliseconds for {@link #getTotalTime()} and
+     * {@link #getSelfTime()}.
+     * 
+     * @param total
+     *            The total invocation time in microseconds
+     * @param self
+     *            The self invocation time in microseconds
+     */
+    public void setTimeInMicroseconds(long total, long self) {
+        totalTimeInMicroseconds = total;
+        selfTimeInMicroseconds = self;
+        totalTime = toMillis(total);
+        selfTime = toMillis(self);
+    }
+
+    /**
+     * Gets the total invocation time in microseconds.
+     * 
+     * @return The total invocation time in microseconds
+     */
+    public long getTotalTimeInMicroseconds() {
+        return totalTimeInMicroseconds;
+    }
+
+    /**
+     * Gets the self invocation time in microseconds.
+     * 
+     * @return The self invocation time in microseconds
+     */
+    public long getSelfTimeInMicroseconds() {
+        return selfTimeInMicroseconds;
+    }
+
     /**
      * Sets the invocation count.
      * 
@@ -0,0 +1,348 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core.cpu;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.jvmmonitor.core.cpu.CpuModelEvent;
+import org.jvmmonitor.core.cpu.CpuModelEvent.CpuModelState;
+
+/**
+ * The decoder for CPU profile data in binary format that is encoded by
+ * <tt>BinaryDumpWriter</tt> in agent. The CPU model is directly updated while
+ * reading the input stream, in the same manner as
+ * {@link CpuDumpSaxEventHandler} does for XML.
+ * <p>
+ * If the profile data is delta that only contains the frames modified since
+ * the previous profile data, the frames are merged into the existing nodes of
+ * CPU model, and the other nodes are kept as they are.
+ * <p>
+ * The time is given in microseconds, and is kept in microseconds in the
+ * nodes so that self time and hot spots are computed without losing the
+ * sub-millisecond time. It is rounded to milliseconds only for display.
+ */
+public class CpuBinaryDumpDecoder {
+
+    /** The magic number identifying the binary dump. */
+    private static final int MAGIC = 0x4A4D4350;
+
+    /** The supported format version. */
+    private static final int VERSION = 2;
+
+    /** The CPU model. */
+    private CpuModel cpuModel;
+
+    /** The progress monitor. */
+    private IProgressMonitor monitor;
+
+    /** The input stream. */
+    private InputStream input;
+
+    /** The string table. */
+    private String[] strings;
+
+    /** The epoch of runtime model in agent. */
+    private long epoch;
+
+    /** The state indicating if the profile data is delta. */
+    private boolean delta;
+
+    /** The buffer to decode string. */
+    private byte[] stringBuffer;
+
+    /**
+     * The constructor.
+     * 
+     * @param cpuModel
+     *            The CPU model
+     * @param monitor
+     *            The progress monitor
+     */
+    public CpuBinaryDumpDecoder(CpuModel cpuModel, IProgressMonitor monitor) {
+        this.cpuModel = cpuModel;
+        this.monitor = monitor;
+        stringBuffer = new byte[256];
+    }
+
+    /**
+     * Decodes the CPU profile data and updates the CPU model.
+     * 
+     * @param inputStream
+     *            The input stream
+     * @throws IOException
+     *             if reading input stream fails or the data is malformed
+     */
+    public void decode(InputStream inputStream) throws IOException {
+        input = inputStream;
+
+        if (readInt() != MAGIC) {
+            throw new IOException("unknown format"); //$NON-NLS-1$
+        }
+        int version = (int) readVarLong();
+        if (version != VERSION) {
+            throw new IOException("unsupported version: " + version); //$NON-NLS-1$
+        }
+        epoch = readVarLong();
+        delta = readVarLong() != 0;
+        readStrings();
+
+        if (!delta) {
+            cpuModel.clear();
+        }
+        while (true) {
+            int nameIndex = (int) readVarLong();
+            if (nameIndex == 0) {
+                break;
+            }
+            readThread(getString(nameIndex - 1));
+        }
+        strings = null;
+
+        cpuModel.notifyModelChanged(new CpuModelEvent(
+                CpuModelState.CpuModelChanged));
+    }
+
+    /**
+     * Gets the epoch of runtime model in agent, that is given to get the next
+     * delta of profile data.
+     * 
+     * @return The epoch
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Reads the string table.
+     * 
+     * @throws IOException
+     */
+    private void readStrings() throws IOException {
+        int count = (int) readVarLong();
+        strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            int length = (int) readVarLong();
+            if (length > stringBuffer.length) {
+                stringBuffer = new byte[Math.max(length,
+                        stringBuffer.length * 2)];
+            }
+            readFully(stringBuffer, length);
+            strings[i] = new String(stringBuffer, 0, length, "UTF-8"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Reads the thread record.
+     * 
+     * @param threadName
+     *            The thread name
+     * @throws IOException
+     */
+    private void readThread(String threadName) throws IOException {
+        if (monitor != null && monitor.isCanceled()) {
+            throw new OperationCanceledException();
+        }
+
+        ThreadNode<CallTreeNode> callTreeThreadNode = cpuModel
+                .getCallTreeThread(threadName);
+        if (callTreeThreadNode == null) {
+            callTreeThreadNode = new ThreadNode<CallTreeNode>(threadName);
+            cpuModel.addCallTreeThread(callTreeThreadNode);
+        }
+        ThreadNode<MethodNode> hotSpotThreadNode = cpuModel
+                .getHotSpotThread(threadName);
+        if (hotSpotThreadNode == null) {
+            hotSpotThreadNode = new ThreadNode<MethodNode>(threadName);
+            cpuModel.addHotSpotThread(hotSpotThreadNode);
+        }
+
+        long threadTotalTime = 0;
+        int rootCount = (int) readVarLong();
+        for (int i = 0; i < rootCount; i++) {
+            CallTreeNode rootFrameNode = readFrame(null, callTreeThreadNode,
+                    hotSpotThreadNode);
+            threadTotalTime += rootFrameNode.getTotalTimeInMicroseconds();
+        }
+        if (delta) {
+            threadTotalTime = 0;
+            for (CallTreeNode rootFrameNode : callTreeThreadNode.getChildren()) {
+                threadTotalTime += rootFrameNode.getTotalTimeInMicroseconds();
+            }
+        }
+
+        callTreeThreadNode.setTotalTime(AbstractMethodNode
+                .toMillis(threadTotalTime));
+        hotSpotThreadNode.setTotalTime(AbstractMethodNode
+                .toMillis(threadTotalTime));
+    }
+
+    /**
+     * Reads the frame record and its descendant frame records.
+     * 
+     * @param parentFrameNode
+     *            The parent frame node, or <tt>null</tt> for root frame
+     * @param callTreeThreadNode
+     *            The call tree thread node
+     * @param hotSpotThreadNode
+     *            The hot spot thread node
+     * @return The frame node
+     * @throws IOException
+     */
+    private CallTreeNode readFrame(CallTreeNode parentFrameNode,
+            ThreadNode<CallTreeNode> callTreeThreadNode,
+            ThreadNode<MethodNode> hotSpotThreadNode) throws IOException {
+        String methodName = getString((int) readVarLong());
+        int count = (int) readVarLong();
+        long time = readVarLong();
+        int childCount = (int) readVarLong();
+
+        CallTreeNode frameNode;
+        long previousSelfTime = 0;
+        int previousCount = 0;
+        if (parentFrameNode == null) {
+            frameNode = (CallTreeNode) callTreeThreadNode.getChild(methodName);
+        } else {
+            frameNode = parentFrameNode.getChild(methodName);
+        }
+        if (frameNode == null) {
+            if (parentFrameNode == null) {
+                frameNode = new CallTreeNode(cpuModel, methodName, 0, count,
+                        callTreeThreadNode);
+                callTreeThreadNode.addChild(frameNode);
+            } else {
+                frameNode = new CallTreeNode(cpuModel, methodName, 0, count,
+                        parentFrameNode, callTreeThreadNode);
+                parentFrameNode.addChild(frameNode);
+            }
+        } else if (delta) {
+            previousSelfTime = frameNode.getSelfTimeInMicroseconds();
+            previousCount = frameNode.getInvocationCount();
+        }
+        frameNode.setInvocationCount(count);
+
+        long selfTime = time;
+        for (int i = 0; i < childCount; i++) {
+            CallTreeNode childFrameNode = readFrame(frameNode,
+                    callTreeThreadNode, hotSpotThreadNode);
+            selfTime -= childFrameNode.getTotalTimeInMicroseconds();
+        }
+        if (delta) {
+            selfTime = time;
+            for (CallTreeNode childFrameNode : frameNode.getChildren()) {
+                selfTime -= childFrameNode.getTotalTimeInMicroseconds();
+            }
+        }
+        frameNode.setTimeInMicroseconds(time, selfTime);
+
+        storeMethod(frameNode, selfTime - previousSelfTime, count
+                - previousCount, hotSpotThreadNode);
+        return frameNode;
+    }
+
+    /**
+     * Stores the method into hot spot thread node.
+     * 
+     * @param frame
+     *            The frame
+     * @param selfTime
+     *            The self time in microseconds to be added
+     * @param count
+     *            The invocation count to be added
+     * @param hotSpotThreadNode
+     *            The hot spot thread node
+     */
+    private void storeMethod(CallTreeNode frame, long selfTime, int count,
+            ThreadNode<MethodNode> hotSpotThreadNode) {
+        String methodName = frame.getName();
+        MethodNode method = (MethodNode) hotSpotThreadNode.getChild(methodName);
+        if (method == null) {
+            method = new MethodNode(cpuModel, methodName, hotSpotThreadNode);
+            hotSpotThreadNode.addChild(method);
+        }
+        method.incrementTimeInMicroseconds(selfTime);
+        method.incrementCount(count);
+    }
+
+    /**
+     * Gets the string in string table.
+     * 
+     * @param index
+     *            The index in string table
+     * @return The string
+     * @throws IOException
+     *             if index is out of string table
+     */
+    private String getString(int index) throws IOException {
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("illegal string index: " + index); //$NON-NLS-1$
+        }
+        return strings[index];
+    }
+
+    /**
+     * Reads the unsigned variable-length integer.
+     * 
+     * @return The value
+     * @throws IOException
+     */
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed variable-length integer"); //$NON-NLS-1$
+    }
+
+    /**
+     * Reads the 4 bytes integer in big endian.
+     * 
+     * @return The value
+     * @throws IOException
+     */
+    private int readInt() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = input.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+
+    /**
+     * Reads the bytes fully.
+     * 
+     * @param bytes
+     *            The buffer
+     * @param length
+     *            The length to read
+     * @throws IOException
+     */
+    private void readFully(byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int size = input.read(bytes, offset, length - offset);
+            if (size == -1) {
+                throw new EOFException();
+            }
+            offset += size;
+        }
+    }
+}
@@ -8,6 +8,7 @@ package org.jvmmonitor.internal.core.cpu;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Date;
 import java.util.HashSet;
@@ -15,6 +16,8 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 
 import javax.management.Attribute;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeData;
 import javax.xml.parsers.ParserConfigurationException;
@@ -52,6 +55,9 @@ public class CpuProfiler implements ICpuProfiler {
     /** The profiler MXBean name. */
     private static final String PROFILER_MXBEAN_NAME = "org.jvmmonitor:type=CPU BCI Profiler"; //$NON-NLS-1$
 
+    /** The sampling profiler MXBean name. */
+    private static final String SAMPLING_PROFILER_MXBEAN_NAME = "org.jvmmonitor:type=CPU Sampling Profiler"; //$NON-NLS-1$
+
     /** The transformClasses method in CpuProfilerMXBean. */
     private static final String TRANSFORM_CLASSES = "transformClasses"; //$NON-NLS-1$
 
@@ -64,6 +70,15 @@ public class CpuProfiler implements ICpuProfiler {
     /** The dump method in CpuProfilerMXBean. */
     private static final String DUMP = "dump"; //$NON-NLS-1$
 
+    /** The prepareBinaryDump method in CpuProfilerMXBean. */
+    private static final String PREPARE_BINARY_DUMP = "prepareBinaryDump"; //$NON-NLS-1$
+
+    /** The readBinaryDump method in CpuProfilerMXBean. */
+    private static final String READ_BINARY_DUMP = "readBinaryDump"; //$NON-NLS-1$
+
+    /** The max size in bytes of chunk to read binary dump. */
+    private static final int BINARY_DUMP_CHUNK_SIZE = 256 * 1024;
+
     /** The setFilter method in CpuProfilerMXBean. */
     private static final String SET_FILTER = "setFilter"; //$NON-NLS-1$
 
@@ -76,6 +91,9 @@ public class CpuProfiler implements ICpuProfiler {
     /** The composite key transformedClassesCount in TransformStatus. */
     private static final String TRANSFORMED_CLASSES_COUNT = "transformedClassesCount"; //$NON-NLS-1$
 
+    /** The composite key failedClassesCount in TransformStatus. */
+    private static final String FAILED_CLASSES_COUNT = "failedClassesCount"; //$NON-NLS-1$
+
     /** The Version attribute in CpuProfilerMXBean. */
     private static final String VERSION = "Version"; //$NON-NLS-1$
 
@@ -85,6 +103,12 @@ public class CpuProfiler implements ICpuProfiler {
     /** the ProfiledPackages attribute in CpuProfilerMXBean. */
     private static final String PROFILED_PACKAGES = "ProfiledPackages"; //$NON-NLS-1$
 
+    /** The SamplingPeriod attribute in CpuSamplingProfilerMXBean. */
+    private static final String SAMPLING_PERIOD = "SamplingPeriod"; //$NON-NLS-1$
+
+    /** The MaxSamplingDepth attribute in CpuSamplingProfilerMXBean. */
+    private static final String MAX_SAMPLING_DEPTH = "MaxSamplingDepth"; //$NON-NLS-1$
+
     /** the profiled java packages property key. */
     private static final String PROFILED_PACKAGES_PROP_KEY = "jvmmonitor.profiled.packages"; //$NON-NLS-1$
 
@@ -103,6 +127,18 @@ public class CpuProfiler implements ICpuProfiler {
     /** The profiled packages. */
     private Set<String> profiledPackages;
 
+    /** The state indicating if the agent supports binary dump. */
+    private Boolean binaryDumpSupported;
+
+    /** The state indicating if the agent supports sampling profiler. */
+    private Boolean agentSamplingSupported;
+
+    /**
+     * The epoch of profile model in agent given by the last binary dump, or
+     * <tt>0</tt> to get all frames with the next binary dump.
+     */
+    private long profileEpoch;
+
     /**
      * The constructor.
      * 
@@ -117,11 +153,26 @@ public class CpuProfiler implements ICpuProfiler {
         profiledPackages = new HashSet<String>();
     }
 
+    /**
+     * Resets the cached state of the agent. This has to be invoked whenever
+     * connecting to JVM, since the agent may have been loaded, reloaded or
+     * replaced since the previous connection.
+     */
+    public void resetAgentState() {
+        agentJarVersion = null;
+        binaryDumpSupported = null;
+        agentSamplingSupported = null;
+        profileEpoch = 0;
+    }
+
     /*
      * @see ICpuProfiler#setProfilerType(ICpuProfiler.ProfilerType)
      */
     @Override
     public void setProfilerType(ProfilerType type) {
+        if (this.type != type) {
+            profileEpoch = 0;
+        }
         this.type = type;
     }
 
@@ -151,7 +202,8 @@ public class CpuProfiler implements ICpuProfiler {
             // trigger to transform classes in target JVM
             invokeCpuProfilerMXBeanMethod(TRANSFORM_CLASSES, null, null);
 
-            // monitor the progress
+            // monitor the progress, counting skipped classes as done
+            int failed = 0;
             while (true) {
                 if (monitor.isCanceled()) {
                     invokeCpuProfilerMXBeanMethod(INTERRUPT_TRANSFORM, null,
@@ -161,12 +213,23 @@ public class CpuProfiler implements ICpuProfiler {
 
                 target = getTransformStatusCompositeValue(TARGET_CLASSES_COUNT);
                 int transformed = getTransformStatusCompositeValue(TRANSFORMED_CLASSES_COUNT);
+                failed = getFailedClassesCount();
                 if (target == transformed) {
                     break;
                 }
 
-                monitor.worked(transformed - previousTransformed);
-                previousTransformed = transformed;
+                int done = Math.min(transformed + failed, target);
+                monitor.worked(done - previousTransformed);
+                previousTransformed = done;
+                if (failed > 0) {
+                    monitor.subTask(NLS.bind(
+                            Messages.transformClassesFailedMsg, failed));
+                }
+            }
+
+            if (failed > 0) {
+                Activator.log(IStatus.WARNING, NLS.bind(
+                        Messages.transformClassesFailedMsg, failed), null);
             }
         }
     }
@@ -184,6 +247,12 @@ public class CpuProfiler implements ICpuProfiler {
                 jvm.getMBeanServer().setAttribute(objectName,
                         new Attribute(RUNNING, true));
             }
+        } else if (isAgentSamplingSupported()) {
+            configureAgentSampling();
+            jvm.getMBeanServer().setAttribute(
+                    jvm.getMBeanServer().getObjectName(
+                            SAMPLING_PROFILER_MXBEAN_NAME),
+                    new Attribute(RUNNING, true));
         } else {
             jvm.getMBeanServer().resumeSampling();
         }
@@ -202,6 +271,11 @@ public class CpuProfiler implements ICpuProfiler {
                 jvm.getMBeanServer().setAttribute(objectName,
                         new Attribute(RUNNING, false));
             }
+        } else if (isAgentSamplingSupported()) {
+            jvm.getMBeanServer().setAttribute(
+                    jvm.getMBeanServer().getObjectName(
+                            SAMPLING_PROFILER_MXBEAN_NAME),
+                    new Attribute(RUNNING, false));
         } else {
             jvm.getMBeanServer().suspendSampling();
         }
@@ -215,8 +289,12 @@ public class CpuProfiler implements ICpuProfiler {
         if (type == ProfilerType.BCI) {
             validateAgent();
             invokeCpuProfilerMXBeanMethod(CLEAR, null, null);
+        } else if (isAgentSamplingSupported()) {
+            invokeMXBeanMethod(SAMPLING_PROFILER_MXBEAN_NAME, CLEAR, null,
+                    null);
         }
         cpuModel.removeAll();
+        profileEpoch = 0;
 
         cpuModel.notifyModelChanged(new CpuModelEvent(
                 CpuModelState.CpuModelChanged));
@@ -296,12 +374,22 @@ public class CpuProfiler implements ICpuProfiler {
     public void refreshBciProfileCache(IProgressMonitor monitor)
             throws JvmCoreException {
         if (type != ProfilerType.BCI) {
+            if (isAgentSamplingSupported()
+                    && isRunning(SAMPLING_PROFILER_MXBEAN_NAME)) {
+                refreshProfileCacheWithBinaryDump(
+                        SAMPLING_PROFILER_MXBEAN_NAME, monitor);
+            }
             return;
         }
 
         validateAgent();
 
-        if (!isBciProfilerRunning()) {
+        if (!isRunning(PROFILER_MXBEAN_NAME)) {
+            return;
+        }
+
+        if (isBinaryDumpSupported()) {
+            refreshProfileCacheWithBinaryDump(PROFILER_MXBEAN_NAME, monitor);
             return;
         }
 
@@ -367,6 +455,9 @@ public class CpuProfiler implements ICpuProfiler {
                             String.class.getName() });
         } else {
             this.profiledPackages = packages;
+            if (isAgentSamplingSupported()) {
+                configureAgentSampling();
+            }
         }
 
         JvmModel.getInstance().fireJvmModelChangeEvent(
@@ -420,6 +511,16 @@ public class CpuProfiler implements ICpuProfiler {
             if (server == null) {
                 return ProfilerState.UNKNOWN;
             }
+            try {
+                if (isAgentSamplingSupported()) {
+                    if (!isRunning(SAMPLING_PROFILER_MXBEAN_NAME)) {
+                        return ProfilerState.READY;
+                    }
+                    return ProfilerState.RUNNING;
+                }
+            } catch (JvmCoreException e) {
+                return ProfilerState.UNKNOWN;
+            }
             return server.getProfilerState();
         }
 
@@ -434,7 +535,7 @@ public class CpuProfiler implements ICpuProfiler {
                 return ProfilerState.INVALID_VERSION;
             }
 
-            if (!isBciProfilerRunning()) {
+            if (!isRunning(PROFILER_MXBEAN_NAME)) {
                 return ProfilerState.READY;
             }
         } catch (JvmCoreException e) {
@@ -458,6 +559,147 @@ public class CpuProfiler implements ICpuProfiler {
     @Override
     public void setSamplingPeriod(Integer samplingPeriod) {
         jvm.getMBeanServer().setSamplingPeriod(samplingPeriod);
+        updateAgentSampling();
+    }
+
+    /*
+     * @see ICpuProfiler#getMaxSamplingDepth()
+     */
+    @Override
+    public Integer getMaxSamplingDepth() {
+        return jvm.getMBeanServer().getMaxSamplingDepth();
+    }
+
+    /*
+     * @see ICpuProfiler#setMaxSamplingDepth(Integer)
+     */
+    @Override
+    public void setMaxSamplingDepth(Integer maxSamplingDepth) {
+        jvm.getMBeanServer().setMaxSamplingDepth(maxSamplingDepth);
+        updateAgentSampling();
+    }
+
+    /**
+     * Refreshes the profile cache with the profile data in binary format that
+     * is read by chunks and decoded without being parsed as XML. Only the
+     * frames modified since the last refresh are transferred and merged into
+     * CPU model.
+     * 
+     * @param mxBeanName
+     *            The name of profiler MXBean
+     * @param monitor
+     *            The progress monitor
+     * @throws JvmCoreException
+     */
+    private void refreshProfileCacheWithBinaryDump(String mxBeanName,
+            IProgressMonitor monitor) throws JvmCoreException {
+        Object handle = invokeMXBeanMethod(mxBeanName, PREPARE_BINARY_DUMP,
+                new Object[] { profileEpoch },
+                new String[] { long.class.getName() });
+        if (!(handle instanceof Long) || (Long) handle == 0) {
+            return;
+        }
+
+        InputStream input = new BinaryDumpInputStream(mxBeanName,
+                (Long) handle);
+        CpuBinaryDumpDecoder decoder = new CpuBinaryDumpDecoder(cpuModel,
+                monitor);
+        try {
+            decoder.decode(input);
+            profileEpoch = decoder.getEpoch();
+        } catch (IOException e) {
+            profileEpoch = 0;
+            throw new JvmCoreException(IStatus.ERROR,
+                    Messages.parseCpuDumpFailedMsg, e);
+        } catch (RuntimeException e) {
+            profileEpoch = 0;
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the state indicating if the loaded agent supports sampling
+     * profiler, that samples stack traces in target JVM.
+     * 
+     * @return True if the loaded agent supports sampling profiler
+     * @throws JvmCoreException
+     */
+    private boolean isAgentSamplingSupported() throws JvmCoreException {
+        if (agentSamplingSupported == null) {
+            if (!jvm.isRemote()
+                    && !JvmModel.getInstance().getAgentLoadHandler()
+                            .isAgentLoaded()) {
+                return false;
+            }
+            MBeanServer server = jvm.getMBeanServer();
+            if (server == null || !jvm.isConnected()) {
+                return false;
+            }
+            agentSamplingSupported = !server.queryNames(
+                    server.getObjectName(SAMPLING_PROFILER_MXBEAN_NAME))
+                    .isEmpty();
+        }
+        return agentSamplingSupported;
+    }
+
+    /**
+     * Configures the sampling profiler in agent with the sampling period, the
+     * max sampling depth and the profiled packages.
+     * 
+     * @throws JvmCoreException
+     */
+    private void configureAgentSampling() throws JvmCoreException {
+        MBeanServer server = jvm.getMBeanServer();
+        ObjectName objectName = server
+                .getObjectName(SAMPLING_PROFILER_MXBEAN_NAME);
+        Integer depth = server.getMaxSamplingDepth();
+        server.setAttribute(objectName, new Attribute(SAMPLING_PERIOD,
+                server.getSamplingPeriod()));
+        server.setAttribute(objectName, new Attribute(MAX_SAMPLING_DEPTH,
+                depth == Integer.MAX_VALUE ? 0 : depth));
+        server.setAttribute(objectName, new Attribute(PROFILED_PACKAGES,
+                profiledPackages.toArray(new String[profiledPackages.size()])));
+    }
+
+    /**
+     * Updates the configuration of sampling profiler in agent if it is used.
+     */
+    private void updateAgentSampling() {
+        if (type != ProfilerType.SAMPLING) {
+            return;
+        }
+        try {
+            if (isAgentSamplingSupported()) {
+                configureAgentSampling();
+            }
+        } catch (JvmCoreException e) {
+            Activator.log(IStatus.ERROR, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets the state indicating if the loaded agent supports binary dump.
+     * 
+     * @return True if the loaded agent supports binary dump
+     * @throws JvmCoreException
+     */
+    private boolean isBinaryDumpSupported() throws JvmCoreException {
+        if (binaryDumpSupported == null) {
+            ObjectName objectName = jvm.getMBeanServer().getObjectName(
+                    PROFILER_MXBEAN_NAME);
+            MBeanInfo info = jvm.getMBeanServer().getMBeanInfo(objectName);
+            if (info == null) {
+                return false;
+            }
+            binaryDumpSupported = false;
+            for (MBeanOperationInfo operation : info.getOperations()) {
+                if (READ_BINARY_DUMP.equals(operation.getName())) {
+                    binaryDumpSupported = true;
+                    break;
+                }
+            }
+        }
+        return binaryDumpSupported;
     }
 
     /**
@@ -510,14 +752,40 @@ public class CpuProfiler implements ICpuProfiler {
     }
 
     /**
-     * Gets the state indicating if the BCI profiler is running.
+     * Gets the number of classes that could not be transformed. Older agents
+     * don't report it, in which case 0 is returned.
      * 
-     * @return True if the profiler is running
+     * @return The number of classes that could not be transformed
      * @throws JvmCoreException
      */
-    private boolean isBciProfilerRunning() throws JvmCoreException {
+    private int getFailedClassesCount() throws JvmCoreException {
         ObjectName objectName = jvm.getMBeanServer().getObjectName(
                 PROFILER_MXBEAN_NAME);
+        Object attribute = jvm.getMBeanServer().getAttribute(objectName,
+                TRANSFORM_STATUS);
+
+        if (attribute instanceof CompositeData
+                && ((CompositeData) attribute)
+                        .containsKey(FAILED_CLASSES_COUNT)) {
+            Object element = ((CompositeData) attribute)
+                    .get(FAILED_CLASSES_COUNT);
+            if (element instanceof Integer) {
+                return (Integer) element;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the state indicating if the profiler is running.
+     * 
+     * @param mxBeanName
+     *            The name of profiler MXBean
+     * @return True if the profiler is running
+     * @throws JvmCoreException
+     */
+    private boolean isRunning(String mxBeanName) throws JvmCoreException {
+        ObjectName objectName = jvm.getMBeanServer().getObjectName(mxBeanName);
         if (objectName != null) {
             Object attribute = jvm.getMBeanServer().getAttribute(objectName,
                     RUNNING);
@@ -554,10 +822,137 @@ public class CpuProfiler implements ICpuProfiler {
      * @throws JvmCoreException
      */
     private Object invokeCpuProfilerMXBeanMethod(String method,
-            String[] params, String[] signatures) throws JvmCoreException {
-        ObjectName objectName = jvm.getMBeanServer().getObjectName(
-                PROFILER_MXBEAN_NAME);
+            Object[] params, String[] signatures) throws JvmCoreException {
+        return invokeMXBeanMethod(PROFILER_MXBEAN_NAME, method, params,
+                signatures);
+    }
+
+    /**
+     * Invokes the method of the given MXBean.
+     * 
+     * @param mxBeanName
+     *            The MXBean name
+     * @param method
+     *            The method name
+     * @param params
+     *            The parameters of method
+     * @param signatures
+     *            The signatures of method
+     * @return The return value of method, or <tt>null</tt> if not connected
+     * @throws JvmCoreException
+     */
+    private Object invokeMXBeanMethod(String mxBeanName, String method,
+            Object[] params, String[] signatures) throws JvmCoreException {
+        ObjectName objectName = jvm.getMBeanServer().getObjectName(mxBeanName);
         return jvm.getMBeanServer().invoke(objectName, method, params,
                 signatures);
     }
+
+    /**
+     * The input stream to read the binary dump by chunks from target JVM.
+     */
+    private class BinaryDumpInputStream extends InputStream {
+
+        /** The signatures of readBinaryDump method. */
+        private final String[] SIGNATURES = new String[] { "long", "int", "int" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        /** The name of profiler MXBean. */
+        private String mxBeanName;
+
+        /** The handle of binary dump given by agent. */
+        private long handle;
+
+        /** The state indicating if the last chunk has been read. */
+        private boolean lastChunkRead;
+
+        /** The position in binary dump of the next chunk. */
+        private int position;
+
+        /** The current chunk. */
+        private byte[] chunk;
+
+        /** The offset in current chunk. */
+        private int offset;
+
+        /**
+         * The constructor.
+         * 
+         * @param mxBeanName
+         *            The name of profiler MXBean
+         * @param handle
+         *            The handle of binary dump given by agent
+         */
+        public BinaryDumpInputStream(String mxBeanName, long handle) {
+            this.mxBeanName = mxBeanName;
+            this.handle = handle;
+            lastChunkRead = false;
+            position = 0;
+            chunk = new byte[0];
+            offset = 0;
+        }
+
+        /*
+         * @see InputStream#read()
+         */
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return chunk[offset++] & 0xFF;
+        }
+
+        /*
+         * @see InputStream#read(byte[], int, int)
+         */
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int length = Math.min(len, chunk.length - offset);
+            System.arraycopy(chunk, offset, bytes, off, length);
+            offset += length;
+            return length;
+        }
+
+        /**
+         * Fills the chunk if the current chunk has been consumed.
+         * 
+         * @return False if reached the end of binary dump
+         * @throws IOException
+         */
+        private boolean fill() throws IOException {
+            if (offset < chunk.length) {
+                return true;
+            }
+            if (lastChunkRead) {
+                return false;
+            }
+
+            Object bytes;
+            try {
+                bytes = invokeMXBeanMethod(mxBeanName, READ_BINARY_DUMP,
+                        new Object[] { handle, position,
+                                BINARY_DUMP_CHUNK_SIZE }, SIGNATURES);
+            } catch (JvmCoreException e) {
+                IOException exception = new IOException(e.getMessage());
+                exception.initCause(e);
+                throw exception;
+            }
+            if (!(bytes instanceof byte[]) || ((byte[]) bytes).length == 0) {
+                lastChunkRead = true;
+                return false;
+            }
+
+            chunk = (byte[]) bytes;
+            offset = 0;
+            position += chunk.length;
+            lastChunkRead = chunk.length < BINARY_DUMP_CHUNK_SIZE;
+            return true;
+        }
+    }
 }
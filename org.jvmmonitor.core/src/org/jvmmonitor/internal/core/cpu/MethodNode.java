@@ -16,6 +16,9 @@ import org.jvmmonitor.core.cpu.ITreeNode;
  */
 public class MethodNode extends AbstractMethodNode {
 
+    /** The sum of method invocation time in microseconds by binary dump. */
+    private long selfTimeInMicroseconds;
+
     /**
      * The constructor.
      * 
@@ -72,6 +75,7 @@ public class MethodNode extends AbstractMethodNode {
     @Override
     public void clear() {
         selfTime = 0;
+        selfTimeInMicroseconds = 0;
         invocationCount = 0;
     }
 
@@ -117,6 +121,18 @@ public class MethodNode extends AbstractMethodNode {
         selfTime += time;
     }
 
+    /**
+     * Increments the sum of method invocation time in microseconds, that is
+     * rounded to milliseconds for {@link #getSelfTime()} after summing up.
+     * 
+     * @param time
+     *            The method self invocation time in microseconds
+     */
+    public void incrementTimeInMicroseconds(long time) {
+        selfTimeInMicroseconds += time;
+        selfTime = toMillis(selfTimeInMicroseconds);
+    }
+
     /**
      * Increments the sum of method invocation count.
      * 
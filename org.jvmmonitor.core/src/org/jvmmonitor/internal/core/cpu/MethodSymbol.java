@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core.cpu;
+
+/**
+ * The canonical method symbol given by {@link MethodSymbolTable}, that holds
+ * the qualified method name and the state indicating if the method belongs to
+ * the profiled packages.
+ */
+public class MethodSymbol {
+
+    /** The class name. */
+    private final String className;
+
+    /** The qualified method name (e.g. java.lang.String.charAt()). */
+    private final String name;
+
+    /** The state indicating if the class belongs to the profiled packages. */
+    private boolean profiled;
+
+    /** The version of profiled packages when the profiled state was updated. */
+    private int profiledPackagesVersion;
+
+    /**
+     * The constructor.
+     * 
+     * @param className
+     *            The class name (e.g. java.lang.String)
+     * @param methodName
+     *            The method name (e.g. charAt)
+     */
+    protected MethodSymbol(String className, String methodName) {
+        this.className = className;
+        name = className + "." + methodName + "()"; //$NON-NLS-1$ //$NON-NLS-2$
+        profiledPackagesVersion = -1;
+    }
+
+    /**
+     * Gets the class name.
+     * 
+     * @return The class name
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Gets the qualified method name.
+     * 
+     * @return The qualified method name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /*
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Gets the cached state indicating if the class belongs to the profiled
+     * packages.
+     * 
+     * @param version
+     *            The current version of profiled packages
+     * @return <tt>true</tt> or <tt>false</tt>, or <tt>null</tt> if not yet
+     *         cached for the given version
+     */
+    protected Boolean isProfiled(int version) {
+        if (profiledPackagesVersion != version) {
+            return null;
+        }
+        return profiled;
+    }
+
+    /**
+     * Sets the state indicating if the class belongs to the profiled packages.
+     * 
+     * @param profiled
+     *            <tt>true</tt> if the class belongs to the profiled packages
+     * @param version
+     *            The current version of profiled packages
+     */
+    protected void setProfiled(boolean profiled, int version) {
+        this.profiled = profiled;
+        profiledPackagesVersion = version;
+    }
+}
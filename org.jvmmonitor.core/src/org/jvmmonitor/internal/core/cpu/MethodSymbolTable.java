@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core.cpu;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The symbol table that maps the class name and method name of stack trace
+ * element to the canonical method symbol. The sampling profiler looks up the
+ * symbol for each frame on every sample, so that no string is created for
+ * the method once seen, and the package matching is done only once until the
+ * profiled packages are changed.
+ * <p>
+ * This class is not thread-safe, and is supposed to be used by the thread
+ * sampling the stack traces.
+ */
+public class MethodSymbolTable {
+
+    /** The method symbols keyed by method name, keyed by class name. */
+    private Map<String, Map<String, MethodSymbol>> symbols;
+
+    /** The profiled packages. */
+    private Set<String> profiledPackages;
+
+    /** The matcher compiled from profiled packages. */
+    private PackageMatcher profiledPackageMatcher;
+
+    /** The version incremented when profiled packages are changed. */
+    private int profiledPackagesVersion;
+
+    /**
+     * The constructor.
+     */
+    public MethodSymbolTable() {
+        symbols = new HashMap<String, Map<String, MethodSymbol>>();
+        profiledPackages = new HashSet<String>();
+        profiledPackageMatcher = new PackageMatcher(profiledPackages);
+        profiledPackagesVersion = 0;
+    }
+
+    /**
+     * Gets the method symbol for the given stack trace element.
+     * 
+     * @param element
+     *            The stack trace element
+     * @return The method symbol
+     */
+    public MethodSymbol getSymbol(StackTraceElement element) {
+        String className = element.getClassName();
+        String methodName = element.getMethodName();
+
+        Map<String, MethodSymbol> methods = symbols.get(className);
+        if (methods == null) {
+            methods = new HashMap<String, MethodSymbol>();
+            symbols.put(className, methods);
+        }
+
+        MethodSymbol symbol = methods.get(methodName);
+        if (symbol == null) {
+            symbol = new MethodSymbol(className, methodName);
+            methods.put(methodName, symbol);
+        }
+        return symbol;
+    }
+
+    /**
+     * Sets the profiled packages. The cached state of each method symbol is
+     * invalidated only if the given packages differ from the current ones.
+     * 
+     * @param packages
+     *            The profiled packages
+     */
+    public void setProfiledPackages(Set<String> packages) {
+        if (profiledPackages.equals(packages)) {
+            return;
+        }
+        profiledPackages = new HashSet<String>(packages);
+        profiledPackageMatcher = new PackageMatcher(profiledPackages);
+        profiledPackagesVersion++;
+    }
+
+    /**
+     * Gets the state indicating if the given method symbol belongs to the
+     * profiled packages.
+     * 
+     * @param symbol
+     *            The method symbol
+     * @return <tt>true</tt> if the given method symbol belongs to the profiled
+     *         packages
+     */
+    public boolean isProfiled(MethodSymbol symbol) {
+        Boolean profiled = symbol.isProfiled(profiledPackagesVersion);
+        if (profiled == null) {
+            profiled = profiledPackageMatcher.matches(symbol.getClassName());
+            symbol.setProfiled(profiled, profiledPackagesVersion);
+        }
+        return profiled;
+    }
+
+    /**
+     * Clears the method symbols.
+     */
+    public void clear() {
+        symbols.clear();
+    }
+}
@@ -7,6 +7,8 @@
 package org.jvmmonitor.internal.core.cpu;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.jvmmonitor.core.cpu.IMethodNode;
@@ -24,6 +26,9 @@ public class ThreadNode<E extends IMethodNode> implements IThreadNode {
     /** The method nodes. */
     private List<E> nodes;
 
+    /** The method nodes keyed by method name to look up child node. */
+    private Map<String, E> nodeMap;
+
     /** The thread name. */
     private String threadName;
 
@@ -39,6 +44,7 @@ public class ThreadNode<E extends IMethodNode> implements IThreadNode {
     public ThreadNode(String name) {
         threadName = name;
         nodes = new CopyOnWriteArrayList<E>();
+        nodeMap = new ConcurrentHashMap<String, E>();
     }
 
     /*
@@ -54,12 +60,7 @@ public class ThreadNode<E extends IMethodNode> implements IThreadNode {
      */
     @Override
     public IMethodNode getChild(String name) {
-        for (IMethodNode node : nodes) {
-            if (node.getName().equals(name)) {
-                return node;
-            }
-        }
-        return null;
+        return nodeMap.get(name);
     }
 
     /*
@@ -137,6 +138,9 @@ public class ThreadNode<E extends IMethodNode> implements IThreadNode {
      */
     public void addChild(E node) {
         nodes.add(node);
+        if (!nodeMap.containsKey(node.getName())) {
+            nodeMap.put(node.getName(), node);
+        }
     }
 
     /**
@@ -28,7 +28,7 @@ import org.jvmmonitor.tools.Activator;
 public class AgentLoadHandler implements IAgentLoadHandler {
 
     /** The path for agent jar. */
-    private String agentJarPath;
+    String agentJarPath;
 
     /** The state indicating if agent is loaded. */
     private boolean isAgentLoaded;
@@ -50,24 +50,22 @@ public class AgentLoadHandler implements IAgentLoadHandler {
             return;
         }
 
-        Tools tools = Tools.getInstance();
-        Object virtualMachine = null;
-
         try {
-            virtualMachine = tools.invokeAttach(jvm.getPid());
-            tools.invokeLoadAgent(virtualMachine, agentJarPath, agentJarPath);
+            AttachSessionPool.getInstance().execute(jvm.getPid(),
+                    new IAttachOperation<Void>() {
+                        @Override
+                        public Void run(Object virtualMachine)
+                                throws JvmCoreException {
+                            Tools.getInstance().invokeLoadAgent(
+                                    virtualMachine, agentJarPath,
+                                    agentJarPath);
+                            return null;
+                        }
+                    });
             isAgentLoaded = true;
         } catch (JvmCoreException e) {
             Activator.log(IStatus.ERROR,
                     NLS.bind(Messages.loadAgentFailedMsg, agentJarPath), e);
-        } finally {
-            if (virtualMachine != null) {
-                try {
-                    tools.invokeDetach(virtualMachine);
-                } catch (JvmCoreException e) {
-                    // ignore
-                }
-            }
         }
     }
 
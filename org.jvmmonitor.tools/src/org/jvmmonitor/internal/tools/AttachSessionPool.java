@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.tools;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jvmmonitor.core.JvmCoreException;
+
+/**
+ * The pool of attach sessions keyed by pid. The virtual machine attached to
+ * target JVM is kept and reused by the subsequent operations, instead of
+ * attaching and detaching around every operation.
+ * <p>
+ * The session that has not been used for {@link #IDLE_TIMEOUT} is detached.
+ * The session is also detached when the connection is found broken by an
+ * operation, or when the target JVM is no longer found by {@link #retain(Set)}.
+ * Detaching is done without locking the pool, since it may take a while.
+ */
+public class AttachSessionPool {
+
+    /** The attach not supported exception class name. */
+    private static final String ATTACH_NOT_SUPPORTED_EXCEPTION_CLASS = "com.sun.tools.attach.AttachNotSupportedException"; //$NON-NLS-1$
+
+    /** The time in milliseconds to detach the idle session. */
+    private static final long IDLE_TIMEOUT = 60000;
+
+    /** The shared instance of this class. */
+    private static AttachSessionPool pool;
+
+    /** The sessions keyed by pid. */
+    private Map<Integer, Session> sessions;
+
+    /**
+     * The constructor.
+     */
+    private AttachSessionPool() {
+        sessions = new HashMap<Integer, Session>();
+    }
+
+    /**
+     * Gets the shared instance of this class.
+     * 
+     * @return The shared instance
+     */
+    public static synchronized AttachSessionPool getInstance() {
+        if (pool == null) {
+            pool = new AttachSessionPool();
+        }
+        return pool;
+    }
+
+    /**
+     * Executes the operation on the virtual machine attached to the given
+     * pid. If the connection of cached session is found broken, the operation
+     * is retried once on a newly attached session. The operation failed for
+     * other reasons is not retried, since it may have already taken effect on
+     * target JVM (e.g. loading agent, or forcing GC for heap histogram).
+     * 
+     * @param pid
+     *            The process ID
+     * @param operation
+     *            The operation
+     * @return The result of operation
+     * @throws JvmCoreException
+     */
+    public <T> T execute(int pid, IAttachOperation<T> operation)
+            throws JvmCoreException {
+        List<Object> virtualMachines = new ArrayList<Object>();
+        synchronized (this) {
+            evictIdleSessions(virtualMachines);
+        }
+        detach(virtualMachines);
+
+        Session session = getSession(pid);
+        if (session != null) {
+            try {
+                return operation.run(session.virtualMachine);
+            } catch (JvmCoreException e) {
+                if (!isConnectionBroken(e)) {
+                    throw e;
+                }
+                invalidate(session);
+            } finally {
+                release(session);
+            }
+        }
+
+        session = attach(pid);
+        try {
+            return operation.run(session.virtualMachine);
+        } catch (JvmCoreException e) {
+            if (isConnectionBroken(e)) {
+                invalidate(session);
+            }
+            throw e;
+        } finally {
+            release(session);
+        }
+    }
+
+    /**
+     * Detaches the sessions for JVMs other than the given active JVMs, and
+     * the idle sessions.
+     * 
+     * @param pids
+     *            The process IDs of active JVMs
+     */
+    public void retain(Set<Integer> pids) {
+        List<Object> virtualMachines = new ArrayList<Object>();
+        synchronized (this) {
+            for (Iterator<Session> iterator = sessions.values()
+                    .iterator(); iterator.hasNext();) {
+                Session session = iterator.next();
+                if (!pids.contains(session.pid)) {
+                    iterator.remove();
+                    close(session, virtualMachines);
+                }
+            }
+            evictIdleSessions(virtualMachines);
+        }
+        detach(virtualMachines);
+    }
+
+    /**
+     * Detaches all sessions.
+     */
+    public void clear() {
+        List<Object> virtualMachines = new ArrayList<Object>();
+        synchronized (this) {
+            for (Session session : sessions.values()) {
+                close(session, virtualMachines);
+            }
+            sessions.clear();
+        }
+        detach(virtualMachines);
+    }
+
+    /**
+     * Checks if the given exception indicates that the connection to target
+     * JVM is detached or broken.
+     * 
+     * @param e
+     *            The exception
+     * @return <tt>true</tt> if the connection is detached or broken
+     */
+    private static boolean isConnectionBroken(JvmCoreException e) {
+        Throwable cause = e.getCause();
+        while (cause != null) {
+            if (cause instanceof IOException
+                    || ATTACH_NOT_SUPPORTED_EXCEPTION_CLASS.equals(cause
+                            .getClass().getName())) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * Closes the sessions that have not been used for a while. This method
+     * has to be invoked while locking the pool.
+     * 
+     * @param virtualMachines
+     *            The virtual machines to be detached
+     */
+    private void evictIdleSessions(List<Object> virtualMachines) {
+        long now = System.currentTimeMillis();
+        for (Iterator<Session> iterator = sessions.values().iterator(); iterator
+                .hasNext();) {
+            Session session = iterator.next();
+            if (session.users == 0
+                    && now - session.lastUsedTime > IDLE_TIMEOUT) {
+                iterator.remove();
+                close(session, virtualMachines);
+            }
+        }
+    }
+
+    /**
+     * Gets the cached session, and marks it in use.
+     * 
+     * @param pid
+     *            The process ID
+     * @return The session, or <tt>null</tt> if not cached
+     */
+    synchronized private Session getSession(int pid) {
+        Session session = sessions.get(pid);
+        if (session != null) {
+            session.users++;
+        }
+        return session;
+    }
+
+    /**
+     * Attaches to the JVM, and caches the session marked in use. Attaching is
+     * done without locking the pool, since it may take a while.
+     * 
+     * @param pid
+     *            The process ID
+     * @return The session
+     * @throws JvmCoreException
+     */
+    private Session attach(int pid) throws JvmCoreException {
+        Session session = new Session(pid, Tools.getInstance()
+                .invokeAttach(pid));
+        session.users++;
+        List<Object> virtualMachines = new ArrayList<Object>();
+        synchronized (this) {
+            Session previousSession = sessions.put(pid, session);
+            if (previousSession != null) {
+                close(previousSession, virtualMachines);
+            }
+        }
+        detach(virtualMachines);
+        return session;
+    }
+
+    /**
+     * Marks the session not in use.
+     * 
+     * @param session
+     *            The session
+     */
+    private void release(Session session) {
+        List<Object> virtualMachines = new ArrayList<Object>();
+        synchronized (this) {
+            session.users--;
+            session.lastUsedTime = System.currentTimeMillis();
+            if (session.invalid) {
+                close(session, virtualMachines);
+            }
+        }
+        detach(virtualMachines);
+    }
+
+    /**
+     * Invalidates the session, that is detached when no longer in use.
+     * 
+     * @param session
+     *            The session
+     */
+    synchronized private void invalidate(Session session) {
+        if (sessions.get(session.pid) == session) {
+            sessions.remove(session.pid);
+        }
+        session.invalid = true;
+    }
+
+    /**
+     * Invalidates the session, and adds its virtual machine to the given list
+     * to be detached if not in use. The session in use is detached when
+     * released. This method has to be invoked while locking the pool.
+     * 
+     * @param session
+     *            The session
+     * @param virtualMachines
+     *            The virtual machines to be detached
+     */
+    private static void close(Session session, List<Object> virtualMachines) {
+        session.invalid = true;
+        if (session.users > 0 || session.virtualMachine == null) {
+            return;
+        }
+
+        virtualMachines.add(session.virtualMachine);
+        session.virtualMachine = null;
+    }
+
+    /**
+     * Detaches the given virtual machines. This method is invoked without
+     * locking the pool.
+     * 
+     * @param virtualMachines
+     *            The virtual machines
+     */
+    private static void detach(List<Object> virtualMachines) {
+        for (Object virtualMachine : virtualMachines) {
+            try {
+                Tools.getInstance().invokeDetach(virtualMachine);
+            } catch (JvmCoreException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * The attach session.
+     */
+    private static class Session {
+
+        /** The process ID. */
+        int pid;
+
+        /** The attached virtual machine. */
+        Object virtualMachine;
+
+        /** The number of operations using this session. */
+        int users;
+
+        /** The time in milliseconds when this session was used at last. */
+        long lastUsedTime;
+
+        /** The state indicating if this session is no longer reused. */
+        boolean invalid;
+
+        /**
+         * The constructor.
+         * 
+         * @param pid
+         *            The process ID
+         * @param virtualMachine
+         *            The attached virtual machine
+         */
+        Session(int pid, Object virtualMachine) {
+            this.pid = pid;
+            this.virtualMachine = virtualMachine;
+            lastUsedTime = System.currentTimeMillis();
+        }
+    }
+}
@@ -12,6 +12,8 @@ import java.io.UnsupportedEncodingException;
 
 import org.eclipse.core.runtime.IStatus;
 import org.jvmmonitor.core.IHeapDumpHandler;
+import org.jvmmonitor.core.IHeapHistogramParser;
+import org.jvmmonitor.core.IStreamingHeapDumpHandler;
 import org.jvmmonitor.core.JvmCoreException;
 import org.jvmmonitor.tools.Activator;
 
@@ -19,7 +21,7 @@ import org.jvmmonitor.tools.Activator;
  * The heap dump handler that contributes to the extension point
  * <tt>org.jvmmonitor.core.heapDumpHandler</tt>.
  */
-public class HeapDumpHandler implements IHeapDumpHandler {
+public class HeapDumpHandler implements IStreamingHeapDumpHandler {
 
     /** The buffer size to transfer heap dump data from target JVM to eclipse. */
     private static final int BUFFER_SIZE = 2048;
@@ -28,22 +30,34 @@ public class HeapDumpHandler implements IHeapDumpHandler {
      * @see IHeapDumpHandler#dumpHeap(int, boolean)
      */
     @Override
-    public String dumpHeap(int pid, boolean isLive) throws JvmCoreException {
-        Tools tools = Tools.getInstance();
+    public String dumpHeap(int pid, final boolean isLive)
+            throws JvmCoreException {
+        return AttachSessionPool.getInstance().execute(pid,
+                new IAttachOperation<String>() {
+                    @Override
+                    public String run(Object virtualMachine)
+                            throws JvmCoreException {
+                        return getHeapHistogram(virtualMachine, isLive);
+                    }
+                });
+    }
 
-        Object virtualMachine = null;
-        try {
-            virtualMachine = tools.invokeAttach(pid);
-            return getHeapHistogram(virtualMachine, isLive);
-        } finally {
-            if (virtualMachine != null) {
-                try {
-                    tools.invokeDetach(virtualMachine);
-                } catch (JvmCoreException e) {
-                    // ignore
-                }
-            }
-        }
+    /*
+     * @see IStreamingHeapDumpHandler#dumpHeap(int, boolean,
+     * IHeapHistogramParser)
+     */
+    @Override
+    public void dumpHeap(int pid, final boolean isLive,
+            final IHeapHistogramParser parser) throws JvmCoreException {
+        AttachSessionPool.getInstance().execute(pid,
+                new IAttachOperation<Void>() {
+                    @Override
+                    public Void run(Object virtualMachine)
+                            throws JvmCoreException {
+                        parseHeapHistogram(virtualMachine, isLive, parser);
+                        return null;
+                    }
+                });
     }
 
     /*
@@ -55,6 +69,35 @@ public class HeapDumpHandler implements IHeapDumpHandler {
                 .getInt(IConstants.MAX_CLASSES_NUMBER);
     }
 
+    /**
+     * Parses the heap histogram from target JVM with the given parser.
+     * 
+     * @param virtualMachine
+     *            The virtual machine
+     * @param isLive
+     *            True to dump only live objects
+     * @param parser
+     *            The heap histogram parser
+     * @throws JvmCoreException
+     */
+    static void parseHeapHistogram(Object virtualMachine, boolean isLive,
+            IHeapHistogramParser parser) throws JvmCoreException {
+        InputStream in = Tools.getInstance().invokeHeapHisto(virtualMachine,
+                isLive);
+        try {
+            parser.parse(in);
+        } catch (IOException e) {
+            throw new JvmCoreException(IStatus.ERROR,
+                    Messages.readInputStreamFailedMsg, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
     /**
      * Gets the heap histogram from target JVM.
      * <p>
@@ -77,7 +120,7 @@ public class HeapDumpHandler implements IHeapDumpHandler {
      * @return The heap histogram
      * @throws JvmCoreException
      */
-    private static String getHeapHistogram(Object virtualMachine, boolean isLive)
+    static String getHeapHistogram(Object virtualMachine, boolean isLive)
             throws JvmCoreException {
         InputStream in = Tools.getInstance().invokeHeapHisto(virtualMachine,
                 isLive);
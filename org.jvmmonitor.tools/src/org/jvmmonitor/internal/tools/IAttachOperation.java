@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.tools;
+
+import org.jvmmonitor.core.JvmCoreException;
+
+/**
+ * The operation executed on the virtual machine attached by
+ * {@link AttachSessionPool}.
+ * 
+ * @param <T>
+ *            The type of result
+ */
+public interface IAttachOperation<T> {
+
+    /**
+     * Runs the operation.
+     * 
+     * @param virtualMachine
+     *            The virtual machine
+     * @return The result
+     * @throws JvmCoreException
+     */
+    T run(Object virtualMachine) throws JvmCoreException;
+}
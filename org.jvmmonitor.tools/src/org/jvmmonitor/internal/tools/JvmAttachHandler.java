@@ -7,11 +7,24 @@
 package org.jvmmonitor.internal.tools;
 
 import java.io.File;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.jface.util.IPropertyChangeListener;
@@ -20,21 +33,78 @@ import org.eclipse.osgi.util.NLS;
 import org.jvmmonitor.core.IActiveJvm;
 import org.jvmmonitor.core.IHost;
 import org.jvmmonitor.core.IJvmAttachHandler;
+import org.jvmmonitor.core.IPollingTask;
 import org.jvmmonitor.core.JvmCoreException;
 import org.jvmmonitor.tools.Activator;
 
 /**
  * The JVM attach handler that contributes to the extension point
  * <tt>org.jvmmonitor.core.jvmAttachHandler</tt>.
+ * <p>
+ * The newly found JVMs are probed concurrently on a pool of worker threads,
+ * and the completed probes are collected on the next ticks without waiting,
+ * so that a JVM hanging on attach doesn't stall the discovery of other JVMs.
+ * <p>
+ * The probe that doesn't complete within {@link #PROBE_TIMEOUT} since it
+ * started is regarded as hung. Since a native attach cannot be interrupted,
+ * an extra worker thread is added while the hung probe occupies its thread,
+ * and the JVM is not added until the probe completes. The JVM is probed again
+ * on the next tick once the hung probe completes without result.
  */
 public class JvmAttachHandler implements IJvmAttachHandler,
         IPropertyChangeListener, IConstants {
 
+    /** The number of worker threads to probe JVMs. */
+    private static final int PROBE_THREADS = 4;
+
+    /** The timeout in milliseconds to probe a JVM. */
+    private static final long PROBE_TIMEOUT = 10000;
+
+    /** The keep alive time in seconds of idle worker threads. */
+    private static final long KEEP_ALIVE_TIME = 60;
+
+    /** The worker thread name. */
+    private static final String PROBE_THREAD_NAME = "JVM Monitor Discovery Worker"; //$NON-NLS-1$
+
     /** The local host. */
     private IHost localhost;
 
-    /** The timer. */
-    Timer timer;
+    /** The polling task to update active JVMs. */
+    IPollingTask task;
+
+    /** The workers to probe JVMs. */
+    private ThreadPoolExecutor probeWorkers;
+
+    /** The probes being executed keyed by pid. */
+    private Map<Integer, Probe> pendingProbes;
+
+    /** The number of hung probes occupying worker threads. */
+    private int hungProbeCount;
+
+    /** The monitored VMs cached across ticks keyed by pid. */
+    Map<Integer, Object> monitoredVms;
+
+    /**
+     * The constructor.
+     */
+    public JvmAttachHandler() {
+        probeWorkers = new ThreadPoolExecutor(PROBE_THREADS, PROBE_THREADS,
+                KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, PROBE_THREAD_NAME
+                                + " " + count.incrementAndGet()); //$NON-NLS-1$
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        probeWorkers.allowCoreThreadTimeOut(true);
+        pendingProbes = new LinkedHashMap<Integer, Probe>();
+        monitoredVms = new ConcurrentHashMap<Integer, Object>();
+    }
 
     /*
      * @see IJvmAttachHandler#setHost(IHost)
@@ -69,12 +139,11 @@ public class JvmAttachHandler implements IJvmAttachHandler,
      * Starts monitoring.
      */
     private void startMonitoring() {
-        if (timer != null) {
-            timer.cancel();
+        if (task != null) {
+            task.cancel();
         }
-        timer = new Timer(true);
 
-        TimerTask timerTask = new TimerTask() {
+        Runnable runnable = new Runnable() {
             @Override
             public void run() {
                 try {
@@ -82,14 +151,22 @@ public class JvmAttachHandler implements IJvmAttachHandler,
                 } catch (Throwable t) {
                     Activator.log(IStatus.ERROR,
                             Messages.updateTimerCanceledMsg, t);
-                    timer.cancel();
+                    IPollingTask currentTask = org.jvmmonitor.core.Activator
+                            .getDefault().getPollingScheduler()
+                            .getCurrentTask();
+                    if (currentTask != null) {
+                        currentTask.cancel();
+                    }
                 }
             }
         };
 
+        // discovery runs on its own worker not to be blocked by slow JVMs
         long period = Activator.getDefault().getPreferenceStore()
                 .getLong(IConstants.UPDATE_PERIOD);
-        timer.schedule(timerTask, 0, period);
+        task = org.jvmmonitor.core.Activator.getDefault()
+                .getPollingScheduler()
+                .scheduleIsolated("discovery", runnable, period); //$NON-NLS-1$
     }
 
     /**
@@ -98,20 +175,53 @@ public class JvmAttachHandler implements IJvmAttachHandler,
      * @throws JvmCoreException
      */
     void updatesActiveJvms() throws JvmCoreException {
-        Object monitoredHost = Tools.getInstance().invokeGetMonitoredHost(
-                IHost.LOCALHOST);
+        Tools tools = Tools.getInstance();
+        Object monitoredHost = tools.invokeGetMonitoredHost(IHost.LOCALHOST);
 
-        Set<Integer> activeJvms = Tools.getInstance().invokeActiveVms(
-                monitoredHost);
+        Set<Integer> activeJvms = tools.invokeActiveVms(monitoredHost);
 
-        // add JVMs
+        // probe new JVMs
         List<IActiveJvm> previousVms = localhost.getActiveJvms();
+        Set<Integer> previousPids = new HashSet<Integer>();
+        for (IActiveJvm jvm : previousVms) {
+            previousPids.add(jvm.getPid());
+        }
         for (int pid : activeJvms) {
-            if (containJvm(previousVms, pid)) {
+            if (previousPids.contains(pid) || pendingProbes.containsKey(pid)) {
+                continue;
+            }
+
+            Probe probe = new Probe(pid, monitoredHost);
+            try {
+                probe.future = probeWorkers.submit(probe);
+            } catch (RejectedExecutionException e) {
                 continue;
             }
+            pendingProbes.put(pid, probe);
+        }
 
-            addActiveJvm(pid, monitoredHost);
+        // add JVMs whose probe has completed
+        for (Iterator<Probe> iterator = pendingProbes.values().iterator(); iterator
+                .hasNext();) {
+            Probe probe = iterator.next();
+            if (probe.future.isDone()) {
+                iterator.remove();
+                if (probe.hung) {
+                    releaseHungProbe();
+                }
+                ProbeResult result = getResult(probe);
+                if (result != null && activeJvms.contains(probe.pid)) {
+                    addActiveJvm(result);
+                }
+            } else if (probe.hung) {
+                continue;
+            } else if (!activeJvms.contains(probe.pid)) {
+                iterator.remove();
+                probe.cancel();
+            } else if (probe.isTimedOut()) {
+                probe.hung = true;
+                addHungProbe(probe);
+            }
         }
 
         // remove JVMs
@@ -121,68 +231,95 @@ public class JvmAttachHandler implements IJvmAttachHandler,
                 localhost.removeJvm(pid);
             }
         }
+        AttachSessionPool.getInstance().retain(activeJvms);
+        for (Iterator<Integer> iterator = monitoredVms.keySet().iterator(); iterator
+                .hasNext();) {
+            Integer pid = iterator.next();
+            if (!activeJvms.contains(pid)) {
+                detachMonitoredVm(monitoredHost, monitoredVms.get(pid));
+                iterator.remove();
+            }
+        }
     }
 
     /**
-     * Checks if the given list of JVMs contains the given pid.
+     * Gets the result of the completed probe.
      * 
-     * @param jvms
-     *            The list of active JVMs
-     * @param pid
-     *            The pid
-     * @return True if the given list of JVMs contains the given pid
+     * @param probe
+     *            The completed probe
+     * @return The result, or <tt>null</tt> if the probe has failed or been
+     *         canceled
      */
-    private static boolean containJvm(List<IActiveJvm> jvms, int pid) {
-        for (IActiveJvm jvm : jvms) {
-            if (jvm.getPid() == pid) {
-                return true;
-            }
+    private static ProbeResult getResult(Probe probe) {
+        try {
+            return probe.future.get();
+        } catch (ExecutionException e) {
+            String message = NLS.bind(
+                    Messages.getLocalConnectorAddressFailedMsg, probe.pid);
+            Activator.log(IStatus.WARNING, message, e.getCause());
+        } catch (CancellationException e) {
+            // the JVM has terminated
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return false;
+        return null;
     }
 
     /**
-     * Adds the active JVM.
+     * Adds a worker thread to replace the thread occupied by the hung probe.
      * 
-     * @param pid
-     *            The pid
-     * @param monitoredHost
-     *            The monitored host
+     * @param probe
+     *            The hung probe
      */
-    private void addActiveJvm(int pid, Object monitoredHost) {
-        String vmId = String.format(IConstants.VM_IDENTIFIRER, pid);
-        Tools tools = Tools.getInstance();
+    private void addHungProbe(Probe probe) {
+        Activator.log(IStatus.WARNING,
+                NLS.bind(Messages.probeTargetJvmTimedOutMsg, probe.pid),
+                new Exception());
+        hungProbeCount++;
+        probeWorkers.setMaximumPoolSize(PROBE_THREADS + hungProbeCount);
+        probeWorkers.setCorePoolSize(PROBE_THREADS + hungProbeCount);
+    }
+
+    /**
+     * Removes the worker thread added for the hung probe that has completed.
+     */
+    private void releaseHungProbe() {
+        hungProbeCount--;
+        probeWorkers.setCorePoolSize(PROBE_THREADS + hungProbeCount);
+        probeWorkers.setMaximumPoolSize(PROBE_THREADS + hungProbeCount);
+    }
 
-        Object monitoredVm = null;
+    /**
+     * Adds the active JVM.
+     * 
+     * @param result
+     *            The result of completed probe
+     */
+    private void addActiveJvm(ProbeResult result) {
         try {
-            monitoredVm = tools.invokeGetMonitoredVm(monitoredHost,
-                    tools.invokeVmIdentifier(vmId));
+            localhost.addLocalActiveJvm(result.pid, result.mainClass,
+                    result.localConnectorAddress, result.stateMessage);
         } catch (JvmCoreException e) {
-            Activator.log(IStatus.ERROR, Messages.getMonitoredJvmFailedMsg, e);
-        }
-
-        String mainClass = null;
-        String localConnectorAddress = null;
-        String stateMessage = null;
-        if (monitoredVm != null) {
-            mainClass = getMainClass(monitoredVm, pid);
-            try {
-                localConnectorAddress = getLocalConnectorAddress(monitoredVm,
-                        pid);
-            } catch (JvmCoreException e) {
-                stateMessage = e.getMessage();
-                String message = NLS.bind(
-                        Messages.getLocalConnectorAddressFailedMsg, pid);
-                Activator.log(IStatus.WARNING, message, e);
-            }
+            String message = NLS.bind(Messages.connectTargetJvmFailedMsg,
+                    result.pid);
+            Activator.log(IStatus.WARNING, message, e);
         }
+    }
 
+    /**
+     * Detaches the monitored VM.
+     * 
+     * @param monitoredHost
+     *            The monitored host
+     * @param monitoredVm
+     *            The monitored VM
+     */
+    static void detachMonitoredVm(Object monitoredHost, Object monitoredVm) {
         try {
-            localhost.addLocalActiveJvm(pid, mainClass, localConnectorAddress,
-                    stateMessage);
+            Tools.getInstance().invokeDetachMonitoredVm(monitoredHost,
+                    monitoredVm);
         } catch (JvmCoreException e) {
-            String message = NLS.bind(Messages.connectTargetJvmFailedMsg, pid);
-            Activator.log(IStatus.WARNING, message, e);
+            // ignore
         }
     }
 
@@ -243,40 +380,198 @@ public class JvmAttachHandler implements IJvmAttachHandler,
      */
     private static String getLocalConnectorAddress(Object monitoredVm, int pid)
             throws JvmCoreException {
-        String url = null;
+        return AttachSessionPool.getInstance().execute(pid,
+                new IAttachOperation<String>() {
+                    @Override
+                    public String run(Object virtualMachine)
+                            throws JvmCoreException {
+                        return loadManagementAgent(virtualMachine);
+                    }
+                });
+    }
 
+    /**
+     * Gets the local connector address by loading the management agent.
+     * 
+     * @param virtualMachine
+     *            The virtual machine
+     * @return The local connector address
+     * @throws JvmCoreException
+     */
+    static String loadManagementAgent(Object virtualMachine)
+            throws JvmCoreException {
         Tools tools = Tools.getInstance();
-        Object virtualMachine = null;
-        try {
-            virtualMachine = tools.invokeAttach(pid);
 
-            String javaHome = ((Properties) tools
-                    .invokeGetSystemProperties(virtualMachine))
-                    .getProperty(IConstants.JAVA_HOME_PROPERTY_KEY);
+        String javaHome = ((Properties) tools
+                .invokeGetSystemProperties(virtualMachine))
+                .getProperty(IConstants.JAVA_HOME_PROPERTY_KEY);
 
-            File file = new File(javaHome + IConstants.MANAGEMENT_AGENT_JAR);
+        File file = new File(javaHome + IConstants.MANAGEMENT_AGENT_JAR);
 
-            if (!file.exists()) {
-                String message = NLS.bind(Messages.fileNotFoundMsg,
-                        file.getPath());
-                throw new JvmCoreException(IStatus.ERROR, message,
-                        new Exception());
-            }
+        if (!file.exists()) {
+            String message = NLS.bind(Messages.fileNotFoundMsg, file.getPath());
+            throw new JvmCoreException(IStatus.ERROR, message, new Exception());
+        }
 
-            tools.invokeLoadAgent(virtualMachine, file.getAbsolutePath(),
-                    IConstants.JMX_REMOTE_AGENT);
+        tools.invokeLoadAgent(virtualMachine, file.getAbsolutePath(),
+                IConstants.JMX_REMOTE_AGENT);
 
-            Properties props = tools.invokeGetAgentProperties(virtualMachine);
-            url = (String) props.get(LOCAL_CONNECTOR_ADDRESS);
-        } finally {
-            if (virtualMachine != null) {
-                try {
-                    tools.invokeDetach(virtualMachine);
-                } catch (JvmCoreException e) {
-                    // ignore
+        Properties props = tools.invokeGetAgentProperties(virtualMachine);
+        return (String) props.get(LOCAL_CONNECTOR_ADDRESS);
+    }
+
+    /**
+     * The probe to get the main class and the local connector address of
+     * newly found JVM, that is executed on worker thread. The result is
+     * published through the future of the probe.
+     */
+    private class Probe implements Callable<ProbeResult> {
+
+        /** The process ID. */
+        int pid;
+
+        /** The monitored host. */
+        private Object monitoredHost;
+
+        /**
+         * The time in milliseconds when the probe started, or <tt>0</tt> if
+         * not started yet.
+         */
+        private volatile long startTime;
+
+        /** The future of the probe. */
+        Future<ProbeResult> future;
+
+        /** The state indicating if the probe has timed out and is hung. */
+        boolean hung;
+
+        /** The state indicating if the probe has been canceled. */
+        private volatile boolean canceled;
+
+        /**
+         * The constructor.
+         * 
+         * @param pid
+         *            The process ID
+         * @param monitoredHost
+         *            The monitored host
+         */
+        Probe(int pid, Object monitoredHost) {
+            this.pid = pid;
+            this.monitoredHost = monitoredHost;
+        }
+
+        /*
+         * @see Callable#call()
+         */
+        @Override
+        public ProbeResult call() {
+            startTime = System.currentTimeMillis();
+            Object monitoredVm = monitoredVms.get(pid);
+            if (monitoredVm == null) {
+                monitoredVm = getMonitoredVm();
+                if (monitoredVm == null) {
+                    return null;
                 }
+                monitoredVms.put(pid, monitoredVm);
             }
+
+            String mainClass = getMainClass(monitoredVm, pid);
+            String localConnectorAddress = null;
+            String stateMessage = null;
+            try {
+                localConnectorAddress = getLocalConnectorAddress(monitoredVm,
+                        pid);
+            } catch (JvmCoreException e) {
+                stateMessage = e.getMessage();
+                String message = NLS.bind(
+                        Messages.getLocalConnectorAddressFailedMsg, pid);
+                Activator.log(IStatus.WARNING, message, e);
+            }
+
+            // the JVM has terminated while probing
+            if (canceled && monitoredVms.remove(pid) != null) {
+                detachMonitoredVm(monitoredHost, monitoredVm);
+                return null;
+            }
+            return new ProbeResult(pid, mainClass, localConnectorAddress,
+                    stateMessage);
+        }
+
+        /**
+         * Gets the state indicating if the probe has not completed within
+         * {@link JvmAttachHandler#PROBE_TIMEOUT} since it started.
+         * 
+         * @return <tt>true</tt> if the probe has timed out
+         */
+        boolean isTimedOut() {
+            long time = startTime;
+            return time != 0
+                    && System.currentTimeMillis() - time > PROBE_TIMEOUT;
+        }
+
+        /**
+         * Cancels the probe.
+         */
+        void cancel() {
+            canceled = true;
+            future.cancel(true);
+        }
+
+        /**
+         * Gets the monitored VM.
+         * 
+         * @return The monitored VM, or <tt>null</tt> if failed
+         */
+        private Object getMonitoredVm() {
+            String vmId = String.format(IConstants.VM_IDENTIFIRER, pid);
+            Tools tools = Tools.getInstance();
+            try {
+                return tools.invokeGetMonitoredVm(monitoredHost,
+                        tools.invokeVmIdentifier(vmId));
+            } catch (JvmCoreException e) {
+                Activator.log(IStatus.ERROR,
+                        Messages.getMonitoredJvmFailedMsg, e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The result of probe.
+     */
+    private static class ProbeResult {
+
+        /** The process ID. */
+        final int pid;
+
+        /** The main class. */
+        final String mainClass;
+
+        /** The local connector address. */
+        final String localConnectorAddress;
+
+        /** The state message. */
+        final String stateMessage;
+
+        /**
+         * The constructor.
+         * 
+         * @param pid
+         *            The process ID
+         * @param mainClass
+         *            The main class
+         * @param localConnectorAddress
+         *            The local connector address
+         * @param stateMessage
+         *            The state message
+         */
+        ProbeResult(int pid, String mainClass, String localConnectorAddress,
+                String stateMessage) {
+            this.pid = pid;
+            this.mainClass = mainClass;
+            this.localConnectorAddress = localConnectorAddress;
+            this.stateMessage = stateMessage;
         }
-        return url;
     }
 }
@@ -135,4 +135,7 @@ public final class Messages extends NLS {
 
     /** */
     public static String fileNotFoundMsg;
+
+    /** */
+    public static String probeTargetJvmTimedOutMsg;
 }
@@ -15,8 +15,10 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.jdt.launching.IVMInstall;
@@ -41,10 +43,19 @@ public class Tools implements IPropertyChangeListener, IConstants {
     /** The state indicating if ready to use. */
     private boolean isReady;
 
+    /** The classes in <tt>tools.jar</tt> resolved once, keyed by name. */
+    private Map<String, Class<?>> classes;
+
+    /** The methods resolved once, keyed by class name and method name. */
+    private Map<String, Method> methods;
+
     /**
      * The constructor.
      */
     private Tools() {
+        classes = new ConcurrentHashMap<String, Class<?>>();
+        methods = new ConcurrentHashMap<String, Method>();
+
         /*
          * In case of Mac, the required APIs are provided by classes.jar instead
          * of tools.jar, and the additional class path and library path don't
@@ -102,9 +113,8 @@ public class Tools implements IPropertyChangeListener, IConstants {
     protected Properties invokeGetAgentProperties(Object virtualMachine)
             throws JvmCoreException {
         try {
-            Class<?> clazz = Class.forName(VIRTUAL_MACHINE_CLASS);
-            Method method = clazz
-                    .getDeclaredMethod(GET_AGENT_PROPERTIES_METHOD);
+            Method method = getMethod(VIRTUAL_MACHINE_CLASS,
+                    GET_AGENT_PROPERTIES_METHOD);
             return (Properties) method.invoke(virtualMachine);
         } catch (Throwable t) {
             throw new JvmCoreException(IStatus.ERROR, t.getMessage(), t);
@@ -122,9 +132,8 @@ public class Tools implements IPropertyChangeListener, IConstants {
     synchronized protected Object invokeGetMonitoredHost(String name)
             throws JvmCoreException {
         try {
-            Class<?> clazz = Class.forName(MONITORED_HOST_CLASS);
-            Method method = clazz.getDeclaredMethod(GET_MONITORED_HOST_CLASS,
-                    new Class[] { String.class });
+            Method method = getMethod(MONITORED_HOST_CLASS,
+                    GET_MONITORED_HOST_CLASS, String.class);
             return method.invoke(null, name);
         } catch (Throwable t) {
             throw new JvmCoreException(IStatus.ERROR, t.getMessage(), t);
@@ -143,8 +152,7 @@ public class Tools implements IPropertyChangeListener, IConstants {
     protected Set<Integer> invokeActiveVms(Object monitoredHost)
             throws JvmCoreException {
         try {
-            Class<?> clazz = Class.forName(MONITORED_HOST_CLASS);
-            Method method = clazz.getDeclaredMethod(ACTIVE_VMS_METHOD);
+            Method method = getMethod(MONITORED_HOST_CLASS, ACTIVE_VMS_METHOD);
             return (Set<Integer>) method.invoke(monitoredHost);
         } catch (Throwable t) {
             throw new JvmCoreException(IStatus.ERROR, t.getMessage(), t);
@@ -161,7 +169,7 @@ public class Tools implements IPropertyChangeListener, IConstants {
      */
     protected Object invokeVmIdentifier(String vmId) throws JvmCoreException {
         try {
-            Constructor<?> clazz = Class.forName(VM_IDENTIFIER_CLASS)
+            Constructor<?> clazz = loadClass(VM_IDENTIFIER_CLASS)
                     .getConstructor(new Class[] { String.class });
             return clazz.newInstance(vmId);
         } catch (Throwable t) {
@@ -182,16 +190,34 @@ public class Tools implements IPropertyChangeListener, IConstants {
     synchronized protected Object invokeGetMonitoredVm(Object monitoredHost,
             Object vmIdentifier) throws JvmCoreException {
         try {
-            Class<?> clazz = Class.forName(MONITORED_HOST_CLASS);
-            Class<?> clazz2 = Class.forName(VM_IDENTIFIER_CLASS);
-            Method method = clazz.getDeclaredMethod(GET_MONITORED_VM_METHOD,
-                    new Class[] { clazz2 });
+            Method method = getMethod(MONITORED_HOST_CLASS,
+                    GET_MONITORED_VM_METHOD, loadClass(VM_IDENTIFIER_CLASS));
             return method.invoke(monitoredHost, vmIdentifier);
         } catch (Throwable t) {
             throw new JvmCoreException(IStatus.ERROR, t.getMessage(), t);
         }
     }
 
+    /**
+     * Invokes the detach method of MonitoredHost with reflection.
+     * 
+     * @param monitoredHost
+     *            The monitored host
+     * @param monitoredVm
+     *            The monitored VM
+     * @throws JvmCoreException
+     */
+    protected void invokeDetachMonitoredVm(Object monitoredHost,
+            Object monitoredVm) throws JvmCoreException {
+        try {
+            Method method = getMethod(MONITORED_HOST_CLASS, DETACH_METHOD,
+                    loadClass(MONITORED_VM_CLASS));
+            method.invoke(monitoredHost, monitoredVm);
+        } catch (Throwable t) {
+            throw new JvmCoreException(IStatus.ERROR, t.getMessage(), t);
+        }
+    }
+
     /**
      * Invokes the findByName method of MonitoredVm with reflection.
      * 
@@ -205,9 +231,8 @@ public class Tools implements IPropertyChangeListener, IConstants {
     protected Object invokeFindByName(Object monitoredVm, String name)
             throws JvmCoreException {
         try {
-            Class<?> clazz = Class.forName(MONITORED_VM_CLASS);
-            Method method = clazz.getDeclaredMethod(FIND_BY_NAME_METHOD,
-                    new Class[] { String.class });
+            Method method = getMethod(MONITORED_VM_CLASS, FIND_BY_NAME_METHOD,
+                    String.class);
             return method.invoke(monitoredVm, name);
         } catch (Throwable t) {
             throw new JvmCoreException(IStatus.ERROR, t.getMessage(), t);
@@ -224,8 +249,7 @@ public class Tools implements IPropertyChangeListener, IConstants {
      */
     protected Object invokeGetValue(Object monitor) throws JvmCoreException {
         try {
-            Class<?> clazz = Class.forName(MONITOR_CLASS);
-            Method method = clazz.getDeclaredMethod(GET_VALUE_METHOD);
+            Method method = getMethod(MONITOR_CLASS, GET_VALUE_METHOD);
             return method.invoke(monitor);
         } catch (Throwable t) {
             throw new JvmCoreException(IStatus.ERROR, t.getMessage(), t);
@@ -242,9 +266,8 @@ public class Tools implements IPropertyChangeListener, IConstants {
      */
     protected Object invokeAttach(int pid) throws JvmCoreException {
         try {
-            Class<?> clazz = Class.forName(VIRTUAL_MACHINE_CLASS);
-            Method method = clazz.getDeclaredMethod(ATTACH_METHOD,
-                    new Class[] { String.class });
+            Method method = getMethod(VIRTUAL_MACHINE_CLASS, ATTACH_METHOD,
+                    String.class);
             return method.invoke(null, String.valueOf(pid));
         } catch (Throwable t) {
             throw new JvmCoreException(IStatus.ERROR,
@@ -261,8 +284,7 @@ public class Tools implements IPropertyChangeListener, IConstants {
      */
     protected void invokeDetach(Object vm) throws JvmCoreException {
         try {
-            Class<?> clazz = Class.forName(VIRTUAL_MACHINE_CLASS);
-            Method method = clazz.getDeclaredMethod(DETACH_METHOD);
+            Method method = getMethod(VIRTUAL_MACHINE_CLASS, DETACH_METHOD);
             method.invoke(vm);
         } catch (Throwable t) {
             throw new JvmCoreException(IStatus.ERROR, t.getMessage(), t);
@@ -280,9 +302,8 @@ public class Tools implements IPropertyChangeListener, IConstants {
     protected Object invokeGetSystemProperties(Object vm)
             throws JvmCoreException {
         try {
-            Class<?> clazz = Class.forName(VIRTUAL_MACHINE_CLASS);
-            Method method = clazz
-                    .getDeclaredMethod(GET_SYSTEM_PROPERTIES_METHOD);
+            Method method = getMethod(VIRTUAL_MACHINE_CLASS,
+                    GET_SYSTEM_PROPERTIES_METHOD);
             return method.invoke(vm);
         } catch (Throwable t) {
             throw new JvmCoreException(IStatus.ERROR, t.getMessage(), t);
@@ -303,9 +324,8 @@ public class Tools implements IPropertyChangeListener, IConstants {
     protected void invokeLoadAgent(Object virtualMachine, String path,
             String options) throws JvmCoreException {
         try {
-            Class<?> clazz = Class.forName(VIRTUAL_MACHINE_CLASS);
-            Method method = clazz.getDeclaredMethod(LOAD_AGENT_METHOD,
-                    new Class[] { String.class, String.class });
+            Method method = getMethod(VIRTUAL_MACHINE_CLASS, LOAD_AGENT_METHOD,
+                    String.class, String.class);
             method.invoke(virtualMachine, path, options);
         } catch (Throwable t) {
             String message = t.getMessage();
@@ -336,9 +356,8 @@ public class Tools implements IPropertyChangeListener, IConstants {
     protected InputStream invokeHeapHisto(Object virtualMachine, boolean isLive)
             throws JvmCoreException {
         try {
-            Class<?> clazz = Class.forName(HOT_SPOT_VIRTUAL_MACHINE_CLASS);
-            Method method = clazz.getDeclaredMethod(HEAP_HISTO_METHOD,
-                    new Class[] { Object[].class });
+            Method method = getMethod(HOT_SPOT_VIRTUAL_MACHINE_CLASS,
+                    HEAP_HISTO_METHOD, Object[].class);
             Object[] arg = new Object[] { isLive ? HEAP_HISTO_LIVE_OPTION
                     : HEAP_HISTO_ALL_OPTION };
             return (InputStream) method.invoke(virtualMachine, (Object) arg);
@@ -347,6 +366,51 @@ public class Tools implements IPropertyChangeListener, IConstants {
         }
     }
 
+    /**
+     * Gets the class with the given name, that is resolved only once.
+     * 
+     * @param className
+     *            The qualified class name
+     * @return The class
+     * @throws ClassNotFoundException
+     */
+    private Class<?> loadClass(String className) throws ClassNotFoundException {
+        Class<?> clazz = classes.get(className);
+        if (clazz == null) {
+            clazz = Class.forName(className);
+            classes.put(className, clazz);
+        }
+        return clazz;
+    }
+
+    /**
+     * Gets the declared method, that is looked up with reflection only once.
+     * The methods are distinguished by class name and method name, since no
+     * overloaded methods are invoked.
+     * 
+     * @param className
+     *            The qualified class name
+     * @param methodName
+     *            The method name
+     * @param parameterTypes
+     *            The parameter types
+     * @return The method
+     * @throws ClassNotFoundException
+     * @throws NoSuchMethodException
+     */
+    private Method getMethod(String className, String methodName,
+            Class<?>... parameterTypes) throws ClassNotFoundException,
+            NoSuchMethodException {
+        String key = className + '#' + methodName;
+        Method method = methods.get(key);
+        if (method == null) {
+            method = loadClass(className).getDeclaredMethod(methodName,
+                    parameterTypes);
+            methods.put(key, method);
+        }
+        return method;
+    }
+
     /**
      * Validates the JDK root directory.
      * 
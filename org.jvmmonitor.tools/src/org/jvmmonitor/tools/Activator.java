@@ -9,6 +9,7 @@ package org.jvmmonitor.tools;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
+import org.jvmmonitor.internal.tools.AttachSessionPool;
 import org.osgi.framework.BundleContext;
 
 /**
@@ -36,6 +37,7 @@ public class Activator extends AbstractUIPlugin {
      */
     @Override
     public void stop(BundleContext context) throws Exception {
+        AttachSessionPool.getInstance().clear();
         super.stop(context);
         plugin = null;
     }
@@ -26,6 +26,9 @@ public interface IConstants {
     /** The preference key for SWT resources filter to take stack traces into account. */
     static final String WIDE_SCOPE_SWT_RESOURCE_FILTER = "WideScopeSWTResourcesFilter";
 
+    /** The preference key for the number of notifications held per MBean. */
+    static final String NOTIFICATION_CAPACITY = "NotificationCapacity";
+
     /** The preference key for default chart set. */
     static final String DEFAULT_CHART_SET = "DefaultChartSet";
 
@@ -36,6 +36,9 @@ public class JavaMonitorPreferencePage extends PreferencePage implements
     /** The minimum value of update period. */
     private static final int MIN_UPDATE_PERIOD = 100;
 
+    /** The minimum number of notifications held per MBean. */
+    private static final int MIN_NOTIFICATION_CAPACITY = 1;
+
     /** The update period text field. */
     private Text updatePeriodText;
 
@@ -51,6 +54,9 @@ public class JavaMonitorPreferencePage extends PreferencePage implements
      */
     private Button wideScopeSWTResourcesFilterButton;
 
+    /** The text field for the number of notifications held per MBean. */
+    private Text notificationCapacityText;
+
     /*
      * @see PreferencePage#createContents(Composite)
      */
@@ -66,6 +72,7 @@ public class JavaMonitorPreferencePage extends PreferencePage implements
         createTimelineGroup(composite);
         createThreadsGroup(composite);
         createMemoryGroup(composite);
+        createMBeansGroup(composite);
 
         applyDialogFont(composite);
 
@@ -97,6 +104,8 @@ public class JavaMonitorPreferencePage extends PreferencePage implements
         getPreferenceStore().setValue(
                 IConstants.WIDE_SCOPE_SWT_RESOURCE_FILTER,
                 wideScopeSWTResourcesFilterButton.getSelection());
+        getPreferenceStore().setValue(IConstants.NOTIFICATION_CAPACITY,
+                notificationCapacityText.getText());
 
         applyChanges();
         return true;
@@ -107,9 +116,12 @@ public class JavaMonitorPreferencePage extends PreferencePage implements
      */
     private void applyChanges() {
         Integer period = Integer.valueOf(updatePeriodText.getText());
+        Integer capacity = Integer.valueOf(notificationCapacityText.getText());
         for (IHost host : JvmModel.getInstance().getHosts()) {
             for (IActiveJvm jvm : host.getActiveJvms()) {
                 jvm.getMBeanServer().setUpdatePeriod(period);
+                jvm.getMBeanServer().getMBeanNotification()
+                        .setCapacity(capacity);
             }
         }
     }
@@ -128,6 +140,8 @@ public class JavaMonitorPreferencePage extends PreferencePage implements
                 .getDefaultBoolean(IConstants.WIDE_SCOPE_THREAD_FILTER));
         wideScopeSWTResourcesFilterButton.setSelection(getPreferenceStore()
                 .getDefaultBoolean(IConstants.WIDE_SCOPE_SWT_RESOURCE_FILTER));
+        notificationCapacityText.setText(String.valueOf(getPreferenceStore()
+                .getDefaultInt(IConstants.NOTIFICATION_CAPACITY)));
         super.performDefaults();
     }
 
@@ -152,7 +166,7 @@ public class JavaMonitorPreferencePage extends PreferencePage implements
         updatePeriodText.addModifyListener(new ModifyListener() {
             @Override
             public void modifyText(ModifyEvent e) {
-                validateUpdatePeriod();
+                validate();
             }
         });
     }
@@ -228,17 +242,57 @@ public class JavaMonitorPreferencePage extends PreferencePage implements
         wideScopeSWTResourcesFilterButton.setLayoutData(gridData);
     }
 
+    /**
+     * Creates the MBeans group.
+     * 
+     * @param parent
+     *            The parent composite
+     */
+    private void createMBeansGroup(Composite parent) {
+        Group group = new Group(parent, SWT.NONE);
+        group.setText(Messages.mBeansGroupLabel);
+        GridLayout layout = new GridLayout(2, false);
+        group.setLayout(layout);
+        group.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+
+        Label label = new Label(group, SWT.NONE);
+        label.setText(Messages.notificationCapacityLabel);
+
+        notificationCapacityText = new Text(group, SWT.BORDER);
+        notificationCapacityText.setText(String.valueOf(getPreferenceStore()
+                .getInt(IConstants.NOTIFICATION_CAPACITY)));
+        notificationCapacityText.setLayoutData(new GridData(
+                GridData.FILL_HORIZONTAL));
+        notificationCapacityText.addModifyListener(new ModifyListener() {
+            @Override
+            public void modifyText(ModifyEvent e) {
+                validate();
+            }
+        });
+    }
+
+    /**
+     * Validates the update period and the number of notifications.
+     */
+    void validate() {
+        if (validateUpdatePeriod() && validateNotificationCapacity()) {
+            setMessage(null);
+        }
+    }
+
     /**
      * Validates the update period.
+     * 
+     * @return <tt>true</tt> if the update period is valid
      */
-    void validateUpdatePeriod() {
+    private boolean validateUpdatePeriod() {
 
         // check if text is empty
         String period = updatePeriodText.getText();
         if (period.isEmpty()) {
             setMessage(Messages.updatePeriodNotEnteredMsg,
                     IMessageProvider.WARNING);
-            return;
+            return false;
         }
 
         // check if text is integer
@@ -246,16 +300,50 @@ public class JavaMonitorPreferencePage extends PreferencePage implements
             Integer.parseInt(period);
         } catch (NumberFormatException e) {
             setMessage(Messages.illegalUpdatePeriodMsg, IMessageProvider.ERROR);
-            return;
+            return false;
         }
 
         // check if the value is within valid range
         if (Integer.valueOf(period) < MIN_UPDATE_PERIOD) {
             setMessage(Messages.updatePeriodOutOfRangeMsg,
                     IMessageProvider.ERROR);
-            return;
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Validates the number of notifications held per MBean.
+     * 
+     * @return <tt>true</tt> if the number of notifications is valid
+     */
+    private boolean validateNotificationCapacity() {
+
+        // check if text is empty
+        String capacity = notificationCapacityText.getText();
+        if (capacity.isEmpty()) {
+            setMessage(Messages.notificationCapacityNotEnteredMsg,
+                    IMessageProvider.WARNING);
+            return false;
         }
 
-        setMessage(null);
+        // check if text is integer
+        try {
+            Integer.parseInt(capacity);
+        } catch (NumberFormatException e) {
+            setMessage(Messages.illegalNotificationCapacityMsg,
+                    IMessageProvider.ERROR);
+            return false;
+        }
+
+        // check if the value is within valid range
+        if (Integer.valueOf(capacity) < MIN_NOTIFICATION_CAPACITY) {
+            setMessage(Messages.notificationCapacityOutOfRangeMsg,
+                    IMessageProvider.ERROR);
+            return false;
+        }
+
+        return true;
     }
 }
@@ -58,4 +58,19 @@ public final class Messages extends NLS {
     
     /** */
     public static String wideScopeSWTResourceFilterLabel;
+
+    /** */
+    public static String mBeansGroupLabel;
+
+    /** */
+    public static String notificationCapacityLabel;
+
+    /** */
+    public static String notificationCapacityNotEnteredMsg;
+
+    /** */
+    public static String illegalNotificationCapacityMsg;
+
+    /** */
+    public static String notificationCapacityOutOfRangeMsg;
 }
@@ -18,6 +18,9 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
     /** The default value for period to update model. The unit is milliseconds. */
     private static final int DEFAULT_UPDATE_PERIOD = 1000;
 
+    /** The default number of notifications held per MBean. */
+    private static final int DEFAULT_NOTIFICATION_CAPACITY = 1000;
+
     /*
      * @see AbstractPreferenceInitializer#initializeDefaultPreferences()
      */
@@ -29,5 +32,7 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
         store.setDefault(IConstants.LEGEND_VISIBILITY, false);
         store.setDefault(IConstants.WIDE_SCOPE_THREAD_FILTER, true);
         store.setDefault(IConstants.WIDE_SCOPE_SWT_RESOURCE_FILTER, true);
+        store.setDefault(IConstants.NOTIFICATION_CAPACITY,
+                DEFAULT_NOTIFICATION_CAPACITY);
     }
 }
@@ -117,6 +117,12 @@ public class HeapDumpEditor extends AbstractDumpEditor {
             public IHeapElement[] getHeapListElements() {
                 return heapListElements.toArray(new IHeapElement[0]);
             }
+
+            @Override
+            public IHeapElement[] getFastestGrowingHeapElements() {
+                // growth rates are not available in dump
+                return getHeapListElements();
+            }
         });
         int page = addPage(heapHistogramPage);
         setPageText(page, Messages.memoryTabLabel);
@@ -127,7 +127,7 @@ public class MBeanDomain implements IMBeanNode {
         // add or refresh MBean
         if (mBean == null) {
             int notificationCount = jvm.getMBeanServer().getMBeanNotification()
-                    .getNotifications(objectName).length;
+                    .getNotificationCount(objectName);
             mBean = new MBean(mBeanName, parent, objectName, jvm,
                     notificationCount > 0);
         }
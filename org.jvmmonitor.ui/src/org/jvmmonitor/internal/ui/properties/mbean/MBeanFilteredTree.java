@@ -67,6 +67,8 @@ public class MBeanFilteredTree extends FilteredTree {
                 SubscribeAction subscribeAction = new SubscribeAction(
                         getViewer().getSelection(), section);
                 manager.add(subscribeAction);
+                manager.add(new SubscribeWithFilterAction(getViewer()
+                        .getSelection(), section));
             }
         });
 
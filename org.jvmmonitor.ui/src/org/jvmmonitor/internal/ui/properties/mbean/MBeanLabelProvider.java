@@ -50,8 +50,14 @@ public class MBeanLabelProvider implements IStyledLabelProvider {
 
         if (appendSuffix && jvm != null) {
             int notificationCount = jvm.getMBeanServer().getMBeanNotification()
-                    .getNotifications(objectName).length;
-            String suffix = " [notifications: " + notificationCount + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+                    .getNotificationCount(objectName);
+            long droppedCount = jvm.getMBeanServer().getMBeanNotification()
+                    .getDroppedCount(objectName);
+            String suffix = " [notifications: " + notificationCount; //$NON-NLS-1$
+            if (droppedCount > 0) {
+                suffix += ", dropped: " + droppedCount; //$NON-NLS-1$
+            }
+            suffix += "]"; //$NON-NLS-1$
             int offset = text.length();
             text.append(suffix);
             text.setStyle(offset, suffix.length(),
@@ -88,6 +88,32 @@ public final class Messages extends NLS {
     /** */
     public static String mBeanOperationFailedMsg;
 
+    // notification filter dialog
+
+    /** */
+    public static String notificationFilterDialogTitle;
+
+    /** */
+    public static String notificationTypesLabel;
+
+    /** */
+    public static String notificationTypesToolTip;
+
+    /** */
+    public static String notificationAttributesLabel;
+
+    /** */
+    public static String notificationAttributesToolTip;
+
+    /** */
+    public static String coalescingIntervalLabel;
+
+    /** */
+    public static String coalescingIntervalToolTip;
+
+    /** */
+    public static String invalidCoalescingIntervalMsg;
+
     // notification details dialog
 
     /** */
@@ -119,6 +145,9 @@ public final class Messages extends NLS {
     /** */
     public static String subscribeLabel;
 
+    /** */
+    public static String subscribeWithFilterLabel;
+
     /** */
     public static String clearLabel;
 
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.ui.properties.mbean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.dialogs.Dialog;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.jvmmonitor.core.mbean.NotificationSubscription;
+
+/**
+ * The dialog to specify the filter and coalescing interval to subscribe
+ * notifications.
+ */
+class NotificationFilterDialog extends Dialog {
+
+    /** The types text field. */
+    private Text typesText;
+
+    /** The attributes text field. */
+    private Text attributesText;
+
+    /** The coalescing interval text field. */
+    private Text intervalText;
+
+    /** The error message label. */
+    private Label errorMessageLabel;
+
+    /** The subscription. */
+    NotificationSubscription subscription;
+
+    /**
+     * The constructor.
+     * 
+     * @param shell
+     *            The parent shell
+     * @param subscription
+     *            The initial subscription, or <tt>null</tt> if not subscribed
+     */
+    protected NotificationFilterDialog(Shell shell,
+            NotificationSubscription subscription) {
+        super(shell);
+        this.subscription = subscription == null ? NotificationSubscription.ALL
+                : subscription;
+    }
+
+    /*
+     * @see Dialog#create()
+     */
+    @Override
+    public void create() {
+        super.create();
+        getShell().setText(Messages.notificationFilterDialogTitle);
+        validate();
+    }
+
+    /*
+     * @see Dialog#createDialogArea(Composite)
+     */
+    @Override
+    protected Control createDialogArea(Composite parent) {
+        Composite container = new Composite(parent, SWT.NULL);
+        GridLayout layout = new GridLayout(2, false);
+        layout.marginWidth = 10;
+        container.setLayout(layout);
+        container.setLayoutData(new GridData(GridData.FILL_BOTH));
+
+        ModifyListener listener = new ModifyListener() {
+            @Override
+            public void modifyText(ModifyEvent e) {
+                validate();
+            }
+        };
+        typesText = createText(container, Messages.notificationTypesLabel,
+                Messages.notificationTypesToolTip,
+                join(subscription.getTypes()), listener);
+        attributesText = createText(container,
+                Messages.notificationAttributesLabel,
+                Messages.notificationAttributesToolTip,
+                join(subscription.getAttributes()), listener);
+        intervalText = createText(container, Messages.coalescingIntervalLabel,
+                Messages.coalescingIntervalToolTip,
+                String.valueOf(subscription.getCoalescingInterval()), listener);
+
+        errorMessageLabel = new Label(container, SWT.NONE);
+        GridData gridData = new GridData(GridData.FILL_HORIZONTAL);
+        gridData.horizontalSpan = 2;
+        errorMessageLabel.setLayoutData(gridData);
+
+        applyDialogFont(container);
+
+        return container;
+    }
+
+    /*
+     * @see Dialog#isResizable()
+     */
+    @Override
+    protected boolean isResizable() {
+        return true;
+    }
+
+    /*
+     * @see Dialog#okPressed()
+     */
+    @Override
+    protected void okPressed() {
+        subscription = new NotificationSubscription(
+                split(typesText.getText()), split(attributesText.getText()),
+                Long.parseLong(intervalText.getText().trim()));
+        super.okPressed();
+    }
+
+    /**
+     * Gets the specified subscription.
+     * 
+     * @return The subscription
+     */
+    protected NotificationSubscription getSubscription() {
+        return subscription;
+    }
+
+    /**
+     * Creates the text field with label.
+     * 
+     * @param parent
+     *            The parent composite
+     * @param label
+     *            The label
+     * @param toolTip
+     *            The tool tip
+     * @param value
+     *            The initial value
+     * @param listener
+     *            The modify listener
+     * @return The text field
+     */
+    private static Text createText(Composite parent, String label,
+            String toolTip, String value, ModifyListener listener) {
+        new Label(parent, SWT.NONE).setText(label);
+        Text text = new Text(parent, SWT.BORDER);
+        GridData gridData = new GridData(GridData.FILL_HORIZONTAL);
+        gridData.widthHint = 300;
+        text.setLayoutData(gridData);
+        text.setToolTipText(toolTip);
+        text.setText(value);
+        text.addModifyListener(listener);
+        return text;
+    }
+
+    /**
+     * Validates the specified text.
+     */
+    void validate() {
+        boolean valid;
+        try {
+            valid = Long.parseLong(intervalText.getText().trim()) >= 0;
+        } catch (NumberFormatException e) {
+            valid = false;
+        }
+
+        errorMessageLabel.setText(valid ? "" //$NON-NLS-1$
+                : Messages.invalidCoalescingIntervalMsg);
+        if (getButton(IDialogConstants.OK_ID) != null) {
+            getButton(IDialogConstants.OK_ID).setEnabled(valid);
+        }
+    }
+
+    /**
+     * Joins the given values with comma.
+     * 
+     * @param values
+     *            The values
+     * @return The joined text
+     */
+    private static String join(String[] values) {
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            if (builder.length() > 0) {
+                builder.append(", "); //$NON-NLS-1$
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Splits the given text with comma.
+     * 
+     * @param text
+     *            The text
+     * @return The values without empty ones
+     */
+    private static String[] split(String text) {
+        List<String> values = new ArrayList<String>();
+        for (String value : text.split(",")) { //$NON-NLS-1$
+            String trimmedValue = value.trim();
+            if (!trimmedValue.isEmpty()) {
+                values.add(trimmedValue);
+            }
+        }
+        return values.toArray(new String[values.size()]);
+    }
+}
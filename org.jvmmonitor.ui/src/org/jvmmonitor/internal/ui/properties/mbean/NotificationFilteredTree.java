@@ -38,6 +38,7 @@ import org.eclipse.ui.IActionBars;
 import org.eclipse.ui.dialogs.FilteredTree;
 import org.eclipse.ui.dialogs.PatternFilter;
 import org.jvmmonitor.core.IActiveJvm;
+import org.jvmmonitor.core.mbean.NotificationBatch;
 import org.jvmmonitor.internal.ui.IConfigurableColumns;
 import org.jvmmonitor.internal.ui.actions.ConfigureColumnsAction;
 import org.jvmmonitor.internal.ui.actions.CopyAction;
@@ -68,6 +69,18 @@ public class NotificationFilteredTree extends FilteredTree implements
     /** The property section. */
     private AbstractJvmPropertySection section;
 
+    /** The JVM of current input. */
+    private IActiveJvm inputJvm;
+
+    /** The object name of current input. */
+    private ObjectName inputObjectName;
+
+    /** The sequence of the latest notification in current input. */
+    private long inputSequence;
+
+    /** The notifications of current input. */
+    private List<Notification> inputNotifications;
+
     /**
      * The constructor.
      * 
@@ -83,6 +96,7 @@ public class NotificationFilteredTree extends FilteredTree implements
 
         this.notificationsTab = notificationsTab;
         this.section = section;
+        inputNotifications = new ArrayList<Notification>();
         treeViewer.setLabelProvider(new NotificationsLabelProvider(treeViewer));
         treeViewer.setContentProvider(new NotificationsContentProvider());
         treeViewer.addDoubleClickListener(this);
@@ -183,7 +197,8 @@ public class NotificationFilteredTree extends FilteredTree implements
     }
 
     /**
-     * Sets the input.
+     * Sets the input. Only the notifications received since the previous
+     * input are fetched for the same object name.
      * 
      * @param objectName
      *            The object name
@@ -191,45 +206,47 @@ public class NotificationFilteredTree extends FilteredTree implements
     public void setInput(ObjectName objectName) {
         IActiveJvm jvm = section.getJvm();
         if (objectName == null || jvm == null) {
+            inputJvm = null;
+            inputObjectName = null;
+            inputNotifications.clear();
             treeViewer.setInput(null);
             return;
         }
 
-        Notification[] notifications = jvm.getMBeanServer()
-                .getMBeanNotification().getNotifications(objectName);
-
-        if (!isSameInput(notifications)) {
-            treeViewer.setInput(notifications);
+        boolean changed = false;
+        if (jvm != inputJvm || !objectName.equals(inputObjectName)) {
+            changed = true;
+            inputJvm = jvm;
+            inputObjectName = objectName;
+            inputSequence = 0;
+            inputNotifications.clear();
         }
-    }
 
-    /**
-     * Checks if the given notifications are the same as current input.
-     * 
-     * @param notifications
-     *            The notifications
-     * @return <tt>true</tt> if the given notifications are the same as current
-     *         input
-     */
-    private boolean isSameInput(Notification[] notifications) {
-        Object input = treeViewer.getInput();
-        if (!(input instanceof Notification[])) {
-            return false;
+        NotificationBatch batch = jvm.getMBeanServer().getMBeanNotification()
+                .getNotificationsSince(objectName, inputSequence);
+        if (batch.getSequence() < inputSequence) {
+            // subscribed again
+            changed = true;
+            inputNotifications.clear();
         }
+        inputSequence = batch.getSequence();
 
-        Notification[] currentNotifications = (Notification[]) input;
-        if (currentNotifications.length != notifications.length) {
-            return false;
+        Notification[] notifications = batch.getNotifications();
+        for (Notification notification : notifications) {
+            inputNotifications.add(notification);
         }
 
-        for (int i = 0; i < notifications.length; i++) {
-            if (!notifications[i].toString().equals(
-                    currentNotifications[i].toString())) {
-                return false;
-            }
+        // keep the same notifications as held in buffer
+        int removedCount = inputNotifications.size()
+                - batch.getBufferedCount();
+        if (removedCount > 0) {
+            inputNotifications.subList(0, removedCount).clear();
         }
 
-        return true;
+        if (changed || notifications.length > 0 || removedCount > 0) {
+            treeViewer.setInput(inputNotifications
+                    .toArray(new Notification[inputNotifications.size()]));
+        }
     }
 
     /**
@@ -18,6 +18,8 @@ import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.ITreeSelection;
 import org.jvmmonitor.core.IActiveJvm;
 import org.jvmmonitor.core.JvmCoreException;
+import org.jvmmonitor.core.mbean.IMBeanNotification;
+import org.jvmmonitor.internal.ui.IConstants;
 import org.jvmmonitor.internal.ui.properties.AbstractJvmPropertySection;
 import org.jvmmonitor.ui.Activator;
 
@@ -94,14 +96,16 @@ public class SubscribeAction extends Action {
                     return Status.CANCEL_STATUS;
                 }
 
+                IMBeanNotification mBeanNotification = jvm.getMBeanServer()
+                        .getMBeanNotification();
                 try {
-                    if (jvm.getMBeanServer().getMBeanNotification()
-                            .isSubscribed(objectName)) {
-                        jvm.getMBeanServer().getMBeanNotification()
-                                .unsubscribe(objectName);
+                    if (mBeanNotification.isSubscribed(objectName)) {
+                        mBeanNotification.unsubscribe(objectName);
                     } else {
-                        jvm.getMBeanServer().getMBeanNotification()
-                                .subscribe(objectName);
+                        mBeanNotification.setCapacity(Activator.getDefault()
+                                .getPreferenceStore()
+                                .getInt(IConstants.NOTIFICATION_CAPACITY));
+                        mBeanNotification.subscribe(objectName);
                     }
                 } catch (JvmCoreException e) {
                     Activator.log(Messages.subscribeNotificationFailedMsg, e);
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.ui.properties.mbean;
+
+import javax.management.ObjectName;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.ITreeSelection;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.widgets.Display;
+import org.jvmmonitor.core.IActiveJvm;
+import org.jvmmonitor.core.JvmCoreException;
+import org.jvmmonitor.core.mbean.IMBeanNotification;
+import org.jvmmonitor.core.mbean.NotificationSubscription;
+import org.jvmmonitor.internal.ui.IConstants;
+import org.jvmmonitor.internal.ui.properties.AbstractJvmPropertySection;
+import org.jvmmonitor.ui.Activator;
+
+/**
+ * The action to subscribe notification with filter and coalescing interval.
+ */
+public class SubscribeWithFilterAction extends Action {
+
+    /** The object name. */
+    ObjectName objectName;
+
+    /** The property section */
+    AbstractJvmPropertySection section;
+
+    /**
+     * The constructor.
+     * 
+     * @param selection
+     *            The selection
+     * @param section
+     *            The property section
+     */
+    public SubscribeWithFilterAction(ISelection selection,
+            AbstractJvmPropertySection section) {
+        super(Messages.subscribeWithFilterLabel);
+        this.section = section;
+        setSelection(selection);
+        refresh();
+    }
+
+    /**
+     * Refreshes.
+     */
+    private void refresh() {
+        new Job(Messages.refreshSubscribeActionStateJobLabel) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                IActiveJvm jvm = section.getJvm();
+                setEnabled(jvm != null
+                        && jvm.isConnected()
+                        && objectName != null
+                        && jvm.getMBeanServer().getMBeanNotification()
+                                .isSupported(objectName));
+                return Status.OK_STATUS;
+            }
+        }.schedule();
+    }
+
+    /*
+     * @see Action#run()
+     */
+    @Override
+    public void run() {
+        IActiveJvm jvm = section.getJvm();
+        if (jvm == null || objectName == null) {
+            return;
+        }
+
+        final IMBeanNotification mBeanNotification = jvm.getMBeanServer()
+                .getMBeanNotification();
+        NotificationFilterDialog dialog = new NotificationFilterDialog(Display
+                .getDefault().getActiveShell(),
+                mBeanNotification.getSubscription(objectName));
+        if (dialog.open() != Window.OK) {
+            return;
+        }
+
+        final NotificationSubscription subscription = dialog.getSubscription();
+        new Job(Messages.subscribeNotificationJobLabel) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                try {
+                    mBeanNotification.setCapacity(Activator.getDefault()
+                            .getPreferenceStore()
+                            .getInt(IConstants.NOTIFICATION_CAPACITY));
+                    mBeanNotification.subscribe(objectName, subscription);
+                } catch (JvmCoreException e) {
+                    Activator.log(Messages.subscribeNotificationFailedMsg, e);
+                }
+                return Status.OK_STATUS;
+            }
+        }.schedule();
+    }
+
+    /**
+     * Sets the selection.
+     * 
+     * @param selection
+     *            The selection
+     */
+    private void setSelection(ISelection selection) {
+        objectName = null;
+
+        if (selection instanceof ITreeSelection) {
+            Object element = ((ITreeSelection) selection).getFirstElement();
+            if (element instanceof MBean) {
+                objectName = ((MBean) element).getObjectName();
+            }
+        }
+    }
+}
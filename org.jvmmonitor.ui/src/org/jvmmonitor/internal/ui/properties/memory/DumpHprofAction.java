@@ -7,15 +7,22 @@
 package org.jvmmonitor.internal.ui.properties.memory;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.management.ManagementFactory;
 import java.util.Date;
+import java.util.zip.GZIPInputStream;
 
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeData;
 import javax.management.openmbean.TabularData;
 
+import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
@@ -43,6 +50,9 @@ import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Text;
 import org.jvmmonitor.core.IActiveJvm;
+import org.jvmmonitor.core.IJvm;
+import org.jvmmonitor.core.ISnapshot;
+import org.jvmmonitor.core.ISnapshot.Compression;
 import org.jvmmonitor.core.ISnapshot.SnapshotType;
 import org.jvmmonitor.core.JvmCoreException;
 import org.jvmmonitor.core.cpu.ICpuProfiler.ProfilerState;
@@ -147,7 +157,7 @@ public class DumpHprofAction extends Action {
 
                 if (isMemoryAnalyzerInstalled() && fileStore != null) {
                     section.setPinned(true);
-                    OpenSnapshotAction.openEditor(fileStore);
+                    openSnapshot(activeJvm, fileStore);
                 }
 
                 return Status.OK_STATUS;
@@ -155,6 +165,84 @@ public class DumpHprofAction extends Action {
         }.schedule();
     }
 
+    /**
+     * Opens the snapshot of the given file store, that may be compressed. The
+     * snapshot is searched in the JVMs on the host, since it may have been
+     * added to the terminated JVM restored while dumping.
+     * 
+     * @param activeJvm
+     *            The active JVM
+     * @param fileStore
+     *            The file store
+     */
+    private static void openSnapshot(IActiveJvm activeJvm,
+            IFileStore fileStore) {
+        for (IJvm jvm : activeJvm.getHost().getJvms()) {
+            for (ISnapshot snapshot : jvm.getShapshots()) {
+                if (fileStore.equals(snapshot.getFileStore())) {
+                    OpenSnapshotAction.openSnapshot(snapshot);
+                    return;
+                }
+            }
+        }
+
+        if (!fileStore.getName().endsWith(
+                '.' + Compression.Gzip.getExtension())) {
+            OpenSnapshotAction.openEditor(fileStore);
+            return;
+        }
+
+        try {
+            OpenSnapshotAction.openEditor(decompress(fileStore));
+        } catch (CoreException e) {
+            Activator.log(Messages.decompressHprofFileFailedMsg, e);
+        } catch (IOException e) {
+            Activator.log(IStatus.ERROR, Messages.decompressHprofFileFailedMsg,
+                    e);
+        }
+    }
+
+    /**
+     * Decompresses the given file store in gzip format into a temporary file
+     * that is deleted on exit.
+     * 
+     * @param fileStore
+     *            The file store in gzip format
+     * @return The file store of decompressed file
+     * @throws CoreException
+     *             if opening the file store fails
+     * @throws IOException
+     *             if decompressing the file store fails
+     */
+    private static IFileStore decompress(IFileStore fileStore)
+            throws CoreException, IOException {
+        String name = fileStore.getName();
+        File file = File.createTempFile(name.substring(0, name.indexOf('.'))
+                + "-", '.' + SnapshotType.Hprof.getExtension()); //$NON-NLS-1$
+        file.deleteOnExit();
+
+        InputStream inputStream = new GZIPInputStream(
+                fileStore.openInputStream(EFS.NONE, null), 65536);
+        try {
+            OutputStream outputStream = new FileOutputStream(file);
+            try {
+                byte[] buffer = new byte[65536];
+                int size;
+                while ((size = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, size);
+                }
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        } finally {
+            inputStream.close();
+        }
+        return EFS.getLocalFileSystem().fromLocalFile(file);
+    }
+
     /**
      * Gets the state indicating if Memory Analyzer is installed.
      * 
@@ -24,7 +24,15 @@ public enum HeapColumn {
     COUNT(Messages.countColumnLabel, 140, SWT.LEFT, Messages.countColumnToolTip),
 
     /** The delta. */
-    DELTA(Messages.deltaColumnLabel, 140, SWT.LEFT, Messages.deltaColumnToolTip);
+    DELTA(Messages.deltaColumnLabel, 140, SWT.LEFT, Messages.deltaColumnToolTip),
+
+    /** The growth rate. */
+    GROWTH_RATE(Messages.growthRateColumnLabel, 140, SWT.LEFT,
+            Messages.growthRateColumnToolTip),
+
+    /** The count growth rate. */
+    COUNT_GROWTH_RATE(Messages.countGrowthRateColumnLabel, 140, SWT.LEFT,
+            Messages.countGrowthRateColumnToolTip);
 
     /** The label. */
     public final String label;
@@ -70,6 +70,16 @@ public class HeapComparator extends ViewerComparator {
             long delta1 = element1.getSize() - element1.getBaseSize();
             long delta2 = element2.getSize() - element2.getBaseSize();
             result = (delta1 > delta2) ? 1 : -1;
+        } else if (columnIndex == getColumnIndex(tree,
+                HeapColumn.GROWTH_RATE)) {
+            double rate1 = element1.getSizeGrowthRate();
+            double rate2 = element2.getSizeGrowthRate();
+            result = (rate1 > rate2) ? 1 : -1;
+        } else if (columnIndex == getColumnIndex(tree,
+                HeapColumn.COUNT_GROWTH_RATE)) {
+            double rate1 = element1.getCountGrowthRate();
+            double rate2 = element2.getCountGrowthRate();
+            result = (rate1 > rate2) ? 1 : -1;
         }
 
         if (sortDirection == SWT.DOWN) {
@@ -103,6 +113,19 @@ public class HeapComparator extends ViewerComparator {
         return columnIndex;
     }
 
+    /**
+     * Gets the state indicating if sorting with the given column.
+     * 
+     * @param tree
+     *            The tree
+     * @param column
+     *            The heap column
+     * @return <tt>true</tt> if sorting with the given column
+     */
+    protected boolean isSortedBy(Tree tree, HeapColumn column) {
+        return columnIndex == getColumnIndex(tree, column);
+    }
+
     /**
      * Gets the column index corresponding to the given column.
      * 
@@ -9,6 +9,7 @@ package org.jvmmonitor.internal.ui.properties.memory;
 import org.eclipse.jface.viewers.ITreeContentProvider;
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.jface.viewers.ViewerComparator;
 
 /**
  * The heap content provider.
@@ -35,11 +36,28 @@ public class HeapContentProvider implements ITreeContentProvider {
     public Object[] getElements(Object inputElement) {
         Object input = heapViewer.getInput();
         if (input instanceof IHeapInput) {
+            if (isSortedByGrowthRate()) {
+                return ((IHeapInput) input).getFastestGrowingHeapElements();
+            }
             return ((IHeapInput) input).getHeapListElements();
         }
         return new Object[0];
     }
 
+    /**
+     * Gets the state indicating if the tree is sorted by size growth rate, in
+     * which case only the fastest growing classes are shown so that all
+     * classes are not sorted in UI thread.
+     * 
+     * @return <tt>true</tt> if the tree is sorted by size growth rate
+     */
+    private boolean isSortedByGrowthRate() {
+        ViewerComparator comparator = heapViewer.getComparator();
+        return comparator instanceof HeapComparator
+                && ((HeapComparator) comparator).isSortedBy(
+                        heapViewer.getTree(), HeapColumn.GROWTH_RATE);
+    }
+
     /*
      * @see ITreeContentProvider#getChildren(Object)
      */
@@ -473,6 +473,13 @@ public class HeapHistogramPage extends Composite implements
             boolean columnVisibility = Boolean.valueOf(elemnets[1]);
             columns.put(columnName, columnVisibility);
         }
+
+        // the columns added after the preference was stored
+        for (HeapColumn column : HeapColumn.values()) {
+            if (!columns.containsKey(column.label)) {
+                columns.put(column.label, true);
+            }
+        }
     }
 
     /**
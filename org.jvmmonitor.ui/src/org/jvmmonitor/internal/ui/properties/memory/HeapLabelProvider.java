@@ -105,6 +105,13 @@ public class HeapLabelProvider extends LabelProvider implements
         } else if (columnIndex == getColumnIndex(HeapColumn.DELTA)) {
             return NumberFormat.getInstance().format(
                     element.getSize() - element.getBaseSize());
+        } else if (columnIndex == getColumnIndex(HeapColumn.GROWTH_RATE)) {
+            return NumberFormat.getInstance().format(
+                    Math.round(element.getSizeGrowthRate()));
+        } else if (columnIndex == getColumnIndex(
+                HeapColumn.COUNT_GROWTH_RATE)) {
+            return NumberFormat.getInstance().format(
+                    Math.round(element.getCountGrowthRate()));
         }
         return ""; //$NON-NLS-1$
     }
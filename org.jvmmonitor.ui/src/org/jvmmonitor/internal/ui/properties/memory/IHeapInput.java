@@ -19,4 +19,12 @@ public interface IHeapInput {
      * @return The heap list elements
      */
     IHeapElement[] getHeapListElements();
+
+    /**
+     * Gets the heap elements growing fastest in size, that are shown instead
+     * of all heap list elements when sorting by growth rate.
+     * 
+     * @return The heap elements growing fastest in size
+     */
+    IHeapElement[] getFastestGrowingHeapElements();
 }
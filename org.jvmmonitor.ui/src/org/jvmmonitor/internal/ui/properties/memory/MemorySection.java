@@ -98,6 +98,11 @@ public class MemorySection extends AbstractJvmPropertySection {
             public IHeapElement[] getHeapListElements() {
                 return newJvm.getMBeanServer().getHeapCache();
             }
+
+            @Override
+            public IHeapElement[] getFastestGrowingHeapElements() {
+                return newJvm.getMBeanServer().getFastestGrowingHeapElements();
+            }
         });
 
         swtResourcePage.setInput(new ISWTResorceInput() {
@@ -53,6 +53,18 @@ public final class Messages extends NLS {
     /** */
     public static String deltaColumnToolTip;
 
+    /** */
+    public static String growthRateColumnLabel;
+
+    /** */
+    public static String growthRateColumnToolTip;
+
+    /** */
+    public static String countGrowthRateColumnLabel;
+
+    /** */
+    public static String countGrowthRateColumnToolTip;
+
     /** */
     public static String heapHistogramLabel;
 
@@ -148,4 +160,7 @@ public final class Messages extends NLS {
 
     /** */
     public static String clearSWTResoucesFailedMsg;
+
+    /** */
+    public static String decompressHprofFileFailedMsg;
 }
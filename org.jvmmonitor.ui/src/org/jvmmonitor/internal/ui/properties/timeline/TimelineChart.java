@@ -27,6 +27,7 @@ import org.eclipse.ui.forms.widgets.ExpandableComposite;
 import org.jvmmonitor.core.mbean.IMonitoredMXBeanAttribute;
 import org.jvmmonitor.core.mbean.IMonitoredMXBeanGroup;
 import org.jvmmonitor.core.mbean.IMonitoredMXBeanGroup.AxisUnit;
+import org.jvmmonitor.core.mbean.TimeSeriesSnapshot;
 import org.jvmmonitor.internal.ui.IConstants;
 import org.jvmmonitor.internal.ui.RefreshJob;
 import org.jvmmonitor.ui.Activator;
@@ -44,6 +45,9 @@ import org.swtchart.internal.PlotArea;
  */
 public class TimelineChart extends Chart implements IPropertyChangeListener {
 
+    /** The width in pixels used before the plot area is laid out. */
+    private static final int DEFAULT_WIDTH = 1000;
+
     /** The job to refresh model and UI. */
     private RefreshJob refreshJob;
 
@@ -257,6 +261,11 @@ public class TimelineChart extends Chart implements IPropertyChangeListener {
 
         deleteMonitoredSeries();
 
+        int width = getPlotArea().getSize().x;
+        if (width <= 0) {
+            width = DEFAULT_WIDTH;
+        }
+
         for (IMonitoredMXBeanAttribute attribute : attributeGroup
                 .getAttributes()) {
             String seriesId = getSeriesId(attribute);
@@ -268,8 +277,10 @@ public class TimelineChart extends Chart implements IPropertyChangeListener {
                 }
             }
 
-            series.setXDateSeries(attribute.getDates().toArray(new Date[0]));
-            series.setYSeries(getYSeries(attribute));
+            TimeSeriesSnapshot snapshot = attribute.getSeries(0,
+                    Long.MAX_VALUE, width);
+            series.setXDateSeries(getXDateSeries(snapshot));
+            series.setYSeries(getYSeries(snapshot));
             setColor((ILineSeries) series, attribute.getRGB());
         }
 
@@ -302,16 +313,29 @@ public class TimelineChart extends Chart implements IPropertyChangeListener {
     }
 
     /**
-     * Gets the Y series with given attribute.
+     * Gets the X date series with given snapshot of attribute.
      * 
-     * @param attribute
-     *            The attribute
-     * @return The Y Series
+     * @param snapshot
+     *            The snapshot of attribute
+     * @return The X date series
      */
-    private double[] getYSeries(IMonitoredMXBeanAttribute attribute) {
-        List<Number> values = attribute.getValues();
+    private static Date[] getXDateSeries(TimeSeriesSnapshot snapshot) {
+        Date[] xSeries = new Date[snapshot.size()];
+        for (int i = 0; i < xSeries.length; i++) {
+            xSeries[i] = new Date(snapshot.getTimestamp(i));
+        }
+        return xSeries;
+    }
 
-        double[] ySeries = new double[values.size()];
+    /**
+     * Gets the Y series with given snapshot of attribute.
+     * 
+     * @param snapshot
+     *            The snapshot of attribute
+     * @return The Y Series
+     */
+    private double[] getYSeries(TimeSeriesSnapshot snapshot) {
+        double[] ySeries = new double[snapshot.size()];
 
         double ratio = 1d;
         if (attributeGroup.getAxisUnit() == AxisUnit.MBytes) {
@@ -319,14 +343,7 @@ public class TimelineChart extends Chart implements IPropertyChangeListener {
         }
 
         for (int i = 0; i < ySeries.length; i++) {
-            Number value = values.get(i);
-            if (value instanceof Integer) {
-                ySeries[i] = (Integer) value * ratio;
-            } else if (value instanceof Long) {
-                ySeries[i] = (Long) value * ratio;
-            } else if (value instanceof Double) {
-                ySeries[i] = (Double) value * ratio;
-            }
+            ySeries[i] = snapshot.getValue(i) * ratio;
         }
         return ySeries;
     }
@@ -349,7 +349,8 @@ public class TimelineSection extends AbstractJvmPropertySection {
      * <p>
      * When JVM gets connected (e.g. opening Properties view or on already
      * opened Properties view), the default chart set will be loaded and
-     * applied.
+     * applied, and the history recorded while previously connected to the
+     * same JVM will be loaded.
      * <p>
      * When target JVM is already connected (e.g. opening new Properties view,
      * another JVM gets selected, or monitored attributes gets changed), chart
@@ -373,6 +374,7 @@ public class TimelineSection extends AbstractJvmPropertySection {
                 Activator
                         .log(Messages.configureMonitoredAttributesFailedMsg, e);
             }
+            activeJvm.getMBeanServer().loadMonitoredAttributeHistory();
         }
 
         List<IMonitoredMXBeanGroup> groups = activeJvm.getMBeanServer()
@@ -177,6 +177,9 @@ public final class Messages extends NLS {
     /** */
     public static String stopMonitoringJobLabel;
 
+    /** */
+    public static String decompressSnapshotJobLabel;
+
     // error log messages
 
     /** */
@@ -187,4 +190,7 @@ public final class Messages extends NLS {
 
     /** */
     public static String bringPropertiesViewToFrontFailedMsg;
+
+    /** */
+    public static String decompressSnapshotFailedMsg;
 }
@@ -10,7 +10,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
@@ -20,6 +23,8 @@ import org.eclipse.ui.PartInitException;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.ide.IDE;
 import org.jvmmonitor.core.ISnapshot;
+import org.jvmmonitor.core.ISnapshot.Compression;
+import org.jvmmonitor.core.JvmCoreException;
 import org.jvmmonitor.ui.Activator;
 
 /**
@@ -74,8 +79,35 @@ public class OpenSnapshotAction extends Action implements
      */
     @Override
     public void run() {
-        for (ISnapshot snapshot : snapshots) {
-            openEditor(snapshot.getFileStore());
+        for (final ISnapshot snapshot : snapshots) {
+            if (snapshot.getCompression() == Compression.None) {
+                openEditor(snapshot.getFileStore());
+                continue;
+            }
+
+            new Job(Messages.decompressSnapshotJobLabel) {
+                @Override
+                protected IStatus run(IProgressMonitor monitor) {
+                    openSnapshot(snapshot);
+                    return Status.OK_STATUS;
+                }
+            }.schedule();
+        }
+    }
+
+    /**
+     * Opens the editor for the given snapshot, decompressing the snapshot if
+     * compressed. This method has to be invoked in non-UI thread since
+     * decompressing a large snapshot may take a while.
+     * 
+     * @param snapshot
+     *            The snapshot
+     */
+    public static void openSnapshot(ISnapshot snapshot) {
+        try {
+            openEditor(snapshot.getUncompressedFileStore());
+        } catch (JvmCoreException e) {
+            Activator.log(Messages.decompressSnapshotFailedMsg, e);
         }
     }
 